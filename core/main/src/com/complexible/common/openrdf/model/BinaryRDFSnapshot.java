@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.util.Arrays;
+
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.helpers.RioSettingImpl;
+
+/**
+ * <p>A compact binary serialization of RDF intended for quickly saving and restoring {@link org.openrdf.model.Model models}
+ * rather than for interchange.  Each distinct value is written once and assigned an integer id; statements are then
+ * written as four varint-encoded ids.  The body of the file may optionally be compressed with Deflate.</p>
+ *
+ * <p>The format is registered with Rio, so {@link org.openrdf.rio.Rio#createParser(RDFFormat)} and
+ * {@link org.openrdf.rio.Rio#createWriter(RDFFormat, java.io.OutputStream)} can be used with {@link #FORMAT}, and files
+ * with the {@code .rdfsnap} extension are recognized by {@link ModelIO#read(java.nio.file.Path)}.</p>
+ *
+ * <p>Layout of a snapshot:</p>
+ * <pre>
+ * header:  int magic, byte version, byte flags
+ * body:    record*, END
+ * record:  NAMESPACE  string prefix, string name
+ *          IRI        string
+ *          BNODE      string
+ *          LITERAL    string label, varint datatype id
+ *          LANG       string label, string language
+ *          QUAD       varint subject, varint predicate, varint object, varint context
+ * </pre>
+ *
+ * <p>Strings are a varint length followed by UTF-8 bytes.  Value records implicitly take the next id, starting at 1; the
+ * id 0 is the default context.  A value is always defined before it is referenced.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class BinaryRDFSnapshot {
+
+	/**
+	 * The RDF format of binary snapshots
+	 */
+	public static final RDFFormat FORMAT = new RDFFormat("Binary RDF Snapshot",
+	                                                     Arrays.asList("application/x-binary-rdf-snapshot"),
+	                                                     null,
+	                                                     Arrays.asList("rdfsnap"),
+	                                                     RDFFormat.SUPPORTS_NAMESPACES,
+	                                                     RDFFormat.SUPPORTS_CONTEXTS);
+
+	/**
+	 * Whether or not the body of a snapshot should be compressed.  Compressed snapshots are much smaller, but slower to
+	 * write and to read.
+	 */
+	public static final RioSetting<Boolean> COMPRESS = new RioSettingImpl<>("com.complexible.common.openrdf.snapshot.compress",
+	                                                                        "Compress the snapshot", Boolean.FALSE);
+
+	static final int MAGIC = 0x43505253;
+
+	static final int VERSION = 1;
+
+	static final int FLAG_DEFLATE = 1;
+
+	static final int END = 0;
+	static final int NAMESPACE = 1;
+	static final int IRI = 2;
+	static final int BNODE = 3;
+	static final int LITERAL = 4;
+	static final int LANG_LITERAL = 5;
+	static final int QUAD = 6;
+
+	/**
+	 * The id of the default context
+	 */
+	static final int DEFAULT_CONTEXT = 0;
+
+	private BinaryRDFSnapshot() {
+		throw new AssertionError();
+	}
+}
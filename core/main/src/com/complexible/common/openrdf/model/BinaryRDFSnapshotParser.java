@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
+
+import org.openrdf.model.IRI;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.AbstractRDFParser;
+
+/**
+ * <p>{@link org.openrdf.rio.RDFParser} for the {@link BinaryRDFSnapshot binary snapshot} format.  Snapshots are binary,
+ * so they cannot be parsed from a {@link Reader}.  Blank node ids are always preserved.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class BinaryRDFSnapshotParser extends AbstractRDFParser {
+	private Value[] mValues = new Value[1024];
+
+	private int mSize;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RDFFormat getRDFFormat() {
+		return BinaryRDFSnapshot.FORMAT;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void parse(final InputStream theStream, final String theBase) throws IOException, RDFParseException, RDFHandlerException {
+		parse(new StreamInput(new BufferedInputStream(theStream, 1 << 16)));
+	}
+
+	/**
+	 * Unsupported, snapshots are binary
+	 */
+	@Override
+	public void parse(final Reader theReader, final String theBase) throws IOException, RDFParseException, RDFHandlerException {
+		throw new UnsupportedOperationException("Binary RDF snapshots cannot be parsed from a Reader");
+	}
+
+	/**
+	 * Parse the snapshot contained in the buffer, reading directly from the buffer rather than through a stream.  This
+	 * is used with {@link java.nio.MappedByteBuffer mapped} files to avoid copying the data.
+	 *
+	 * @param theBuffer	the buffer to read from
+	 *
+	 * @throws IOException			if there is an error reading from the buffer
+	 * @throws RDFParseException	if the buffer does not contain a valid snapshot
+	 * @throws RDFHandlerException	if the handler raises an error
+	 */
+	void parse(final ByteBuffer theBuffer) throws IOException, RDFParseException, RDFHandlerException {
+		parse(new BufferInput(theBuffer));
+	}
+
+	private void parse(final Input theInput) throws IOException, RDFParseException, RDFHandlerException {
+		if (rdfHandler == null) {
+			throw new IllegalStateException("No RDFHandler has been set");
+		}
+
+		final int aVersion;
+		final int aFlags;
+
+		try {
+			final int aMagic = (theInput.read() << 24) | (theInput.read() << 16) | (theInput.read() << 8) | theInput.read();
+
+			if (aMagic != BinaryRDFSnapshot.MAGIC) {
+				reportFatalError("Not a binary RDF snapshot");
+			}
+
+			aVersion = theInput.read();
+			aFlags = theInput.read();
+		}
+		catch (EOFException e) {
+			// empty, or too short to hold the header
+			reportFatalError("Not a binary RDF snapshot");
+			return;
+		}
+
+		if (aVersion != BinaryRDFSnapshot.VERSION) {
+			reportFatalError("Unsupported binary RDF snapshot version: " + aVersion);
+		}
+
+		final Input aBody = (aFlags & BinaryRDFSnapshot.FLAG_DEFLATE) != 0
+		                    ? new StreamInput(new BufferedInputStream(new InflaterInputStream(theInput.asStream()), 1 << 16))
+		                    : theInput;
+
+		clear();
+
+		rdfHandler.startRDF();
+
+		try {
+			int aRecord;
+			while ((aRecord = aBody.read()) != BinaryRDFSnapshot.END) {
+				switch (aRecord) {
+					case BinaryRDFSnapshot.QUAD: {
+						final Resource aSubj = (Resource) value(aBody.readVarInt());
+						final IRI aPred = (IRI) value(aBody.readVarInt());
+						final Value aObj = value(aBody.readVarInt());
+						final int aContext = aBody.readVarInt();
+
+						rdfHandler.handleStatement(aContext == BinaryRDFSnapshot.DEFAULT_CONTEXT
+						                           ? valueFactory.createStatement(aSubj, aPred, aObj)
+						                           : valueFactory.createStatement(aSubj, aPred, aObj, (Resource) value(aContext)));
+						break;
+					}
+					case BinaryRDFSnapshot.IRI:
+						add(valueFactory.createIRI(aBody.readString()));
+						break;
+					case BinaryRDFSnapshot.BNODE:
+						add(valueFactory.createBNode(aBody.readString()));
+						break;
+					case BinaryRDFSnapshot.LITERAL: {
+						final String aLabel = aBody.readString();
+
+						add(valueFactory.createLiteral(aLabel, (IRI) value(aBody.readVarInt())));
+						break;
+					}
+					case BinaryRDFSnapshot.LANG_LITERAL: {
+						final String aLabel = aBody.readString();
+
+						add(valueFactory.createLiteral(aLabel, aBody.readString()));
+						break;
+					}
+					case BinaryRDFSnapshot.NAMESPACE: {
+						final String aPrefix = aBody.readString();
+
+						rdfHandler.handleNamespace(aPrefix, aBody.readString());
+						break;
+					}
+					default:
+						reportFatalError("Invalid record type in binary RDF snapshot: " + aRecord);
+				}
+			}
+		}
+		catch (EOFException e) {
+			reportFatalError("Unexpected end of binary RDF snapshot");
+		}
+		catch (ClassCastException e) {
+			reportFatalError(e);
+		}
+		finally {
+			clear();
+		}
+
+		rdfHandler.endRDF();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void clear() {
+		super.clear();
+
+		mValues = new Value[1024];
+		mSize = 0;
+	}
+
+	private void add(final Value theValue) {
+		if (mSize + 1 == mValues.length) {
+			mValues = Arrays.copyOf(mValues, mValues.length * 2);
+		}
+
+		// ids start at one
+		mValues[++mSize] = theValue;
+	}
+
+	private Value value(final int theId) throws RDFParseException {
+		if (theId < 1 || theId > mSize) {
+			reportFatalError("Invalid value id in binary RDF snapshot: " + theId);
+		}
+
+		return mValues[theId];
+	}
+
+	/**
+	 * Source of the bytes of a snapshot
+	 */
+	private static abstract class Input {
+		private byte[] mBuffer = new byte[256];
+
+		/**
+		 * Read a single byte
+		 *
+		 * @return	the byte
+		 *
+		 * @throws EOFException	if there are no more bytes
+		 * @throws IOException	if there is an error reading
+		 */
+		abstract int read() throws IOException;
+
+		abstract void readFully(final byte[] theBytes, final int theLength) throws IOException;
+
+		abstract InputStream asStream();
+
+		int readVarInt() throws IOException {
+			int aValue = 0;
+
+			for (int aShift = 0; aShift < 32; aShift += 7) {
+				final int aByte = read();
+
+				aValue |= (aByte & 0x7F) << aShift;
+
+				if ((aByte & 0x80) == 0) {
+					return aValue;
+				}
+			}
+
+			throw new IOException("Malformed varint");
+		}
+
+		String readString() throws IOException, RDFParseException {
+			final int aLength = readVarInt();
+
+			if (aLength < 0) {
+				throw new RDFParseException("Invalid string length in binary RDF snapshot: " + aLength);
+			}
+
+			if (aLength > mBuffer.length) {
+				mBuffer = new byte[Math.max(aLength, mBuffer.length * 2)];
+			}
+
+			readFully(mBuffer, aLength);
+
+			return new String(mBuffer, 0, aLength, StandardCharsets.UTF_8);
+		}
+	}
+
+	private static final class StreamInput extends Input {
+		private final InputStream mStream;
+
+		private StreamInput(final InputStream theStream) {
+			mStream = theStream;
+		}
+
+		@Override
+		int read() throws IOException {
+			final int aByte = mStream.read();
+
+			if (aByte == -1) {
+				throw new EOFException();
+			}
+
+			return aByte;
+		}
+
+		@Override
+		void readFully(final byte[] theBytes, final int theLength) throws IOException {
+			int aRead = 0;
+
+			while (aRead < theLength) {
+				final int aCount = mStream.read(theBytes, aRead, theLength - aRead);
+
+				if (aCount == -1) {
+					throw new EOFException();
+				}
+
+				aRead += aCount;
+			}
+		}
+
+		@Override
+		InputStream asStream() {
+			return mStream;
+		}
+	}
+
+	private static final class BufferInput extends Input {
+		private final ByteBuffer mBuffer;
+
+		private BufferInput(final ByteBuffer theBuffer) {
+			mBuffer = theBuffer;
+		}
+
+		@Override
+		int read() throws IOException {
+			if (!mBuffer.hasRemaining()) {
+				throw new EOFException();
+			}
+
+			return mBuffer.get() & 0xFF;
+		}
+
+		@Override
+		void readFully(final byte[] theBytes, final int theLength) throws IOException {
+			if (mBuffer.remaining() < theLength) {
+				throw new EOFException();
+			}
+
+			mBuffer.get(theBytes, 0, theLength);
+		}
+
+		@Override
+		InputStream asStream() {
+			return new InputStream() {
+				@Override
+				public int read() {
+					return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+				}
+
+				@Override
+				public int read(final byte[] theBytes, final int theOffset, final int theLength) {
+					if (!mBuffer.hasRemaining()) {
+						return -1;
+					}
+
+					final int aCount = Math.min(theLength, mBuffer.remaining());
+
+					mBuffer.get(theBytes, theOffset, aCount);
+
+					return aCount;
+				}
+			};
+		}
+	}
+}
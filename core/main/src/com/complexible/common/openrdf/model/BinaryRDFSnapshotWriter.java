@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import com.google.common.collect.ImmutableList;
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.helpers.AbstractRDFWriter;
+
+/**
+ * <p>{@link org.openrdf.rio.RDFWriter} for the {@link BinaryRDFSnapshot binary snapshot} format.  The writer keeps a
+ * dictionary of every value it has written so that each is only written once; the data is written as it is received.
+ * The underlying stream is flushed, but not closed, by {@link #endRDF()}.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class BinaryRDFSnapshotWriter extends AbstractRDFWriter {
+	private final OutputStream mStream;
+
+	private final Map<Value, Integer> mIds = new HashMap<>();
+
+	private OutputStream mOut;
+
+	private Deflater mDeflater;
+
+	private DeflaterOutputStream mDeflaterStream;
+
+	public BinaryRDFSnapshotWriter(final OutputStream theStream) {
+		mStream = theStream;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RDFFormat getRDFFormat() {
+		return BinaryRDFSnapshot.FORMAT;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Collection<RioSetting<?>> getSupportedSettings() {
+		return ImmutableList.<RioSetting<?>>builder().addAll(super.getSupportedSettings())
+		                                             .add(BinaryRDFSnapshot.COMPRESS)
+		                                             .build();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startRDF() throws RDFHandlerException {
+		final boolean aCompress = getWriterConfig().get(BinaryRDFSnapshot.COMPRESS);
+
+		mIds.clear();
+
+		try {
+			mStream.write(new byte[] {
+				(byte) (BinaryRDFSnapshot.MAGIC >>> 24), (byte) (BinaryRDFSnapshot.MAGIC >>> 16),
+				(byte) (BinaryRDFSnapshot.MAGIC >>> 8), (byte) BinaryRDFSnapshot.MAGIC,
+				(byte) BinaryRDFSnapshot.VERSION,
+				(byte) (aCompress ? BinaryRDFSnapshot.FLAG_DEFLATE : 0)
+			});
+		}
+		catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+
+		if (aCompress) {
+			mDeflater = new Deflater(Deflater.BEST_SPEED);
+			mDeflaterStream = new DeflaterOutputStream(mStream, mDeflater, 1 << 16);
+			mOut = new BufferedOutputStream(mDeflaterStream, 1 << 16);
+		}
+		else {
+			mDeflater = null;
+			mDeflaterStream = null;
+			mOut = new BufferedOutputStream(mStream, 1 << 16);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endRDF() throws RDFHandlerException {
+		try {
+			mOut.write(BinaryRDFSnapshot.END);
+			mOut.flush();
+
+			if (mDeflater != null) {
+				mDeflaterStream.finish();
+				mDeflater.end();
+			}
+
+			mStream.flush();
+		}
+		catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+		finally {
+			mIds.clear();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void handleNamespace(final String thePrefix, final String theName) throws RDFHandlerException {
+		try {
+			mOut.write(BinaryRDFSnapshot.NAMESPACE);
+			writeString(thePrefix);
+			writeString(theName);
+		}
+		catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void handleStatement(final Statement theStatement) throws RDFHandlerException {
+		try {
+			final int aSubj = id(theStatement.getSubject());
+			final int aPred = id(theStatement.getPredicate());
+			final int aObj = id(theStatement.getObject());
+			final int aContext = theStatement.getContext() == null
+			                     ? BinaryRDFSnapshot.DEFAULT_CONTEXT
+			                     : id(theStatement.getContext());
+
+			mOut.write(BinaryRDFSnapshot.QUAD);
+			writeVarInt(aSubj);
+			writeVarInt(aPred);
+			writeVarInt(aObj);
+			writeVarInt(aContext);
+		}
+		catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void handleComment(final String theComment) throws RDFHandlerException {
+		// comments are not retained
+	}
+
+	/**
+	 * Return the id of the value, writing it to the output if it has not been written before
+	 */
+	private int id(final Value theValue) throws IOException {
+		final Integer aId = mIds.get(theValue);
+
+		if (aId != null) {
+			return aId;
+		}
+
+		if (theValue instanceof IRI) {
+			mOut.write(BinaryRDFSnapshot.IRI);
+			writeString(theValue.stringValue());
+		}
+		else if (theValue instanceof BNode) {
+			mOut.write(BinaryRDFSnapshot.BNODE);
+			writeString(((BNode) theValue).getID());
+		}
+		else {
+			final Literal aLiteral = (Literal) theValue;
+
+			if (aLiteral.getLanguage().isPresent()) {
+				mOut.write(BinaryRDFSnapshot.LANG_LITERAL);
+				writeString(aLiteral.getLabel());
+				writeString(aLiteral.getLanguage().get());
+			}
+			else {
+				// the datatype has to be defined before the literal which references it
+				final int aDatatype = id(aLiteral.getDatatype());
+
+				mOut.write(BinaryRDFSnapshot.LITERAL);
+				writeString(aLiteral.getLabel());
+				writeVarInt(aDatatype);
+			}
+		}
+
+		final int aNewId = mIds.size() + 1;
+
+		mIds.put(theValue, aNewId);
+
+		return aNewId;
+	}
+
+	private void writeVarInt(int theValue) throws IOException {
+		while ((theValue & ~0x7F) != 0) {
+			mOut.write((theValue & 0x7F) | 0x80);
+			theValue >>>= 7;
+		}
+
+		mOut.write(theValue);
+	}
+
+	private void writeString(final String theString) throws IOException {
+		final byte[] aBytes = theString.getBytes(StandardCharsets.UTF_8);
+
+		writeVarInt(aBytes.length);
+		mOut.write(aBytes);
+	}
+}
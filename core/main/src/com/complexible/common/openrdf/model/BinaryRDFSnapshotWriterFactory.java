@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.RDFWriterFactory;
+
+/**
+ * <p>{@link RDFWriterFactory} for {@link BinaryRDFSnapshotWriter}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class BinaryRDFSnapshotWriterFactory implements RDFWriterFactory {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RDFFormat getRDFFormat() {
+		return BinaryRDFSnapshot.FORMAT;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RDFWriter getWriter(final OutputStream theStream) {
+		return new BinaryRDFSnapshotWriter(theStream);
+	}
+
+	/**
+	 * Unsupported, snapshots are binary
+	 */
+	@Override
+	public RDFWriter getWriter(final Writer theWriter) {
+		throw new UnsupportedOperationException("Binary RDF snapshots cannot be written to a Writer");
+	}
+}
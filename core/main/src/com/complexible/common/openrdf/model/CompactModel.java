@@ -0,0 +1,676 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+
+import org.openrdf.model.IRI;
+import org.openrdf.model.Model;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.AbstractModel;
+import org.openrdf.model.impl.FilteredModel;
+import org.openrdf.model.impl.SimpleNamespace;
+import org.openrdf.model.impl.SimpleValueFactory;
+
+import static com.complexible.common.openrdf.model.ValueDictionary.NO_ID;
+
+/**
+ * <p>A memory-compact {@link Model}.  Every {@link Value} is interned into a {@link ValueDictionary dictionary} and
+ * statements are stored as four parallel {@code int} columns of value ids rather than as {@link Statement} objects.
+ * Each position has an index from a value id to the rows in which it occurs, which gives the SPOC, POSC, OSPC and CSPO
+ * access paths used to answer {@link #filter} and {@link #contains} without scanning, and an open-addressing table of
+ * rows is used to keep the set semantics of the model.</p>
+ *
+ * <p>{@link Statement Statements} are materialized on demand while iterating, so the cost of this implementation is paid
+ * in allocation during reads in exchange for a much smaller resident footprint than {@link org.openrdf.model.impl.LinkedHashModel}.
+ * Iteration order is insertion order.  Removed statements are tombstoned and the space is reclaimed on a later add.</p>
+ *
+ * <p>Like the other {@link Model} implementations, this class is not thread-safe and the model should not be modified
+ * while it is being iterated, other than through {@link Iterator#remove}.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class CompactModel extends AbstractModel {
+	private static final long serialVersionUID = 1L;
+
+	private static final Resource[] NULL_CTX = new Resource[] { null };
+
+	private static final ValueFactory VALUE_FACTORY = SimpleValueFactory.getInstance();
+
+	private static final float LOAD_FACTOR = 0.7f;
+
+	/**
+	 * Marker for a slot in the statement table whose row has been removed
+	 */
+	private static final int REMOVED = -1;
+
+	private final Set<Namespace> mNamespaces = new LinkedHashSet<>();
+
+	private final ValueDictionary mDictionary;
+
+	/**
+	 * Columns of value ids for each row.  A subject of {@link ValueDictionary#NO_ID} marks a removed row and a
+	 * context of {@link ValueDictionary#NO_ID} is the default context.
+	 */
+	private int[] mSubjects;
+	private int[] mPredicates;
+	private int[] mObjects;
+	private int[] mContexts;
+
+	/**
+	 * The number of rows in use, including removed rows
+	 */
+	private int mRows;
+
+	/**
+	 * The number of live statements
+	 */
+	private int mSize;
+
+	/**
+	 * Open-addressing table of {@code row + 1}, {@code 0} for an empty slot, or {@link #REMOVED}
+	 */
+	private int[] mStatementTable;
+
+	/**
+	 * The number of non-empty slots in the statement table, including removed slots
+	 */
+	private int mStatementTableUsed;
+
+	private final RowIndex mSubjectIndex = new RowIndex();
+	private final RowIndex mPredicateIndex = new RowIndex();
+	private final RowIndex mObjectIndex = new RowIndex();
+	private final RowIndex mContextIndex = new RowIndex();
+
+	public CompactModel() {
+		this(16);
+	}
+
+	/**
+	 * Create a new, empty model sized to hold the given number of statements without resizing
+	 *
+	 * @param theExpectedSize	the expected number of statements
+	 */
+	public CompactModel(final int theExpectedSize) {
+		final int aCapacity = Math.max(theExpectedSize, 16);
+
+		mDictionary = new ValueDictionary(aCapacity);
+
+		mSubjects = new int[aCapacity];
+		mPredicates = new int[aCapacity];
+		mObjects = new int[aCapacity];
+		mContexts = new int[aCapacity];
+
+		mStatementTable = new int[tableSizeFor(aCapacity)];
+	}
+
+	/**
+	 * Create a new model containing the statements and namespaces of the given model
+	 *
+	 * @param theModel	the model to copy
+	 */
+	public CompactModel(final Model theModel) {
+		this(theModel.size());
+
+		mNamespaces.addAll(theModel.getNamespaces());
+		addAll(theModel);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Optional<Namespace> getNamespace(final String thePrefix) {
+		return mNamespaces.stream()
+		                  .filter(theNamespace -> theNamespace.getPrefix().equals(thePrefix))
+		                  .findFirst();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<Namespace> getNamespaces() {
+		return mNamespaces;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Namespace setNamespace(final String thePrefix, final String theName) {
+		final Namespace aNamespace = new SimpleNamespace(thePrefix, theName);
+
+		setNamespace(aNamespace);
+
+		return aNamespace;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setNamespace(final Namespace theNamespace) {
+		removeNamespace(theNamespace.getPrefix());
+		mNamespaces.add(theNamespace);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Optional<Namespace> removeNamespace(final String thePrefix) {
+		final Optional<Namespace> aNamespace = getNamespace(thePrefix);
+
+		aNamespace.ifPresent(mNamespaces::remove);
+
+		return aNamespace;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterator<Statement> iterator() {
+		return new RowIterator(null, mRows, NO_ID, NO_ID, NO_ID, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean add(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		if (theSubj == null || thePred == null || theObj == null) {
+			throw new UnsupportedOperationException("Incomplete statement");
+		}
+
+		final int aSubj = mDictionary.intern(theSubj);
+		final int aPred = mDictionary.intern(thePred);
+		final int aObj = mDictionary.intern(theObj);
+
+		boolean aChanged = false;
+
+		for (Resource aContext : notEmpty(theContexts)) {
+			aChanged |= addRow(aSubj, aPred, aObj, mDictionary.intern(aContext));
+		}
+
+		return aChanged;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		if (theSubj != null && thePred != null && theObj != null && theContexts != null && theContexts.length == 1) {
+			final int aSubj = mDictionary.id(theSubj);
+			final int aPred = mDictionary.id(thePred);
+			final int aObj = mDictionary.id(theObj);
+			final int aContext = mDictionary.id(theContexts[0]);
+
+			return aSubj != NO_ID && aPred != NO_ID && aObj != NO_ID && (aContext != NO_ID || theContexts[0] == null)
+			       && findSlot(aSubj, aPred, aObj, aContext) != -1;
+		}
+
+		return matchPattern(theSubj, thePred, theObj, theContexts).hasNext();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean remove(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		final Iterator<Statement> aIter = matchPattern(theSubj, thePred, theObj, theContexts);
+
+		boolean aChanged = false;
+
+		while (aIter.hasNext()) {
+			aIter.next();
+			aIter.remove();
+			aChanged = true;
+		}
+
+		return aChanged;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		mDictionary.clear();
+
+		Arrays.fill(mSubjects, 0, mRows, NO_ID);
+		Arrays.fill(mStatementTable, 0);
+
+		mSubjectIndex.clear();
+		mPredicateIndex.clear();
+		mObjectIndex.clear();
+		mContextIndex.clear();
+
+		mRows = 0;
+		mSize = 0;
+		mStatementTableUsed = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Model filter(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		return new FilteredModel(this, theSubj, thePred, theObj, theContexts) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Iterator<Statement> iterator() {
+				return matchPattern(subj, pred, obj, contexts);
+			}
+
+			@Override
+			protected void removeFilteredTermIteration(final Iterator<Statement> theIter, final Resource theSubj,
+			                                           final IRI thePred, final Value theObj, final Resource... theContexts) {
+				CompactModel.this.removeTermIteration(theIter, theSubj, thePred, theObj, theContexts);
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeTermIteration(final Iterator<Statement> theIter, final Resource theSubj, final IRI thePred,
+	                                final Value theObj, final Resource... theContexts) {
+		remove(theSubj, thePred, theObj, theContexts);
+	}
+
+	private Iterator<Statement> matchPattern(final Resource theSubj, final IRI thePred, final Value theObj,
+	                                         final Resource... theContexts) {
+		final int aSubj = mDictionary.id(theSubj);
+		final int aPred = mDictionary.id(thePred);
+		final int aObj = mDictionary.id(theObj);
+
+		if ((theSubj != null && aSubj == NO_ID) || (thePred != null && aPred == NO_ID) || (theObj != null && aObj == NO_ID)) {
+			return Collections.emptyIterator();
+		}
+
+		int[] aContexts = null;
+
+		if (theContexts != null && theContexts.length > 0) {
+			aContexts = new int[theContexts.length];
+
+			int aCount = 0;
+			for (Resource aContext : theContexts) {
+				final int aId = mDictionary.id(aContext);
+
+				if (aId != NO_ID || aContext == null) {
+					aContexts[aCount++] = aId;
+				}
+			}
+
+			if (aCount == 0) {
+				return Collections.emptyIterator();
+			}
+
+			aContexts = Arrays.copyOf(aContexts, aCount);
+		}
+
+		// choose the most selective index for the bound positions, falling back to a full scan of the rows
+		RowIndex aIndex = null;
+		int aKey = NO_ID;
+
+		if (aSubj != NO_ID) {
+			aIndex = mSubjectIndex;
+			aKey = aSubj;
+		}
+
+		if (aPred != NO_ID && (aIndex == null || mPredicateIndex.count(aPred) < aIndex.count(aKey))) {
+			aIndex = mPredicateIndex;
+			aKey = aPred;
+		}
+
+		if (aObj != NO_ID && (aIndex == null || mObjectIndex.count(aObj) < aIndex.count(aKey))) {
+			aIndex = mObjectIndex;
+			aKey = aObj;
+		}
+
+		if (aContexts != null && aContexts.length == 1 && (aIndex == null || mContextIndex.count(aContexts[0]) < aIndex.count(aKey))) {
+			aIndex = mContextIndex;
+			aKey = aContexts[0];
+		}
+
+		return aIndex == null
+		       ? new RowIterator(null, mRows, aSubj, aPred, aObj, aContexts)
+		       : new RowIterator(aIndex.rows(aKey), aIndex.count(aKey), aSubj, aPred, aObj, aContexts);
+	}
+
+	private Statement toStatement(final int theRow) {
+		final Resource aSubj = (Resource) mDictionary.value(mSubjects[theRow]);
+		final IRI aPred = (IRI) mDictionary.value(mPredicates[theRow]);
+		final Value aObj = mDictionary.value(mObjects[theRow]);
+
+		return mContexts[theRow] == NO_ID
+		       ? VALUE_FACTORY.createStatement(aSubj, aPred, aObj)
+		       : VALUE_FACTORY.createStatement(aSubj, aPred, aObj, (Resource) mDictionary.value(mContexts[theRow]));
+	}
+
+	private boolean addRow(final int theSubj, final int thePred, final int theObj, final int theContext) {
+		if (findSlot(theSubj, thePred, theObj, theContext) != -1) {
+			return false;
+		}
+
+		if (mRows == mSubjects.length) {
+			if (mRows - mSize >= mRows >> 1) {
+				compact();
+			}
+			else {
+				grow();
+			}
+		}
+
+		if (mStatementTableUsed + 1 > mStatementTable.length * LOAD_FACTOR) {
+			rehash(tableSizeFor(mSize + 1));
+		}
+
+		final int aRow = mRows++;
+
+		mSubjects[aRow] = theSubj;
+		mPredicates[aRow] = thePred;
+		mObjects[aRow] = theObj;
+		mContexts[aRow] = theContext;
+
+		insertSlot(aRow);
+		index(aRow);
+
+		mSize++;
+
+		return true;
+	}
+
+	private void removeRow(final int theRow) {
+		final int aSlot = findSlot(mSubjects[theRow], mPredicates[theRow], mObjects[theRow], mContexts[theRow]);
+
+		mStatementTable[aSlot] = REMOVED;
+		mSubjects[theRow] = NO_ID;
+		mSize--;
+	}
+
+	private int findSlot(final int theSubj, final int thePred, final int theObj, final int theContext) {
+		final int aMask = mStatementTable.length - 1;
+
+		for (int aSlot = hash(theSubj, thePred, theObj, theContext) & aMask; mStatementTable[aSlot] != 0; aSlot = (aSlot + 1) & aMask) {
+			final int aRow = mStatementTable[aSlot] - 1;
+
+			if (aRow >= 0
+			    && mSubjects[aRow] == theSubj
+			    && mPredicates[aRow] == thePred
+			    && mObjects[aRow] == theObj
+			    && mContexts[aRow] == theContext) {
+				return aSlot;
+			}
+		}
+
+		return -1;
+	}
+
+	private void insertSlot(final int theRow) {
+		final int aMask = mStatementTable.length - 1;
+
+		int aSlot = hash(mSubjects[theRow], mPredicates[theRow], mObjects[theRow], mContexts[theRow]) & aMask;
+
+		while (mStatementTable[aSlot] > 0) {
+			aSlot = (aSlot + 1) & aMask;
+		}
+
+		if (mStatementTable[aSlot] == 0) {
+			mStatementTableUsed++;
+		}
+
+		mStatementTable[aSlot] = theRow + 1;
+	}
+
+	private void index(final int theRow) {
+		mSubjectIndex.add(mSubjects[theRow], theRow);
+		mPredicateIndex.add(mPredicates[theRow], theRow);
+		mObjectIndex.add(mObjects[theRow], theRow);
+		mContextIndex.add(mContexts[theRow], theRow);
+	}
+
+	private void grow() {
+		final int aCapacity = mSubjects.length + (mSubjects.length >> 1);
+
+		mSubjects = Arrays.copyOf(mSubjects, aCapacity);
+		mPredicates = Arrays.copyOf(mPredicates, aCapacity);
+		mObjects = Arrays.copyOf(mObjects, aCapacity);
+		mContexts = Arrays.copyOf(mContexts, aCapacity);
+	}
+
+	/**
+	 * Reclaim the rows of removed statements, renumbering the remaining rows and rebuilding the indexes
+	 */
+	private void compact() {
+		int aLive = 0;
+
+		for (int aRow = 0; aRow < mRows; aRow++) {
+			if (mSubjects[aRow] != NO_ID) {
+				mSubjects[aLive] = mSubjects[aRow];
+				mPredicates[aLive] = mPredicates[aRow];
+				mObjects[aLive] = mObjects[aRow];
+				mContexts[aLive] = mContexts[aRow];
+				aLive++;
+			}
+		}
+
+		Arrays.fill(mSubjects, aLive, mRows, NO_ID);
+		mRows = aLive;
+
+		mSubjectIndex.clear();
+		mPredicateIndex.clear();
+		mObjectIndex.clear();
+		mContextIndex.clear();
+
+		for (int aRow = 0; aRow < mRows; aRow++) {
+			index(aRow);
+		}
+
+		rehash(mStatementTable.length);
+	}
+
+	private void rehash(final int theTableSize) {
+		mStatementTable = new int[theTableSize];
+		mStatementTableUsed = 0;
+
+		for (int aRow = 0; aRow < mRows; aRow++) {
+			if (mSubjects[aRow] != NO_ID) {
+				insertSlot(aRow);
+			}
+		}
+	}
+
+	private static int tableSizeFor(final int theExpectedSize) {
+		int aSize = 16;
+
+		while (aSize * LOAD_FACTOR < theExpectedSize) {
+			aSize <<= 1;
+		}
+
+		return aSize;
+	}
+
+	private static int hash(final int theSubj, final int thePred, final int theObj, final int theContext) {
+		final int aHash = (((theSubj * 31) + thePred) * 31 + theObj) * 31 + theContext;
+
+		return ValueDictionary.hash(aHash);
+	}
+
+	private static Resource[] notEmpty(final Resource[] theContexts) {
+		return theContexts == null || theContexts.length == 0 ? NULL_CTX : theContexts;
+	}
+
+	/**
+	 * Iterator over the live rows of the model which match a pattern of value ids, where {@link ValueDictionary#NO_ID}
+	 * is a wildcard for the subject, predicate and object.  Candidate rows come from an index, or all rows are scanned.
+	 */
+	private final class RowIterator implements Iterator<Statement> {
+		private final int[] mCandidates;
+
+		private final int mLimit;
+
+		private final int mSubj;
+		private final int mPred;
+		private final int mObj;
+		private final int[] mContextIds;
+
+		private int mPosition = 0;
+
+		private int mNext = -1;
+
+		private int mLast = -1;
+
+		private RowIterator(final int[] theCandidates, final int theLimit, final int theSubj, final int thePred,
+		                    final int theObj, final int[] theContexts) {
+			mCandidates = theCandidates;
+			mLimit = theLimit;
+			mSubj = theSubj;
+			mPred = thePred;
+			mObj = theObj;
+			mContextIds = theContexts;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (mNext == -1 && mPosition < mLimit) {
+				final int aRow = mCandidates == null ? mPosition : mCandidates[mPosition];
+				mPosition++;
+
+				if (matches(aRow)) {
+					mNext = aRow;
+				}
+			}
+
+			return mNext != -1;
+		}
+
+		@Override
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			mLast = mNext;
+			mNext = -1;
+
+			return toStatement(mLast);
+		}
+
+		@Override
+		public void remove() {
+			if (mLast == -1 || mSubjects[mLast] == NO_ID) {
+				throw new IllegalStateException();
+			}
+
+			removeRow(mLast);
+		}
+
+		private boolean matches(final int theRow) {
+			if (mSubjects[theRow] == NO_ID
+			    || (mSubj != NO_ID && mSubjects[theRow] != mSubj)
+			    || (mPred != NO_ID && mPredicates[theRow] != mPred)
+			    || (mObj != NO_ID && mObjects[theRow] != mObj)) {
+				return false;
+			}
+
+			if (mContextIds == null) {
+				return true;
+			}
+
+			for (int aContext : mContextIds) {
+				if (mContexts[theRow] == aContext) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Index from a value id to the rows the value occurs in for a single position of the statement.  Rows of removed
+	 * statements are left in place and skipped by readers until the model is compacted.
+	 */
+	private static final class RowIndex implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private static final int[] NO_ROWS = new int[0];
+
+		private int[][] mRows = new int[16][];
+
+		private int[] mCounts = new int[16];
+
+		void add(final int theId, final int theRow) {
+			if (theId >= mRows.length) {
+				final int aCapacity = Math.max(theId + 1, mRows.length + (mRows.length >> 1));
+
+				mRows = Arrays.copyOf(mRows, aCapacity);
+				mCounts = Arrays.copyOf(mCounts, aCapacity);
+			}
+
+			int[] aRows = mRows[theId];
+
+			if (aRows == null) {
+				aRows = mRows[theId] = new int[2];
+			}
+			else if (mCounts[theId] == aRows.length) {
+				aRows = mRows[theId] = Arrays.copyOf(aRows, aRows.length + (aRows.length >> 1) + 1);
+			}
+
+			aRows[mCounts[theId]++] = theRow;
+		}
+
+		int count(final int theId) {
+			return theId < mCounts.length ? mCounts[theId] : 0;
+		}
+
+		int[] rows(final int theId) {
+			return theId < mRows.length && mRows[theId] != null ? mRows[theId] : NO_ROWS;
+		}
+
+		void clear() {
+			mRows = new int[16][];
+			mCounts = new int[16];
+		}
+	}
+}
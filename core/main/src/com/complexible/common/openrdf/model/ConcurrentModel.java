@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.ImmutableSet;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Model;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.AbstractModel;
+import org.openrdf.model.impl.FilteredModel;
+import org.openrdf.model.impl.SimpleNamespace;
+import org.openrdf.model.impl.SimpleValueFactory;
+
+/**
+ * <p>A thread-safe {@link Model}.  Statements are kept in a concurrent hash set with a concurrent index for each position,
+ * so any number of threads can {@link #add add}, {@link #remove remove} and {@link #filter filter} at the same time
+ * without external locking; adds and removes of the same statement are atomic with respect to each other.  This makes it
+ * suitable as the single, shared container of a parallel stream {@link Models2#toConcurrentModel() collection}.</p>
+ *
+ * <p>Iteration is weakly consistent: iterators never throw {@link java.util.ConcurrentModificationException}, reflect
+ * the model at some point at or since their creation, and may or may not see concurrent changes.  Iteration order is
+ * not defined.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class ConcurrentModel extends AbstractModel {
+	private static final long serialVersionUID = 1L;
+
+	private static final Resource[] NULL_CTX = new Resource[] { null };
+
+	private static final ValueFactory VALUE_FACTORY = SimpleValueFactory.getInstance();
+
+	/**
+	 * Stands in for the default context in the context index, which cannot have a null key
+	 */
+	private static final Object DEFAULT_CONTEXT = new DefaultContext();
+
+	private final ConcurrentMap<String, Namespace> mNamespaces = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Quad, Quad> mStatements;
+
+	// index entries are not pruned when they become empty, which would race with a concurrent add of the same key;
+	// they are dropped by clear()
+	private final ConcurrentMap<Object, Set<Quad>> mSubjectIndex;
+	private final ConcurrentMap<Object, Set<Quad>> mPredicateIndex;
+	private final ConcurrentMap<Object, Set<Quad>> mObjectIndex;
+	private final ConcurrentMap<Object, Set<Quad>> mContextIndex;
+
+	public ConcurrentModel() {
+		this(16);
+	}
+
+	/**
+	 * Create a new model sized to hold the given number of statements without resizing
+	 *
+	 * @param theExpectedSize	the expected number of statements
+	 */
+	public ConcurrentModel(final int theExpectedSize) {
+		mStatements = new ConcurrentHashMap<>(Math.max(16, theExpectedSize));
+
+		// there are usually far fewer distinct values in a position than there are statements
+		final int aIndexSize = Math.max(16, theExpectedSize / 8);
+
+		mSubjectIndex = new ConcurrentHashMap<>(aIndexSize);
+		mPredicateIndex = new ConcurrentHashMap<>();
+		mObjectIndex = new ConcurrentHashMap<>(aIndexSize);
+		mContextIndex = new ConcurrentHashMap<>();
+	}
+
+	public ConcurrentModel(final Model theModel) {
+		this(theModel.size());
+
+		theModel.getNamespaces().forEach(this::setNamespace);
+		addAll(theModel);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Optional<Namespace> getNamespace(final String thePrefix) {
+		return Optional.ofNullable(mNamespaces.get(thePrefix));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<Namespace> getNamespaces() {
+		return ImmutableSet.copyOf(mNamespaces.values());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Namespace setNamespace(final String thePrefix, final String theName) {
+		final Namespace aNamespace = new SimpleNamespace(thePrefix, theName);
+
+		setNamespace(aNamespace);
+
+		return aNamespace;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setNamespace(final Namespace theNamespace) {
+		mNamespaces.put(theNamespace.getPrefix(), theNamespace);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Optional<Namespace> removeNamespace(final String thePrefix) {
+		return Optional.ofNullable(mNamespaces.remove(thePrefix));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return mStatements.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterator<Statement> iterator() {
+		return new QuadIterator(mStatements.keySet().iterator());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean add(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		if (theSubj == null || thePred == null || theObj == null) {
+			throw new UnsupportedOperationException("Incomplete statement");
+		}
+
+		boolean aChanged = false;
+
+		for (Resource aContext : notEmpty(theContexts)) {
+			final Statement aStmt = aContext == null
+			                        ? VALUE_FACTORY.createStatement(theSubj, thePred, theObj)
+			                        : VALUE_FACTORY.createStatement(theSubj, thePred, theObj, aContext);
+
+			aChanged |= add(new Quad(theSubj, thePred, theObj, aContext, aStmt));
+		}
+
+		return aChanged;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean add(final Statement theStatement) {
+		if (theStatement.getSubject() == null || theStatement.getPredicate() == null || theStatement.getObject() == null) {
+			throw new UnsupportedOperationException("Incomplete statement");
+		}
+
+		// keep the statement rather than creating a copy of it
+		return add(new Quad(theStatement.getSubject(), theStatement.getPredicate(), theStatement.getObject(),
+		                    theStatement.getContext(), theStatement));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		if (theSubj != null && thePred != null && theObj != null && theContexts != null && theContexts.length == 1) {
+			return mStatements.containsKey(new Quad(theSubj, thePred, theObj, theContexts[0], null));
+		}
+
+		return matchPattern(theSubj, thePred, theObj, theContexts).hasNext();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean remove(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		if (theSubj != null && thePred != null && theObj != null && theContexts != null && theContexts.length == 1) {
+			return remove(new Quad(theSubj, thePred, theObj, theContexts[0], null));
+		}
+
+		final Iterator<Statement> aIter = matchPattern(theSubj, thePred, theObj, theContexts);
+
+		boolean aChanged = false;
+
+		while (aIter.hasNext()) {
+			aIter.next();
+			aIter.remove();
+			aChanged = true;
+		}
+
+		return aChanged;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		mStatements.clear();
+
+		mSubjectIndex.clear();
+		mPredicateIndex.clear();
+		mObjectIndex.clear();
+		mContextIndex.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Model filter(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		return new FilteredModel(this, theSubj, thePred, theObj, theContexts) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Iterator<Statement> iterator() {
+				return matchPattern(subj, pred, obj, contexts);
+			}
+
+			@Override
+			protected void removeFilteredTermIteration(final Iterator<Statement> theIter, final Resource theSubj,
+			                                           final IRI thePred, final Value theObj, final Resource... theContexts) {
+				ConcurrentModel.this.removeTermIteration(theIter, theSubj, thePred, theObj, theContexts);
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeTermIteration(final Iterator<Statement> theIter, final Resource theSubj, final IRI thePred,
+	                                final Value theObj, final Resource... theContexts) {
+		remove(theSubj, thePred, theObj, theContexts);
+	}
+
+	private boolean add(final Quad theQuad) {
+		if (mStatements.containsKey(theQuad)) {
+			return false;
+		}
+
+		final boolean[] aAdded = { false };
+
+		// the indexes are updated while the statement's entry is locked, so a concurrent remove of the same statement
+		// cannot interleave with them
+		mStatements.computeIfAbsent(theQuad, theKey -> {
+			index(mSubjectIndex, theKey.mSubj, theKey);
+			index(mPredicateIndex, theKey.mPred, theKey);
+			index(mObjectIndex, theKey.mObj, theKey);
+			index(mContextIndex, contextKey(theKey.mContext), theKey);
+
+			aAdded[0] = true;
+
+			return theKey;
+		});
+
+		return aAdded[0];
+	}
+
+	private boolean remove(final Quad theQuad) {
+		final boolean[] aRemoved = { false };
+
+		mStatements.computeIfPresent(theQuad, (theKey, theValue) -> {
+			unindex(mSubjectIndex, theValue.mSubj, theValue);
+			unindex(mPredicateIndex, theValue.mPred, theValue);
+			unindex(mObjectIndex, theValue.mObj, theValue);
+			unindex(mContextIndex, contextKey(theValue.mContext), theValue);
+
+			aRemoved[0] = true;
+
+			return null;
+		});
+
+		return aRemoved[0];
+	}
+
+	private static void index(final ConcurrentMap<Object, Set<Quad>> theIndex, final Object theKey, final Quad theQuad) {
+		Set<Quad> aQuads = theIndex.get(theKey);
+
+		if (aQuads == null) {
+			aQuads = theIndex.computeIfAbsent(theKey, theValue -> ConcurrentHashMap.newKeySet());
+		}
+
+		aQuads.add(theQuad);
+	}
+
+	private static void unindex(final ConcurrentMap<Object, Set<Quad>> theIndex, final Object theKey, final Quad theQuad) {
+		final Set<Quad> aQuads = theIndex.get(theKey);
+
+		if (aQuads != null) {
+			aQuads.remove(theQuad);
+		}
+	}
+
+	private Iterator<Statement> matchPattern(final Resource theSubj, final IRI thePred, final Value theObj,
+	                                         final Resource... theContexts) {
+		final Resource[] aContexts = theContexts == null ? NULL_CTX : theContexts;
+
+		// use the smallest of the indexes for the bound positions, and check the rest of the pattern against each candidate
+		Set<Quad> aCandidates = null;
+
+		if (theSubj != null) {
+			aCandidates = smallest(aCandidates, mSubjectIndex.get(theSubj));
+		}
+
+		if (thePred != null) {
+			aCandidates = smallest(aCandidates, mPredicateIndex.get(thePred));
+		}
+
+		if (theObj != null) {
+			aCandidates = smallest(aCandidates, mObjectIndex.get(theObj));
+		}
+
+		if (aContexts.length == 1) {
+			aCandidates = smallest(aCandidates, mContextIndex.get(contextKey(aContexts[0])));
+		}
+
+		if (aCandidates == null) {
+			if (theSubj != null || thePred != null || theObj != null || aContexts.length == 1) {
+				// a bound position with no index entry, nothing can match
+				return Collections.emptyIterator();
+			}
+
+			aCandidates = mStatements.keySet();
+		}
+
+		final Iterator<Quad> aIter = aCandidates.stream()
+		                                        .filter(theQuad -> theQuad.matches(theSubj, thePred, theObj, aContexts))
+		                                        .iterator();
+
+		return new QuadIterator(aIter);
+	}
+
+	private static Set<Quad> smallest(final Set<Quad> theCurrent, final Set<Quad> theOther) {
+		if (theOther == null) {
+			// the position is bound, but the value does not occur in the model
+			return Collections.emptySet();
+		}
+
+		return theCurrent == null || theOther.size() < theCurrent.size() ? theOther : theCurrent;
+	}
+
+	private static Object contextKey(final Resource theContext) {
+		return theContext == null ? DEFAULT_CONTEXT : theContext;
+	}
+
+	private static Resource[] notEmpty(final Resource[] theContexts) {
+		return theContexts == null || theContexts.length == 0 ? NULL_CTX : theContexts;
+	}
+
+	private final class QuadIterator implements Iterator<Statement> {
+		private final Iterator<Quad> mIter;
+
+		private Quad mLast;
+
+		private QuadIterator(final Iterator<Quad> theIter) {
+			mIter = theIter;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			return mIter.hasNext();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			mLast = mIter.next();
+
+			return mLast.mStatement;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() {
+			if (mLast == null) {
+				throw new IllegalStateException();
+			}
+
+			ConcurrentModel.this.remove(mLast);
+			mLast = null;
+		}
+	}
+
+	/**
+	 * A statement in the model.  Unlike {@link Statement#equals}, equality includes the context.
+	 */
+	private static final class Quad implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final Resource mSubj;
+		private final IRI mPred;
+		private final Value mObj;
+		private final Resource mContext;
+
+		private final int mHashCode;
+
+		private final Statement mStatement;
+
+		/**
+		 * Create a new quad
+		 *
+		 * @param theStatement	the statement returned when iterating over the model, null for quads only used for lookups
+		 */
+		private Quad(final Resource theSubj, final IRI thePred, final Value theObj, final Resource theContext,
+		             final Statement theStatement) {
+			mSubj = theSubj;
+			mPred = thePred;
+			mObj = theObj;
+			mContext = theContext;
+
+			mHashCode = 31 * (31 * (31 * theSubj.hashCode() + thePred.hashCode()) + theObj.hashCode()) + Objects.hashCode(theContext);
+
+			mStatement = theStatement;
+		}
+
+		private boolean matches(final Resource theSubj, final IRI thePred, final Value theObj, final Resource[] theContexts) {
+			if ((theSubj != null && !theSubj.equals(mSubj))
+			    || (thePred != null && !thePred.equals(mPred))
+			    || (theObj != null && !theObj.equals(mObj))) {
+				return false;
+			}
+
+			if (theContexts.length == 0) {
+				return true;
+			}
+
+			for (Resource aContext : theContexts) {
+				if (Objects.equals(aContext, mContext)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return mHashCode;
+		}
+
+		@Override
+		public boolean equals(final Object theObj) {
+			if (theObj == this) {
+				return true;
+			}
+			else if (theObj instanceof Quad) {
+				final Quad aQuad = (Quad) theObj;
+
+				return mHashCode == aQuad.mHashCode
+				       && mObj.equals(aQuad.mObj)
+				       && mSubj.equals(aQuad.mSubj)
+				       && mPred.equals(aQuad.mPred)
+				       && Objects.equals(mContext, aQuad.mContext);
+			}
+			else {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * The key of the default context in the context index.  Serializable so the model is, and resolves to the singleton
+	 * so lookups work after deserialization.
+	 */
+	private static final class DefaultContext implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private Object readResolve() {
+			return DEFAULT_CONTEXT;
+		}
+	}
+}
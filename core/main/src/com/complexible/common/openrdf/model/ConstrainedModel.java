@@ -16,28 +16,64 @@
 package com.complexible.common.openrdf.model;
 
 import java.util.Collection;
-
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import org.openrdf.model.IRI;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.XMLSchema;
 
 /**
  * <p>A {@link Model} which has a {@link Predicate constraint} placed upon which statements can be added to the Model.</p>
  *
+ * <p>A constraint signals a violation by throwing a {@link StatementViolatedConstraintException}.  By default, additions
+ * are checked one statement at a time and fail on the first violation.  A {@link #batch batch validating} model instead
+ * checks large {@link #addAll} inputs in parallel and reports every violation at once with a
+ * {@link ConstraintViolationsException}; in either case nothing from the collection is added if any statement violates
+ * the constraint.</p>
+ *
  * @author Michael Grove
  * @since	4.0
- * @version	4.0
+ * @version	4.1
  */
 public final class ConstrainedModel extends DelegatingModel {
+
+	/**
+	 * The size of a collection, in a batch validating model, above which the collection is validated in parallel
+	 */
+	private static final int PARALLEL_THRESHOLD = 10000;
+
+	/**
+	 * The number of distinct literals whose validity is cached by {@link #onlyValidLiterals()}
+	 */
+	private static final int LITERAL_CACHE_SIZE = 1 << 16;
+
 	private final Predicate<Statement> mConstraint;
 
+	/**
+	 * The pool used to validate large collections for a batch validating model, otherwise null
+	 */
+	private final ForkJoinPool mPool;
+
 	ConstrainedModel(final Model theGraph, final Predicate<Statement> theConstraint) {
+		this(theGraph, theConstraint, null);
+	}
+
+	ConstrainedModel(final Model theGraph, final Predicate<Statement> theConstraint, final ForkJoinPool thePool) {
 		super(theGraph);
 		mConstraint = theConstraint;
+		mPool = thePool;
 	}
 
 	/**
@@ -63,14 +99,64 @@ public final class ConstrainedModel extends DelegatingModel {
 	}
 
 	/**
-	 * Return a {@link Predicate} which will only allow {@link Statements#isLiteralValid(Literal) valid} literals into the graph.
+	 * Create a new ConstrainedGraph which validates large collections added with {@link #addAll} in parallel on the
+	 * common {@link ForkJoinPool} and reports all of the statements which violate the constraint rather than only the
+	 * first.  The constraint must be safe to call from multiple threads.  Does not retroactively enforce the
+	 * constraint.
+	 *
+	 * @param theGraph			the graph to constrain
+	 * @param theConstraint		the constraint to enforce
+	 * @return					the new ConstrainedGraph
+	 */
+	public static ConstrainedModel batch(final Model theGraph, final Predicate<Statement> theConstraint) {
+		return batch(theGraph, theConstraint, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a new ConstrainedGraph which validates large collections added with {@link #addAll} in parallel on the
+	 * given pool and reports all of the statements which violate the constraint rather than only the first.
+	 *
+	 * @param theGraph			the graph to constrain
+	 * @param theConstraint		the constraint to enforce, which must be safe to call from multiple threads
+	 * @param thePool			the pool to validate with
+	 * @return					the new ConstrainedGraph
+	 *
+	 * @see #batch(Model, Predicate)
+	 */
+	public static ConstrainedModel batch(final Model theGraph, final Predicate<Statement> theConstraint,
+	                                     final ForkJoinPool thePool) {
+		return new ConstrainedModel(theGraph, theConstraint, Objects.requireNonNull(thePool));
+	}
+
+	/**
+	 * Return a {@link Predicate} which will only allow {@link Statements#isLiteralValid(Literal) valid} literals into the
+	 * graph.  The validity of recently seen literals is cached, so data with many repeated literals is not re-parsed,
+	 * and the predicate is safe to use from multiple threads.
 	 *
 	 * @return	a Constraint to enforce valid literals
 	 */
 	public static Predicate<Statement> onlyValidLiterals() {
+		final Cache<Literal, Boolean> aValid = CacheBuilder.newBuilder()
+		                                                   .maximumSize(LITERAL_CACHE_SIZE)
+		                                                   .build();
+
 		return theStatement -> {
-			if (theStatement.getObject() instanceof Literal && !Statements.isLiteralValid((Literal) theStatement.getObject())) {
-				throw new StatementViolatedConstraintException(theStatement.getObject() + " is not a well-formed literal value.");
+			if (theStatement.getObject() instanceof Literal) {
+				final Literal aLiteral = (Literal) theStatement.getObject();
+
+				// plain strings are always valid, there's nothing worth caching
+				Boolean aIsValid = aLiteral.getDatatype() == null || XMLSchema.STRING.equals(aLiteral.getDatatype())
+				                   ? Boolean.TRUE
+				                   : aValid.getIfPresent(aLiteral);
+
+				if (aIsValid == null) {
+					aIsValid = Statements.isLiteralValid(aLiteral);
+					aValid.put(aLiteral, aIsValid);
+				}
+
+				if (!aIsValid) {
+					throw new StatementViolatedConstraintException(aLiteral + " is not a well-formed literal value.");
+				}
 			}
 
 			return true;
@@ -112,7 +198,18 @@ public final class ConstrainedModel extends DelegatingModel {
 	 */
 	@Override
 	public boolean addAll(final Collection<? extends Statement> c) {
-		all(c, mConstraint);
+		if (mPool == null) {
+			all(c, mConstraint);
+		}
+		else {
+			final List<StatementViolatedConstraintException> aViolations = c.size() < PARALLEL_THRESHOLD
+			                                                               ? violations(c.stream())
+			                                                               : mPool.submit(() -> violations(c.parallelStream())).join();
+
+			if (!aViolations.isEmpty()) {
+				throw new ConstraintViolationsException(aViolations);
+			}
+		}
 
 		return super.addAll(c);
 	}
@@ -123,6 +220,22 @@ public final class ConstrainedModel extends DelegatingModel {
 		}
 	}
 
+	private List<StatementViolatedConstraintException> violations(final Stream<? extends Statement> theStatements) {
+		return theStatements.map(this::violation)
+		                    .filter(Objects::nonNull)
+		                    .collect(Collectors.toList());
+	}
+
+	private StatementViolatedConstraintException violation(final Statement theStatement) {
+		try {
+			mConstraint.test(theStatement);
+			return null;
+		}
+		catch (StatementViolatedConstraintException e) {
+			return e;
+		}
+	}
+
 	/**
 	 * A runtime exception suitable for being thrown from a {@link Predicate} on a {@link Statement}
 	 */
@@ -136,4 +249,28 @@ public final class ConstrainedModel extends DelegatingModel {
 			super(theMessage);
 		}
 	}
+
+	/**
+	 * Thrown by a {@link ConstrainedModel#batch batch validating} model when any statements added in a batch violate the
+	 * constraint.  Holds the violation of each of the statements.
+	 */
+	public static class ConstraintViolationsException extends StatementViolatedConstraintException {
+		private static final long serialVersionUID = 1L;
+
+		private final List<StatementViolatedConstraintException> mViolations;
+
+		/**
+		 * Create a new ConstraintViolationsException
+		 * @param theViolations	the violations, must not be empty
+		 */
+		public ConstraintViolationsException(final List<StatementViolatedConstraintException> theViolations) {
+			super(theViolations.size() + " statement(s) violated the constraint, the first was: " + theViolations.get(0).getMessage());
+
+			mViolations = ImmutableList.copyOf(theViolations);
+		}
+
+		public List<StatementViolatedConstraintException> getViolations() {
+			return mViolations;
+		}
+	}
 }
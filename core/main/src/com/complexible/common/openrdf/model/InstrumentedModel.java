@@ -0,0 +1,587 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.complexible.common.openrdf.util.Metrics;
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+
+/**
+ * <p>A {@link Model} which records the count and latency of the operations performed on another model in a
+ * {@link Metrics}, and registers gauges for the model's {@link #SIZE size} and {@link #HEAP_ESTIMATE estimated heap
+ * footprint}.</p>
+ *
+ * <p>Writes are recorded as {@link #ADD}, {@link #REMOVE} and {@link #CLEAR}; the bulk forms as {@link #ADD_ALL} and
+ * {@link #REMOVE_ALL}; lookups as {@link #CONTAINS} and {@link #FILTER}.  {@link #ITERATE} is recorded for each full
+ * scan of the model, whether through {@link #iterator()}, {@link #forEach}, {@link #stream()} or {@link #toArray()},
+ * and its latency is the time from the start of the scan to its exhaustion; scans which are abandoned part way are
+ * not recorded, and for a {@link #parallelStream() parallel stream} only the part processed by the calling thread is
+ * timed.  The model returned by {@link #filter} is instrumented with the same metrics, with each operation name
+ * prefixed by {@code filter.}, so iterating over a filtered view is kept apart from a full scan.</p>
+ *
+ * <p>With {@link Metrics#NONE} the overhead is two calls to {@link System#nanoTime()} per operation.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class InstrumentedModel extends DelegatingModel {
+	private static final long serialVersionUID = 1L;
+
+	public static final String ADD = "add";
+
+	public static final String ADD_ALL = "addAll";
+
+	public static final String REMOVE = "remove";
+
+	public static final String REMOVE_ALL = "removeAll";
+
+	public static final String CLEAR = "clear";
+
+	public static final String CONTAINS = "contains";
+
+	public static final String FILTER = "filter";
+
+	public static final String ITERATE = "iterate";
+
+	/**
+	 * Gauge of the number of statements in the model
+	 */
+	public static final String SIZE = "size";
+
+	/**
+	 * Gauge of the estimated number of bytes the model occupies on the heap, see {@link #estimateHeapSize()}
+	 */
+	public static final String HEAP_ESTIMATE = "heapEstimate";
+
+	/**
+	 * The approximate cost of a statement in an indexed model apart from its values: the statement itself and an
+	 * entry in the statement set and each of the four indexes of a {@link org.openrdf.model.impl.LinkedHashModel}
+	 */
+	private static final long STATEMENT_OVERHEAD = 32 + 5 * 48;
+
+	/**
+	 * The number of statements sampled by {@link #estimateHeapSize()}
+	 */
+	private static final int HEAP_SAMPLE = 1024;
+
+	private final Metrics mMetrics;
+
+	private final String mPrefix;
+
+	/**
+	 * Create a new InstrumentedModel
+	 *
+	 * @param theModel		the model to instrument
+	 * @param theMetrics	the metrics the operations on the model are recorded in
+	 */
+	public InstrumentedModel(final Model theModel, final Metrics theMetrics) {
+		this(theModel, theMetrics, "");
+
+		theMetrics.gauge(SIZE, this::size);
+		theMetrics.gauge(HEAP_ESTIMATE, this::estimateHeapSize);
+	}
+
+	private InstrumentedModel(final Model theModel, final Metrics theMetrics, final String thePrefix) {
+		super(theModel);
+
+		mMetrics = theMetrics;
+		mPrefix = thePrefix;
+	}
+
+	private void record(final String theName, final long theStart) {
+		final long aElapsed = System.nanoTime() - theStart;
+
+		mMetrics.record(mPrefix.isEmpty() ? theName : mPrefix + theName, aElapsed);
+	}
+
+	/**
+	 * Estimate the number of bytes the model occupies on the heap.  The values of a sample of the statements are
+	 * measured, assuming a 64-bit JVM with compressed references, and the average, plus the overhead of the
+	 * statement in the model's indexes, is multiplied by the size of the model.  Values shared between statements are
+	 * counted once per statement, so this is an upper bound which is meant for spotting growth rather than for
+	 * accounting.  The sample is taken without being recorded as a scan.
+	 *
+	 * @return	the estimated size in bytes
+	 */
+	public long estimateHeapSize() {
+		final int aSize = super.size();
+
+		if (aSize == 0) {
+			return 0;
+		}
+
+		long aSampled = 0;
+		int aCount = 0;
+
+		final Iterator<Statement> aIter = super.iterator();
+		while (aCount < HEAP_SAMPLE && aIter.hasNext()) {
+			final Statement aStmt = aIter.next();
+
+			aSampled += estimateSize(aStmt.getSubject())
+			            + estimateSize(aStmt.getPredicate())
+			            + estimateSize(aStmt.getObject())
+			            + estimateSize(aStmt.getContext());
+			aCount++;
+		}
+
+		return aCount == 0 ? 0 : aSize * (STATEMENT_OVERHEAD + aSampled / aCount);
+	}
+
+	private static long estimateSize(final Value theValue) {
+		if (theValue == null) {
+			return 0;
+		}
+
+		// object header and fields, plus the backing String and its array
+		if (theValue instanceof IRI) {
+			return 24 + 40 + theValue.stringValue().length();
+		}
+		else if (theValue instanceof BNode) {
+			return 16 + 40 + theValue.stringValue().length();
+		}
+		else if (theValue instanceof Literal) {
+			return 24 + 40 + ((Literal) theValue).getLabel().length()
+			       + ((Literal) theValue).getLanguage().map(theLang -> 40L + theLang.length()).orElse(0L);
+		}
+		else {
+			return 64;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean add(final Resource subj, final IRI pred, final Value obj, final Resource... contexts) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.add(subj, pred, obj, contexts);
+		}
+		finally {
+			record(ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean add(final Statement e) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.add(e);
+		}
+		finally {
+			record(ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean addAll(final Collection<? extends Statement> c) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.addAll(c);
+		}
+		finally {
+			record(ADD_ALL, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean remove(final Resource subj, final IRI pred, final Value obj, final Resource... contexts) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.remove(subj, pred, obj, contexts);
+		}
+		finally {
+			record(REMOVE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean remove(final Object o) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.remove(o);
+		}
+		finally {
+			record(REMOVE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean removeAll(final Collection<?> c) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.removeAll(c);
+		}
+		finally {
+			record(REMOVE_ALL, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean removeIf(final Predicate<? super Statement> filter) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.removeIf(filter);
+		}
+		finally {
+			record(REMOVE_ALL, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean retainAll(final Collection<?> c) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.retainAll(c);
+		}
+		finally {
+			record(REMOVE_ALL, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean clear(final Resource... context) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.clear(context);
+		}
+		finally {
+			record(CLEAR, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		final long aStart = System.nanoTime();
+		try {
+			super.clear();
+		}
+		finally {
+			record(CLEAR, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final Resource subj, final IRI pred, final Value obj, final Resource... contexts) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.contains(subj, pred, obj, contexts);
+		}
+		finally {
+			record(CONTAINS, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final Object o) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.contains(o);
+		}
+		finally {
+			record(CONTAINS, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean containsAll(final Collection<?> c) {
+		final long aStart = System.nanoTime();
+		try {
+			return super.containsAll(c);
+		}
+		finally {
+			record(CONTAINS, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Model filter(final Resource subj, final IRI pred, final Value obj, final Resource... contexts) {
+		final long aStart = System.nanoTime();
+		try {
+			return new InstrumentedModel(super.filter(subj, pred, obj, contexts), mMetrics, mPrefix + FILTER + '.');
+		}
+		finally {
+			record(FILTER, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterator<Statement> iterator() {
+		return new TimedIterator(super.iterator());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void forEach(final Consumer<? super Statement> action) {
+		final long aStart = System.nanoTime();
+
+		super.forEach(action);
+
+		record(ITERATE, aStart);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Spliterator<Statement> spliterator() {
+		return new TimedSpliterator(super.spliterator());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Stream<Statement> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Stream<Statement> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object[] toArray() {
+		final long aStart = System.nanoTime();
+
+		final Object[] aArray = super.toArray();
+
+		record(ITERATE, aStart);
+
+		return aArray;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> T[] toArray(final T[] a) {
+		final long aStart = System.nanoTime();
+
+		final T[] aArray = super.toArray(a);
+
+		record(ITERATE, aStart);
+
+		return aArray;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "Instrumented(" + size() + " statements)";
+	}
+
+	/**
+	 * Records a scan when the underlying iterator is exhausted
+	 */
+	private final class TimedIterator implements Iterator<Statement> {
+		private final Iterator<Statement> mIter;
+
+		private final long mStart = System.nanoTime();
+
+		private boolean mDone = false;
+
+		TimedIterator(final Iterator<Statement> theIter) {
+			mIter = theIter;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			final boolean aHasNext = mIter.hasNext();
+
+			if (!aHasNext && !mDone) {
+				mDone = true;
+				record(ITERATE, mStart);
+			}
+
+			return aHasNext;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Statement next() {
+			return mIter.next();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() {
+			mIter.remove();
+		}
+	}
+
+	/**
+	 * Records a scan when the underlying spliterator is exhausted.  Splits are handed out untimed, so only the part
+	 * of a parallel traversal done through this spliterator is timed.
+	 */
+	private final class TimedSpliterator implements Spliterator<Statement> {
+		private final Spliterator<Statement> mSpliterator;
+
+		private final long mStart = System.nanoTime();
+
+		private boolean mDone = false;
+
+		TimedSpliterator(final Spliterator<Statement> theSpliterator) {
+			mSpliterator = theSpliterator;
+		}
+
+		private void done() {
+			if (!mDone) {
+				mDone = true;
+				record(ITERATE, mStart);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean tryAdvance(final Consumer<? super Statement> theAction) {
+			final boolean aAdvanced = mSpliterator.tryAdvance(theAction);
+
+			if (!aAdvanced) {
+				done();
+			}
+
+			return aAdvanced;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void forEachRemaining(final Consumer<? super Statement> theAction) {
+			mSpliterator.forEachRemaining(theAction);
+
+			done();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Spliterator<Statement> trySplit() {
+			return mSpliterator.trySplit();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public long estimateSize() {
+			return mSpliterator.estimateSize();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public long getExactSizeIfKnown() {
+			return mSpliterator.getExactSizeIfKnown();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int characteristics() {
+			return mSpliterator.characteristics();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Comparator<? super Statement> getComparator() {
+			return mSpliterator.getComparator();
+		}
+	}
+}
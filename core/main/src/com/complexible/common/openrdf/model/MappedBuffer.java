@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.function.Consumer;
+
+/**
+ * <p>A file mapped into memory as a sequence of {@link MappedByteBuffer buffers} so that it can be addressed with a
+ * {@code long} offset regardless of the 2GB limit on a single mapping.  Reads and writes which straddle two chunks are
+ * handled a byte at a time.</p>
+ *
+ * <p>The mappings are released when the buffer is garbage collected, or eagerly with {@link #close()}.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+final class MappedBuffer {
+	private static final int CHUNK_BITS = 30;
+
+	private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+
+	private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Releases a mapping immediately, or does nothing when the JVM gives us no way to do that
+	 */
+	private static final Consumer<MappedByteBuffer> UNMAPPER = unmapper();
+
+	private final MappedByteBuffer[] mChunks;
+
+	private final long mSize;
+
+	private MappedBuffer(final MappedByteBuffer[] theChunks, final long theSize) {
+		mChunks = theChunks;
+		mSize = theSize;
+	}
+
+	/**
+	 * Map the first {@code theSize} bytes of the channel.  The channel can be closed once this returns; the mapping
+	 * remains valid.
+	 *
+	 * @param theChannel	the channel to map
+	 * @param theMode		the mapping mode
+	 * @param theSize		the number of bytes to map
+	 * @return				the mapped buffer
+	 *
+	 * @throws IOException	if there is an error mapping the file
+	 */
+	static MappedBuffer map(final FileChannel theChannel, final MapMode theMode, final long theSize) throws IOException {
+		final MappedByteBuffer[] aChunks = new MappedByteBuffer[(int) ((theSize + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+
+		for (int i = 0; i < aChunks.length; i++) {
+			final long aPosition = (long) i << CHUNK_BITS;
+
+			aChunks[i] = theChannel.map(theMode, aPosition, Math.min(CHUNK_SIZE, theSize - aPosition));
+		}
+
+		return new MappedBuffer(aChunks, theSize);
+	}
+
+	long size() {
+		return mSize;
+	}
+
+	byte get(final long thePosition) {
+		return mChunks[(int) (thePosition >>> CHUNK_BITS)].get((int) (thePosition & CHUNK_MASK));
+	}
+
+	void put(final long thePosition, final byte theByte) {
+		mChunks[(int) (thePosition >>> CHUNK_BITS)].put((int) (thePosition & CHUNK_MASK), theByte);
+	}
+
+	int getInt(final long thePosition) {
+		final int aOffset = (int) (thePosition & CHUNK_MASK);
+
+		if (aOffset + 4 <= CHUNK_SIZE) {
+			return mChunks[(int) (thePosition >>> CHUNK_BITS)].getInt(aOffset);
+		}
+
+		int aValue = 0;
+		for (int i = 0; i < 4; i++) {
+			aValue = (aValue << 8) | (get(thePosition + i) & 0xFF);
+		}
+
+		return aValue;
+	}
+
+	void putInt(final long thePosition, final int theValue) {
+		final int aOffset = (int) (thePosition & CHUNK_MASK);
+
+		if (aOffset + 4 <= CHUNK_SIZE) {
+			mChunks[(int) (thePosition >>> CHUNK_BITS)].putInt(aOffset, theValue);
+		}
+		else {
+			for (int i = 0; i < 4; i++) {
+				put(thePosition + i, (byte) (theValue >>> (24 - (8 * i))));
+			}
+		}
+	}
+
+	long getLong(final long thePosition) {
+		return ((long) getInt(thePosition) << 32) | (getInt(thePosition + 4) & 0xFFFFFFFFL);
+	}
+
+	void putLong(final long thePosition, final long theValue) {
+		putInt(thePosition, (int) (theValue >>> 32));
+		putInt(thePosition + 4, (int) theValue);
+	}
+
+	void get(final long thePosition, final byte[] theBytes) {
+		final int aOffset = (int) (thePosition & CHUNK_MASK);
+
+		if (aOffset + theBytes.length <= CHUNK_SIZE) {
+			final ByteBuffer aChunk = mChunks[(int) (thePosition >>> CHUNK_BITS)].duplicate();
+
+			// the cast keeps the call on Buffer.position(int); ByteBuffer only overrides it from Java 9
+			((Buffer) aChunk).position(aOffset);
+			aChunk.get(theBytes);
+		}
+		else {
+			for (int i = 0; i < theBytes.length; i++) {
+				theBytes[i] = get(thePosition + i);
+			}
+		}
+	}
+
+	void put(final long thePosition, final byte[] theBytes) {
+		put(thePosition, theBytes, theBytes.length);
+	}
+
+	/**
+	 * Write the first {@code theLength} bytes of the array at the given position
+	 */
+	void put(final long thePosition, final byte[] theBytes, final int theLength) {
+		final int aOffset = (int) (thePosition & CHUNK_MASK);
+
+		if (aOffset + theLength <= CHUNK_SIZE) {
+			final ByteBuffer aChunk = mChunks[(int) (thePosition >>> CHUNK_BITS)].duplicate();
+
+			((Buffer) aChunk).position(aOffset);
+			aChunk.put(theBytes, 0, theLength);
+		}
+		else {
+			for (int i = 0; i < theLength; i++) {
+				put(thePosition + i, theBytes[i]);
+			}
+		}
+	}
+
+	/**
+	 * Force any changes made to the buffer out to the underlying file
+	 */
+	void force() {
+		for (MappedByteBuffer aChunk : mChunks) {
+			aChunk.force();
+		}
+	}
+
+	/**
+	 * Unmap the file now rather than when the buffer is garbage collected.  The buffer cannot be used afterwards, and
+	 * the caller must ensure nothing else is reading or writing it; touching a region after it is unmapped crashes the
+	 * JVM rather than throwing.
+	 */
+	void close() {
+		for (int i = 0; i < mChunks.length; i++) {
+			if (mChunks[i] != null) {
+				UNMAPPER.accept(mChunks[i]);
+				mChunks[i] = null;
+			}
+		}
+	}
+
+	private static Consumer<MappedByteBuffer> unmapper() {
+		try {
+			// Java 9+
+			final Class<?> aUnsafeClass = Class.forName("sun.misc.Unsafe");
+			final Method aInvokeCleaner = aUnsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			final Field aUnsafeField = aUnsafeClass.getDeclaredField("theUnsafe");
+
+			aUnsafeField.setAccessible(true);
+
+			final Object aUnsafe = aUnsafeField.get(null);
+
+			return theBuffer -> {
+				try {
+					aInvokeCleaner.invoke(aUnsafe, theBuffer);
+				}
+				catch (ReflectiveOperationException e) {
+					// leave it to the garbage collector
+				}
+			};
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			// not available, try the Java 8 way
+		}
+
+		try {
+			final Method aGetCleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			final Method aClean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+
+			return theBuffer -> {
+				try {
+					final Object aCleaner = aGetCleaner.invoke(theBuffer);
+
+					if (aCleaner != null) {
+						aClean.invoke(aCleaner);
+					}
+				}
+				catch (ReflectiveOperationException e) {
+					// leave it to the garbage collector
+				}
+			};
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			return theBuffer -> { };
+		}
+	}
+}
@@ -0,0 +1,1296 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.AbstractModel;
+import org.openrdf.model.impl.FilteredModel;
+import org.openrdf.model.impl.SimpleNamespace;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.AbstractRDFHandler;
+
+import static com.complexible.common.openrdf.model.ValueDictionary.NO_ID;
+
+/**
+ * <p>A read-only {@link Model} whose value dictionary and statement indexes live in a memory-mapped file rather than
+ * on the heap.  The file is built once with a {@link #writer(Path) writer}, or {@link #write(Model, Path) from an
+ * existing model}, and can then be {@link #open(Path) opened} by mapping it, which is effectively instantaneous
+ * regardless of the size of the graph.  The operating system pages the data in and out as needed, so the graph can be
+ * larger than the heap, and the statements do not contribute to GC pressure.</p>
+ *
+ * <p>Statements are stored as quads of value ids in three sorted permutations, SPOC, POSC and OSPC, so any pattern
+ * with a bound subject, predicate or object is answered with a binary search followed by a range scan.  Values are
+ * decoded from the file as statements are read.</p>
+ *
+ * <p>All of the mutators of the model throw {@link UnsupportedOperationException}.  To change the contents, copy it
+ * into a mutable model, or write a new file.</p>
+ *
+ * <p>The file stays mapped until the model is {@link #close() closed}, or garbage collected.  Serializing the model
+ * writes only the location of its file, which is opened again when it is deserialized, so the file must be readable
+ * at the same path wherever the model is deserialized.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class MappedModel extends AbstractModel implements AutoCloseable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int MAGIC = 0x43504D4D;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 80;
+
+	/**
+	 * Size of a single quad in the index, four {@code int} ids
+	 */
+	private static final int QUAD_SIZE = 16;
+
+	private static final byte IRI_VALUE = 1;
+	private static final byte BNODE_VALUE = 2;
+	private static final byte LITERAL_VALUE = 3;
+	private static final byte LANG_LITERAL_VALUE = 4;
+
+	/**
+	 * The order of the positions (S=0, P=1, O=2, C=3) within a quad for each of the indexes
+	 */
+	private static final int[] SPOC = { 0, 1, 2, 3 };
+	private static final int[] POSC = { 1, 2, 0, 3 };
+	private static final int[] OSPC = { 2, 0, 1, 3 };
+
+	private static final ValueFactory VALUE_FACTORY = SimpleValueFactory.getInstance();
+
+	private final transient Path mFile;
+
+	private transient MappedBuffer mBuffer;
+
+	private final long mSize;
+
+	private final int mValueCount;
+
+	private final int mTableSize;
+
+	private final long mSPOCOffset;
+	private final long mPOSCOffset;
+	private final long mOSPCOffset;
+	private final long mValueOffsetsOffset;
+	private final long mTableOffset;
+	private final long mValueDataOffset;
+
+	private final Set<Namespace> mNamespaces;
+
+	private MappedModel(final Path theFile, final MappedBuffer theBuffer) throws IOException {
+		mFile = theFile;
+		mBuffer = theBuffer;
+
+		if (mBuffer.size() < HEADER_SIZE || mBuffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a mapped model file");
+		}
+
+		if (mBuffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported mapped model version: " + mBuffer.getInt(4));
+		}
+
+		mSize = mBuffer.getLong(8);
+		mValueCount = mBuffer.getInt(16);
+		mTableSize = mBuffer.getInt(20);
+
+		final long aNamespacesOffset = mBuffer.getLong(24);
+
+		mSPOCOffset = mBuffer.getLong(32);
+		mPOSCOffset = mBuffer.getLong(40);
+		mOSPCOffset = mBuffer.getLong(48);
+		mValueOffsetsOffset = mBuffer.getLong(56);
+		mTableOffset = mBuffer.getLong(64);
+		mValueDataOffset = mBuffer.getLong(72);
+
+		final Set<Namespace> aNamespaces = new LinkedHashSet<>();
+
+		long aPosition = aNamespacesOffset + 4;
+		for (int i = mBuffer.getInt(aNamespacesOffset); i > 0; i--) {
+			final String aPrefix = readString(aPosition);
+			aPosition += 4 + mBuffer.getInt(aPosition);
+
+			final String aName = readString(aPosition);
+			aPosition += 4 + mBuffer.getInt(aPosition);
+
+			aNamespaces.add(new SimpleNamespace(aPrefix, aName));
+		}
+
+		mNamespaces = Collections.unmodifiableSet(aNamespaces);
+	}
+
+	/**
+	 * Open a model previously written with {@link #write} or a {@link #writer(Path) writer}.
+	 *
+	 * @param theFile	the file to map
+	 * @return			the model
+	 *
+	 * @throws IOException	if the file cannot be mapped or is not a valid model file
+	 */
+	public static MappedModel open(final Path theFile) throws IOException {
+		try (FileChannel aChannel = FileChannel.open(theFile, StandardOpenOption.READ)) {
+			final MappedBuffer aBuffer = MappedBuffer.map(aChannel, MapMode.READ_ONLY, aChannel.size());
+
+			try {
+				return new MappedModel(theFile.toAbsolutePath(), aBuffer);
+			}
+			catch (IOException e) {
+				aBuffer.close();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Write the statements and namespaces of the model to the given file so that it can later be {@link #open opened}
+	 *
+	 * @param theModel	the model to write
+	 * @param theFile	the file to write to
+	 *
+	 * @throws IOException	if there is an error writing the file
+	 */
+	public static void write(final Model theModel, final Path theFile) throws IOException {
+		final Writer aWriter = writer(theFile);
+
+		try {
+			aWriter.startRDF();
+
+			for (Namespace aNamespace : theModel.getNamespaces()) {
+				aWriter.handleNamespace(aNamespace.getPrefix(), aNamespace.getName());
+			}
+
+			for (Statement aStmt : theModel) {
+				aWriter.handleStatement(aStmt);
+			}
+
+			aWriter.endRDF();
+		}
+		catch (RDFHandlerException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+		}
+	}
+
+	/**
+	 * Return an {@link org.openrdf.rio.RDFHandler} which will write the statements it receives to the given file.  The
+	 * file is complete once {@link Writer#endRDF()} has been called.  This can be used with
+	 * {@link ModelIO#read(org.openrdf.rio.RDFHandler, java.io.Reader, org.openrdf.rio.RDFFormat, String)} to convert an
+	 * RDF file which does not fit in memory; statements and values are both spooled to disk while the file is built.
+	 *
+	 * @param theFile	the file to write to
+	 * @return			the writer
+	 */
+	public static Writer writer(final Path theFile) {
+		return new Writer(theFile);
+	}
+
+	/**
+	 * Unmap the file.  Any further use of the model, or of iterators and filtered views created from it, throws
+	 * {@link IllegalStateException}.  The model must not be closed while another thread is reading it.
+	 */
+	@Override
+	public void close() {
+		final MappedBuffer aBuffer = mBuffer;
+
+		if (aBuffer != null) {
+			mBuffer = null;
+			aBuffer.close();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Optional<Namespace> getNamespace(final String thePrefix) {
+		return mNamespaces.stream()
+		                  .filter(theNamespace -> theNamespace.getPrefix().equals(thePrefix))
+		                  .findFirst();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<Namespace> getNamespaces() {
+		return mNamespaces;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Namespace setNamespace(final String thePrefix, final String theName) {
+		throw new UnsupportedOperationException("MappedModel is read-only");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setNamespace(final Namespace theNamespace) {
+		throw new UnsupportedOperationException("MappedModel is read-only");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Optional<Namespace> removeNamespace(final String thePrefix) {
+		throw new UnsupportedOperationException("MappedModel is read-only");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return (int) Math.min(mSize, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterator<Statement> iterator() {
+		return new QuadIterator(mSPOCOffset, SPOC, 0, mSize, NO_ID, NO_ID, NO_ID, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean add(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		throw new UnsupportedOperationException("MappedModel is read-only");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean remove(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		throw new UnsupportedOperationException("MappedModel is read-only");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("MappedModel is read-only");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		return matchPattern(theSubj, thePred, theObj, theContexts).hasNext();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Model filter(final Resource theSubj, final IRI thePred, final Value theObj, final Resource... theContexts) {
+		return new FilteredModel(this, theSubj, thePred, theObj, theContexts) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Iterator<Statement> iterator() {
+				return matchPattern(subj, pred, obj, contexts);
+			}
+
+			@Override
+			protected void removeFilteredTermIteration(final Iterator<Statement> theIter, final Resource theSubj,
+			                                           final IRI thePred, final Value theObj, final Resource... theContexts) {
+				throw new UnsupportedOperationException("MappedModel is read-only");
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeTermIteration(final Iterator<Statement> theIter, final Resource theSubj, final IRI thePred,
+	                                final Value theObj, final Resource... theContexts) {
+		throw new UnsupportedOperationException("MappedModel is read-only");
+	}
+
+	private Iterator<Statement> matchPattern(final Resource theSubj, final IRI thePred, final Value theObj,
+	                                         final Resource... theContexts) {
+		final int aSubj = id(theSubj);
+		final int aPred = id(thePred);
+		final int aObj = id(theObj);
+
+		if ((theSubj != null && aSubj == NO_ID) || (thePred != null && aPred == NO_ID) || (theObj != null && aObj == NO_ID)) {
+			return Collections.emptyIterator();
+		}
+
+		int[] aContexts = null;
+
+		if (theContexts != null && theContexts.length > 0) {
+			final List<Integer> aIds = Lists.newArrayListWithCapacity(theContexts.length);
+
+			for (Resource aContext : theContexts) {
+				final int aId = id(aContext);
+
+				if (aId != NO_ID || aContext == null) {
+					aIds.add(aId);
+				}
+			}
+
+			if (aIds.isEmpty()) {
+				return Collections.emptyIterator();
+			}
+
+			aContexts = aIds.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		// pick the index which gives the longest bound prefix for the pattern
+		final long aOffset;
+		final int[] aOrder;
+		final int[] aKey;
+
+		if (aSubj != NO_ID) {
+			aOffset = mSPOCOffset;
+			aOrder = SPOC;
+			aKey = aPred == NO_ID
+			       ? (aObj == NO_ID ? new int[] { aSubj } : null)
+			       : (aObj == NO_ID ? new int[] { aSubj, aPred } : new int[] { aSubj, aPred, aObj });
+		}
+		else if (aPred != NO_ID) {
+			aOffset = mPOSCOffset;
+			aOrder = POSC;
+			aKey = aObj == NO_ID ? new int[] { aPred } : new int[] { aPred, aObj };
+		}
+		else if (aObj != NO_ID) {
+			aOffset = mOSPCOffset;
+			aOrder = OSPC;
+			aKey = new int[] { aObj };
+		}
+		else {
+			return new QuadIterator(mSPOCOffset, SPOC, 0, mSize, NO_ID, NO_ID, NO_ID, aContexts);
+		}
+
+		if (aKey == null) {
+			// subject & object bound without the predicate
+			final int[] aOSKey = { aObj, aSubj };
+
+			return new QuadIterator(mOSPCOffset, OSPC, lowerBound(mOSPCOffset, aOSKey), upperBound(mOSPCOffset, aOSKey),
+			                        aSubj, aPred, aObj, aContexts);
+		}
+
+		return new QuadIterator(aOffset, aOrder, lowerBound(aOffset, aKey), upperBound(aOffset, aKey),
+		                        aSubj, aPred, aObj, aContexts);
+	}
+
+	/**
+	 * Return the index of the first quad in the index whose leading ids are greater than or equal to the key
+	 */
+	private long lowerBound(final long theIndex, final int[] theKey) {
+		long aLow = 0;
+		long aHigh = mSize;
+
+		while (aLow < aHigh) {
+			final long aMid = (aLow + aHigh) >>> 1;
+
+			if (compare(theIndex, aMid, theKey) < 0) {
+				aLow = aMid + 1;
+			}
+			else {
+				aHigh = aMid;
+			}
+		}
+
+		return aLow;
+	}
+
+	/**
+	 * Return the index of the first quad in the index whose leading ids are greater than the key
+	 */
+	private long upperBound(final long theIndex, final int[] theKey) {
+		long aLow = 0;
+		long aHigh = mSize;
+
+		while (aLow < aHigh) {
+			final long aMid = (aLow + aHigh) >>> 1;
+
+			if (compare(theIndex, aMid, theKey) <= 0) {
+				aLow = aMid + 1;
+			}
+			else {
+				aHigh = aMid;
+			}
+		}
+
+		return aLow;
+	}
+
+	private int compare(final long theIndex, final long theQuad, final int[] theKey) {
+		final MappedBuffer aBuffer = buffer();
+		final long aPosition = theIndex + theQuad * QUAD_SIZE;
+
+		for (int i = 0; i < theKey.length; i++) {
+			final int aCmp = Integer.compare(aBuffer.getInt(aPosition + i * 4), theKey[i]);
+
+			if (aCmp != 0) {
+				return aCmp;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Return the id of the value in the file's dictionary
+	 *
+	 * @param theValue	the value
+	 * @return			the id, or {@link ValueDictionary#NO_ID} if the value is null or not in the dictionary
+	 */
+	private int id(final Value theValue) {
+		if (theValue == null) {
+			return NO_ID;
+		}
+
+		final MappedBuffer aBuffer = buffer();
+		final int aHash = hash(theValue);
+		final int aMask = mTableSize - 1;
+
+		for (int aSlot = aHash & aMask; ; aSlot = (aSlot + 1) & aMask) {
+			final long aPosition = mTableOffset + (long) aSlot * 8;
+			final int aId = aBuffer.getInt(aPosition + 4);
+
+			if (aId == NO_ID) {
+				return NO_ID;
+			}
+			else if (aBuffer.getInt(aPosition) == aHash && value(aId).equals(theValue)) {
+				return aId;
+			}
+		}
+	}
+
+	private Value value(final int theId) {
+		final MappedBuffer aBuffer = buffer();
+
+		long aPosition = mValueDataOffset + aBuffer.getLong(mValueOffsetsOffset + (long) theId * 8);
+
+		final byte aType = aBuffer.get(aPosition++);
+		final String aLabel = readString(aPosition);
+
+		switch (aType) {
+			case IRI_VALUE:
+				return VALUE_FACTORY.createIRI(aLabel);
+			case BNODE_VALUE:
+				return VALUE_FACTORY.createBNode(aLabel);
+			case LITERAL_VALUE:
+				return VALUE_FACTORY.createLiteral(aLabel, VALUE_FACTORY.createIRI(readString(aPosition + 4 + aBuffer.getInt(aPosition))));
+			case LANG_LITERAL_VALUE:
+				return VALUE_FACTORY.createLiteral(aLabel, readString(aPosition + 4 + aBuffer.getInt(aPosition)));
+			default:
+				throw new IllegalStateException("Invalid value type: " + aType);
+		}
+	}
+
+	private String readString(final long thePosition) {
+		final MappedBuffer aBuffer = buffer();
+		final byte[] aBytes = new byte[aBuffer.getInt(thePosition)];
+
+		aBuffer.get(thePosition + 4, aBytes);
+
+		return new String(aBytes, StandardCharsets.UTF_8);
+	}
+
+	private MappedBuffer buffer() {
+		final MappedBuffer aBuffer = mBuffer;
+
+		if (aBuffer == null) {
+			throw new IllegalStateException("MappedModel is closed");
+		}
+
+		return aBuffer;
+	}
+
+	private static int hash(final Value theValue) {
+		return ValueDictionary.hash(theValue.stringValue());
+	}
+
+	private Object writeReplace() {
+		return new SerializedForm(mFile.toString());
+	}
+
+	private void readObject(final ObjectInputStream theStream) throws InvalidObjectException {
+		throw new InvalidObjectException("MappedModel is serialized by the location of its file");
+	}
+
+	/**
+	 * The serialized form of a {@link MappedModel}, the path of its file, which is opened again on deserialization
+	 */
+	private static final class SerializedForm implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final String mFile;
+
+		private SerializedForm(final String theFile) {
+			mFile = theFile;
+		}
+
+		private Object readResolve() throws InvalidObjectException {
+			try {
+				return open(Paths.get(mFile));
+			}
+			catch (IOException e) {
+				final InvalidObjectException aException = new InvalidObjectException("Cannot open the mapped model " + mFile);
+				aException.initCause(e);
+
+				throw aException;
+			}
+		}
+	}
+
+	/**
+	 * Iterator over a range of one of the indexes, filtering out quads which do not match the pattern
+	 */
+	private final class QuadIterator implements Iterator<Statement> {
+		private final long mIndex;
+
+		private final int[] mOrder;
+
+		private final long mEnd;
+
+		private final int[] mPattern;
+
+		private final int[] mContextIds;
+
+		private final int[] mQuad = new int[4];
+
+		private long mPosition;
+
+		private boolean mHasNext = false;
+
+		private QuadIterator(final long theIndex, final int[] theOrder, final long theStart, final long theEnd,
+		                     final int theSubj, final int thePred, final int theObj, final int[] theContexts) {
+			mIndex = theIndex;
+			mOrder = theOrder;
+			mPosition = theStart;
+			mEnd = theEnd;
+			mPattern = new int[] { theSubj, thePred, theObj };
+			mContextIds = theContexts;
+		}
+
+		@Override
+		public boolean hasNext() {
+			final MappedBuffer aBuffer = buffer();
+
+			while (!mHasNext && mPosition < mEnd) {
+				final long aPosition = mIndex + mPosition * QUAD_SIZE;
+				mPosition++;
+
+				for (int i = 0; i < 4; i++) {
+					mQuad[mOrder[i]] = aBuffer.getInt(aPosition + i * 4);
+				}
+
+				mHasNext = matches();
+			}
+
+			return mHasNext;
+		}
+
+		@Override
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			mHasNext = false;
+
+			final Resource aSubj = (Resource) value(mQuad[0]);
+			final IRI aPred = (IRI) value(mQuad[1]);
+			final Value aObj = value(mQuad[2]);
+
+			return mQuad[3] == NO_ID
+			       ? VALUE_FACTORY.createStatement(aSubj, aPred, aObj)
+			       : VALUE_FACTORY.createStatement(aSubj, aPred, aObj, (Resource) value(mQuad[3]));
+		}
+
+		private boolean matches() {
+			for (int i = 0; i < mPattern.length; i++) {
+				if (mPattern[i] != NO_ID && mPattern[i] != mQuad[i]) {
+					return false;
+				}
+			}
+
+			if (mContextIds == null) {
+				return true;
+			}
+
+			for (int aContext : mContextIds) {
+				if (aContext == mQuad[3]) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * <p>{@link org.openrdf.rio.RDFHandler} which writes the statements it is given to a file which can be opened as a
+	 * {@link MappedModel}.  Statements are spooled to a temporary file of ids next to the target and sorted on disk
+	 * when {@link #endRDF()} is called.  Duplicate statements are removed.</p>
+	 *
+	 * <p>Values are assigned ids as they are seen using a dictionary which is also kept on disk: the encoded values are
+	 * appended to a temporary file in the same format as the finished model, and an open-addressing hash table of
+	 * their hashes, ids and offsets is kept in a second, mapped, temporary file.  The only values held on the heap are
+	 * a bounded cache of the most recently seen, which covers the predicates, types and other values repeated
+	 * throughout most data.</p>
+	 */
+	public static final class Writer extends AbstractRDFHandler {
+		/**
+		 * The number of recently seen values whose ids are cached on the heap
+		 */
+		private static final int RECENT_VALUES = 1 << 14;
+
+		/**
+		 * Size of a slot in the writer's hash table: the hash & id of the value, followed by the offset of its data
+		 */
+		private static final int SLOT_SIZE = 16;
+
+		private static final int VALUE_BUFFER_SIZE = 1 << 16;
+
+		private final Path mFile;
+
+		private final Set<Namespace> mNamespaces = new LinkedHashSet<>();
+
+		private Cache<Value, Integer> mRecent;
+
+		private Path mValues;
+
+		private FileChannel mValueChannel;
+
+		private ByteBuffer mValueBuffer;
+
+		/**
+		 * The number of bytes of value data written to the channel, the data in {@link #mValueBuffer} follows it
+		 */
+		private long mValuesWritten;
+
+		private int mValueCount;
+
+		private Path mTableFile;
+
+		private MappedBuffer mTable;
+
+		private int mTableSize;
+
+		private Path mSpool;
+
+		private DataOutputStream mSpoolOutput;
+
+		private long mCount;
+
+		private Writer(final Path theFile) {
+			mFile = theFile;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void startRDF() throws RDFHandlerException {
+			try {
+				mRecent = CacheBuilder.newBuilder().maximumSize(RECENT_VALUES).build();
+				mValues = createTempFile(".values");
+				mValueChannel = FileChannel.open(mValues, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				mValueBuffer = ByteBuffer.allocate(VALUE_BUFFER_SIZE);
+				mValuesWritten = 0;
+				mValueCount = 0;
+				mTableSize = 1 << 10;
+				mTableFile = createTempFile(".table");
+				mTable = mapTable(mTableFile, mTableSize);
+				mSpool = createTempFile(".spool");
+				mSpoolOutput = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(mSpool), 1 << 16));
+				mCount = 0;
+			}
+			catch (IOException e) {
+				throw new RDFHandlerException(e);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void handleNamespace(final String thePrefix, final String theName) throws RDFHandlerException {
+			mNamespaces.removeIf(theNamespace -> theNamespace.getPrefix().equals(thePrefix));
+			mNamespaces.add(new SimpleNamespace(thePrefix, theName));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void handleStatement(final Statement theStatement) throws RDFHandlerException {
+			try {
+				mSpoolOutput.writeInt(intern(theStatement.getSubject()));
+				mSpoolOutput.writeInt(intern(theStatement.getPredicate()));
+				mSpoolOutput.writeInt(intern(theStatement.getObject()));
+				mSpoolOutput.writeInt(intern(theStatement.getContext()));
+				mCount++;
+			}
+			catch (IOException e) {
+				throw new RDFHandlerException(e);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void endRDF() throws RDFHandlerException {
+			try {
+				mSpoolOutput.close();
+				flushValues();
+
+				final long aCount;
+
+				try (FileChannel aChannel = FileChannel.open(mSpool, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+					final MappedBuffer aSpool = MappedBuffer.map(aChannel, MapMode.READ_WRITE, mCount * QUAD_SIZE);
+
+					try {
+						sort(aSpool, 0, 0, mCount - 1);
+						aCount = dedupe(aSpool, mCount);
+
+						writeModel(aSpool, aCount);
+					}
+					finally {
+						aSpool.close();
+					}
+				}
+			}
+			catch (IOException e) {
+				throw new RDFHandlerException(e);
+			}
+			finally {
+				mTable.close();
+
+				try {
+					mValueChannel.close();
+				}
+				catch (IOException e) {
+					// we're only reading the file from here on, nothing is lost
+				}
+
+				for (Path aFile : new Path[] { mSpool, mValues, mTableFile }) {
+					try {
+						Files.deleteIfExists(aFile);
+					}
+					catch (IOException e) {
+						// it's a temp file, the OS will clean it up eventually
+					}
+				}
+
+				mRecent = null;
+				mValueBuffer = null;
+				mTable = null;
+			}
+		}
+
+		private Path createTempFile(final String theSuffix) throws IOException {
+			return Files.createTempFile(mFile.toAbsolutePath().getParent(), mFile.getFileName().toString(), theSuffix);
+		}
+
+		private static MappedBuffer mapTable(final Path theFile, final int theSize) throws IOException {
+			try (FileChannel aChannel = FileChannel.open(theFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				return MappedBuffer.map(aChannel, MapMode.READ_WRITE, (long) theSize * SLOT_SIZE);
+			}
+		}
+
+		/**
+		 * Return the id of the value, assigning it the next id and appending it to the value data if it has not been seen
+		 */
+		private int intern(final Value theValue) throws IOException {
+			if (theValue == null) {
+				return NO_ID;
+			}
+
+			final Integer aCached = mRecent.getIfPresent(theValue);
+
+			if (aCached != null) {
+				return aCached;
+			}
+
+			final byte[] aBytes = encode(theValue);
+			final int aHash = hash(theValue);
+			final int aMask = mTableSize - 1;
+
+			int aId;
+			for (int aSlot = aHash & aMask; ; aSlot = (aSlot + 1) & aMask) {
+				final long aPosition = (long) aSlot * SLOT_SIZE;
+
+				aId = mTable.getInt(aPosition + 4);
+
+				if (aId == NO_ID) {
+					aId = ++mValueCount;
+
+					mTable.putInt(aPosition, aHash);
+					mTable.putInt(aPosition + 4, aId);
+					mTable.putLong(aPosition + 8, appendValue(aBytes));
+
+					if (mValueCount * 2L > mTableSize) {
+						growTable();
+					}
+
+					break;
+				}
+				else if (mTable.getInt(aPosition) == aHash && isValueAt(mTable.getLong(aPosition + 8), aBytes)) {
+					break;
+				}
+			}
+
+			mRecent.put(theValue, aId);
+
+			return aId;
+		}
+
+		private void growTable() throws IOException {
+			final int aSize = mTableSize << 1;
+			final int aMask = aSize - 1;
+			final Path aFile = createTempFile(".table");
+			final MappedBuffer aTable = mapTable(aFile, aSize);
+
+			for (long aSlot = 0; aSlot < mTableSize; aSlot++) {
+				final long aFrom = aSlot * SLOT_SIZE;
+				final int aId = mTable.getInt(aFrom + 4);
+
+				if (aId != NO_ID) {
+					final int aHash = mTable.getInt(aFrom);
+
+					int aTo = aHash & aMask;
+					while (aTable.getInt((long) aTo * SLOT_SIZE + 4) != NO_ID) {
+						aTo = (aTo + 1) & aMask;
+					}
+
+					aTable.putInt((long) aTo * SLOT_SIZE, aHash);
+					aTable.putInt((long) aTo * SLOT_SIZE + 4, aId);
+					aTable.putLong((long) aTo * SLOT_SIZE + 8, mTable.getLong(aFrom + 8));
+				}
+			}
+
+			mTable.close();
+			Files.deleteIfExists(mTableFile);
+
+			mTable = aTable;
+			mTableFile = aFile;
+			mTableSize = aSize;
+		}
+
+		/**
+		 * Append the encoded value to the value data, returning its offset.  A value is never split between the file &
+		 * the buffer.
+		 */
+		private long appendValue(final byte[] theBytes) throws IOException {
+			if (theBytes.length > mValueBuffer.remaining()) {
+				flushValues();
+			}
+
+			final long aOffset = mValuesWritten + mValueBuffer.position();
+
+			if (theBytes.length > mValueBuffer.capacity()) {
+				final ByteBuffer aBytes = ByteBuffer.wrap(theBytes);
+
+				while (aBytes.hasRemaining()) {
+					mValueChannel.write(aBytes);
+				}
+
+				mValuesWritten += theBytes.length;
+			}
+			else {
+				mValueBuffer.put(theBytes);
+			}
+
+			return aOffset;
+		}
+
+		private void flushValues() throws IOException {
+			((Buffer) mValueBuffer).flip();
+
+			while (mValueBuffer.hasRemaining()) {
+				mValuesWritten += mValueChannel.write(mValueBuffer);
+			}
+
+			((Buffer) mValueBuffer).clear();
+		}
+
+		/**
+		 * Return whether the value data at the offset starts with the encoded value.  Encoded values are prefix-free, so
+		 * that means it is the same value.
+		 */
+		private boolean isValueAt(final long theOffset, final byte[] theBytes) throws IOException {
+			if (theOffset >= mValuesWritten) {
+				final int aStart = (int) (theOffset - mValuesWritten);
+
+				if (aStart + theBytes.length > mValueBuffer.position()) {
+					return false;
+				}
+
+				for (int i = 0; i < theBytes.length; i++) {
+					if (mValueBuffer.get(aStart + i) != theBytes[i]) {
+						return false;
+					}
+				}
+
+				return true;
+			}
+
+			final ByteBuffer aStored = ByteBuffer.allocate(theBytes.length);
+
+			while (aStored.hasRemaining()) {
+				if (mValueChannel.read(aStored, theOffset + aStored.position()) < 0) {
+					return false;
+				}
+			}
+
+			return Arrays.equals(aStored.array(), theBytes);
+		}
+
+		private void writeModel(final MappedBuffer theQuads, final long theCount) throws IOException {
+			final List<byte[]> aNamespaces = Lists.newArrayList();
+
+			long aNamespacesSize = 4;
+			for (Namespace aNamespace : mNamespaces) {
+				final byte[] aPrefix = aNamespace.getPrefix().getBytes(StandardCharsets.UTF_8);
+				final byte[] aName = aNamespace.getName().getBytes(StandardCharsets.UTF_8);
+
+				aNamespaces.add(aPrefix);
+				aNamespaces.add(aName);
+
+				aNamespacesSize += 8 + aPrefix.length + aName.length;
+			}
+
+			final long aValueDataSize = mValuesWritten;
+
+			int aTableSize = 16;
+			while (aTableSize < mValueCount * 2) {
+				aTableSize <<= 1;
+			}
+
+			final long aNamespacesOffset = HEADER_SIZE;
+			final long aSPOCOffset = align(aNamespacesOffset + aNamespacesSize);
+			final long aPOSCOffset = aSPOCOffset + theCount * QUAD_SIZE;
+			final long aOSPCOffset = aPOSCOffset + theCount * QUAD_SIZE;
+			final long aValueOffsetsOffset = aOSPCOffset + theCount * QUAD_SIZE;
+			final long aTableOffset = aValueOffsetsOffset + (mValueCount + 1L) * 8;
+			final long aValueDataOffset = aTableOffset + aTableSize * 8L;
+			final long aFileSize = aValueDataOffset + aValueDataSize;
+
+			Files.deleteIfExists(mFile);
+
+			try (FileChannel aChannel = FileChannel.open(mFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				final MappedBuffer aBuffer = MappedBuffer.map(aChannel, MapMode.READ_WRITE, aFileSize);
+
+				try {
+					aBuffer.putInt(0, MAGIC);
+					aBuffer.putInt(4, VERSION);
+					aBuffer.putLong(8, theCount);
+					aBuffer.putInt(16, mValueCount);
+					aBuffer.putInt(20, aTableSize);
+					aBuffer.putLong(24, aNamespacesOffset);
+					aBuffer.putLong(32, aSPOCOffset);
+					aBuffer.putLong(40, aPOSCOffset);
+					aBuffer.putLong(48, aOSPCOffset);
+					aBuffer.putLong(56, aValueOffsetsOffset);
+					aBuffer.putLong(64, aTableOffset);
+					aBuffer.putLong(72, aValueDataOffset);
+
+					long aPosition = aNamespacesOffset;
+					aBuffer.putInt(aPosition, mNamespaces.size());
+					aPosition += 4;
+
+					for (byte[] aBytes : aNamespaces) {
+						aBuffer.putInt(aPosition, aBytes.length);
+						aBuffer.put(aPosition + 4, aBytes);
+						aPosition += 4 + aBytes.length;
+					}
+
+					// the spool is already sorted in SPOC order; the other two indexes are copied & then sorted in place
+					for (long i = 0; i < theCount; i++) {
+						final long aFrom = i * QUAD_SIZE;
+						final int aSubj = theQuads.getInt(aFrom);
+						final int aPred = theQuads.getInt(aFrom + 4);
+						final int aObj = theQuads.getInt(aFrom + 8);
+						final int aContext = theQuads.getInt(aFrom + 12);
+
+						putQuad(aBuffer, aSPOCOffset + aFrom, aSubj, aPred, aObj, aContext);
+						putQuad(aBuffer, aPOSCOffset + aFrom, aPred, aObj, aSubj, aContext);
+						putQuad(aBuffer, aOSPCOffset + aFrom, aObj, aSubj, aPred, aContext);
+					}
+
+					sort(aBuffer, aPOSCOffset, 0, theCount - 1);
+					sort(aBuffer, aOSPCOffset, 0, theCount - 1);
+
+					// the value data was written in the same format, in id order, so it is copied as is
+					final ByteBuffer aValues = ByteBuffer.allocate(VALUE_BUFFER_SIZE);
+
+					for (long aRead = 0; aRead < aValueDataSize; ) {
+						((Buffer) aValues).clear();
+
+						final int aLength = mValueChannel.read(aValues, aRead);
+
+						if (aLength < 0) {
+							throw new IOException("Value data is truncated");
+						}
+
+						aBuffer.put(aValueDataOffset + aRead, aValues.array(), aLength);
+						aRead += aLength;
+					}
+
+					// the offsets & the lookup table come from the slots of the writer's table
+					for (long aSlot = 0; aSlot < mTableSize; aSlot++) {
+						final long aFrom = aSlot * SLOT_SIZE;
+						final int aId = mTable.getInt(aFrom + 4);
+
+						if (aId == NO_ID) {
+							continue;
+						}
+
+						final int aHash = mTable.getInt(aFrom);
+
+						aBuffer.putLong(aValueOffsetsOffset + aId * 8L, mTable.getLong(aFrom + 8));
+
+						int aTo = aHash & (aTableSize - 1);
+						while (aBuffer.getInt(aTableOffset + aTo * 8L + 4) != NO_ID) {
+							aTo = (aTo + 1) & (aTableSize - 1);
+						}
+
+						aBuffer.putInt(aTableOffset + aTo * 8L, aHash);
+						aBuffer.putInt(aTableOffset + aTo * 8L + 4, aId);
+					}
+
+					aBuffer.force();
+				}
+				finally {
+					aBuffer.close();
+				}
+			}
+		}
+
+		private static long align(final long thePosition) {
+			return (thePosition + 7) & ~7L;
+		}
+
+		private static void putQuad(final MappedBuffer theBuffer, final long thePosition,
+		                            final int theFirst, final int theSecond, final int theThird, final int theFourth) {
+			theBuffer.putInt(thePosition, theFirst);
+			theBuffer.putInt(thePosition + 4, theSecond);
+			theBuffer.putInt(thePosition + 8, theThird);
+			theBuffer.putInt(thePosition + 12, theFourth);
+		}
+
+		/**
+		 * Encode the value as it is stored in the value data of the file: a type byte followed by the length prefixed
+		 * label, and then the language or datatype for a literal
+		 */
+		private static byte[] encode(final Value theValue) {
+			final byte aType;
+			final byte[] aLabel;
+			final byte[] aSuffix;
+
+			if (theValue instanceof IRI) {
+				aType = IRI_VALUE;
+				aLabel = theValue.stringValue().getBytes(StandardCharsets.UTF_8);
+				aSuffix = null;
+			}
+			else if (theValue instanceof BNode) {
+				aType = BNODE_VALUE;
+				aLabel = ((BNode) theValue).getID().getBytes(StandardCharsets.UTF_8);
+				aSuffix = null;
+			}
+			else {
+				final Literal aLiteral = (Literal) theValue;
+
+				aLabel = aLiteral.getLabel().getBytes(StandardCharsets.UTF_8);
+
+				if (aLiteral.getLanguage().isPresent()) {
+					aType = LANG_LITERAL_VALUE;
+					aSuffix = aLiteral.getLanguage().get().getBytes(StandardCharsets.UTF_8);
+				}
+				else {
+					aType = LITERAL_VALUE;
+					aSuffix = aLiteral.getDatatype().stringValue().getBytes(StandardCharsets.UTF_8);
+				}
+			}
+
+			final ByteBuffer aBytes = ByteBuffer.allocate(1 + 4 + aLabel.length + (aSuffix == null ? 0 : 4 + aSuffix.length));
+
+			aBytes.put(aType).putInt(aLabel.length).put(aLabel);
+
+			if (aSuffix != null) {
+				aBytes.putInt(aSuffix.length).put(aSuffix);
+			}
+
+			return aBytes.array();
+		}
+
+		/**
+		 * Remove adjacent duplicate quads from a sorted run of quads, returning the number of distinct quads
+		 */
+		private static long dedupe(final MappedBuffer theBuffer, final long theCount) {
+			if (theCount == 0) {
+				return 0;
+			}
+
+			long aWrite = 1;
+
+			for (long aRead = 1; aRead < theCount; aRead++) {
+				if (compare(theBuffer, 0, aRead, aWrite - 1) != 0) {
+					if (aRead != aWrite) {
+						swap(theBuffer, 0, aRead, aWrite);
+					}
+
+					aWrite++;
+				}
+			}
+
+			return aWrite;
+		}
+
+		/**
+		 * Sort, in place, the quads in the inclusive range {@code [theLow, theHigh]} of the index starting at the given
+		 * offset of the buffer.  Recurses on the smaller partition so the stack depth is logarithmic.
+		 */
+		private static void sort(final MappedBuffer theBuffer, final long theIndex, long theLow, long theHigh) {
+			while (theHigh - theLow > 16) {
+				final long aMid = theLow + ((theHigh - theLow) >>> 1);
+				final int[] aPivot = new int[4];
+
+				for (int i = 0; i < 4; i++) {
+					aPivot[i] = theBuffer.getInt(theIndex + aMid * QUAD_SIZE + i * 4);
+				}
+
+				long i = theLow - 1;
+				long j = theHigh + 1;
+
+				while (true) {
+					do {
+						i++;
+					}
+					while (compare(theBuffer, theIndex, i, aPivot) < 0);
+
+					do {
+						j--;
+					}
+					while (compare(theBuffer, theIndex, j, aPivot) > 0);
+
+					if (i >= j) {
+						break;
+					}
+
+					swap(theBuffer, theIndex, i, j);
+				}
+
+				if (j - theLow < theHigh - j) {
+					sort(theBuffer, theIndex, theLow, j);
+					theLow = j + 1;
+				}
+				else {
+					sort(theBuffer, theIndex, j + 1, theHigh);
+					theHigh = j;
+				}
+			}
+
+			for (long i = theLow + 1; i <= theHigh; i++) {
+				for (long j = i; j > theLow && compare(theBuffer, theIndex, j - 1, j) > 0; j--) {
+					swap(theBuffer, theIndex, j - 1, j);
+				}
+			}
+		}
+
+		private static int compare(final MappedBuffer theBuffer, final long theIndex, final long theQuad, final int[] theKey) {
+			for (int i = 0; i < 4; i++) {
+				final int aCmp = Integer.compare(theBuffer.getInt(theIndex + theQuad * QUAD_SIZE + i * 4), theKey[i]);
+
+				if (aCmp != 0) {
+					return aCmp;
+				}
+			}
+
+			return 0;
+		}
+
+		private static int compare(final MappedBuffer theBuffer, final long theIndex, final long theQuad, final long theOther) {
+			for (int i = 0; i < 4; i++) {
+				final int aCmp = Integer.compare(theBuffer.getInt(theIndex + theQuad * QUAD_SIZE + i * 4),
+				                                 theBuffer.getInt(theIndex + theOther * QUAD_SIZE + i * 4));
+
+				if (aCmp != 0) {
+					return aCmp;
+				}
+			}
+
+			return 0;
+		}
+
+		private static void swap(final MappedBuffer theBuffer, final long theIndex, final long theQuad, final long theOther) {
+			for (int i = 0; i < 4; i++) {
+				final long aFirst = theIndex + theQuad * QUAD_SIZE + i * 4;
+				final long aSecond = theIndex + theOther * QUAD_SIZE + i * 4;
+				final int aTemp = theBuffer.getInt(aFirst);
+
+				theBuffer.putInt(aFirst, theBuffer.getInt(aSecond));
+				theBuffer.putInt(aSecond, aTemp);
+			}
+		}
+	}
+}
@@ -23,15 +23,34 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.complexible.common.openrdf.util.ModelBuildingRDFHandler;
 import com.complexible.common.openrdf.util.RDFByteSource;
 import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.openrdf.model.Model;
+import org.openrdf.model.Namespace;
 import org.openrdf.model.Statement;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandler;
@@ -40,18 +59,37 @@ import org.openrdf.rio.RDFParseException;
 import org.openrdf.rio.RDFParser;
 import org.openrdf.rio.RDFWriter;
 import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.AbstractRDFHandler;
 import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.StatementCollector;
 
 /**
  * <p>Support for IO for {@link Model models}/</p>
  *
  * @author  Michael Grove
  * @since   4.0
- * @version 4.0
+ * @version 4.1
  */
 public final class ModelIO {
 	public static final String DEFAULT_BASE_URI = "http://openrdf.clarkparsia.com/";
 
+	/**
+	 * The smallest chunk a file is split into by {@link #readParallel}
+	 */
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * The number of bytes of the file {@link #readParallel} will have parsing, or parsed and waiting for the handler,
+	 * at any one time.  Each chunk is held as a list of statements until the handler has seen all of it, so this is
+	 * what bounds the heap used by a parallel read.
+	 */
+	private static final long MAX_PENDING_BYTES = 64 << 20;
+
+	/**
+	 * The number of batches of parsed statements {@link #stream} will buffer ahead of the consumer
+	 */
+	private static final int STREAM_CAPACITY = 16;
+
 	private ModelIO() {
 		throw new AssertionError();
 	}
@@ -69,16 +107,31 @@ public final class ModelIO {
 	}
 
 	public static Model read(final Path theFile, final RDFFormat theFormat) throws IOException, RDFParseException {
+		if (isBinary(theFormat)) {
+			return readBinary(theFile);
+		}
+
 		return read(new InputStreamReader(Files.newInputStream(theFile), getCharset(theFormat).orElse(Charsets.UTF_8)),
 		            theFormat,
 		            DEFAULT_BASE_URI);
 	}
 
+	/**
+	 * Whether or not the format is binary, and so cannot be read through a {@link Reader}
+	 */
+	private static boolean isBinary(final RDFFormat theFormat) {
+		return BinaryRDFSnapshot.FORMAT.equals(theFormat);
+	}
+
 	private static Optional<Charset> getCharset(final RDFFormat theFormat) {
 		return theFormat.hasCharset() ? Optional.of(theFormat.getCharset()) : Optional.empty();
 	}
 
 	public static Model read(final RDFByteSource theSource) throws IOException, RDFParseException {
+		if (isBinary(theSource.getFormat())) {
+			return readBinary(theSource.openStream());
+		}
+
 		return read(theSource.asCharSource(getCharset(theSource.getFormat()).orElse(Charsets.UTF_8)).openStream(),
 	                theSource.getFormat(),
 	                theSource.getBaseURI());
@@ -93,7 +146,7 @@ public final class ModelIO {
 	 * @throws RDFParseException if there is an error while trying to parse the data as the specified format
 	 */
 	public static Model read(InputStream theInput, RDFFormat theFormat) throws IOException, RDFParseException {
-		return read(new InputStreamReader(theInput, getCharset(theFormat).orElse(Charsets.UTF_8)), theFormat, DEFAULT_BASE_URI);
+		return read(theInput, theFormat, DEFAULT_BASE_URI);
 	}
 
 
@@ -107,6 +160,10 @@ public final class ModelIO {
 	 * @throws RDFParseException if there is an error while trying to parse the data as the specified format
 	 */
 	public static Model read(InputStream theInput, RDFFormat theFormat, final String theBase) throws IOException, RDFParseException {
+		if (isBinary(theFormat)) {
+			return readBinary(theInput);
+		}
+
 		return read(new InputStreamReader(theInput, getCharset(theFormat).orElse(Charsets.UTF_8)), theFormat, theBase);
 	}
 
@@ -123,12 +180,7 @@ public final class ModelIO {
 	 * @throws RDFParseException if there is an error while trying to parse the data as the specified format
 	 */
 	public static Model read(final Reader theInput, final RDFFormat theFormat, final String theBase) throws IOException, RDFParseException {
-		RDFParser aParser = Rio.createParser(theFormat);
-
-		aParser.getParserConfig().set(BasicParserSettings.VERIFY_DATATYPE_VALUES, false);
-		aParser.getParserConfig().set(BasicParserSettings.FAIL_ON_UNKNOWN_DATATYPES, false);
-		aParser.getParserConfig().set(BasicParserSettings.NORMALIZE_DATATYPE_VALUES, false);
-		aParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+		RDFParser aParser = createParser(theFormat);
 
 		ModelBuildingRDFHandler aHandler = new ModelBuildingRDFHandler();
 
@@ -160,12 +212,7 @@ public final class ModelIO {
 	 * @throws RDFParseException if there is an error while trying to parse the data as the specified format
 	 */
 	public static void read(RDFHandler theHandler, Reader theInput, RDFFormat theFormat, String theBase) throws IOException, RDFParseException {
-		RDFParser aParser = Rio.createParser(theFormat);
-
-		aParser.getParserConfig().set(BasicParserSettings.VERIFY_DATATYPE_VALUES, false);
-		aParser.getParserConfig().set(BasicParserSettings.FAIL_ON_UNKNOWN_DATATYPES, false);
-		aParser.getParserConfig().set(BasicParserSettings.NORMALIZE_DATATYPE_VALUES, false);
-		aParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+		RDFParser aParser = createParser(theFormat);
 
 		aParser.setRDFHandler(theHandler);
 
@@ -181,6 +228,247 @@ public final class ModelIO {
 			}
 		}
 	}
+
+	/**
+	 * Lazily read the statements in the specified file.  The format is determined from the file name.
+	 *
+	 * @param theFile	the file to read from
+	 * @return			the statements in the file
+	 *
+	 * @throws IOException	if the file could not be opened
+	 *
+	 * @see #stream(Reader, RDFFormat, String)
+	 */
+	public static Stream<Statement> stream(final Path theFile) throws IOException {
+		return stream(theFile, Rio.getParserFormatForFileName(theFile.getFileName().toString()).orElse(RDFFormat.TURTLE));
+	}
+
+	/**
+	 * Lazily read the statements in the specified file.
+	 *
+	 * @param theFile	the file to read from
+	 * @param theFormat	the format of the file
+	 * @return			the statements in the file
+	 *
+	 * @throws IOException	if the file could not be opened
+	 *
+	 * @see #stream(Reader, RDFFormat, String)
+	 */
+	public static Stream<Statement> stream(final Path theFile, final RDFFormat theFormat) throws IOException {
+		return stream(Files.newInputStream(theFile), theFormat, DEFAULT_BASE_URI);
+	}
+
+	/**
+	 * Lazily read the statements in the source.
+	 *
+	 * @param theSource	the source to read from
+	 * @return			the statements in the source
+	 *
+	 * @throws IOException	if the source could not be opened
+	 *
+	 * @see #stream(Reader, RDFFormat, String)
+	 */
+	public static Stream<Statement> stream(final RDFByteSource theSource) throws IOException {
+		return stream(theSource.openStream(), theSource.getFormat(), theSource.getBaseURI());
+	}
+
+	/**
+	 * Lazily read the statements from the stream.  Binary formats, such as {@link BinaryRDFSnapshot snapshots}, are
+	 * parsed from the stream directly, otherwise it is decoded with the charset of the format.
+	 *
+	 * @param theInput	the stream to read from
+	 * @param theFormat	the format the data is in
+	 * @param theBase	the base url for parsing
+	 * @return			the statements in the data
+	 *
+	 * @see #stream(Reader, RDFFormat, String)
+	 */
+	public static Stream<Statement> stream(final InputStream theInput, final RDFFormat theFormat, final String theBase) {
+		if (isBinary(theFormat)) {
+			return asStream(new ParsingStatementIterator(createParser(theFormat), theInput, theBase, STREAM_CAPACITY));
+		}
+
+		return stream(new InputStreamReader(theInput, getCharset(theFormat).orElse(Charsets.UTF_8)), theFormat, theBase);
+	}
+
+	/**
+	 * Lazily read the statements from the Reader.  The data is parsed on a background thread as the stream is consumed;
+	 * the parser is only allowed to get a bounded number of statements ahead of the consumer, so the memory required
+	 * does not depend on the size of the input.
+	 *
+	 * <p>The returned stream should be {@link Stream#close() closed}, such as with try-with-resources, which stops the
+	 * parser and closes the reader if the stream was not fully consumed.  Errors from parsing the data are thrown
+	 * as unchecked exceptions, {@link java.io.UncheckedIOException} for errors reading the data, or a
+	 * {@link RuntimeException} whose cause is the {@link RDFParseException}, while the stream is consumed.</p>
+	 *
+	 * @param theInput	the reader to read from
+	 * @param theFormat	the format the data is in
+	 * @param theBase	the base url for parsing
+	 * @return			the statements in the data
+	 */
+	public static Stream<Statement> stream(final Reader theInput, final RDFFormat theFormat, final String theBase) {
+		return asStream(new ParsingStatementIterator(createParser(theFormat), theInput, theBase, STREAM_CAPACITY));
+	}
+
+	private static Stream<Statement> asStream(final ParsingStatementIterator theIter) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(theIter, Spliterator.ORDERED | Spliterator.NONNULL), false)
+		                    .onClose(theIter::close);
+	}
+
+	/**
+	 * Read an RDF graph from a line-based file, N-Triples or N-Quads, parsing it with multiple threads.
+	 *
+	 * @param theFile		the file to read from
+	 * @param theFormat		the format of the file
+	 * @param theThreads	the number of parser threads to use
+	 * @return				the RDF graph contained in the file
+	 *
+	 * @throws IOException			if there was an error reading from the file
+	 * @throws RDFParseException	if the RDF could not be parsed
+	 *
+	 * @see #readParallel(RDFHandler, Path, RDFFormat, int)
+	 */
+	public static Model readParallel(final Path theFile, final RDFFormat theFormat, final int theThreads) throws IOException, RDFParseException {
+		ModelBuildingRDFHandler aHandler = new ModelBuildingRDFHandler();
+
+		readParallel(aHandler, theFile, theFormat, theThreads);
+
+		return aHandler.getModel();
+	}
+
+	/**
+	 * Read RDF from a line-based file, N-Triples or N-Quads, parsing it with multiple threads.  The file is split into
+	 * chunks at line boundaries and the chunks are parsed concurrently; the parsed statements are passed to the handler
+	 * from the calling thread, chunk by chunk, in the order they appear in the file, so the handler does not need to be
+	 * thread-safe.  The chunks parsed ahead of the handler cover at most 64MB of the file regardless of its size, with
+	 * fewer, smaller, chunks in flight for a larger number of threads.
+	 *
+	 * <p>Blank node ids are preserved, as with {@link #read}, so a blank node label used in different chunks is the same
+	 * blank node.  Formats which are not line-based, or a single thread, fall back to a normal sequential read.</p>
+	 *
+	 * @param theHandler	the handler for the results of reading the data
+	 * @param theFile		the file to read from
+	 * @param theFormat		the format of the file
+	 * @param theThreads	the number of parser threads to use
+	 *
+	 * @throws IOException			if there was an error reading from the file
+	 * @throws RDFParseException	if the RDF could not be parsed.  Line numbers reported by the exception are relative
+	 * 								to the chunk being parsed rather than the file.
+	 */
+	public static void readParallel(final RDFHandler theHandler, final Path theFile, final RDFFormat theFormat,
+	                                final int theThreads) throws IOException, RDFParseException {
+		if (isBinary(theFormat)) {
+			readBinary(theHandler, theFile);
+			return;
+		}
+		else if (theThreads <= 1 || !(RDFFormat.NTRIPLES.equals(theFormat) || RDFFormat.NQUADS.equals(theFormat))) {
+			read(theHandler, new InputStreamReader(Files.newInputStream(theFile), getCharset(theFormat).orElse(Charsets.UTF_8)),
+			     theFormat, DEFAULT_BASE_URI);
+			return;
+		}
+
+		final ExecutorService aExecutor = Executors.newFixedThreadPool(theThreads, new ThreadFactoryBuilder().setDaemon(true)
+		                                                                                                    .setNameFormat("ModelIO-parser-%d")
+		                                                                                                    .build());
+
+		try (FileChannel aChannel = FileChannel.open(theFile, StandardOpenOption.READ)) {
+			final long aSize = aChannel.size();
+			final long aChunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_PENDING_BYTES / (theThreads * 2L), aSize / (theThreads * 4L)));
+			final long aMaxChunks = Math.min(theThreads * 2L, MAX_PENDING_BYTES / aChunkSize);
+
+			final Deque<Future<List<Statement>>> aChunks = new ArrayDeque<>();
+
+			theHandler.startRDF();
+
+			long aStart = 0;
+			while (aStart < aSize || !aChunks.isEmpty()) {
+				while (aStart < aSize && aChunks.size() < aMaxChunks) {
+					final long aChunkStart = aStart;
+					final long aChunkEnd = nextLine(aChannel, Math.min(aStart + aChunkSize, aSize), aSize);
+
+					aChunks.add(aExecutor.submit(() -> parseChunk(aChannel, aChunkStart, aChunkEnd, theFormat)));
+
+					aStart = aChunkEnd;
+				}
+
+				for (Statement aStmt : aChunks.remove().get()) {
+					theHandler.handleStatement(aStmt);
+				}
+			}
+
+			theHandler.endRDF();
+		}
+		catch (RDFHandlerException e) {
+			throw new RDFParseException(e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		catch (ExecutionException e) {
+			Throwables.propagateIfInstanceOf(e.getCause(), RDFParseException.class);
+			Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+			throw new IOException(e.getCause());
+		}
+		finally {
+			aExecutor.shutdownNow();
+		}
+	}
+
+	private static List<Statement> parseChunk(final FileChannel theChannel, final long theStart, final long theEnd,
+	                                          final RDFFormat theFormat) throws IOException, RDFParseException, RDFHandlerException {
+		final List<Statement> aStatements = Lists.newArrayList();
+
+		final RDFParser aParser = createParser(theFormat);
+
+		aParser.setRDFHandler(new StatementCollector(aStatements));
+		aParser.parse(new InputStreamReader(new ChannelInputStream(theChannel, theStart, theEnd),
+		                                    getCharset(theFormat).orElse(Charsets.UTF_8)),
+		              DEFAULT_BASE_URI);
+
+		return aStatements;
+	}
+
+	/**
+	 * Return the position just after the first newline at or after the given position, or the end of the channel
+	 */
+	private static long nextLine(final FileChannel theChannel, final long thePosition, final long theSize) throws IOException {
+		final ByteBuffer aBuffer = ByteBuffer.allocate(8192);
+
+		long aPosition = thePosition;
+
+		while (aPosition < theSize) {
+			aBuffer.clear();
+
+			final int aRead = theChannel.read(aBuffer, aPosition);
+
+			if (aRead <= 0) {
+				break;
+			}
+
+			for (int i = 0; i < aRead; i++) {
+				if (aBuffer.get(i) == '\n') {
+					return aPosition + i + 1;
+				}
+			}
+
+			aPosition += aRead;
+		}
+
+		return theSize;
+	}
+
+	private static RDFParser createParser(final RDFFormat theFormat) {
+		RDFParser aParser = Rio.createParser(theFormat);
+
+		aParser.getParserConfig().set(BasicParserSettings.VERIFY_DATATYPE_VALUES, false);
+		aParser.getParserConfig().set(BasicParserSettings.FAIL_ON_UNKNOWN_DATATYPES, false);
+		aParser.getParserConfig().set(BasicParserSettings.NORMALIZE_DATATYPE_VALUES, false);
+		aParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+
+		return aParser;
+	}
+
 	/**
 	 * Write the contents of the Graph to the stream in the specified RDF format
 	 *
@@ -191,7 +479,12 @@ public final class ModelIO {
 	 * @throws IOException thrown if there is an error while writing
 	 */
 	public static void write(final Model theGraph, final OutputStream theStream, final RDFFormat theFormat) throws IOException {
-		write(theGraph, new OutputStreamWriter(theStream), theFormat);
+		if (BinaryRDFSnapshot.FORMAT.equals(theFormat)) {
+			writeBinary(theGraph, theStream, false);
+		}
+		else {
+			write(theGraph, new OutputStreamWriter(theStream), theFormat);
+		}
 	}
 
 	/**
@@ -207,6 +500,146 @@ public final class ModelIO {
 		write(theGraph, Rio.createWriter(theFormat, theWriter));
 	}
 
+	/**
+	 * Write the graph, and its namespaces, to the file as a {@link BinaryRDFSnapshot binary snapshot}
+	 *
+	 * @param theGraph		the graph to write
+	 * @param theFile		the file to write to
+	 * @param theCompress	whether or not to compress the snapshot
+	 *
+	 * @throws IOException	if there is an error while writing
+	 */
+	public static void writeBinary(final Model theGraph, final Path theFile, final boolean theCompress) throws IOException {
+		try (OutputStream aOut = Files.newOutputStream(theFile)) {
+			writeBinary(theGraph, aOut, theCompress);
+		}
+	}
+
+	/**
+	 * Write the graph, and its namespaces, to the stream as a {@link BinaryRDFSnapshot binary snapshot}.  The stream is
+	 * not closed.
+	 *
+	 * @param theGraph		the graph to write
+	 * @param theStream		the stream to write to
+	 * @param theCompress	whether or not to compress the snapshot
+	 *
+	 * @throws IOException	if there is an error while writing
+	 */
+	public static void writeBinary(final Model theGraph, final OutputStream theStream, final boolean theCompress) throws IOException {
+		RDFWriter aWriter = new BinaryRDFSnapshotWriter(theStream);
+
+		aWriter.getWriterConfig().set(BinaryRDFSnapshot.COMPRESS, theCompress);
+
+		try {
+			aWriter.startRDF();
+
+			for (Namespace aNamespace : theGraph.getNamespaces()) {
+				aWriter.handleNamespace(aNamespace.getPrefix(), aNamespace.getName());
+			}
+
+			for (Statement aStmt : theGraph) {
+				aWriter.handleStatement(aStmt);
+			}
+
+			aWriter.endRDF();
+		}
+		catch (RDFHandlerException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Read a graph from a {@link BinaryRDFSnapshot binary snapshot} file
+	 *
+	 * @param theFile	the file to read from
+	 * @return			the graph in the file
+	 *
+	 * @throws IOException			if there is an error while reading
+	 * @throws RDFParseException	if the file is not a valid snapshot
+	 */
+	public static Model readBinary(final Path theFile) throws IOException, RDFParseException {
+		Model aModel = Models2.newModel();
+
+		readBinary(restoringHandler(aModel), theFile);
+
+		return aModel;
+	}
+
+	/**
+	 * Read a graph from a {@link BinaryRDFSnapshot binary snapshot} stream.  The stream is closed after reading.
+	 *
+	 * @param theStream	the stream to read from
+	 * @return			the graph in the stream
+	 *
+	 * @throws IOException			if there is an error while reading
+	 * @throws RDFParseException	if the stream does not contain a valid snapshot
+	 */
+	public static Model readBinary(final InputStream theStream) throws IOException, RDFParseException {
+		Model aModel = Models2.newModel();
+
+		RDFParser aParser = new BinaryRDFSnapshotParser();
+
+		aParser.setRDFHandler(restoringHandler(aModel));
+
+		try {
+			aParser.parse(theStream, DEFAULT_BASE_URI);
+		}
+		catch (RDFHandlerException e) {
+			throw new RDFParseException(e);
+		}
+		finally {
+			theStream.close();
+		}
+
+		return aModel;
+	}
+
+	/**
+	 * Return a handler which restores a snapshot, statements and namespaces, into the given model
+	 */
+	private static RDFHandler restoringHandler(final Model theModel) {
+		return new AbstractRDFHandler() {
+			@Override
+			public void handleNamespace(final String thePrefix, final String theName) throws RDFHandlerException {
+				theModel.setNamespace(thePrefix, theName);
+			}
+
+			@Override
+			public void handleStatement(final Statement theStatement) throws RDFHandlerException {
+				theModel.add(theStatement);
+			}
+		};
+	}
+
+	/**
+	 * Read a {@link BinaryRDFSnapshot binary snapshot} file.  The file is mapped into memory and decoded directly from
+	 * the mapping rather than being copied through a stream.
+	 *
+	 * @param theHandler	the handler for the contents of the snapshot
+	 * @param theFile		the file to read from
+	 *
+	 * @throws IOException			if there is an error while reading
+	 * @throws RDFParseException	if the file is not a valid snapshot
+	 */
+	public static void readBinary(final RDFHandler theHandler, final Path theFile) throws IOException, RDFParseException {
+		BinaryRDFSnapshotParser aParser = new BinaryRDFSnapshotParser();
+
+		aParser.setRDFHandler(theHandler);
+
+		try (FileChannel aChannel = FileChannel.open(theFile, StandardOpenOption.READ)) {
+			if (aChannel.size() > Integer.MAX_VALUE) {
+				// too large for a single mapping
+				aParser.parse(Channels.newInputStream(aChannel), DEFAULT_BASE_URI);
+			}
+			else {
+				aParser.parse(aChannel.map(FileChannel.MapMode.READ_ONLY, 0, aChannel.size()));
+			}
+		}
+		catch (RDFHandlerException e) {
+			throw new RDFParseException(e);
+		}
+	}
+
 	/**
 	 * Write the Graph to a String in the given format
 	 * @param theGraph	the graph to write
@@ -226,6 +659,46 @@ public final class ModelIO {
 		}
 	}
 
+	/**
+	 * {@link InputStream} over a range of a {@link FileChannel} using positional reads, so several streams can read the
+	 * same channel concurrently.
+	 */
+	private static final class ChannelInputStream extends InputStream {
+		private final FileChannel mChannel;
+
+		private final long mEnd;
+
+		private long mPosition;
+
+		private ChannelInputStream(final FileChannel theChannel, final long theStart, final long theEnd) {
+			mChannel = theChannel;
+			mPosition = theStart;
+			mEnd = theEnd;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] aByte = new byte[1];
+
+			return read(aByte, 0, 1) == -1 ? -1 : aByte[0] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] theBytes, final int theOffset, final int theLength) throws IOException {
+			if (mPosition >= mEnd) {
+				return -1;
+			}
+
+			final int aRead = mChannel.read(ByteBuffer.wrap(theBytes, theOffset, (int) Math.min(theLength, mEnd - mPosition)), mPosition);
+
+			if (aRead > 0) {
+				mPosition += aRead;
+			}
+
+			return aRead;
+		}
+	}
+
 	private static void write(final Model theGraph, final RDFWriter theWriter) throws IOException {
 		try {
 			theWriter.startRDF();
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.RDF;
+
+/**
+ * <p>A read-only index of the properties of the subjects in a {@link Model}, built in a single pass over the model.
+ * Lookups of the values of a (subject, predicate) are two hash lookups and do not allocate a filtered model, a set of
+ * objects or an iterator, which makes this a better fit than the {@link Models2} accessors such as
+ * {@link Models2#getObject} when reading many properties from the same model.  All of the properties of a subject can be
+ * read at once with {@link #getProperties}.</p>
+ *
+ * <p>The index is a snapshot of the model when it was {@link #of created}; later changes to the model are not seen and a
+ * new index should be created after modifying the model.  Contexts are ignored, the values of a property are those
+ * of every statement with the subject and predicate in any context, in the order the model returned them.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class ModelIndex {
+
+	private final Map<Resource, Map<IRI, List<Value>>> mIndex;
+
+	private ModelIndex(final Map<Resource, Map<IRI, List<Value>>> theIndex) {
+		mIndex = theIndex;
+	}
+
+	/**
+	 * Index the given model
+	 *
+	 * @param theModel	the model to index
+	 * @return			the index
+	 */
+	public static ModelIndex of(final Model theModel) {
+		final Map<Resource, Map<IRI, Set<Value>>> aBuilding = Maps.newHashMap();
+
+		// a set, because the same triple can be in more than one context
+		for (Statement aStmt : theModel) {
+			aBuilding.computeIfAbsent(aStmt.getSubject(), theSubj -> Maps.newLinkedHashMap())
+			         .computeIfAbsent(aStmt.getPredicate(), thePred -> Sets.newLinkedHashSet())
+			         .add(aStmt.getObject());
+		}
+
+		final Map<Resource, Map<IRI, List<Value>>> aIndex = Maps.newHashMapWithExpectedSize(aBuilding.size());
+
+		for (Map.Entry<Resource, Map<IRI, Set<Value>>> aSubject : aBuilding.entrySet()) {
+			final ImmutableMap.Builder<IRI, List<Value>> aProperties = ImmutableMap.builder();
+
+			for (Map.Entry<IRI, Set<Value>> aProperty : aSubject.getValue().entrySet()) {
+				aProperties.put(aProperty.getKey(), ImmutableList.copyOf(aProperty.getValue()));
+			}
+
+			aIndex.put(aSubject.getKey(), aProperties.build());
+		}
+
+		return new ModelIndex(aIndex);
+	}
+
+	/**
+	 * Return whether or not the resource is the subject of any statement
+	 *
+	 * @param theSubj	the resource
+	 * @return			true if it is a subject, false otherwise
+	 */
+	public boolean isSubject(final Resource theSubj) {
+		return mIndex.containsKey(theSubj);
+	}
+
+	/**
+	 * Return all of the properties of the subject and their values
+	 *
+	 * @param theSubj	the subject
+	 * @return			an unmodifiable map of each property of the subject to its values, empty if the resource is not a
+	 * 					subject in the model
+	 */
+	public Map<IRI, List<Value>> getProperties(final Resource theSubj) {
+		return mIndex.getOrDefault(theSubj, Collections.emptyMap());
+	}
+
+	/**
+	 * Return the values of the property for the subject
+	 *
+	 * @param theSubj	the subject
+	 * @param thePred	the property
+	 * @return			an unmodifiable list of the values, empty if there are none
+	 */
+	public List<Value> getObjects(final Resource theSubj, final IRI thePred) {
+		return getProperties(theSubj).getOrDefault(thePred, Collections.emptyList());
+	}
+
+	/**
+	 * Return the value of the property for the subject.  If there are multiple values, only the first value will be
+	 * returned.
+	 *
+	 * @param theSubj	the subject
+	 * @param thePred	the property
+	 * @return			optionally, the value of the property
+	 */
+	public Optional<Value> getObject(final Resource theSubj, final IRI thePred) {
+		final List<Value> aValues = getObjects(theSubj, thePred);
+
+		return aValues.isEmpty() ? Optional.empty() : Optional.of(aValues.get(0));
+	}
+
+	/**
+	 * Return the value of the property as a Literal
+	 *
+	 * @param theSubj	the subject
+	 * @param thePred	the property
+	 * @return			optionally, the value of the property; absent if there is no value or the value is not a literal
+	 */
+	public Optional<Literal> getLiteral(final Resource theSubj, final IRI thePred) {
+		final List<Value> aValues = getObjects(theSubj, thePred);
+
+		return !aValues.isEmpty() && aValues.get(0) instanceof Literal
+		       ? Optional.of((Literal) aValues.get(0))
+		       : Optional.empty();
+	}
+
+	/**
+	 * Return the value of the property as a Resource
+	 *
+	 * @param theSubj	the subject
+	 * @param thePred	the property
+	 * @return			optionally, the value of the property; absent if there is no value or the value is not a resource
+	 */
+	public Optional<Resource> getResource(final Resource theSubj, final IRI thePred) {
+		final List<Value> aValues = getObjects(theSubj, thePred);
+
+		return !aValues.isEmpty() && aValues.get(0) instanceof Resource
+		       ? Optional.of((Resource) aValues.get(0))
+		       : Optional.empty();
+	}
+
+	/**
+	 * Return the value of the property as a boolean
+	 *
+	 * @param theSubj	the subject
+	 * @param thePred	the property
+	 * @return			optionally, the value of the property; absent if there is no value, or it is not a literal or not a
+	 * 					valid boolean value
+	 *
+	 * @see Models2#getBooleanValue
+	 */
+	public Optional<Boolean> getBooleanValue(final Resource theSubj, final IRI thePred) {
+		final Optional<Literal> aLiteral = getLiteral(theSubj, thePred);
+
+		return aLiteral.isPresent() ? Models2.toBoolean(aLiteral.get()) : Optional.empty();
+	}
+
+	/**
+	 * Return the asserted rdf:type's of the resource.  Literal values of rdf:type are not types and are ignored.
+	 *
+	 * @param theSubj	the resource
+	 * @return			the types
+	 *
+	 * @see Models2#getTypes
+	 */
+	public List<Resource> getTypes(final Resource theSubj) {
+		return getObjects(theSubj, RDF.TYPE).stream()
+		                                    .filter(theObject -> theObject instanceof Resource)
+		                                    .map(theObject -> (Resource) theObject)
+		                                    .collect(Collectors.toList());
+	}
+
+	/**
+	 * Return whether or not the resource has the given type
+	 *
+	 * @param theSubj	the resource
+	 * @param theType	the type
+	 * @return			true if the resource has the type, false otherwise
+	 */
+	public boolean isInstanceOf(final Resource theSubj, final Resource theType) {
+		return getObjects(theSubj, RDF.TYPE).contains(theType);
+	}
+}
@@ -12,8 +12,10 @@ import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collector;
+import java.util.stream.Collector.Characteristics;
 import java.util.stream.Collectors;
 
+import com.complexible.common.openrdf.util.Metrics;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -36,7 +38,7 @@ import org.openrdf.model.vocabulary.XMLSchema;
  *
  * @author  Michael Grove
  * @since   4.0
- * @version 4.0
+ * @version 4.1
  */
 public final class Models2 {
 
@@ -76,14 +78,80 @@ public final class Models2 {
 		};
 	}
 
+	/**
+	 * Return a {@link Collector} which accumulates statements into a {@link ConcurrentModel}.  Unlike {@link #toModel()},
+	 * the collector is {@link Collector.Characteristics#CONCURRENT concurrent}, so a parallel stream adds to a single shared
+	 * model rather than building a model per fork and merging them.
+	 *
+	 * @return	the collector
+	 */
+	public static Collector<Statement, ?, Model> toConcurrentModel() {
+		return toConcurrentModel(16);
+	}
+
+	/**
+	 * Return a {@link Collector} which accumulates statements into a {@link ConcurrentModel} that is pre-sized for the
+	 * expected number of statements.
+	 *
+	 * @param theExpectedSize	the expected number of statements
+	 * @return					the collector
+	 *
+	 * @see #toConcurrentModel()
+	 */
+	public static Collector<Statement, ?, Model> toConcurrentModel(final int theExpectedSize) {
+		return Collector.<Statement, Model>of(() -> new ConcurrentModel(theExpectedSize),
+		                                      Model::add,
+		                                      (theGraph, theOtherGraph) -> {
+			                                      theGraph.addAll(theOtherGraph);
+			                                      return theGraph;
+		                                      },
+		                                      Characteristics.CONCURRENT, Characteristics.UNORDERED,
+		                                      Characteristics.IDENTITY_FINISH);
+	}
+
 	public static Model of(final Path thePath) throws IOException {
 		return ModelIO.read(thePath);
 	}
 
+	/**
+	 * Open the {@link MappedModel} stored in the given file.  Unlike {@link #of(Path)}, the file is not parsed; its
+	 * contents are mapped into memory and read in place.
+	 *
+	 * @param thePath	the file written by {@link MappedModel#write} or a {@link MappedModel#writer(Path) writer}
+	 * @return			the read-only model, which should be {@link MappedModel#close() closed} when it is no longer needed
+	 *
+	 * @throws IOException	if the file cannot be mapped
+	 */
+	public static MappedModel mapped(final Path thePath) throws IOException {
+		return MappedModel.open(thePath);
+	}
+
 	public static Model newModel() {
 		return new LinkedHashModel();
 	}
 
+	/**
+	 * Create a new, empty {@link ConcurrentModel} which can be safely read and modified by multiple threads
+	 *
+	 * @return	the new model
+	 */
+	public static Model newConcurrentModel() {
+		return new ConcurrentModel();
+	}
+
+	/**
+	 * Return a view of the model which records the count and latency of the operations performed through it
+	 *
+	 * @param theModel		the model
+	 * @param theMetrics	the metrics to record the operations in
+	 * @return				the instrumented model
+	 *
+	 * @see InstrumentedModel
+	 */
+	public static Model instrumented(final Model theModel, final Metrics theMetrics) {
+		return new InstrumentedModel(theModel, theMetrics);
+	}
+
 	public static Model newModel(final Iterable<Statement> theStmts) {
 		Model aModel = newModel();
 
@@ -117,6 +185,33 @@ public final class Models2 {
 		return aModel;
 	}
 
+	/**
+	 * Create a new, empty {@link CompactModel}, which dictionary-encodes its values and stores statements as columns of
+	 * ids.  Prefer this over {@link #newModel()} for large, long-lived graphs where heap usage matters more than the cost
+	 * of materializing statements during iteration.
+	 *
+	 * @return	the new model
+	 */
+	public static Model newCompactModel() {
+		return new CompactModel();
+	}
+
+	/**
+	 * Create a new {@link CompactModel} containing the given statements
+	 *
+	 * @param theStmts	the statements
+	 * @return			the new model
+	 *
+	 * @see #newCompactModel()
+	 */
+	public static Model newCompactModel(final Iterable<Statement> theStmts) {
+		Model aModel = newCompactModel();
+
+		Iterables.addAll(aModel, theStmts);
+
+		return aModel;
+	}
+
 	/**
 	 * Returns a copy of the provided graph where all the statements belong to the specified context.
 	 * This will overwrite any existing contexts on the statements in the graph.
@@ -157,7 +252,7 @@ public final class Models2 {
 
 	/**
 	 * Return the value of the property for the given subject.  If there are multiple values, only the first value will
-	 * be returned.
+	 * be returned.  When reading many properties from the same graph, a {@link ModelIndex} of the graph is faster.
 	 *
 	 * @param theGraph	the graph
 	 * @param theSubj	the subject
@@ -166,10 +261,11 @@ public final class Models2 {
 	 * @return 			optionally, the value of the the property for the subject
 	 */
 	public static Optional<Value> getObject(final Model theGraph, final Resource theSubj, final IRI thePred) {
-		Iterator<Value> aCollection = theGraph.filter(theSubj, thePred, null).objects().iterator();
+		// iterate the statements directly rather than building the set of objects() of the filtered view
+		final Iterator<Statement> aStatements = theGraph.filter(theSubj, thePred, null).iterator();
 
-		if (aCollection.hasNext()) {
-			return Optional.of(aCollection.next());
+		if (aStatements.hasNext()) {
+			return Optional.of(aStatements.next().getObject());
 		}
 		else {
 			return Optional.empty();
@@ -230,11 +326,13 @@ public final class Models2 {
 			return Optional.empty();
 		}
 
-		Literal aLiteral = aLitOpt.get();
+		return toBoolean(aLitOpt.get());
+	}
 
-		if (((aLiteral.getDatatype() != null && aLiteral.getDatatype().equals(XMLSchema.BOOLEAN))
-		     || (aLiteral.getLabel().equalsIgnoreCase("true") || aLiteral.getLabel().equalsIgnoreCase("false")))) {
-			return Optional.of(Boolean.valueOf(aLiteral.getLabel()));
+	static Optional<Boolean> toBoolean(final Literal theLiteral) {
+		if (((theLiteral.getDatatype() != null && theLiteral.getDatatype().equals(XMLSchema.BOOLEAN))
+		     || (theLiteral.getLabel().equalsIgnoreCase("true") || theLiteral.getLabel().equalsIgnoreCase("false")))) {
+			return Optional.of(Boolean.valueOf(theLiteral.getLabel()));
 		}
 		else {
 			return Optional.empty();
@@ -250,7 +348,7 @@ public final class Models2 {
 	 * @return			true if its a list, false otherwise
 	 */
 	public static boolean isList(final Model theGraph, final Resource theRes) {
-		return theRes != null && (theRes.equals(RDF.NIL) || theGraph.stream().filter(Statements.matches(theRes, RDF.FIRST, null)).findFirst().isPresent());
+		return theRes != null && (theRes.equals(RDF.NIL) || theGraph.contains(theRes, RDF.FIRST, null));
 	}
 
 	/**
@@ -259,30 +357,29 @@ public final class Models2 {
 	 * @param theRes	the resource which is the head of the list
 	 *
 	 * @return 			the contents of the list.
+	 *
+	 * @throws IllegalArgumentException	if the list contains a cycle
+	 *
+	 * @see #listIterator
 	 */
 	public static List<Value> asList(final Model theGraph, final Resource theRes) {
-		List<Value> aList = Lists.newArrayList();
-
-		Resource aListRes = theRes;
-
-		while (aListRes != null) {
-
-			Optional<Resource> aFirst = getResource(theGraph, aListRes, RDF.FIRST);
-			Optional<Resource> aRest = getResource(theGraph, aListRes, RDF.REST);
-
-			if (aFirst.isPresent()) {
-				aList.add(aFirst.get());
-			}
-
-			if (aRest.orElse(RDF.NIL).equals(RDF.NIL)) {
-				aListRes = null;
-			}
-			else {
-				aListRes = aRest.get();
-			}
-		}
+		return Lists.newArrayList(listIterator(theGraph, theRes));
+	}
 
-		return aList;
+	/**
+	 * Return an iterator over the contents of the given list which follows the rdf:first/rdf:rest structure of the list
+	 * as it is iterated.  The list structure of the graph is indexed the first time it is walked, and the index is reused
+	 * for the graph until it changes, so walking a list is linear in the length of the list rather than in the size of
+	 * the graph.
+	 *
+	 * @param theGraph	the graph
+	 * @param theRes	the resource which is the head of the list
+	 * @return			the contents of the list
+	 *
+	 * @throws IllegalArgumentException	from {@link Iterator#hasNext} or {@link Iterator#next} if the list contains a cycle
+	 */
+	public static Iterator<Value> listIterator(final Model theGraph, final Resource theRes) {
+		return RDFListIndex.iterator(theGraph, theRes);
 	}
 
 	/**
@@ -294,7 +391,7 @@ public final class Models2 {
 		Resource aCurr = SimpleValueFactory.getInstance().createBNode();
 
 		int i = 0;
-		Model aGraph = newModel();
+		Model aGraph = new LinkedHashModel(theResources.size() * 2);
 
 		for (Resource aRes : theResources) {
 			Resource aNext = SimpleValueFactory.getInstance().createBNode();
@@ -313,9 +410,10 @@ public final class Models2 {
 	 * @return			the asserted rdf:type's of the resource
 	 */
 	public static Iterable<Resource> getTypes(final Model theGraph, final Resource theRes) {
-		return theGraph.stream()
-		               .filter(Statements.matches(theRes, RDF.TYPE, null))
+		return theGraph.filter(theRes, RDF.TYPE, null)
+		               .stream()
 		               .map(Statement::getObject)
+		               .filter(theObject -> theObject instanceof Resource)
 		               .map(theObject -> (Resource) theObject)
 		               .collect(Collectors.toList());
 	}
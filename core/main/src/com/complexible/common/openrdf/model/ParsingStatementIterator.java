@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.helpers.AbstractRDFHandler;
+
+/**
+ * <p>An {@link Iterator} over the statements parsed from a {@link Reader}, or an {@link InputStream} for binary
+ * formats.  The parser runs on its own thread and hands statements over in small batches through a bounded queue; when
+ * the queue is full the parser blocks until the consumer catches up, so no more than a fixed number of statements are
+ * held in memory regardless of the size of the input.</p>
+ *
+ * <p>The iterator must be {@link #close() closed} if it is not exhausted, which stops the parser thread and closes the
+ * input.  Errors encountered by the parser are rethrown from {@link #hasNext()} as unchecked exceptions.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+final class ParsingStatementIterator implements Iterator<Statement>, AutoCloseable {
+	private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+	/**
+	 * The number of statements handed over to the consumer at a time
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * Marks the end of the parse
+	 */
+	private static final List<Statement> END = new ArrayList<>();
+
+	private final BlockingQueue<List<Statement>> mQueue;
+
+	private volatile boolean mClosed = false;
+
+	private volatile Throwable mError;
+
+	private Iterator<Statement> mBatch;
+
+	private boolean mDone = false;
+
+	/**
+	 * Create a new iterator, starting the parse in the background
+	 *
+	 * @param theParser		the parser to use
+	 * @param theReader		the data to parse, will be closed when the parse ends
+	 * @param theBase		the base uri of the data
+	 * @param theCapacity	the maximum number of batches of statements to buffer before blocking the parser
+	 */
+	ParsingStatementIterator(final RDFParser theParser, final Reader theReader, final String theBase, final int theCapacity) {
+		this(theParser, theReader, () -> theParser.parse(theReader, theBase), theCapacity);
+	}
+
+	/**
+	 * Create a new iterator over data in a binary format, starting the parse in the background
+	 *
+	 * @param theParser		the parser to use
+	 * @param theStream		the data to parse, will be closed when the parse ends
+	 * @param theBase		the base uri of the data
+	 * @param theCapacity	the maximum number of batches of statements to buffer before blocking the parser
+	 */
+	ParsingStatementIterator(final RDFParser theParser, final InputStream theStream, final String theBase, final int theCapacity) {
+		this(theParser, theStream, () -> theParser.parse(theStream, theBase), theCapacity);
+	}
+
+	private ParsingStatementIterator(final RDFParser theParser, final Closeable theInput, final Parse theParse, final int theCapacity) {
+		mQueue = new ArrayBlockingQueue<>(theCapacity);
+
+		theParser.setRDFHandler(new QueueingRDFHandler());
+
+		final Thread aThread = new Thread(() -> {
+			try {
+				theParse.parse();
+			}
+			catch (Throwable e) {
+				if (!mClosed) {
+					mError = e;
+				}
+			}
+			finally {
+				try {
+					theInput.close();
+				}
+				catch (IOException e) {
+					if (mError == null && !mClosed) {
+						mError = e;
+					}
+				}
+
+				// an error or the end of the input; either way, the consumer needs to wake up
+				offer(END);
+			}
+		}, "ModelIO-stream-" + THREAD_ID.incrementAndGet());
+
+		aThread.setDaemon(true);
+		aThread.start();
+	}
+
+	/**
+	 * Hand a batch to the consumer, waiting for room in the queue as long as the iterator is open.
+	 *
+	 * @return true if the batch was queued, false if the iterator was closed
+	 */
+	private boolean offer(final List<Statement> theBatch) {
+		try {
+			while (!mClosed) {
+				if (mQueue.offer(theBatch, 100, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() {
+		while (!mDone && (mBatch == null || !mBatch.hasNext())) {
+			final List<Statement> aBatch;
+
+			try {
+				aBatch = mQueue.take();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new IllegalStateException("Interrupted while waiting for the parser", e);
+			}
+
+			if (aBatch == END) {
+				mDone = true;
+
+				if (mError != null) {
+					close();
+
+					if (mError instanceof IOException) {
+						throw new UncheckedIOException((IOException) mError);
+					}
+					else if (mError instanceof RuntimeException) {
+						throw (RuntimeException) mError;
+					}
+					else {
+						throw new RuntimeException(mError);
+					}
+				}
+			}
+			else {
+				mBatch = aBatch.iterator();
+			}
+		}
+
+		return !mDone || (mBatch != null && mBatch.hasNext());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Statement next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		return mBatch.next();
+	}
+
+	/**
+	 * Stop the parse and discard any buffered statements
+	 */
+	@Override
+	public void close() {
+		mClosed = true;
+		mDone = true;
+		mBatch = null;
+		mQueue.clear();
+	}
+
+	/**
+	 * Runs the parser over its input
+	 */
+	private interface Parse {
+		void parse() throws Exception;
+	}
+
+		private final class QueueingRDFHandler extends AbstractRDFHandler {
+		private List<Statement> mStatements = new ArrayList<>(BATCH_SIZE);
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void handleStatement(final Statement theStatement) throws RDFHandlerException {
+			mStatements.add(theStatement);
+
+			if (mStatements.size() == BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void endRDF() throws RDFHandlerException {
+			if (!mStatements.isEmpty()) {
+				flush();
+			}
+		}
+
+		private void flush() throws RDFHandlerException {
+			if (!offer(mStatements)) {
+				throw new RDFHandlerException("Statement stream was closed");
+			}
+
+			mStatements = new ArrayList<>(BATCH_SIZE);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.RDF;
+
+/**
+ * <p>The rdf:first and rdf:rest adjacency of the lists in a {@link Model}, so that a list can be walked with a hash
+ * lookup per cell rather than two {@link Model#filter filters}.  Indexes are built on first use and cached per model
+ * instance; the cache does not keep the model from being garbage collected.</p>
+ *
+ * <p>Models do not report changes, so the index is checked against the model while walking: it is rebuilt when a
+ * statement it recorded for a cell is no longer in the model, or when the model has an rdf:first or rdf:rest for a cell
+ * that the index has none for.  Only the cells of the list being walked are checked, which is all the walk depends on,
+ * and the model is never scanned or sized unless the index is rebuilt.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+final class RDFListIndex {
+
+	/**
+	 * The index of each model, keyed on the identity of the model
+	 */
+	private static final Cache<Model, RDFListIndex> INDEXES = CacheBuilder.newBuilder()
+	                                                                     .weakKeys()
+	                                                                     .build();
+
+	private final Map<Resource, Value> mFirst;
+
+	/**
+	 * The rest of each cell; any object is recorded so that a cell whose rest is not a resource is not mistaken for one
+	 * with no rest at all
+	 */
+	private final Map<Resource, Value> mRest;
+
+	private RDFListIndex(final Model theModel) {
+		mFirst = Maps.newHashMap();
+		mRest = Maps.newHashMap();
+
+		// keep the first value of each cell, as Models2.getObject would
+		for (Statement aStmt : theModel.filter(null, RDF.FIRST, null)) {
+			mFirst.putIfAbsent(aStmt.getSubject(), aStmt.getObject());
+		}
+
+		for (Statement aStmt : theModel.filter(null, RDF.REST, null)) {
+			mRest.putIfAbsent(aStmt.getSubject(), aStmt.getObject());
+		}
+	}
+
+	/**
+	 * Return an iterator over the elements of the list starting at the given cell
+	 *
+	 * @param theModel	the model containing the list
+	 * @param theHead	the head of the list
+	 * @return			the elements of the list
+	 */
+	static Iterator<Value> iterator(final Model theModel, final Resource theHead) {
+		return new ListIterator(theModel, theHead);
+	}
+
+	private static RDFListIndex of(final Model theModel, final boolean theRebuild) {
+		RDFListIndex aIndex = INDEXES.getIfPresent(theModel);
+
+		if (aIndex == null || theRebuild) {
+			aIndex = new RDFListIndex(theModel);
+			INDEXES.put(theModel, aIndex);
+		}
+
+		return aIndex;
+	}
+
+	/**
+	 * Whether the recorded first and rest of the cell are still in the model, and the cell has no first or rest in the
+	 * model where none was recorded
+	 */
+	private boolean isCurrent(final Model theModel, final Resource theCell) {
+		final Value aFirst = mFirst.get(theCell);
+		final Value aRest = mRest.get(theCell);
+
+		return (aFirst == null ? !theModel.contains(theCell, RDF.FIRST, null) : theModel.contains(theCell, RDF.FIRST, aFirst))
+		       && (aRest == null ? !theModel.contains(theCell, RDF.REST, null) : theModel.contains(theCell, RDF.REST, aRest));
+	}
+
+	/**
+	 * Walks a list through the index.  Cycles are detected by moving a second cursor through the list at half speed; if
+	 * the list loops, the two will meet.
+	 */
+	private static final class ListIterator implements Iterator<Value> {
+		private final Model mModel;
+
+		private RDFListIndex mIndex;
+
+		private Resource mCell;
+
+		private Resource mSlow;
+
+		private boolean mMoveSlow = false;
+
+		private Value mNext;
+
+		private ListIterator(final Model theModel, final Resource theHead) {
+			mModel = theModel;
+			mIndex = of(theModel, false);
+			mCell = theHead;
+			mSlow = theHead;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			// cells without an rdf:first are skipped, like Models2.asList always has
+			while (mNext == null && mCell != null) {
+				if (!mIndex.isCurrent(mModel, mCell)) {
+					mIndex = of(mModel, true);
+				}
+
+				mNext = mIndex.mFirst.get(mCell);
+
+				advance();
+			}
+
+			return mNext != null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Value next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final Value aNext = mNext;
+			mNext = null;
+
+			return aNext;
+		}
+
+		private void advance() {
+			mCell = next(mCell);
+
+			if (mMoveSlow) {
+				mSlow = next(mSlow);
+			}
+
+			mMoveSlow = !mMoveSlow;
+
+			if (mCell != null && mCell.equals(mSlow)) {
+				throw new IllegalArgumentException("The list contains a cycle at " + mCell);
+			}
+		}
+
+		private Resource next(final Resource theCell) {
+			final Value aRest = mIndex.mRest.get(theCell);
+
+			return aRest instanceof Resource && !aRest.equals(RDF.NIL) ? (Resource) aRest : null;
+		}
+	}
+}
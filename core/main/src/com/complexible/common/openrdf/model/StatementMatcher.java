@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+
+/**
+ * <p>Matches statements against a set of (subject, predicate, object, context) patterns at once.  Rather than testing
+ * each pattern in turn, as a chain of {@link Statements#matches} predicates would, the patterns are compiled into hash
+ * tables keyed on their constant predicate, and within a predicate on their constant subject or object, so only the
+ * patterns which could match a statement are checked against it.  The cost of matching a statement depends on the
+ * number of candidate patterns for it rather than the total number of patterns.</p>
+ *
+ * <p>Each pattern carries a target, such as the destination of a statement in a routing step, which is returned when
+ * the pattern matches.  As a {@link Predicate} the matcher accepts the statements that match any pattern, so it can be
+ * used to filter a {@link java.util.stream.Stream}, and {@link #filter(RDFHandler)} does the same for an
+ * {@link RDFHandler} pipeline.</p>
+ *
+ * <p>Instances are immutable and thread-safe.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class StatementMatcher<T> implements Predicate<Statement> {
+
+	private static final Comparator<Pattern<?>> ORDER = (theFirst, theSecond) -> Integer.compare(theFirst.mIndex, theSecond.mIndex);
+
+	private final Map<IRI, Bucket<T>> mByPredicate;
+
+	/**
+	 * The patterns whose predicate is a wildcard
+	 */
+	private final Bucket<T> mAnyPredicate;
+
+	private StatementMatcher(final Map<IRI, Bucket<T>> theByPredicate, final Bucket<T> theAnyPredicate) {
+		mByPredicate = theByPredicate;
+		mAnyPredicate = theAnyPredicate;
+	}
+
+	public static <T> StatementMatcherBuilder<T> builder() {
+		return new StatementMatcherBuilder<>();
+	}
+
+	/**
+	 * Return whether or not the statement matches any of the patterns
+	 *
+	 * @param theStatement	the statement
+	 * @return				true if a pattern matches, false otherwise
+	 */
+	@Override
+	public boolean test(final Statement theStatement) {
+		final Bucket<T> aBucket = mByPredicate.get(theStatement.getPredicate());
+
+		return (aBucket != null && aBucket.any(theStatement)) || mAnyPredicate.any(theStatement);
+	}
+
+	/**
+	 * Pass the target of each pattern the statement matches to the consumer.  The targets are not passed in any particular
+	 * order.
+	 *
+	 * @param theStatement	the statement
+	 * @param theConsumer	the consumer of the targets of the matching patterns
+	 */
+	public void match(final Statement theStatement, final Consumer<? super T> theConsumer) {
+		final Bucket<T> aBucket = mByPredicate.get(theStatement.getPredicate());
+
+		if (aBucket != null) {
+			aBucket.match(theStatement, thePattern -> theConsumer.accept(thePattern.mTarget));
+		}
+
+		mAnyPredicate.match(theStatement, thePattern -> theConsumer.accept(thePattern.mTarget));
+	}
+
+	/**
+	 * Return the targets of the patterns the statement matches, in the order the patterns were added to the builder
+	 *
+	 * @param theStatement	the statement
+	 * @return				the targets of the matching patterns
+	 */
+	public List<T> matches(final Statement theStatement) {
+		final List<Pattern<T>> aMatches = Lists.newArrayListWithCapacity(2);
+
+		final Bucket<T> aBucket = mByPredicate.get(theStatement.getPredicate());
+
+		if (aBucket != null) {
+			aBucket.match(theStatement, aMatches::add);
+		}
+
+		mAnyPredicate.match(theStatement, aMatches::add);
+
+		if (aMatches.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		aMatches.sort(ORDER);
+
+		return Lists.transform(aMatches, thePattern -> thePattern.mTarget);
+	}
+
+	/**
+	 * Return a handler which passes the statements that match any of the patterns on to the given handler and drops
+	 * the rest.  Namespaces and comments are passed on as-is.
+	 *
+	 * @param theHandler	the handler to receive the matching statements
+	 * @return				the filtering handler
+	 */
+	public RDFHandler filter(final RDFHandler theHandler) {
+		return new RDFHandlerWrapper(theHandler) {
+			@Override
+			public void handleStatement(final Statement theStatement) throws RDFHandlerException {
+				if (test(theStatement)) {
+					super.handleStatement(theStatement);
+				}
+			}
+		};
+	}
+
+	/**
+	 * The patterns with the same predicate.  Patterns with a constant subject are hashed on it; of the rest, those with a
+	 * constant object are hashed on the object, and what is left must be checked against every statement.
+	 */
+	private static final class Bucket<T> {
+		private static final Pattern<?>[] NONE = new Pattern<?>[0];
+
+		private final Map<Value, Pattern<T>[]> mBySubject;
+
+		private final Map<Value, Pattern<T>[]> mByObject;
+
+		private final Pattern<T>[] mOthers;
+
+		private Bucket(final Map<Value, Pattern<T>[]> theBySubject, final Map<Value, Pattern<T>[]> theByObject,
+		               final Pattern<T>[] theOthers) {
+			mBySubject = theBySubject;
+			mByObject = theByObject;
+			mOthers = theOthers;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> Bucket<T> of(final List<Pattern<T>> thePatterns) {
+			final Map<Value, List<Pattern<T>>> aBySubject = Maps.newHashMap();
+			final Map<Value, List<Pattern<T>>> aByObject = Maps.newHashMap();
+			final List<Pattern<T>> aOthers = Lists.newArrayList();
+
+			for (Pattern<T> aPattern : thePatterns) {
+				if (aPattern.mSubj != null) {
+					aBySubject.computeIfAbsent(aPattern.mSubj, theKey -> Lists.newArrayList()).add(aPattern);
+				}
+				else if (aPattern.mObj != null) {
+					aByObject.computeIfAbsent(aPattern.mObj, theKey -> Lists.newArrayList()).add(aPattern);
+				}
+				else {
+					aOthers.add(aPattern);
+				}
+			}
+
+			return new Bucket<>(toArrays(aBySubject), toArrays(aByObject), (Pattern<T>[]) aOthers.toArray(NONE));
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> Map<Value, Pattern<T>[]> toArrays(final Map<Value, List<Pattern<T>>> theMap) {
+			if (theMap.isEmpty()) {
+				return Collections.emptyMap();
+			}
+
+			final ImmutableMap.Builder<Value, Pattern<T>[]> aMap = ImmutableMap.builder();
+
+			theMap.forEach((theKey, thePatterns) -> aMap.put(theKey, (Pattern<T>[]) thePatterns.toArray(NONE)));
+
+			return aMap.build();
+		}
+
+		private boolean any(final Statement theStatement) {
+			return any(mBySubject.get(theStatement.getSubject()), theStatement)
+			       || any(mByObject.get(theStatement.getObject()), theStatement)
+			       || any(mOthers, theStatement);
+		}
+
+		private void match(final Statement theStatement, final Consumer<Pattern<T>> theConsumer) {
+			match(mBySubject.get(theStatement.getSubject()), theStatement, theConsumer);
+			match(mByObject.get(theStatement.getObject()), theStatement, theConsumer);
+			match(mOthers, theStatement, theConsumer);
+		}
+
+		private static boolean any(final Pattern<?>[] thePatterns, final Statement theStatement) {
+			if (thePatterns != null) {
+				for (Pattern<?> aPattern : thePatterns) {
+					if (aPattern.test(theStatement)) {
+						return true;
+					}
+				}
+			}
+
+			return false;
+		}
+
+		private static <T> void match(final Pattern<T>[] thePatterns, final Statement theStatement,
+		                              final Consumer<Pattern<T>> theConsumer) {
+			if (thePatterns != null) {
+				for (Pattern<T> aPattern : thePatterns) {
+					if (aPattern.test(theStatement)) {
+						theConsumer.accept(aPattern);
+					}
+				}
+			}
+		}
+	}
+
+	private static final class Pattern<T> {
+		private final int mIndex;
+
+		private final Resource mSubj;
+		private final IRI mPred;
+		private final Value mObj;
+
+		/**
+		 * The contexts the statement must be in, or null for any context
+		 */
+		private final Resource[] mContexts;
+
+		private final T mTarget;
+
+		private Pattern(final int theIndex, final Resource theSubj, final IRI thePred, final Value theObj,
+		                final Resource[] theContexts, final T theTarget) {
+			mIndex = theIndex;
+			mSubj = theSubj;
+			mPred = thePred;
+			mObj = theObj;
+			mContexts = theContexts == null || theContexts.length == 0 ? null : theContexts.clone();
+			mTarget = theTarget;
+		}
+
+		/**
+		 * Check the positions of the statement against the pattern.  The position the pattern was hashed on has already
+		 * been matched, but checking it again is cheaper than specializing the check for each position.
+		 */
+		private boolean test(final Statement theStatement) {
+			if ((mSubj != null && !mSubj.equals(theStatement.getSubject()))
+			    || (mPred != null && !mPred.equals(theStatement.getPredicate()))
+			    || (mObj != null && !mObj.equals(theStatement.getObject()))) {
+				return false;
+			}
+
+			if (mContexts == null) {
+				return true;
+			}
+
+			final Resource aContext = theStatement.getContext();
+
+			for (Resource aCxt : mContexts) {
+				if (aCxt == null ? aContext == null : aCxt.equals(aContext)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	public static final class StatementMatcherBuilder<T> {
+		private final List<Pattern<T>> mPatterns = Lists.newArrayList();
+
+		private StatementMatcherBuilder() {
+		}
+
+		/**
+		 * Add a pattern.  Null values for the subject, predicate or object are wildcards.  As with
+		 * {@link Statements#matches}, no contexts means any context, and a null context means the default context.
+		 *
+		 * @param theTarget		the target returned when a statement matches the pattern
+		 * @param theSubj		the subject of the pattern, or null
+		 * @param thePred		the predicate of the pattern, or null
+		 * @param theObj		the object of the pattern, or null
+		 * @param theContexts	the contexts of the pattern
+		 * @return				this builder
+		 */
+		public StatementMatcherBuilder<T> pattern(final T theTarget, final Resource theSubj, final IRI thePred,
+		                                          final Value theObj, final Resource... theContexts) {
+			mPatterns.add(new Pattern<>(mPatterns.size(), theSubj, thePred, theObj, theContexts, theTarget));
+			return this;
+		}
+
+		public StatementMatcher<T> build() {
+			final Map<IRI, List<Pattern<T>>> aByPredicate = Maps.newHashMap();
+			final List<Pattern<T>> aAnyPredicate = Lists.newArrayList();
+
+			for (Pattern<T> aPattern : mPatterns) {
+				if (aPattern.mPred != null) {
+					aByPredicate.computeIfAbsent(aPattern.mPred, theKey -> Lists.newArrayList()).add(aPattern);
+				}
+				else {
+					aAnyPredicate.add(aPattern);
+				}
+			}
+
+			final ImmutableMap.Builder<IRI, Bucket<T>> aBuckets = ImmutableMap.builder();
+
+			aByPredicate.forEach((thePred, thePatterns) -> aBuckets.put(thePred, Bucket.of(thePatterns)));
+
+			return new StatementMatcher<>(aBuckets.build(), Bucket.of(aAnyPredicate));
+		}
+	}
+}
@@ -15,11 +15,14 @@
 
 package com.complexible.common.openrdf.model;
 
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
+import com.google.common.collect.ImmutableMap;
 import org.openrdf.model.IRI;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
@@ -36,10 +39,26 @@ import org.openrdf.rio.turtle.TurtleUtil;
  *
  * @author  Michael Grove
  * @since	0.4.1
- * @version	4.0
+ * @version	4.1
  */
 public final class Statements {
 
+	/**
+	 * Parses the value of a literal of each of the datatypes which are validated by {@link #isLiteralValid}, throwing
+	 * if the label is not valid for the datatype
+	 */
+	private static final Map<IRI, Consumer<Literal>> DATATYPE_VALIDATORS = ImmutableMap.<IRI, Consumer<Literal>>builder()
+		.put(XMLSchema.DATETIME, Literal::calendarValue)
+		.put(XMLSchema.INT, Literal::intValue)
+		.put(XMLSchema.FLOAT, Literal::floatValue)
+		.put(XMLSchema.LONG, Literal::longValue)
+		.put(XMLSchema.DOUBLE, Literal::doubleValue)
+		.put(XMLSchema.SHORT, Literal::shortValue)
+		.put(XMLSchema.BOOLEAN, Literal::booleanValue)
+		.put(XMLSchema.BYTE, Literal::byteValue)
+		.put(XMLSchema.DECIMAL, Literal::decimalValue)
+		.build();
+
 	/**
 	 * No instances
 	 */
@@ -92,6 +111,17 @@ public final class Statements {
 		};
 	}
 
+	/**
+	 * Return a predicate which matches statements against the pattern.  Null values for the subject, predicate or object
+	 * are wildcards; no contexts matches any context, and a null context matches the default context.  To match
+	 * statements against many patterns, compile them with a {@link StatementMatcher} instead.
+	 *
+	 * @param theSubject	the subject, or null
+	 * @param thePredicate	the predicate, or null
+	 * @param theObject		the object, or null
+	 * @param theContexts	the contexts
+	 * @return				the predicate
+	 */
 	public static Predicate<Statement> matches(final Resource theSubject, final IRI thePredicate, final Value theObject,
 	                                           final Resource... theContexts) {
 		return theStatement -> {
@@ -180,37 +210,11 @@ public final class Statements {
 		}
 
 		// TODO: all datatypes?  all variations?
-		if (theLiteral.getDatatype() != null && theLiteral.getDatatype().getNamespace().equals(XMLSchema.NAMESPACE)) {
-			final String aTypeName = theLiteral.getDatatype().getLocalName();
+		final Consumer<Literal> aValidator = theLiteral.getDatatype() == null ? null : DATATYPE_VALIDATORS.get(theLiteral.getDatatype());
 
+		if (aValidator != null) {
 			try {
-				if (aTypeName.equals(XMLSchema.DATETIME.getLocalName())) {
-					theLiteral.calendarValue();
-				}
-				else if (aTypeName.equals(XMLSchema.INT.getLocalName())) {
-					theLiteral.intValue();
-				}
-				else if (aTypeName.equals(XMLSchema.FLOAT.getLocalName())) {
-					theLiteral.floatValue();
-				}
-				else if (aTypeName.equals(XMLSchema.LONG.getLocalName())) {
-					theLiteral.longValue();
-				}
-				else if (aTypeName.equals(XMLSchema.DOUBLE.getLocalName())) {
-					theLiteral.doubleValue();
-				}
-				else if (aTypeName.equals(XMLSchema.SHORT.getLocalName())) {
-					theLiteral.shortValue();
-				}
-				else if (aTypeName.equals(XMLSchema.BOOLEAN.getLocalName())) {
-					theLiteral.booleanValue();
-				}
-				else if (aTypeName.equals(XMLSchema.BYTE.getLocalName())) {
-					theLiteral.byteValue();
-				}
-				else if (aTypeName.equals(XMLSchema.DECIMAL.getLocalName())) {
-					theLiteral.decimalValue();
-				}
+				aValidator.accept(theLiteral);
 			}
 			catch (Exception e) {
 				return false;
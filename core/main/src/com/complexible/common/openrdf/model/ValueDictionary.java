@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+import org.openrdf.model.Value;
+
+/**
+ * <p>Dictionary which maps {@link Value values} to dense, positive integer ids.  Ids are assigned sequentially starting at
+ * {@code 1}; {@link #NO_ID 0} is reserved to mean "no value", which is how the default context is encoded.  Values are
+ * never removed from the dictionary short of {@link #clear() clearing} it, so an id, once assigned, is stable.</p>
+ *
+ * <p>Lookups use an open-addressing table of ids rather than a {@code Map<Value, Integer>} so the only per-value
+ * overhead is the value itself plus a couple of array slots.</p>
+ *
+ * <p>This is public so that structures outside this package which store values as ids, such as
+ * {@link com.complexible.common.openrdf.query.ColumnarTupleResult}, can share it; it is not meant as a general purpose
+ * collection.  An id is only meaningful to the dictionary which assigned it.  The dictionary is not thread-safe; it must
+ * be confined to one thread, or guarded by its owner, while values are being interned.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class ValueDictionary implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The id used for the absence of a value
+	 */
+	public static final int NO_ID = 0;
+
+	private static final float LOAD_FACTOR = 0.7f;
+
+	/**
+	 * The values, indexed by their id
+	 */
+	private Value[] mValues;
+
+	/**
+	 * Open-addressing hash table whose slots hold value ids, or {@link #NO_ID} for an empty slot
+	 */
+	private int[] mTable;
+
+	private int mSize;
+
+	/**
+	 * Create a new, empty, dictionary
+	 */
+	public ValueDictionary() {
+		this(16);
+	}
+
+	/**
+	 * Create a new, empty, dictionary sized to hold the given number of values without resizing
+	 *
+	 * @param theExpectedSize	the expected number of values
+	 *
+	 * @throws IllegalArgumentException	if the size is negative
+	 */
+	public ValueDictionary(final int theExpectedSize) {
+		Preconditions.checkArgument(theExpectedSize >= 0, "Expected size cannot be negative");
+
+		mValues = new Value[Math.max(theExpectedSize, 16) + 1];
+		mTable = new int[tableSizeFor(theExpectedSize)];
+	}
+
+	/**
+	 * Return the number of values in the dictionary
+	 * @return	the number of values
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Return the id of the given value
+	 *
+	 * @param theValue	the value
+	 * @return			the id of the value, or {@link #NO_ID} if the value is null or not in the dictionary
+	 */
+	public int id(final Value theValue) {
+		if (theValue == null) {
+			return NO_ID;
+		}
+
+		final int aMask = mTable.length - 1;
+
+		for (int aSlot = hash(theValue) & aMask; mTable[aSlot] != NO_ID; aSlot = (aSlot + 1) & aMask) {
+			if (mValues[mTable[aSlot]].equals(theValue)) {
+				return mTable[aSlot];
+			}
+		}
+
+		return NO_ID;
+	}
+
+	/**
+	 * Return the id of the given value, adding it to the dictionary if it is not already present
+	 *
+	 * @param theValue	the value
+	 * @return			the id of the value, or {@link #NO_ID} if the value is null
+	 */
+	public int intern(final Value theValue) {
+		if (theValue == null) {
+			return NO_ID;
+		}
+
+		int aMask = mTable.length - 1;
+		int aSlot = hash(theValue) & aMask;
+
+		for (; mTable[aSlot] != NO_ID; aSlot = (aSlot + 1) & aMask) {
+			if (mValues[mTable[aSlot]].equals(theValue)) {
+				return mTable[aSlot];
+			}
+		}
+
+		final int aId = ++mSize;
+
+		if (aId == mValues.length) {
+			mValues = Arrays.copyOf(mValues, mValues.length + (mValues.length >> 1));
+		}
+
+		mValues[aId] = theValue;
+
+		if (mSize > mTable.length * LOAD_FACTOR) {
+			rehash(mTable.length << 1);
+		}
+		else {
+			mTable[aSlot] = aId;
+		}
+
+		return aId;
+	}
+
+	/**
+	 * Return the value with the given id
+	 *
+	 * @param theId	the id, {@link #NO_ID} or an id assigned by this dictionary
+	 * @return		the value, or null if the id is {@link #NO_ID}
+	 *
+	 * @throws IllegalArgumentException	if the id was not assigned by this dictionary
+	 */
+	public Value value(final int theId) {
+		if (theId < 0 || theId > mSize) {
+			// not Preconditions, its message arguments would box the id on every call
+			throw new IllegalArgumentException("No value with id " + theId);
+		}
+
+		return mValues[theId];
+	}
+
+	/**
+	 * Remove all values from the dictionary; previously assigned ids are no longer valid.
+	 */
+	void clear() {
+		mValues = new Value[17];
+		mTable = new int[tableSizeFor(16)];
+		mSize = 0;
+	}
+
+	private void rehash(final int theTableSize) {
+		final int[] aTable = new int[theTableSize];
+		final int aMask = theTableSize - 1;
+
+		for (int aId = 1; aId <= mSize; aId++) {
+			int aSlot = hash(mValues[aId]) & aMask;
+
+			while (aTable[aSlot] != NO_ID) {
+				aSlot = (aSlot + 1) & aMask;
+			}
+
+			aTable[aSlot] = aId;
+		}
+
+		mTable = aTable;
+	}
+
+	private static int tableSizeFor(final int theExpectedSize) {
+		int aSize = 16;
+
+		while (aSize * LOAD_FACTOR < theExpectedSize) {
+			aSize <<= 1;
+		}
+
+		return aSize;
+	}
+
+	static int hash(final Object theObj) {
+		return hash(theObj.hashCode());
+	}
+
+	/**
+	 * Spread the bits of a hash code so that the low bits used to pick a slot depend on all of them
+	 */
+	static int hash(final int theHashCode) {
+		final int aHash = theHashCode * 0x9E3779B9;
+		return aHash ^ (aHash >>> 16);
+	}
+}
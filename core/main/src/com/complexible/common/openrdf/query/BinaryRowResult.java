@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+
+/**
+ * <p>A compact binary serialization of tuple query results, written by {@link BinaryRowResultWriter} and read by
+ * {@link BinaryRowResultParser}.  IRIs are written once and assigned an integer id which subsequent occurrences refer
+ * to; the table of ids is bounded and is reset by the writer when it fills so that neither side holds every IRI of a
+ * large result in memory.</p>
+ *
+ * <p>The format is registered with the query result IO registries, so
+ * {@link org.openrdf.query.resultio.QueryResultIO#createTupleParser(org.openrdf.query.resultio.QueryResultFormat)} and
+ * {@link org.openrdf.query.resultio.QueryResultIO#createTupleWriter(org.openrdf.query.resultio.QueryResultFormat, java.io.OutputStream)}
+ * can be used with {@link #FORMAT}.</p>
+ *
+ * <p>Layout of a result:</p>
+ * <pre>
+ * header:  int magic, byte version, varint count, string name*
+ * body:    (ROW value*)*, END
+ * value:   RESET value
+ *          UNBOUND
+ *          REF        varint id
+ *          IRI        string
+ *          BNODE      string
+ *          LITERAL    string label, value datatype
+ *          LANG       string label, string language
+ * </pre>
+ *
+ * <p>Strings are a varint length followed by UTF-8 bytes.  Each row has one value per binding name.  IRI records take
+ * the next id, starting at 1.  RESET clears the ids before the value which follows it; the next IRI takes the id 1
+ * again.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class BinaryRowResult {
+
+	/**
+	 * The tuple query result format of binary row results
+	 */
+	public static final TupleQueryResultFormat FORMAT = new TupleQueryResultFormat("Binary Row Results",
+	                                                                               "application/x-binary-rdf-results-rows",
+	                                                                               "brr");
+
+	static final int MAGIC = 0x43505252;
+
+	static final int VERSION = 1;
+
+	static final int END = 0;
+	static final int ROW = 1;
+	static final int RESET = 2;
+	static final int UNBOUND = 3;
+	static final int REF = 4;
+	static final int IRI = 5;
+	static final int BNODE = 6;
+	static final int LITERAL = 7;
+	static final int LANG_LITERAL = 8;
+
+	private BinaryRowResult() {
+		throw new AssertionError();
+	}
+}
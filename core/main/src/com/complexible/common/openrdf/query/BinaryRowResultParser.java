@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openrdf.model.IRI;
+import org.openrdf.model.Value;
+import org.openrdf.query.QueryResultHandlerException;
+import org.openrdf.query.TupleQueryResultHandlerException;
+import org.openrdf.query.impl.ListBindingSet;
+import org.openrdf.query.resultio.AbstractTupleQueryResultParser;
+import org.openrdf.query.resultio.QueryResultParseException;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+
+/**
+ * <p>{@link org.openrdf.query.resultio.TupleQueryResultParser} for the {@link BinaryRowResult binary row} format.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class BinaryRowResultParser extends AbstractTupleQueryResultParser {
+	private IRI[] mIRIs = new IRI[1024];
+
+	private int mSize;
+
+	private InputStream mStream;
+
+	private byte[] mBuffer = new byte[256];
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public TupleQueryResultFormat getTupleQueryResultFormat() {
+		return BinaryRowResult.FORMAT;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Deprecated
+	public void parse(final InputStream theStream) throws IOException, QueryResultParseException, TupleQueryResultHandlerException {
+		try {
+			parseQueryResult(theStream);
+		}
+		catch (TupleQueryResultHandlerException e) {
+			throw e;
+		}
+		catch (QueryResultHandlerException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void parseQueryResult(final InputStream theStream) throws IOException, QueryResultParseException, QueryResultHandlerException {
+		if (handler == null) {
+			throw new IllegalStateException("No TupleQueryResultHandler has been set");
+		}
+
+		mStream = new BufferedInputStream(theStream, 1 << 16);
+		mSize = 0;
+
+		try {
+			final int aMagic;
+			final int aVersion;
+
+			try {
+				aMagic = (read() << 24) | (read() << 16) | (read() << 8) | read();
+				aVersion = read();
+			}
+			catch (EOFException e) {
+				// empty, or too short to hold the header
+				throw new QueryResultParseException("Not a binary row result");
+			}
+
+			if (aMagic != BinaryRowResult.MAGIC) {
+				throw new QueryResultParseException("Not a binary row result");
+			}
+
+			if (aVersion != BinaryRowResult.VERSION) {
+				throw new QueryResultParseException("Unsupported binary row result version: " + aVersion);
+			}
+
+			final int aCount = readVarInt();
+			final List<String> aNames = new ArrayList<>(aCount);
+
+			for (int i = 0; i < aCount; i++) {
+				aNames.add(readString());
+			}
+
+			handler.startQueryResult(aNames);
+
+			int aRecord;
+			while ((aRecord = read()) != BinaryRowResult.END) {
+				if (aRecord != BinaryRowResult.ROW) {
+					throw new QueryResultParseException("Invalid record type in binary row result: " + aRecord);
+				}
+
+				final Value[] aValues = new Value[aCount];
+
+				for (int i = 0; i < aCount; i++) {
+					aValues[i] = readValue();
+				}
+
+				handler.handleSolution(new ListBindingSet(aNames, aValues));
+			}
+
+			handler.endQueryResult();
+		}
+		catch (EOFException e) {
+			throw new QueryResultParseException("Unexpected end of binary row result");
+		}
+		finally {
+			mStream = null;
+			mIRIs = new IRI[1024];
+			mSize = 0;
+		}
+	}
+
+	/**
+	 * Read a value, returning null for an unbound value
+	 */
+	private Value readValue() throws IOException, QueryResultParseException {
+		final int aRecord = read();
+
+		switch (aRecord) {
+			case BinaryRowResult.RESET:
+				mSize = 0;
+				return readValue();
+			case BinaryRowResult.UNBOUND:
+				return null;
+			case BinaryRowResult.REF: {
+				final int aId = readVarInt();
+
+				if (aId < 1 || aId > mSize) {
+					throw new QueryResultParseException("Invalid IRI id in binary row result: " + aId);
+				}
+
+				return mIRIs[aId];
+			}
+			case BinaryRowResult.IRI: {
+				final IRI aIRI = valueFactory.createIRI(readString());
+
+				if (mSize + 1 == mIRIs.length) {
+					mIRIs = Arrays.copyOf(mIRIs, mIRIs.length * 2);
+				}
+
+				// ids start at one
+				mIRIs[++mSize] = aIRI;
+
+				return aIRI;
+			}
+			case BinaryRowResult.BNODE:
+				return valueFactory.createBNode(readString());
+			case BinaryRowResult.LITERAL: {
+				final String aLabel = readString();
+				final Value aDatatype = readValue();
+
+				if (!(aDatatype instanceof IRI)) {
+					throw new QueryResultParseException("Literal datatype is not an IRI in binary row result");
+				}
+
+				return valueFactory.createLiteral(aLabel, (IRI) aDatatype);
+			}
+			case BinaryRowResult.LANG_LITERAL: {
+				final String aLabel = readString();
+
+				return valueFactory.createLiteral(aLabel, readString());
+			}
+			default:
+				throw new QueryResultParseException("Invalid value type in binary row result: " + aRecord);
+		}
+	}
+
+	private int read() throws IOException {
+		final int aByte = mStream.read();
+
+		if (aByte == -1) {
+			throw new EOFException();
+		}
+
+		return aByte;
+	}
+
+	private int readVarInt() throws IOException {
+		int aValue = 0;
+
+		for (int aShift = 0; aShift < 32; aShift += 7) {
+			final int aByte = read();
+
+			aValue |= (aByte & 0x7F) << aShift;
+
+			if ((aByte & 0x80) == 0) {
+				return aValue;
+			}
+		}
+
+		throw new IOException("Malformed varint");
+	}
+
+	private String readString() throws IOException, QueryResultParseException {
+		final int aLength = readVarInt();
+
+		if (aLength < 0) {
+			throw new QueryResultParseException("Invalid string length in binary row result: " + aLength);
+		}
+
+		if (aLength > mBuffer.length) {
+			mBuffer = new byte[Math.max(aLength, mBuffer.length * 2)];
+		}
+
+		int aRead = 0;
+
+		while (aRead < aLength) {
+			final int aCount = mStream.read(mBuffer, aRead, aLength - aRead);
+
+			if (aCount == -1) {
+				throw new EOFException();
+			}
+
+			aRead += aCount;
+		}
+
+		return new String(mBuffer, 0, aLength, StandardCharsets.UTF_8);
+	}
+}
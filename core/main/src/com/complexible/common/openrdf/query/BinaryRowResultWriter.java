@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+
+/**
+ * <p>{@link StreamingTupleResultWriter} for the {@link BinaryRowResult binary row} format.  Rather than caching the
+ * encoded bytes of an IRI, the writer assigns each IRI an id the first time it is written and writes only the id after
+ * that.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class BinaryRowResultWriter extends StreamingTupleResultWriter {
+	private final Map<IRI, Integer> mIds = new HashMap<>();
+
+	public BinaryRowResultWriter(final OutputStream theStream) {
+		this(new OutputBuffer(theStream));
+	}
+
+	public BinaryRowResultWriter(final WritableByteChannel theChannel) {
+		this(new OutputBuffer(theChannel));
+	}
+
+	public BinaryRowResultWriter(final OutputBuffer theOut) {
+		super(BinaryRowResult.FORMAT, theOut);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeHeader(final List<String> theBindingNames) throws IOException {
+		final OutputBuffer aOut = getOutput();
+
+		mIds.clear();
+
+		aOut.writeInt(BinaryRowResult.MAGIC);
+		aOut.write(BinaryRowResult.VERSION);
+		aOut.writeVarInt(theBindingNames.size());
+
+		for (String aName : theBindingNames) {
+			aOut.writeString(aName);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeSolution(final BindingSet theBindings) throws IOException {
+		final OutputBuffer aOut = getOutput();
+
+		aOut.write(BinaryRowResult.ROW);
+
+		for (String aName : getBindingNames()) {
+			final Value aValue = theBindings.getValue(aName);
+
+			if (aValue == null) {
+				aOut.write(BinaryRowResult.UNBOUND);
+			}
+			else {
+				writeValue(aValue);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeFooter() throws IOException {
+		getOutput().write(BinaryRowResult.END);
+
+		mIds.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeValue(final Value theValue, final OutputBuffer theOut) throws IOException {
+		if (!(theValue instanceof IRI)) {
+			encode(theValue, theOut);
+			return;
+		}
+
+		final Integer aId = mIds.get(theValue);
+
+		if (aId != null) {
+			theOut.write(BinaryRowResult.REF);
+			theOut.writeVarInt(aId);
+			return;
+		}
+
+		if (mIds.size() == getCacheSize()) {
+			theOut.write(BinaryRowResult.RESET);
+			mIds.clear();
+		}
+
+		theOut.write(BinaryRowResult.IRI);
+		theOut.writeString(theValue.stringValue());
+
+		mIds.put((IRI) theValue, mIds.size() + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void encode(final Value theValue, final OutputBuffer theOut) throws IOException {
+		if (theValue instanceof IRI) {
+			writeValue(theValue, theOut);
+		}
+		else if (theValue instanceof BNode) {
+			theOut.write(BinaryRowResult.BNODE);
+			theOut.writeString(((BNode) theValue).getID());
+		}
+		else {
+			final Literal aLiteral = (Literal) theValue;
+
+			if (aLiteral.getLanguage().isPresent()) {
+				theOut.write(BinaryRowResult.LANG_LITERAL);
+				theOut.writeString(aLiteral.getLabel());
+				theOut.writeString(aLiteral.getLanguage().get());
+			}
+			else {
+				theOut.write(BinaryRowResult.LITERAL);
+				theOut.writeString(aLiteral.getLabel());
+				writeValue(aLiteral.getDatatype(), theOut);
+			}
+		}
+	}
+}
@@ -0,0 +1,593 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+
+import com.complexible.common.openrdf.model.ValueDictionary;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.openrdf.model.Value;
+import org.openrdf.model.util.LexicalValueComparator;
+import org.openrdf.query.Binding;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.IteratingTupleQueryResult;
+import org.openrdf.query.impl.SimpleBinding;
+
+/**
+ * <p>A materialized tuple result stored by column.  The binding names are kept once for the whole result, values are
+ * kept once in a {@link ValueDictionary}, and each variable is a column of {@code int} ids with
+ * {@link ValueDictionary#NO_ID} for an unbound value.  A row costs four bytes per variable plus whatever distinct values
+ * it introduces, rather than a {@link BindingSet}, a list and a binding per value as with {@link ImmutableBindingSet}
+ * or {@link org.openrdf.query.impl.ListBindingSet}.</p>
+ *
+ * <p>Rows are read as lightweight {@link BindingSet} views, either one per row through {@link #get(int)} and
+ * {@link #iterator()}, or through a single reused view with {@link #scan}, which allocates nothing per row.  Values can
+ * also be read directly with {@link #getValue(int, int)}.  The result is immutable once built and can be read from
+ * several threads; {@link #sort sorting} returns a new result which shares the dictionary.</p>
+ *
+ * <p>Bindings for names which are not in the header given to the {@link #builder builder} are dropped.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class ColumnarTupleResult implements Iterable<BindingSet>, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final Comparator<Value> LEXICAL = new LexicalValueComparator();
+
+	private final ImmutableList<String> mNames;
+
+	private final ImmutableSet<String> mNameSet;
+
+	private final ValueDictionary mDictionary;
+
+	/**
+	 * The columns of value ids, one per binding name, each exactly {@link #mSize} long
+	 */
+	private final int[][] mColumns;
+
+	private final int mSize;
+
+	private ColumnarTupleResult(final ImmutableList<String> theNames, final ValueDictionary theDictionary,
+	                            final int[][] theColumns, final int theSize) {
+		mNames = theNames;
+		mNameSet = ImmutableSet.copyOf(theNames);
+		mDictionary = theDictionary;
+		mColumns = theColumns;
+		mSize = theSize;
+	}
+
+	/**
+	 * Read all of the result into a new columnar result.  The result is closed.
+	 *
+	 * @param theResult	the result to read
+	 * @return			the materialized result
+	 *
+	 * @throws QueryEvaluationException	if there is an error reading the result
+	 */
+	public static ColumnarTupleResult of(final TupleQueryResult theResult) throws QueryEvaluationException {
+		try {
+			final ColumnarTupleResultBuilder aBuilder = builder(theResult.getBindingNames());
+
+			while (theResult.hasNext()) {
+				aBuilder.add(theResult.next());
+			}
+
+			return aBuilder.build();
+		}
+		finally {
+			theResult.close();
+		}
+	}
+
+	/**
+	 * Create a builder for a result with the given binding names
+	 *
+	 * @param theNames	the binding names, in column order
+	 * @return			the builder
+	 */
+	public static ColumnarTupleResultBuilder builder(final List<String> theNames) {
+		return new ColumnarTupleResultBuilder(theNames);
+	}
+
+	/**
+	 * Return a {@link Collector} of binding sets into a columnar result.  Parallel streams are supported; partial
+	 * results are merged by re-encoding the values of one into the dictionary of the other.
+	 *
+	 * @param theNames	the binding names, in column order
+	 * @return			the collector
+	 */
+	public static Collector<BindingSet, ?, ColumnarTupleResult> collector(final List<String> theNames) {
+		return Collector.of(() -> builder(theNames),
+		                    ColumnarTupleResultBuilder::add,
+		                    ColumnarTupleResultBuilder::addAll,
+		                    ColumnarTupleResultBuilder::build);
+	}
+
+	/**
+	 * Return the binding names of the result, in column order
+	 *
+	 * @return	the binding names
+	 */
+	public List<String> getBindingNames() {
+		return mNames;
+	}
+
+	/**
+	 * Return the number of rows
+	 *
+	 * @return	the number of rows
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	public boolean isEmpty() {
+		return mSize == 0;
+	}
+
+	/**
+	 * Return the column of the binding name
+	 *
+	 * @param theName	the binding name
+	 * @return			the index of the column, or -1 if the name is not a binding name of this result
+	 */
+	public int column(final String theName) {
+		return mNames.indexOf(theName);
+	}
+
+	/**
+	 * Return the value in the given row and column
+	 *
+	 * @param theRow	the row
+	 * @param theColumn	the column
+	 * @return			the value, or null if the variable is unbound in the row
+	 *
+	 * @throws IndexOutOfBoundsException if the row or column does not exist
+	 */
+	public Value getValue(final int theRow, final int theColumn) {
+		Preconditions.checkElementIndex(theRow, mSize);
+
+		return mDictionary.value(mColumns[theColumn][theRow]);
+	}
+
+	/**
+	 * Return the value of the binding in the given row
+	 *
+	 * @param theRow	the row
+	 * @param theName	the binding name
+	 * @return			the value, or null if the variable is unbound in the row or is not a binding name of this result
+	 *
+	 * @throws IndexOutOfBoundsException if the row does not exist
+	 */
+	public Value getValue(final int theRow, final String theName) {
+		final int aColumn = column(theName);
+
+		Preconditions.checkElementIndex(theRow, mSize);
+
+		return aColumn == -1 ? null : mDictionary.value(mColumns[aColumn][theRow]);
+	}
+
+	/**
+	 * Return a view of the given row.  The view holds a reference to this result, not a copy of the row.
+	 *
+	 * @param theRow	the row
+	 * @return			the row
+	 *
+	 * @throws IndexOutOfBoundsException if the row does not exist
+	 */
+	public BindingSet get(final int theRow) {
+		Preconditions.checkElementIndex(theRow, mSize);
+
+		return new Row(theRow);
+	}
+
+	/**
+	 * Return an iterator over views of the rows; each row is a distinct view that may be kept
+	 *
+	 * @return	the iterator
+	 */
+	@Override
+	public Iterator<BindingSet> iterator() {
+		return new Iterator<BindingSet>() {
+			private int mRow = 0;
+
+			@Override
+			public boolean hasNext() {
+				return mRow < mSize;
+			}
+
+			@Override
+			public BindingSet next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				return new Row(mRow++);
+			}
+		};
+	}
+
+	/**
+	 * Pass every row, in order, to the consumer using a single view which is moved from row to row, so no objects are
+	 * allocated per row.  The view is only valid during the call to the consumer and must not be kept; use
+	 * {@link #get(int)} or {@link #iterator()} for rows that are kept.
+	 *
+	 * @param theConsumer	the consumer
+	 */
+	public void scan(final Consumer<? super BindingSet> theConsumer) {
+		final Row aRow = new Row(0);
+
+		for (int i = 0; i < mSize; i++) {
+			aRow.mRow = i;
+			theConsumer.accept(aRow);
+		}
+	}
+
+	/**
+	 * Return a new {@link TupleQueryResult} over the rows of this result, which may be read any number of times.
+	 *
+	 * @return	the query result
+	 */
+	public TupleQueryResult asTupleQueryResult() {
+		return new IteratingTupleQueryResult(mNames, iterator());
+	}
+
+	/**
+	 * Return a copy of this result sorted by the values of the binding in ascending {@link LexicalValueComparator
+	 * lexical} order, unbound values first
+	 *
+	 * @param theName	the binding name to sort by
+	 * @return			the sorted result
+	 *
+	 * @see #sort(String, Comparator)
+	 */
+	public ColumnarTupleResult sort(final String theName) {
+		return sort(theName, LEXICAL);
+	}
+
+	/**
+	 * Return a copy of this result sorted by the values of the binding, unbound values first.  The sort is stable, so
+	 * results can be sorted by several variables by sorting by the least significant one first.  Each distinct value
+	 * is compared once to rank it, and the rows are then sorted by rank without comparing values, so sorting is cheap
+	 * when many rows share a value.
+	 *
+	 * @param theName		the binding name to sort by
+	 * @param theComparator	the order of the values
+	 * @return				the sorted result, which shares the dictionary of this result
+	 *
+	 * @throws IllegalArgumentException if the name is not a binding name of this result
+	 */
+	public ColumnarTupleResult sort(final String theName, final Comparator<? super Value> theComparator) {
+		final int aColumn = column(theName);
+
+		Preconditions.checkArgument(aColumn != -1, "%s is not a binding name of the result", theName);
+
+		final int[] aIds = mColumns[aColumn];
+
+		// rank the distinct ids of the column by their values
+		final boolean[] aPresent = new boolean[mDictionary.size() + 1];
+		int aDistinct = 0;
+
+		for (int i = 0; i < mSize; i++) {
+			if (aIds[i] != ValueDictionary.NO_ID && !aPresent[aIds[i]]) {
+				aPresent[aIds[i]] = true;
+				aDistinct++;
+			}
+		}
+
+		final Integer[] aSorted = new Integer[aDistinct];
+		for (int aId = 1, aIndex = 0; aId < aPresent.length; aId++) {
+			if (aPresent[aId]) {
+				aSorted[aIndex++] = aId;
+			}
+		}
+
+		Arrays.sort(aSorted, (theFirst, theSecond) -> theComparator.compare(mDictionary.value(theFirst),
+		                                                                    mDictionary.value(theSecond)));
+
+		final int[] aRank = new int[aPresent.length];
+		for (int i = 0; i < aSorted.length; i++) {
+			// unbound keeps rank 0 so it sorts first
+			aRank[aSorted[i]] = i + 1;
+		}
+
+		// sort rows by rank; the row number in the low bits keeps the sort stable
+		final long[] aKeys = new long[mSize];
+		for (int i = 0; i < mSize; i++) {
+			aKeys[i] = ((long) aRank[aIds[i]] << 32) | i;
+		}
+
+		Arrays.sort(aKeys);
+
+		final int[][] aColumns = new int[mColumns.length][mSize];
+		for (int i = 0; i < mSize; i++) {
+			final int aRow = (int) aKeys[i];
+
+			for (int c = 0; c < mColumns.length; c++) {
+				aColumns[c][i] = mColumns[c][aRow];
+			}
+		}
+
+		return new ColumnarTupleResult(mNames, mDictionary, aColumns, mSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "ColumnarTupleResult(" + mNames + ", " + mSize + " rows)";
+	}
+
+	/**
+	 * A view of a row.  The row is mutable only so that {@link #scan} can reuse a single instance.
+	 */
+	private final class Row implements BindingSet {
+		private static final long serialVersionUID = 1L;
+
+		private int mRow;
+
+		private Row(final int theRow) {
+			mRow = theRow;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Iterator<Binding> iterator() {
+			final int aRow = mRow;
+
+			return new Iterator<Binding>() {
+				private int mColumn = advance(0);
+
+				private int advance(final int theColumn) {
+					int aColumn = theColumn;
+
+					while (aColumn < mColumns.length && mColumns[aColumn][aRow] == ValueDictionary.NO_ID) {
+						aColumn++;
+					}
+
+					return aColumn;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return mColumn < mColumns.length;
+				}
+
+				@Override
+				public Binding next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					final Binding aBinding = new SimpleBinding(mNames.get(mColumn), mDictionary.value(mColumns[mColumn][aRow]));
+
+					mColumn = advance(mColumn + 1);
+
+					return aBinding;
+				}
+			};
+		}
+
+		/**
+		 * Return all the binding names of the result, bound in this row or not, as
+		 * {@link org.openrdf.query.impl.ListBindingSet} does
+		 */
+		@Override
+		public Set<String> getBindingNames() {
+			return mNameSet;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Binding getBinding(final String theName) {
+			final Value aValue = getValue(theName);
+
+			return aValue == null ? null : new SimpleBinding(theName, aValue);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasBinding(final String theName) {
+			return getValue(theName) != null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Value getValue(final String theName) {
+			final int aColumn = column(theName);
+
+			return aColumn == -1 ? null : mDictionary.value(mColumns[aColumn][mRow]);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int size() {
+			int aSize = 0;
+
+			for (int[] aColumn : mColumns) {
+				if (aColumn[mRow] != ValueDictionary.NO_ID) {
+					aSize++;
+				}
+			}
+
+			return aSize;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean equals(final Object theObj) {
+			if (theObj == this) {
+				return true;
+			}
+
+			if (!(theObj instanceof BindingSet)) {
+				return false;
+			}
+
+			final BindingSet aOther = (BindingSet) theObj;
+
+			if (aOther.size() != size()) {
+				return false;
+			}
+
+			for (int c = 0; c < mColumns.length; c++) {
+				final int aId = mColumns[c][mRow];
+
+				if (aId != ValueDictionary.NO_ID && !mDictionary.value(aId).equals(aOther.getValue(mNames.get(c)))) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int hashCode() {
+			// the hash codes of the bindings combined as the binding sets in Sesame combine them
+			int aHash = 0;
+
+			for (int c = 0; c < mColumns.length; c++) {
+				final int aId = mColumns[c][mRow];
+
+				if (aId != ValueDictionary.NO_ID) {
+					aHash ^= mNames.get(c).hashCode() ^ mDictionary.value(aId).hashCode();
+				}
+			}
+
+			return aHash;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			final StringBuilder aBuilder = new StringBuilder("[");
+
+			for (Binding aBinding : this) {
+				if (aBuilder.length() > 1) {
+					aBuilder.append(';');
+				}
+
+				aBuilder.append(aBinding);
+			}
+
+			return aBuilder.append(']').toString();
+		}
+	}
+
+	public static final class ColumnarTupleResultBuilder {
+		private final ImmutableList<String> mNames;
+
+		private final ValueDictionary mDictionary = new ValueDictionary();
+
+		private int[][] mColumns;
+
+		private int mSize = 0;
+
+		private ColumnarTupleResultBuilder(final List<String> theNames) {
+			mNames = ImmutableList.copyOf(theNames);
+			mColumns = new int[mNames.size()][16];
+		}
+
+		/**
+		 * Add a row
+		 *
+		 * @param theBindings	the row
+		 * @return				this builder
+		 */
+		public ColumnarTupleResultBuilder add(final BindingSet theBindings) {
+			ensureCapacity(mSize + 1);
+
+			for (int c = 0; c < mColumns.length; c++) {
+				mColumns[c][mSize] = mDictionary.intern(theBindings.getValue(mNames.get(c)));
+			}
+
+			mSize++;
+
+			return this;
+		}
+
+		private ColumnarTupleResultBuilder addAll(final ColumnarTupleResultBuilder theOther) {
+			ensureCapacity(mSize + theOther.mSize);
+
+			for (int c = 0; c < mColumns.length; c++) {
+				for (int i = 0; i < theOther.mSize; i++) {
+					mColumns[c][mSize + i] = mDictionary.intern(theOther.mDictionary.value(theOther.mColumns[c][i]));
+				}
+			}
+
+			mSize += theOther.mSize;
+
+			return this;
+		}
+
+		private void ensureCapacity(final int theCapacity) {
+			if (mColumns.length > 0 && theCapacity > mColumns[0].length) {
+				final int aCapacity = Math.max(theCapacity, mColumns[0].length + (mColumns[0].length >> 1));
+
+				for (int c = 0; c < mColumns.length; c++) {
+					mColumns[c] = Arrays.copyOf(mColumns[c], aCapacity);
+				}
+			}
+		}
+
+		/**
+		 * Create the result.  The builder should not be used afterwards.
+		 *
+		 * @return	the result
+		 */
+		public ColumnarTupleResult build() {
+			final int[][] aColumns = new int[mColumns.length][];
+
+			for (int c = 0; c < mColumns.length; c++) {
+				aColumns[c] = mColumns[c].length == mSize ? mColumns[c] : Arrays.copyOf(mColumns[c], mSize);
+			}
+
+			return new ColumnarTupleResult(mNames, mDictionary, aColumns, mSize);
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.complexible.common.openrdf.util.AdunaIterations;
+import com.google.common.base.Preconditions;
+import info.aduna.iteration.CloseableIteration;
+
+/**
+ * <p>A {@link ResultFlow.Publisher} over a {@link CloseableIteration}, such as the result of a query.  Each subscription
+ * opens its own iteration when results are first requested and pulls only as many results from it as have been
+ * requested.  The iteration is read on the given executor, and no thread is held while the subscriber has no outstanding
+ * demand.  The iteration is closed as soon as it is exhausted, fails, or the subscription is cancelled.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class IterationPublisher<T> implements ResultFlow.Publisher<T> {
+	private final Executor mExecutor;
+
+	private final Callable<? extends CloseableIteration<? extends T, ? extends Exception>> mSource;
+
+	/**
+	 * Create a new publisher
+	 *
+	 * @param theExecutor	the executor used to open and read the iteration
+	 * @param theSource		opens a new iteration for each subscription
+	 */
+	public IterationPublisher(final Executor theExecutor,
+	                          final Callable<? extends CloseableIteration<? extends T, ? extends Exception>> theSource) {
+		mExecutor = Preconditions.checkNotNull(theExecutor);
+		mSource = Preconditions.checkNotNull(theSource);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void subscribe(final ResultFlow.Subscriber<? super T> theSubscriber) {
+		final IterationSubscription aSubscription = new IterationSubscription(theSubscriber);
+
+		theSubscriber.onSubscribe(aSubscription);
+	}
+
+	private final class IterationSubscription implements ResultFlow.Subscription, Runnable {
+		private final ResultFlow.Subscriber<? super T> mSubscriber;
+
+		private final AtomicLong mRequested = new AtomicLong();
+
+		/**
+		 * The number of times the subscription has been signalled since the drain loop last ran; ensures only one thread
+		 * at a time reads the iteration
+		 */
+		private final AtomicInteger mPending = new AtomicInteger();
+
+		private volatile boolean mCancelled = false;
+
+		private volatile Throwable mInvalidRequest;
+
+		// only accessed from the drain loop, or from signal when the drain loop could not be scheduled
+		private CloseableIteration<? extends T, ? extends Exception> mIteration;
+
+		private boolean mDone = false;
+
+		private IterationSubscription(final ResultFlow.Subscriber<? super T> theSubscriber) {
+			mSubscriber = theSubscriber;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void request(final long theCount) {
+			if (theCount <= 0) {
+				mInvalidRequest = new IllegalArgumentException("Requested count must be positive: " + theCount);
+			}
+			else {
+				mRequested.accumulateAndGet(theCount, (theCurrent, theAdded) -> {
+					final long aSum = theCurrent + theAdded;
+					return aSum < 0 ? Long.MAX_VALUE : aSum;
+				});
+			}
+
+			signal();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void cancel() {
+			mCancelled = true;
+
+			signal();
+		}
+
+		private void signal() {
+			if (mPending.getAndIncrement() == 0) {
+				try {
+					mExecutor.execute(this);
+				}
+				catch (RejectedExecutionException e) {
+					// no drain is running, so the iteration an earlier drain may have opened can be released here
+					final boolean aTerminated = mDone || mCancelled;
+
+					close();
+					mDone = true;
+					mCancelled = true;
+					mPending.set(0);
+
+					if (!aTerminated) {
+						mSubscriber.onError(e);
+					}
+				}
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			int aMissed = 1;
+
+			do {
+				drain();
+				aMissed = mPending.addAndGet(-aMissed);
+			}
+			while (aMissed != 0);
+		}
+
+		private void drain() {
+			if (mDone) {
+				return;
+			}
+
+			try {
+				if (mInvalidRequest != null) {
+					finish(mInvalidRequest);
+					return;
+				}
+
+				while (!mCancelled && mRequested.get() > 0) {
+					if (mIteration == null) {
+						mIteration = mSource.call();
+					}
+
+					if (!mIteration.hasNext()) {
+						finish(null);
+						return;
+					}
+
+					mSubscriber.onNext(mIteration.next());
+
+					mRequested.decrementAndGet();
+				}
+
+				if (mCancelled) {
+					close();
+					mDone = true;
+				}
+			}
+			catch (Throwable e) {
+				finish(e);
+			}
+		}
+
+		private void finish(final Throwable theError) {
+			close();
+			mDone = true;
+
+			if (mCancelled) {
+				return;
+			}
+
+			if (theError == null) {
+				mSubscriber.onComplete();
+			}
+			else {
+				mSubscriber.onError(theError);
+			}
+		}
+
+		private void close() {
+			if (mIteration != null) {
+				AdunaIterations.closeQuietly(mIteration);
+				mIteration = null;
+			}
+		}
+	}
+}
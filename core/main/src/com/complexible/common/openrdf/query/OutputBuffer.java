@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>A reusable byte buffer which encodes text and numbers directly into bytes and writes them to an
+ * {@link OutputStream} or {@link WritableByteChannel} in large blocks.  Text is UTF-8 encoded as it is copied into the
+ * buffer, optionally replacing ASCII characters with an escape sequence, so no intermediate {@link String} or
+ * {@code byte[]} is created for each value.  Bytes are only written to the target when the buffer is full or
+ * {@link #flush() flushed}.</p>
+ *
+ * <p>A buffer is not thread-safe.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class OutputBuffer {
+
+	/**
+	 * The default size of the buffer, 64k
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final OutputStream mStream;
+
+	private final WritableByteChannel mChannel;
+
+	private byte[] mBuffer;
+
+	private ByteBuffer mWrapped;
+
+	private int mPosition;
+
+	public OutputBuffer(final OutputStream theStream) {
+		this(theStream, DEFAULT_CAPACITY);
+	}
+
+	public OutputBuffer(final OutputStream theStream, final int theCapacity) {
+		this(theStream, null, theCapacity);
+	}
+
+	public OutputBuffer(final WritableByteChannel theChannel) {
+		this(theChannel, DEFAULT_CAPACITY);
+	}
+
+	public OutputBuffer(final WritableByteChannel theChannel, final int theCapacity) {
+		this(null, theChannel, theCapacity);
+	}
+
+	/**
+	 * Create a buffer without a target which grows as needed rather than writing out its contents
+	 */
+	OutputBuffer(final int theCapacity) {
+		this(null, null, theCapacity);
+	}
+
+	private OutputBuffer(final OutputStream theStream, final WritableByteChannel theChannel, final int theCapacity) {
+		if (theCapacity < 16) {
+			throw new IllegalArgumentException("Buffer capacity must be at least 16 bytes");
+		}
+
+		mStream = theStream;
+		mChannel = theChannel;
+		mBuffer = new byte[theCapacity];
+	}
+
+	/**
+	 * Return a table of escape sequences, indexed by ASCII character, for use with {@link #writeUtf8(CharSequence, byte[][])}.
+	 * The arguments are pairs of a single character and its replacement.
+	 *
+	 * @param thePairs	the characters and their replacements
+	 *
+	 * @return			the escape table
+	 */
+	public static byte[][] escapes(final String... thePairs) {
+		if (thePairs.length % 2 != 0) {
+			throw new IllegalArgumentException("Escapes must be pairs of a character and its replacement");
+		}
+
+		final byte[][] aEscapes = new byte[128][];
+
+		for (int i = 0; i < thePairs.length; i += 2) {
+			if (thePairs[i].length() != 1 || thePairs[i].charAt(0) >= 128) {
+				throw new IllegalArgumentException("Only single ASCII characters can be escaped: " + thePairs[i]);
+			}
+
+			aEscapes[thePairs[i].charAt(0)] = thePairs[i + 1].getBytes(StandardCharsets.UTF_8);
+		}
+
+		return aEscapes;
+	}
+
+	/**
+	 * Write a single byte
+	 *
+	 * @param theByte	the byte
+	 *
+	 * @throws IOException	if there is an error writing out the buffer
+	 */
+	public void write(final int theByte) throws IOException {
+		if (mPosition == mBuffer.length) {
+			drain(1);
+		}
+
+		mBuffer[mPosition++] = (byte) theByte;
+	}
+
+	/**
+	 * Write all of the bytes
+	 *
+	 * @param theBytes	the bytes
+	 *
+	 * @throws IOException	if there is an error writing out the buffer
+	 */
+	public void write(final byte[] theBytes) throws IOException {
+		write(theBytes, 0, theBytes.length);
+	}
+
+	/**
+	 * Write a range of bytes
+	 *
+	 * @param theBytes	the bytes
+	 * @param theOffset	the offset of the first byte to write
+	 * @param theLength	the number of bytes to write
+	 *
+	 * @throws IOException	if there is an error writing out the buffer
+	 */
+	public void write(final byte[] theBytes, final int theOffset, final int theLength) throws IOException {
+		if (mPosition + theLength > mBuffer.length) {
+			drain(theLength);
+
+			if (theLength > mBuffer.length) {
+				// larger than the whole buffer, skip the copy
+				writeOut(theBytes, theOffset, theLength);
+				return;
+			}
+		}
+
+		System.arraycopy(theBytes, theOffset, mBuffer, mPosition, theLength);
+		mPosition += theLength;
+	}
+
+	/**
+	 * Write the characters as single bytes, the characters must all be ASCII
+	 *
+	 * @param theChars	the characters
+	 *
+	 * @throws IOException	if there is an error writing out the buffer
+	 */
+	public void writeAscii(final CharSequence theChars) throws IOException {
+		final int aLength = theChars.length();
+
+		for (int i = 0; i < aLength; i++) {
+			write(theChars.charAt(i));
+		}
+	}
+
+	/**
+	 * Write the characters UTF-8 encoded
+	 *
+	 * @param theChars	the characters
+	 *
+	 * @throws IOException	if there is an error writing out the buffer
+	 */
+	public void writeUtf8(final CharSequence theChars) throws IOException {
+		writeUtf8(theChars, null);
+	}
+
+	/**
+	 * Write the characters UTF-8 encoded, replacing any ASCII character which has an entry in the escape table with
+	 * the escape sequence.
+	 *
+	 * @param theChars		the characters
+	 * @param theEscapes	the {@link #escapes(String...) escape table}, or null to write the characters as-is
+	 *
+	 * @throws IOException	if there is an error writing out the buffer
+	 */
+	public void writeUtf8(final CharSequence theChars, final byte[][] theEscapes) throws IOException {
+		final int aLength = theChars.length();
+
+		int i = 0;
+
+		while (i < aLength) {
+			if (mPosition == mBuffer.length) {
+				drain(1);
+			}
+
+			// copy runs of ASCII which need no escaping straight into the buffer, without a bounds check per byte
+			final int aEnd = Math.min(aLength, i + mBuffer.length - mPosition);
+
+			while (i < aEnd) {
+				final char aChar = theChars.charAt(i);
+
+				if (aChar >= 0x80 || (theEscapes != null && theEscapes[aChar] != null)) {
+					break;
+				}
+
+				mBuffer[mPosition++] = (byte) aChar;
+				i++;
+			}
+
+			if (i < aEnd) {
+				i = writeChar(theChars, i, theEscapes);
+			}
+		}
+	}
+
+	/**
+	 * Write the character at the given index, which is either escaped or not ASCII, returning the index of the next
+	 * character
+	 */
+	private int writeChar(final CharSequence theChars, final int theIndex, final byte[][] theEscapes) throws IOException {
+		final char aChar = theChars.charAt(theIndex);
+
+		if (aChar < 0x80) {
+			write(theEscapes[aChar]);
+		}
+		else if (aChar < 0x800) {
+			ensure(2);
+			mBuffer[mPosition++] = (byte) (0xC0 | (aChar >> 6));
+			mBuffer[mPosition++] = (byte) (0x80 | (aChar & 0x3F));
+		}
+		else if (Character.isHighSurrogate(aChar) && theIndex + 1 < theChars.length() && Character.isLowSurrogate(theChars.charAt(theIndex + 1))) {
+			final int aCodePoint = Character.toCodePoint(aChar, theChars.charAt(theIndex + 1));
+
+			ensure(4);
+			mBuffer[mPosition++] = (byte) (0xF0 | (aCodePoint >> 18));
+			mBuffer[mPosition++] = (byte) (0x80 | ((aCodePoint >> 12) & 0x3F));
+			mBuffer[mPosition++] = (byte) (0x80 | ((aCodePoint >> 6) & 0x3F));
+			mBuffer[mPosition++] = (byte) (0x80 | (aCodePoint & 0x3F));
+
+			return theIndex + 2;
+		}
+		else if (Character.isSurrogate(aChar)) {
+			// unpaired surrogate, replaced the same way String#getBytes does
+			write('?');
+		}
+		else {
+			ensure(3);
+			mBuffer[mPosition++] = (byte) (0xE0 | (aChar >> 12));
+			mBuffer[mPosition++] = (byte) (0x80 | ((aChar >> 6) & 0x3F));
+			mBuffer[mPosition++] = (byte) (0x80 | (aChar & 0x3F));
+		}
+
+		return theIndex + 1;
+	}
+
+	/**
+	 * Write the characters as a varint byte length followed by the UTF-8 bytes
+	 *
+	 * @param theChars	the characters
+	 *
+	 * @throws IOException	if there is an error writing out the buffer
+	 */
+	public void writeString(final CharSequence theChars) throws IOException {
+		writeVarInt(utf8Length(theChars));
+		writeUtf8(theChars);
+	}
+
+	/**
+	 * Write a big-endian, four byte integer
+	 *
+	 * @param theValue	the value
+	 *
+	 * @throws IOException	if there is an error writing out the buffer
+	 */
+	public void writeInt(final int theValue) throws IOException {
+		ensure(4);
+		mBuffer[mPosition++] = (byte) (theValue >>> 24);
+		mBuffer[mPosition++] = (byte) (theValue >>> 16);
+		mBuffer[mPosition++] = (byte) (theValue >>> 8);
+		mBuffer[mPosition++] = (byte) theValue;
+	}
+
+	/**
+	 * Write an unsigned integer using seven bits per byte
+	 *
+	 * @param theValue	the value
+	 *
+	 * @throws IOException	if there is an error writing out the buffer
+	 */
+	public void writeVarInt(int theValue) throws IOException {
+		ensure(5);
+
+		while ((theValue & ~0x7F) != 0) {
+			mBuffer[mPosition++] = (byte) ((theValue & 0x7F) | 0x80);
+			theValue >>>= 7;
+		}
+
+		mBuffer[mPosition++] = (byte) theValue;
+	}
+
+	/**
+	 * Return the number of bytes currently held in the buffer
+	 *
+	 * @return	the number of buffered bytes
+	 */
+	public int size() {
+		return mPosition;
+	}
+
+	/**
+	 * Write the buffered bytes to the target and flush it
+	 *
+	 * @throws IOException	if there is an error writing to the target
+	 */
+	public void flush() throws IOException {
+		if (mStream == null && mChannel == null) {
+			return;
+		}
+
+		if (mPosition > 0) {
+			writeOut(mBuffer, 0, mPosition);
+			mPosition = 0;
+		}
+
+		if (mStream != null) {
+			mStream.flush();
+		}
+	}
+
+	/**
+	 * Return a copy of the buffered bytes
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(mBuffer, mPosition);
+	}
+
+	/**
+	 * Discard the buffered bytes
+	 */
+	void reset() {
+		mPosition = 0;
+	}
+
+	private void ensure(final int theLength) throws IOException {
+		if (mPosition + theLength > mBuffer.length) {
+			drain(theLength);
+		}
+	}
+
+	/**
+	 * Make room for the given number of bytes by writing out the buffer, or, if there is no target, growing it
+	 */
+	private void drain(final int theLength) throws IOException {
+		if (mStream == null && mChannel == null) {
+			mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mPosition + theLength));
+			mWrapped = null;
+		}
+		else if (mPosition > 0) {
+			writeOut(mBuffer, 0, mPosition);
+			mPosition = 0;
+		}
+	}
+
+	private void writeOut(final byte[] theBytes, final int theOffset, final int theLength) throws IOException {
+		if (mStream != null) {
+			mStream.write(theBytes, theOffset, theLength);
+		}
+		else if (mChannel != null) {
+			final ByteBuffer aBuffer;
+
+			if (theBytes == mBuffer) {
+				if (mWrapped == null) {
+					mWrapped = ByteBuffer.wrap(mBuffer);
+				}
+
+				aBuffer = mWrapped;
+				aBuffer.clear();
+				aBuffer.position(theOffset);
+				aBuffer.limit(theOffset + theLength);
+			}
+			else {
+				aBuffer = ByteBuffer.wrap(theBytes, theOffset, theLength);
+			}
+
+			while (aBuffer.hasRemaining()) {
+				mChannel.write(aBuffer);
+			}
+		}
+	}
+
+	private static int utf8Length(final CharSequence theChars) {
+		final int aLength = theChars.length();
+
+		int aBytes = 0;
+
+		for (int i = 0; i < aLength; i++) {
+			final char aChar = theChars.charAt(i);
+
+			if (aChar < 0x80) {
+				aBytes++;
+			}
+			else if (aChar < 0x800) {
+				aBytes += 2;
+			}
+			else if (Character.isHighSurrogate(aChar) && i + 1 < aLength && Character.isLowSurrogate(theChars.charAt(i + 1))) {
+				aBytes += 4;
+				i++;
+			}
+			else if (Character.isSurrogate(aChar)) {
+				aBytes++;
+			}
+			else {
+				aBytes += 3;
+			}
+		}
+
+		return aBytes;
+	}
+}
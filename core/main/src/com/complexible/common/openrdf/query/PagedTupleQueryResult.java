@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import info.aduna.iteration.CloseableIteration;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.Order;
+import org.openrdf.query.algebra.OrderElem;
+import org.openrdf.query.algebra.Projection;
+import org.openrdf.query.algebra.Slice;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.UnaryTupleOperator;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.query.parser.ParsedTupleQuery;
+import org.openrdf.query.parser.QueryParserUtil;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+
+/**
+ * <p>A {@link TupleQueryResult} over a large SPARQL select query which is run as a series of smaller queries, each
+ * returning one page of the results.  Each page uses its own connection, which is closed once the page has been read, so
+ * a long export does not hold a connection, or a single long-running query, open on the store for its duration.  The
+ * next page is requested on a background thread while the current one is consumed.</p>
+ *
+ * <p>Pages are selected by appending {@code LIMIT} and {@code OFFSET} to the query.  So that pages neither overlap nor
+ * skip results, by default the query is ordered by all of its projected variables; when it already has an
+ * {@code ORDER BY}, the projected variables it does not order by are added as tie breakers.  The ordering can be turned
+ * off when the store is known to return the results of the same query in the same order each time, which avoids sorting
+ * the whole result for every page.  A {@code LIMIT} or {@code OFFSET} on the query
+ * itself is honored, and must be the last thing in the query.  Paging gives consistent results only if the data does not
+ * change while the results are read.</p>
+ *
+ * <p>Every page evaluates, and when ordered sorts, the query again, so reading the results a page at a time costs more in
+ * total than a single query; what it buys is a bound on how long any one query runs and how long a connection is
+ * held.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class PagedTupleQueryResult implements TupleQueryResult {
+
+	public static final int DEFAULT_PAGE_SIZE = 10000;
+
+	/**
+	 * Matches the limit and offset at the end of a query; the keywords need not follow whitespace, as in
+	 * <code>...}LIMIT 10</code>, but must not be the end of a name
+	 */
+	private static final Pattern SLICE = Pattern.compile("(?<![\\w?$:])\\s*(?:limit\\s+\\d+(?:\\s+offset\\s+\\d+)?|offset\\s+\\d+(?:\\s+limit\\s+\\d+)?)\\s*$",
+	                                                     Pattern.CASE_INSENSITIVE);
+
+	private final Prefetcher<BindingSet> mPrefetcher;
+
+	private final List<String> mBindingNames;
+
+	/**
+	 * Create a new result which reads pages of {@link #DEFAULT_PAGE_SIZE 10,000} results from the repository
+	 *
+	 * @param theRepository	the repository to query
+	 * @param theQuery		the SPARQL select query
+	 *
+	 * @throws MalformedQueryException	if the query is not a select query or cannot be paged
+	 * @throws QueryEvaluationException	if there is an error evaluating the first page
+	 */
+	public PagedTupleQueryResult(final Repository theRepository, final String theQuery) throws MalformedQueryException,
+	                                                                                            QueryEvaluationException {
+		this(theRepository::getConnection, theQuery, DEFAULT_PAGE_SIZE, true, Prefetcher.THREAD_PER_RESULT);
+	}
+
+	/**
+	 * Create a new paged result, ordered so that the pages are stable, which reads ahead on its own daemon thread
+	 *
+	 * @see #PagedTupleQueryResult(Supplier, String, int, boolean, Executor)
+	 */
+	public PagedTupleQueryResult(final Supplier<RepositoryConnection> theConnections, final String theQuery,
+	                             final int thePageSize) throws MalformedQueryException, QueryEvaluationException {
+		this(theConnections, theQuery, thePageSize, true, Prefetcher.THREAD_PER_RESULT);
+	}
+
+	/**
+	 * Create a new paged result.  The first page is requested right away on the calling thread.
+	 *
+	 * @param theConnections	supplies the connection for each page; the connection is closed when the page has been
+	 * 							read.  A {@code ConnectionPool} can be used with {@code pool::borrow}
+	 * @param theQuery			the SPARQL select query
+	 * @param thePageSize		the number of results in a page
+	 * @param theOrdered		whether to order the query by its projected variables so the pages are stable; only turn
+	 * 							this off if the store returns the results of the query in the same order every time
+	 * @param theExecutor		the executor that reads the pages; the read occupies a thread until the result is
+	 * 							exhausted or closed
+	 *
+	 * @throws MalformedQueryException	if the query is not a select query or cannot be paged
+	 * @throws QueryEvaluationException	if there is an error evaluating the first page
+	 */
+	public PagedTupleQueryResult(final Supplier<RepositoryConnection> theConnections, final String theQuery,
+	                             final int thePageSize, final boolean theOrdered,
+	                             final Executor theExecutor) throws MalformedQueryException, QueryEvaluationException {
+		Preconditions.checkNotNull(theConnections);
+		Preconditions.checkArgument(thePageSize > 0, "Page size must be positive");
+
+		final PagedQuery aQuery = new PagedQuery(theQuery, theOrdered);
+		final Pages aPages = new Pages(theConnections, aQuery, thePageSize);
+
+		aPages.openPage();
+
+		mBindingNames = aQuery.getBindingNames();
+
+		// buffer up to a page ahead so the next page is read while this one is consumed
+		mPrefetcher = new Prefetcher<>(aPages, theExecutor,
+		                               (thePageSize + Prefetcher.DEFAULT_BATCH_SIZE - 1) / Prefetcher.DEFAULT_BATCH_SIZE + 1,
+		                               Prefetcher.DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<String> getBindingNames() {
+		return mBindingNames;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() throws QueryEvaluationException {
+		return mPrefetcher.hasNext();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BindingSet next() throws QueryEvaluationException {
+		return mPrefetcher.next();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove() throws QueryEvaluationException {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws QueryEvaluationException {
+		mPrefetcher.close();
+	}
+
+	/**
+	 * A select query prepared for paging: optionally ordered so that its pages are stable, with its own offset and limit
+	 * removed
+	 */
+	static final class PagedQuery {
+		private final String mQuery;
+
+		private final List<String> mBindingNames;
+
+		private final long mOffset;
+
+		/**
+		 * The limit of the original query, or -1 if there is none
+		 */
+		private final long mLimit;
+
+		PagedQuery(final String theQuery, final boolean theOrdered) throws MalformedQueryException {
+			final ParsedQuery aQuery = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, theQuery, null);
+
+			if (!(aQuery instanceof ParsedTupleQuery)) {
+				throw new MalformedQueryException("Only select queries can be paged: " + theQuery);
+			}
+
+			// the slice, order and projection of the query itself, and not those of a sub-select
+			Slice aSlice = null;
+			Order aOrder = null;
+			Projection aProjection = null;
+
+			TupleExpr aExpr = aQuery.getTupleExpr();
+
+			while (aExpr instanceof UnaryTupleOperator) {
+				if (aExpr instanceof Projection) {
+					if (aProjection != null) {
+						break;
+					}
+
+					aProjection = (Projection) aExpr;
+				}
+				else if (aExpr instanceof Slice && aProjection == null) {
+					aSlice = (Slice) aExpr;
+				}
+				else if (aExpr instanceof Order && aOrder == null) {
+					aOrder = (Order) aExpr;
+				}
+
+				aExpr = ((UnaryTupleOperator) aExpr).getArg();
+			}
+
+			String aUnsliced = theQuery;
+
+			if (aSlice != null) {
+				final Matcher aMatcher = SLICE.matcher(theQuery);
+
+				if (!aMatcher.find()) {
+					throw new MalformedQueryException("The LIMIT and OFFSET must end the query to page it: " + theQuery);
+				}
+
+				aUnsliced = theQuery.substring(0, aMatcher.start());
+			}
+
+			final Set<String> aOrdered = Sets.newHashSet();
+
+			if (aOrder != null) {
+				for (OrderElem aElem : aOrder.getElements()) {
+					if (aElem.getExpr() instanceof Var) {
+						aOrdered.add(((Var) aElem.getExpr()).getName());
+					}
+				}
+			}
+
+			mBindingNames = aProjection == null
+			                ? ImmutableList.copyOf(aQuery.getTupleExpr().getBindingNames())
+			                : ImmutableList.copyOf(aProjection.getProjectionElemList().getTargetNames());
+
+			final StringBuilder aPaged = new StringBuilder(aUnsliced);
+
+			if (theOrdered) {
+				for (String aName : mBindingNames) {
+					if (aOrdered.add(aName)) {
+						// start on a new line, in case the query ends with a comment
+						if (aPaged.length() == aUnsliced.length()) {
+							aPaged.append(aOrder == null ? "\nORDER BY" : "\n");
+						}
+
+						aPaged.append(" ?").append(aName);
+					}
+				}
+			}
+
+			mQuery = aPaged.toString();
+			mOffset = aSlice != null && aSlice.hasOffset() ? aSlice.getOffset() : 0;
+			mLimit = aSlice != null && aSlice.hasLimit() ? aSlice.getLimit() : -1;
+
+			// make sure our order and slice apply to the whole query
+			if (!(QueryParserUtil.parseQuery(QueryLanguage.SPARQL, page(0, 1), null).getTupleExpr() instanceof Slice)) {
+				throw new MalformedQueryException("The query cannot be paged: " + theQuery);
+			}
+		}
+
+		/**
+		 * Return the query for a page of results
+		 *
+		 * @param theOffset	the offset of the page within the results
+		 * @param theLimit	the size of the page
+		 * @return			the query
+		 */
+		String page(final long theOffset, final long theLimit) {
+			return mQuery + "\nLIMIT " + theLimit + " OFFSET " + (mOffset + theOffset);
+		}
+
+		List<String> getBindingNames() {
+			return mBindingNames;
+		}
+	}
+
+	/**
+	 * The results of each page in turn, each read over its own connection.  Other than the first page, which is opened
+	 * before the prefetcher starts, the pages are only opened, read and closed by the prefetcher's producer; closing the
+	 * result only tells the producer to stop.
+	 */
+	private static final class Pages implements CloseableIteration<BindingSet, QueryEvaluationException> {
+		private final Supplier<RepositoryConnection> mConnections;
+
+		private final PagedQuery mQuery;
+
+		private final int mPageSize;
+
+		/**
+		 * The offset of the next page
+		 */
+		private long mOffset = 0;
+
+		private RepositoryConnection mConnection;
+
+		private TupleQueryResult mPage;
+
+		/**
+		 * The number of results requested for, and read from, the current page
+		 */
+		private long mRequested;
+
+		private long mRead;
+
+		private boolean mClosed = false;
+
+		private Pages(final Supplier<RepositoryConnection> theConnections, final PagedQuery theQuery, final int thePageSize) {
+			mConnections = theConnections;
+			mQuery = theQuery;
+			mPageSize = thePageSize;
+		}
+
+		/**
+		 * Request the next page
+		 */
+		private void openPage() throws QueryEvaluationException {
+			mRequested = mQuery.mLimit == -1 ? mPageSize : Math.min(mPageSize, mQuery.mLimit - mOffset);
+			mRead = 0;
+
+			if (mClosed || mRequested <= 0) {
+				return;
+			}
+
+			final RepositoryConnection aConnection = mConnections.get();
+			final TupleQueryResult aPage;
+
+			try {
+				aPage = aConnection.prepareTupleQuery(QueryLanguage.SPARQL, mQuery.page(mOffset, mRequested)).evaluate();
+			}
+			catch (RuntimeException e) {
+				try {
+					aConnection.close();
+				}
+				catch (RuntimeException aCloseError) {
+					e.addSuppressed(aCloseError);
+				}
+
+				throw e;
+			}
+
+			mOffset += mRequested;
+			mConnection = aConnection;
+			mPage = aPage;
+		}
+
+		private void closePage() throws QueryEvaluationException {
+			try {
+				if (mPage != null) {
+					mPage.close();
+				}
+			}
+			finally {
+				mPage = null;
+
+				if (mConnection != null) {
+					try {
+						mConnection.close();
+					}
+					finally {
+						mConnection = null;
+					}
+				}
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() throws QueryEvaluationException {
+			while (!mClosed) {
+				final TupleQueryResult aPage = mPage;
+
+				if (aPage == null) {
+					return false;
+				}
+
+				if (aPage.hasNext()) {
+					return true;
+				}
+
+				closePage();
+
+				// a short page is the last one
+				if (mRead == mRequested) {
+					openPage();
+				}
+			}
+
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public BindingSet next() throws QueryEvaluationException {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			mRead++;
+
+			return mPage.next();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() throws QueryEvaluationException {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws QueryEvaluationException {
+			mClosed = true;
+
+			closePage();
+		}
+	}
+}
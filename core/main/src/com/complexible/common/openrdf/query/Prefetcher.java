@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+import info.aduna.iteration.CloseableIteration;
+import org.openrdf.query.QueryEvaluationException;
+
+/**
+ * <p>Reads a {@link CloseableIteration} ahead of its consumer.  A producer task pulls elements from the iteration in
+ * batches and hands them over through a bounded queue, so reading the iteration, which for a remote store means
+ * waiting on the network, overlaps with the consumer's work on the elements already read.  When the queue is full the
+ * producer blocks until the consumer catches up, so no more than {@code depth * batchSize} elements are buffered.</p>
+ *
+ * <p>The iteration is only ever used, and closed, by the producer, since iterations are not safe to close while another
+ * thread is reading them.  It is closed when it is exhausted or fails, or once the producer sees the prefetcher has been
+ * {@link #close() closed}; closing interrupts the producer so that it notices promptly if it is blocked.  A failure is
+ * rethrown to the consumer once the elements read before it have been consumed.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+final class Prefetcher<T> implements AutoCloseable {
+	private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+	/**
+	 * Runs each producer on its own daemon thread
+	 */
+	static final Executor THREAD_PER_RESULT = theTask -> {
+		final Thread aThread = new Thread(theTask, "Prefetch-" + THREAD_ID.incrementAndGet());
+
+		aThread.setDaemon(true);
+		aThread.start();
+	};
+
+	static final int DEFAULT_DEPTH = 16;
+
+	static final int DEFAULT_BATCH_SIZE = 256;
+
+	/**
+	 * Marks the end of the iteration
+	 */
+	private final List<T> mEnd = new ArrayList<>(0);
+
+	private final CloseableIteration<? extends T, QueryEvaluationException> mIteration;
+
+	private final BlockingQueue<List<T>> mQueue;
+
+	private final int mBatchSize;
+
+	private volatile boolean mClosed = false;
+
+	private volatile QueryEvaluationException mError;
+
+	/**
+	 * The thread running the producer, while it is running; guarded by {@code this} so the thread is not interrupted
+	 * once it has moved on to other work
+	 */
+	private Thread mProducer;
+
+	// only accessed by the consumer
+	private Iterator<T> mBatch;
+
+	private boolean mDone = false;
+
+	/**
+	 * Create a new prefetcher, starting to read the iteration right away
+	 *
+	 * @param theIteration	the iteration to read
+	 * @param theExecutor	runs the producer, which occupies a thread until the iteration ends or the prefetcher is closed
+	 * @param theDepth		the maximum number of batches to buffer
+	 * @param theBatchSize	the number of elements read before they are handed over
+	 */
+	Prefetcher(final CloseableIteration<? extends T, QueryEvaluationException> theIteration, final Executor theExecutor,
+	           final int theDepth, final int theBatchSize) {
+		Preconditions.checkArgument(theDepth > 0, "Prefetch depth must be positive");
+		Preconditions.checkArgument(theBatchSize > 0, "Batch size must be positive");
+
+		mIteration = Preconditions.checkNotNull(theIteration);
+		mQueue = new ArrayBlockingQueue<>(theDepth);
+		mBatchSize = theBatchSize;
+
+		theExecutor.execute(this::produce);
+	}
+
+	private void produce() {
+		synchronized (this) {
+			mProducer = Thread.currentThread();
+		}
+
+		List<T> aBatch = new ArrayList<>(mBatchSize);
+
+		try {
+			while (!mClosed && mIteration.hasNext()) {
+				aBatch.add(mIteration.next());
+
+				if (aBatch.size() == mBatchSize) {
+					if (!offer(aBatch)) {
+						return;
+					}
+
+					aBatch = new ArrayList<>(mBatchSize);
+				}
+			}
+		}
+		catch (QueryEvaluationException e) {
+			if (!mClosed) {
+				mError = e;
+			}
+		}
+		catch (RuntimeException e) {
+			if (!mClosed) {
+				mError = new QueryEvaluationException(e);
+			}
+		}
+		finally {
+			try {
+				mIteration.close();
+			}
+			catch (QueryEvaluationException e) {
+				if (mError == null && !mClosed) {
+					mError = e;
+				}
+			}
+
+			// the results read before the end or an error, then the end; either way, the consumer needs to wake up
+			if (aBatch.isEmpty() || offer(aBatch)) {
+				offer(mEnd);
+			}
+
+			synchronized (this) {
+				mProducer = null;
+
+				// don't leave an interrupt from close() behind on a pooled thread
+				if (mClosed) {
+					Thread.interrupted();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hand a batch to the consumer, waiting for room in the queue as long as the prefetcher is open.
+	 *
+	 * @return true if the batch was queued, false if the prefetcher was closed
+	 */
+	private boolean offer(final List<T> theBatch) {
+		try {
+			while (!mClosed) {
+				if (mQueue.offer(theBatch, 100, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return false;
+	}
+
+	boolean hasNext() throws QueryEvaluationException {
+		while (!mDone && (mBatch == null || !mBatch.hasNext())) {
+			final List<T> aBatch;
+
+			try {
+				aBatch = mQueue.take();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new QueryEvaluationException("Interrupted while waiting for results", e);
+			}
+
+			if (aBatch == mEnd) {
+				mDone = true;
+
+				if (mError != null) {
+					throw mError;
+				}
+			}
+			else {
+				mBatch = aBatch.iterator();
+			}
+		}
+
+		return mBatch != null && mBatch.hasNext();
+	}
+
+	T next() throws QueryEvaluationException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		return mBatch.next();
+	}
+
+	/**
+	 * Stop reading and discard the buffered elements.  The producer is interrupted and closes the iteration itself; this
+	 * does not wait for it to do so.
+	 */
+	@Override
+	public void close() {
+		if (mClosed) {
+			return;
+		}
+
+		mClosed = true;
+		mDone = true;
+		mBatch = null;
+		mQueue.clear();
+
+		synchronized (this) {
+			if (mProducer != null) {
+				mProducer.interrupt();
+			}
+		}
+	}
+}
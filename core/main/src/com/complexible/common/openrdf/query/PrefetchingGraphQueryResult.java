@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.util.concurrent.Executor;
+
+import org.openrdf.model.Statement;
+import org.openrdf.query.GraphQueryResult;
+import org.openrdf.query.QueryEvaluationException;
+
+/**
+ * <p>A {@link GraphQueryResult} which reads its delegate ahead of the caller on a background thread; see
+ * {@link PrefetchingTupleQueryResult}.  {@link #getNamespaces()} is answered by the delegate, whose namespaces may
+ * be filled in as it is read.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class PrefetchingGraphQueryResult extends DelegatingGraphQueryResult {
+	private final Prefetcher<Statement> mPrefetcher;
+
+	/**
+	 * Create a new result which prefetches 16 batches of 256 statements on its own daemon thread
+	 *
+	 * @param theResult	the result to read ahead
+	 */
+	public PrefetchingGraphQueryResult(final GraphQueryResult theResult) {
+		this(theResult, Prefetcher.THREAD_PER_RESULT, Prefetcher.DEFAULT_DEPTH, Prefetcher.DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Create a new prefetching result
+	 *
+	 * @param theResult		the result to read ahead
+	 * @param theExecutor	the executor that reads the result; the read occupies a thread until the result is exhausted
+	 * 						or closed
+	 * @param theDepth		the maximum number of batches to buffer
+	 * @param theBatchSize	the number of statements handed over at a time
+	 */
+	public PrefetchingGraphQueryResult(final GraphQueryResult theResult, final Executor theExecutor,
+	                                   final int theDepth, final int theBatchSize) {
+		super(theResult);
+
+		mPrefetcher = new Prefetcher<>(theResult, theExecutor, theDepth, theBatchSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() throws QueryEvaluationException {
+		return mPrefetcher.hasNext();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Statement next() throws QueryEvaluationException {
+		return mPrefetcher.next();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove() throws QueryEvaluationException {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws QueryEvaluationException {
+		mPrefetcher.close();
+	}
+}
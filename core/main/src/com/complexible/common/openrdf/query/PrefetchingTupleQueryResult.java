@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.TupleQueryResult;
+
+/**
+ * <p>A {@link TupleQueryResult} which reads its delegate ahead of the caller on a background thread, so the caller's
+ * processing of a result overlaps with the delegate producing the next ones.  This pays off when reading the delegate
+ * involves waiting, such as results streamed from a remote store; for an in-memory result it only adds a hand-off.</p>
+ *
+ * <p>Results are read in batches of {@code batchSize} and up to {@code depth} batches are buffered; the background
+ * thread blocks when the buffer is full.  The delegate is only read and closed by the background thread: it is closed
+ * when it is exhausted, or after this result is closed, which interrupts the thread rather than waiting for it.  This
+ * result must be closed if it is not exhausted to release the thread.  An error reading the delegate is rethrown
+ * from {@link #hasNext()} after the results read before it.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class PrefetchingTupleQueryResult extends DelegatingTupleQueryResult {
+	private final Prefetcher<BindingSet> mPrefetcher;
+
+	private final List<String> mBindingNames;
+
+	/**
+	 * Create a new result which prefetches 16 batches of 256 results on its own daemon thread
+	 *
+	 * @param theResult	the result to read ahead
+	 *
+	 * @throws QueryEvaluationException	if the binding names of the result cannot be read
+	 */
+	public PrefetchingTupleQueryResult(final TupleQueryResult theResult) throws QueryEvaluationException {
+		this(theResult, Prefetcher.THREAD_PER_RESULT, Prefetcher.DEFAULT_DEPTH, Prefetcher.DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Create a new prefetching result
+	 *
+	 * @param theResult		the result to read ahead
+	 * @param theExecutor	the executor that reads the result; the read occupies a thread until the result is exhausted
+	 * 						or closed
+	 * @param theDepth		the maximum number of batches to buffer
+	 * @param theBatchSize	the number of results handed over at a time
+	 *
+	 * @throws QueryEvaluationException	if the binding names of the result cannot be read
+	 */
+	public PrefetchingTupleQueryResult(final TupleQueryResult theResult, final Executor theExecutor,
+	                                   final int theDepth, final int theBatchSize) throws QueryEvaluationException {
+		super(theResult);
+
+		// read before the background thread starts using the result
+		mBindingNames = theResult.getBindingNames();
+		mPrefetcher = new Prefetcher<>(theResult, theExecutor, theDepth, theBatchSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<String> getBindingNames() {
+		return mBindingNames;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() throws QueryEvaluationException {
+		return mPrefetcher.hasNext();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BindingSet next() throws QueryEvaluationException {
+		return mPrefetcher.next();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove() throws QueryEvaluationException {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws QueryEvaluationException {
+		mPrefetcher.close();
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.BooleanQuery;
+import org.openrdf.query.GraphQuery;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.Query;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.repository.RepositoryConnection;
+
+/**
+ * <p>The queries prepared from {@link QueryTemplate templates} for one {@link RepositoryConnection}, so that a
+ * long-lived connection, such as one from a pool, prepares and parses each template only the first time it is used.
+ * Later uses of the template set the new values as the bindings of the query prepared the first time.</p>
+ *
+ * <p>The prepared queries are owned by the caller and live as long as this object; keep it alongside the connection and
+ * drop it when the connection is closed.  Like the connection, it is not thread-safe, and a query it returns is only
+ * valid until the same template is next prepared.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class PreparedQueries {
+	private final RepositoryConnection mConnection;
+
+	private final Map<QueryTemplate, Query> mQueries = Maps.newHashMap();
+
+	public PreparedQueries(final RepositoryConnection theConnection) {
+		mConnection = Preconditions.checkNotNull(theConnection);
+	}
+
+	public RepositoryConnection getConnection() {
+		return mConnection;
+	}
+
+	/**
+	 * Return the select query of the template with the values set as its bindings
+	 *
+	 * @param theTemplate	the template
+	 * @param theBindings	the values of the placeholders
+	 * @return				the query
+	 *
+	 * @throws MalformedQueryException	if the template is not a select query
+	 * @throws IllegalArgumentException	if a binding is not a placeholder of the query
+	 */
+	public TupleQuery prepareTupleQuery(final QueryTemplate theTemplate, final BindingSet theBindings) throws MalformedQueryException {
+		return prepare(theTemplate, theBindings, TupleQuery.class);
+	}
+
+	/**
+	 * Return the graph query of the template with the values set as its bindings
+	 *
+	 * @param theTemplate	the template
+	 * @param theBindings	the values of the placeholders
+	 * @return				the query
+	 *
+	 * @throws MalformedQueryException	if the template is not a graph query
+	 * @throws IllegalArgumentException	if a binding is not a placeholder of the query
+	 */
+	public GraphQuery prepareGraphQuery(final QueryTemplate theTemplate, final BindingSet theBindings) throws MalformedQueryException {
+		return prepare(theTemplate, theBindings, GraphQuery.class);
+	}
+
+	/**
+	 * Return the boolean query of the template with the values set as its bindings
+	 *
+	 * @param theTemplate	the template
+	 * @param theBindings	the values of the placeholders
+	 * @return				the query
+	 *
+	 * @throws MalformedQueryException	if the template is not a boolean query
+	 * @throws IllegalArgumentException	if a binding is not a placeholder of the query
+	 */
+	public BooleanQuery prepareBooleanQuery(final QueryTemplate theTemplate, final BindingSet theBindings) throws MalformedQueryException {
+		return prepare(theTemplate, theBindings, BooleanQuery.class);
+	}
+
+	/**
+	 * Discard the prepared queries
+	 */
+	public void clear() {
+		mQueries.clear();
+	}
+
+	public int size() {
+		return mQueries.size();
+	}
+
+	private <T extends Query> T prepare(final QueryTemplate theTemplate, final BindingSet theBindings,
+	                                    final Class<T> theType) throws MalformedQueryException {
+		Query aQuery = mQueries.get(theTemplate);
+
+		if (aQuery == null) {
+			aQuery = mConnection.prepareQuery(theTemplate.getLanguage(), theTemplate.getQuery(), theTemplate.getBaseURI());
+			mQueries.put(theTemplate, aQuery);
+		}
+
+		return theTemplate.bind(aQuery, theBindings, theType);
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import info.aduna.iteration.CloseableIteration;
+import org.openrdf.model.Value;
+import org.openrdf.query.Binding;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.BooleanQuery;
+import org.openrdf.query.GraphQuery;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.Query;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.openrdf.query.impl.IteratingTupleQueryResult;
+import org.openrdf.query.parser.ParsedBooleanQuery;
+import org.openrdf.query.parser.ParsedGraphQuery;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.query.parser.ParsedTupleQuery;
+import org.openrdf.query.parser.QueryParserUtil;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+
+/**
+ * <p>A query which is parsed once and then evaluated many times with different values for its variables, rather than
+ * building a new query string, and parsing it, for every set of values.  Every named variable of the query is a
+ * placeholder which can be given a value; variables without a value are left free as usual.</p>
+ *
+ * <p>Templates are obtained with {@link #of}, which keeps a bounded cache of parsed templates, so the same query string
+ * is only parsed once.  A template can be used in two ways:</p>
+ * <ul>
+ *     <li>Against a {@link SailConnection}, the values are bound directly into a copy of the parsed algebra which is
+ *     evaluated without being parsed again, see {@link #bind} and {@link #evaluate}.</li>
+ *     <li>Against a {@link RepositoryConnection}, whose API only accepts query strings, the template prepares the
+ *     query on the connection and sets the values as bindings of the prepared query; see {@link #prepareTupleQuery}.
+ *     To prepare, and parse, the query only once per connection, keep the prepared queries of a long-lived connection
+ *     in {@link PreparedQueries}.</li>
+ * </ul>
+ *
+ * <p>Templates are thread-safe and hold no reference to the connections they are used with.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class QueryTemplate {
+
+	/**
+	 * The maximum number of parsed templates kept by {@link #of}
+	 */
+	public static final int MAX_TEMPLATES = 1024;
+
+	private static final Cache<List<Object>, QueryTemplate> TEMPLATES = CacheBuilder.newBuilder()
+	                                                                                .maximumSize(MAX_TEMPLATES)
+	                                                                                .build();
+
+	private final QueryLanguage mLanguage;
+
+	private final String mQuery;
+
+	private final String mBaseURI;
+
+	private final ParsedQuery mParsedQuery;
+
+	private final ImmutableSet<String> mPlaceholders;
+
+	private QueryTemplate(final QueryLanguage theLanguage, final String theQuery, final String theBaseURI) {
+		mLanguage = theLanguage;
+		mQuery = theQuery;
+		mBaseURI = theBaseURI;
+		mParsedQuery = QueryParserUtil.parseQuery(theLanguage, theQuery, theBaseURI);
+		mPlaceholders = placeholders(mParsedQuery.getTupleExpr());
+	}
+
+	/**
+	 * Return the template for the SPARQL query
+	 *
+	 * @param theQuery	the query
+	 * @return			the template
+	 *
+	 * @throws MalformedQueryException	if the query cannot be parsed
+	 */
+	public static QueryTemplate sparql(final String theQuery) throws MalformedQueryException {
+		return of(QueryLanguage.SPARQL, theQuery, null);
+	}
+
+	/**
+	 * Return the template for the query
+	 *
+	 * @param theLanguage	the query language
+	 * @param theQuery		the query
+	 * @return				the template
+	 *
+	 * @throws MalformedQueryException	if the query cannot be parsed
+	 */
+	public static QueryTemplate of(final QueryLanguage theLanguage, final String theQuery) throws MalformedQueryException {
+		return of(theLanguage, theQuery, null);
+	}
+
+	/**
+	 * Return the template for the query, parsing it only if it is not already in the cache of templates
+	 *
+	 * @param theLanguage	the query language
+	 * @param theQuery		the query
+	 * @param theBaseURI	the base URI of the query, or null
+	 * @return				the template
+	 *
+	 * @throws MalformedQueryException	if the query cannot be parsed
+	 */
+	public static QueryTemplate of(final QueryLanguage theLanguage, final String theQuery, final String theBaseURI) throws MalformedQueryException {
+		final List<Object> aKey = Arrays.asList(theLanguage, theQuery, theBaseURI);
+
+		QueryTemplate aTemplate = TEMPLATES.getIfPresent(aKey);
+
+		if (aTemplate == null) {
+			// two threads may both parse a new query, which is harmless
+			aTemplate = new QueryTemplate(theLanguage, theQuery, theBaseURI);
+			TEMPLATES.put(aKey, aTemplate);
+		}
+
+		return aTemplate;
+	}
+
+	public QueryLanguage getLanguage() {
+		return mLanguage;
+	}
+
+	public String getQuery() {
+		return mQuery;
+	}
+
+	public String getBaseURI() {
+		return mBaseURI;
+	}
+
+	/**
+	 * Return the names of the variables of the query which can be given a value
+	 *
+	 * @return	the placeholders
+	 */
+	public Set<String> getPlaceholders() {
+		return mPlaceholders;
+	}
+
+	/**
+	 * Return a copy of the parsed query with the values bound into its algebra.  The algebra of the template itself is
+	 * never modified.  The bindings should also be passed to the evaluation of the query so that bound variables which
+	 * are projected appear in the results.
+	 *
+	 * @param theBindings	the values of the placeholders
+	 * @return				the bound query
+	 *
+	 * @throws IllegalArgumentException	if a binding is not a placeholder of the query
+	 */
+	public ParsedQuery bind(final BindingSet theBindings) {
+		validate(theBindings);
+
+		final TupleExpr aExpr = mParsedQuery.getTupleExpr().clone();
+
+		if (theBindings.size() > 0) {
+			aExpr.visit(new AbstractQueryModelVisitor<RuntimeException>() {
+				@Override
+				public void meet(final Var theVar) {
+					if (!theVar.hasValue()) {
+						final Value aValue = theBindings.getValue(theVar.getName());
+
+						if (aValue != null) {
+							theVar.setValue(aValue);
+						}
+					}
+				}
+			});
+		}
+
+		final ParsedQuery aQuery;
+
+		if (mParsedQuery instanceof ParsedTupleQuery) {
+			aQuery = new ParsedTupleQuery(mQuery, aExpr);
+		}
+		else if (mParsedQuery instanceof ParsedGraphQuery) {
+			aQuery = new ParsedGraphQuery(mQuery, aExpr, ((ParsedGraphQuery) mParsedQuery).getQueryNamespaces());
+		}
+		else if (mParsedQuery instanceof ParsedBooleanQuery) {
+			aQuery = new ParsedBooleanQuery(mQuery, aExpr);
+		}
+		else {
+			throw new IllegalStateException("Unsupported query type: " + mParsedQuery.getClass().getName());
+		}
+
+		aQuery.setDataset(mParsedQuery.getDataset());
+
+		return aQuery;
+	}
+
+	/**
+	 * Evaluate the template, which must be a select query, against the connection without parsing it again
+	 *
+	 * @param theConnection		the connection
+	 * @param theBindings		the values of the placeholders
+	 * @param theIncludeInferred	whether or not to include inferred statements
+	 * @return					the results of the query
+	 *
+	 * @throws SailException				if there is an error evaluating the query
+	 * @throws IllegalArgumentException		if a binding is not a placeholder of the query
+	 * @throws IllegalStateException		if the template is not a select query
+	 */
+	public TupleQueryResult evaluate(final SailConnection theConnection, final BindingSet theBindings,
+	                                 final boolean theIncludeInferred) throws SailException {
+		if (!(mParsedQuery instanceof ParsedTupleQuery)) {
+			throw new IllegalStateException("Only select queries can be evaluated against a SailConnection");
+		}
+
+		final ParsedQuery aQuery = bind(theBindings);
+
+		final CloseableIteration<? extends BindingSet, QueryEvaluationException> aResults
+			= theConnection.evaluate(aQuery.getTupleExpr(), aQuery.getDataset(), theBindings, theIncludeInferred);
+
+		return new IteratingTupleQueryResult(new ArrayList<>(aQuery.getTupleExpr().getBindingNames()), aResults);
+	}
+
+	/**
+	 * Return the select query for the connection with the values set as its bindings.  The query is prepared, and parsed,
+	 * on each call; use {@link PreparedQueries} to reuse it for the connection.
+	 *
+	 * @param theConnection	the connection
+	 * @param theBindings	the values of the placeholders
+	 * @return				the query
+	 *
+	 * @throws MalformedQueryException	if the template is not a select query
+	 * @throws IllegalArgumentException	if a binding is not a placeholder of the query
+	 */
+	public TupleQuery prepareTupleQuery(final RepositoryConnection theConnection, final BindingSet theBindings) throws MalformedQueryException {
+		return prepare(theConnection, theBindings, TupleQuery.class);
+	}
+
+	/**
+	 * Return the graph query for the connection with the values set as its bindings.  The query is prepared, and parsed,
+	 * on each call; use {@link PreparedQueries} to reuse it for the connection.
+	 *
+	 * @param theConnection	the connection
+	 * @param theBindings	the values of the placeholders
+	 * @return				the query
+	 *
+	 * @throws MalformedQueryException	if the template is not a graph query
+	 * @throws IllegalArgumentException	if a binding is not a placeholder of the query
+	 */
+	public GraphQuery prepareGraphQuery(final RepositoryConnection theConnection, final BindingSet theBindings) throws MalformedQueryException {
+		return prepare(theConnection, theBindings, GraphQuery.class);
+	}
+
+	/**
+	 * Return the boolean query for the connection with the values set as its bindings.  The query is prepared, and parsed,
+	 * on each call; use {@link PreparedQueries} to reuse it for the connection.
+	 *
+	 * @param theConnection	the connection
+	 * @param theBindings	the values of the placeholders
+	 * @return				the query
+	 *
+	 * @throws MalformedQueryException	if the template is not a boolean query
+	 * @throws IllegalArgumentException	if a binding is not a placeholder of the query
+	 */
+	public BooleanQuery prepareBooleanQuery(final RepositoryConnection theConnection, final BindingSet theBindings) throws MalformedQueryException {
+		return prepare(theConnection, theBindings, BooleanQuery.class);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return mQuery;
+	}
+
+	private <T extends Query> T prepare(final RepositoryConnection theConnection, final BindingSet theBindings,
+	                                    final Class<T> theType) throws MalformedQueryException {
+		return bind(theConnection.prepareQuery(mLanguage, mQuery, mBaseURI), theBindings, theType);
+	}
+
+	/**
+	 * Replace the bindings of a query prepared from this template with the values
+	 *
+	 * @param theQuery		the query prepared from the template
+	 * @param theBindings	the values of the placeholders
+	 * @param theType		the type of query expected
+	 * @return				the query
+	 *
+	 * @throws MalformedQueryException	if the query is not of the expected type
+	 */
+	<T extends Query> T bind(final Query theQuery, final BindingSet theBindings, final Class<T> theType) throws MalformedQueryException {
+		validate(theBindings);
+
+		if (!theType.isInstance(theQuery)) {
+			throw new MalformedQueryException("Query is not a " + theType.getSimpleName() + ": " + mQuery);
+		}
+
+		theQuery.clearBindings();
+
+		for (Binding aBinding : theBindings) {
+			theQuery.setBinding(aBinding.getName(), aBinding.getValue());
+		}
+
+		return theType.cast(theQuery);
+	}
+
+	private void validate(final BindingSet theBindings) {
+		for (Binding aBinding : theBindings) {
+			if (!mPlaceholders.contains(aBinding.getName())) {
+				throw new IllegalArgumentException("'" + aBinding.getName() + "' is not a placeholder of the query, expected one of "
+				                                   + mPlaceholders);
+			}
+		}
+	}
+
+	/**
+	 * Return the names of the variables which are neither anonymous nor already have a value
+	 */
+	private static ImmutableSet<String> placeholders(final TupleExpr theExpr) {
+		final Set<String> aNames = Sets.newLinkedHashSet();
+
+		theExpr.visit(new AbstractQueryModelVisitor<RuntimeException>() {
+			@Override
+			public void meet(final Var theVar) {
+				if (!theVar.isAnonymous() && !theVar.hasValue()) {
+					aNames.add(theVar.getName());
+				}
+			}
+		});
+
+		return ImmutableSet.copyOf(aNames);
+	}
+}
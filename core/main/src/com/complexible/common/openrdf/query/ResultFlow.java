@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+/**
+ * <p>Interfaces for demand-driven, asynchronous delivery of query results.  These mirror the shape of the Reactive Streams
+ * interfaces, and of {@code java.util.concurrent.Flow} in later JDKs, so a publisher can easily be adapted to either: a
+ * {@link Subscriber} {@link Publisher#subscribe subscribes} to a {@link Publisher} and receives a {@link Subscription}
+ * through which it {@link Subscription#request requests} results; results are only produced as they are requested.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class ResultFlow {
+
+	private ResultFlow() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * A producer of results which are delivered to subscribers on demand
+	 *
+	 * @param <T>	the type of the results
+	 */
+	public interface Publisher<T> {
+
+		/**
+		 * Add the subscriber.  {@link Subscriber#onSubscribe} is called before this returns; no results are produced
+		 * until they are requested through the subscription.
+		 *
+		 * @param theSubscriber	the subscriber
+		 */
+		void subscribe(final Subscriber<? super T> theSubscriber);
+	}
+
+	/**
+	 * A receiver of results.  Calls to a subscriber are never concurrent, but may be made from different threads.
+	 *
+	 * @param <T>	the type of the results
+	 */
+	public interface Subscriber<T> {
+
+		/**
+		 * Called once, when the subscriber is subscribed to a publisher
+		 *
+		 * @param theSubscription	the subscription, used to request results or cancel
+		 */
+		void onSubscribe(final Subscription theSubscription);
+
+		/**
+		 * Called with the next result.  Never called more times than results have been requested.
+		 *
+		 * @param theItem	the result
+		 */
+		void onNext(final T theItem);
+
+		/**
+		 * Called if there is an error producing the results.  No further calls are made to the subscriber.
+		 *
+		 * @param theError	the error
+		 */
+		void onError(final Throwable theError);
+
+		/**
+		 * Called after the last result has been delivered.  No further calls are made to the subscriber.
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * The link between a {@link Publisher} and a {@link Subscriber}
+	 */
+	public interface Subscription {
+
+		/**
+		 * Request more results.  Requests are cumulative.
+		 *
+		 * @param theCount	the number of additional results wanted; must be positive
+		 */
+		void request(final long theCount);
+
+		/**
+		 * Stop receiving results; the publisher releases any resources held for the subscription.  Results already
+		 * being delivered may still arrive.
+		 */
+		void cancel();
+	}
+}
@@ -21,7 +21,6 @@ import org.openrdf.model.IRI;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
 
-import org.openrdf.model.util.Literals;
 import org.openrdf.query.BindingSet;
 
 import org.openrdf.query.algebra.Slice;
@@ -35,16 +34,15 @@ import org.openrdf.query.algebra.ProjectionElem;
 import com.google.common.collect.Sets;
 import org.openrdf.query.parser.ParsedQuery;
 
+import java.io.IOException;
 import java.util.Collection;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * <p>Collection of utility methods for working with the OpenRdf Sesame Query API.</p>
  *
  * @author	Michael Grove
  * @since	0.2
- * @version 0.8
+ * @version 4.1
  */
 public final class SesameQueryUtils {
 
@@ -152,26 +150,7 @@ public final class SesameQueryUtils {
 	 * @return 			the value rendered in its query string representation
 	 */
 	public static String getARQSPARQLQueryString(Value theValue) {
-        StringBuilder aBuffer = new StringBuilder();
-
-        if (theValue instanceof IRI) {
-	        IRI aURI = (IRI) theValue;
-            aBuffer.append("<").append(aURI.toString()).append(">");
-        }
-        else if (theValue instanceof BNode) {
-            aBuffer.append("<_:").append(((BNode)theValue).getID()).append(">");
-        }
-        else if (theValue instanceof Literal) {
-            Literal aLit = (Literal)theValue;
-
-            aBuffer.append("\"\"\"").append(escape(aLit.getLabel())).append("\"\"\"").append(aLit.getLanguage().isPresent() ? "@" + aLit.getLanguage().get() : "");
-
-            if (aLit.getDatatype() != null && !Literals.isLanguageLiteral(aLit)) {
-                aBuffer.append("^^<").append(aLit.getDatatype().toString()).append(">");
-            }
-        }
-
-        return aBuffer.toString();
+		return getQueryString(theValue, Syntax.ARQ);
 	}
 
 	/**
@@ -180,26 +159,7 @@ public final class SesameQueryUtils {
 	 * @return 			the value rendered in its query string representation
 	 */
 	public static String getSPARQLQueryString(Value theValue) {
-        StringBuilder aBuffer = new StringBuilder();
-
-        if (theValue instanceof IRI) {
-	        IRI aURI = (IRI) theValue;
-            aBuffer.append("<").append(aURI.toString()).append(">");
-        }
-        else if (theValue instanceof BNode) {
-            aBuffer.append("_:").append(((BNode)theValue).getID());
-        }
-        else if (theValue instanceof Literal) {
-            Literal aLit = (Literal)theValue;
-
-	        aBuffer.append("\"\"\"").append(escape(aLit.getLabel())).append("\"\"\"").append(aLit.getLanguage().isPresent() ? "@" + aLit.getLanguage().get() : "");
-
-	        if (aLit.getDatatype() != null && !Literals.isLanguageLiteral(aLit)) {
-		        aBuffer.append("^^<").append(aLit.getDatatype().toString()).append(">");
-	        }
-        }
-
-        return aBuffer.toString();
+		return getQueryString(theValue, Syntax.SPARQL);
 	}
 	
 	/**
@@ -208,26 +168,43 @@ public final class SesameQueryUtils {
 	 * @return 			the value rendered in its query string representation
 	 */
 	public static String getSerqlQueryString(Value theValue) {
-        StringBuilder aBuffer = new StringBuilder();
+		return getQueryString(theValue, Syntax.SERQL);
+	}
 
-        if (theValue instanceof IRI) {
-	        IRI aURI = (IRI) theValue;
-            aBuffer.append("<").append(aURI.toString()).append(">");
-        }
-        else if (theValue instanceof BNode) {
-            aBuffer.append("_:").append(((BNode)theValue).getID());
-        }
-        else if (theValue instanceof Literal) {
-            Literal aLit = (Literal)theValue;
+	/**
+	 * Append the SPARQL query string rendering of the {@link Value}, as returned by {@link #getSPARQLQueryString}, to the
+	 * builder without creating an intermediate string for the value.
+	 *
+	 * @param theBuilder	the builder to append to
+	 * @param theValue		the value to render
+	 * @return				the builder
+	 */
+	public static StringBuilder appendTo(final StringBuilder theBuilder, final Value theValue) {
+		try {
+			append(theBuilder, theValue, Syntax.SPARQL);
+		}
+		catch (IOException e) {
+			// StringBuilder does not throw IOException
+			throw new AssertionError(e);
+		}
 
-            aBuffer.append("\"").append(escape(aLit.getLabel())).append("\"").append(aLit.getLanguage() != null ? "@" + aLit.getLanguage() : "");
+		return theBuilder;
+	}
 
-            if (aLit.getDatatype() != null && aLit.getLanguage() == null) {
-                aBuffer.append("^^<").append(aLit.getDatatype().toString()).append(">");
-            }
-        }
+	/**
+	 * Append the SPARQL query string rendering of the {@link Value}, as returned by {@link #getSPARQLQueryString}, to the
+	 * {@link Appendable} without creating an intermediate string for the value.
+	 *
+	 * @param theAppendable	the appendable to append to
+	 * @param theValue		the value to render
+	 * @param <T>			the type of the appendable
+	 * @return				the appendable
+	 * @throws IOException	if there is an error appending
+	 */
+	public static <T extends Appendable> T appendTo(final T theAppendable, final Value theValue) throws IOException {
+		append(theAppendable, theValue, Syntax.SPARQL);
 
-        return aBuffer.toString();
+		return theAppendable;
 	}
 
 	/**
@@ -238,16 +215,173 @@ public final class SesameQueryUtils {
 	 * @return 			the escaped query string
 	 */
 	public static String escape(String theString) {
-		theString = theString.replaceAll("\"", "\\\\\"");
-		
-		StringBuffer aBuffer = new StringBuffer();
-		Matcher aMatcher = Pattern.compile("\\\\([^tnrbf\"'\\\\])").matcher(theString);
-		while (aMatcher.find()) {
-			aMatcher.appendReplacement(aBuffer, String.format("\\\\\\\\%s", aMatcher.group(1)));
+		if (!needsEscape(theString)) {
+			return theString;
+		}
+
+		final StringBuilder aBuilder = new StringBuilder(theString.length() + 16);
+
+		try {
+			appendEscaped(aBuilder, theString);
+		}
+		catch (IOException e) {
+			// StringBuilder does not throw IOException
+			throw new AssertionError(e);
+		}
+
+		return aBuilder.toString();
+	}
+
+	/**
+	 * The flavors of query string rendering
+	 */
+	private enum Syntax {
+		SPARQL, ARQ, SERQL
+	}
+
+	/**
+	 * Size of the cache of rendered IRIs, must be a power of two
+	 */
+	private static final int IRI_CACHE_SIZE = 1 << 12;
+
+	/**
+	 * Direct-mapped cache of the {@code <iri>} form of recently rendered IRIs, indexed by the hash of the IRI.  Entries are
+	 * immutable, so racing threads at worst replace each other's entries.
+	 */
+	private static final RenderedIRI[] IRI_CACHE = new RenderedIRI[IRI_CACHE_SIZE];
+
+	private static final class RenderedIRI {
+		private final String mIRI;
+
+		private final String mRendered;
+
+		private RenderedIRI(final String theIRI) {
+			mIRI = theIRI;
+			mRendered = "<" + theIRI + ">";
+		}
+	}
+
+	/**
+	 * Return the {@code <iri>} form of the IRI, from the cache when possible
+	 */
+	private static String render(final IRI theIRI) {
+		final String aIRI = theIRI.stringValue();
+		final int aIndex = aIRI.hashCode() & (IRI_CACHE_SIZE - 1);
+
+		RenderedIRI aRendered = IRI_CACHE[aIndex];
+
+		if (aRendered == null || !aRendered.mIRI.equals(aIRI)) {
+			aRendered = new RenderedIRI(aIRI);
+			IRI_CACHE[aIndex] = aRendered;
+		}
+
+		return aRendered.mRendered;
+	}
+
+	private static String getQueryString(final Value theValue, final Syntax theSyntax) {
+		if (theValue instanceof IRI) {
+			return render((IRI) theValue);
+		}
+
+		final StringBuilder aBuilder = new StringBuilder();
+
+		try {
+			append(aBuilder, theValue, theSyntax);
+		}
+		catch (IOException e) {
+			// StringBuilder does not throw IOException
+			throw new AssertionError(e);
+		}
+
+		return aBuilder.toString();
+	}
+
+	private static void append(final Appendable theAppendable, final Value theValue, final Syntax theSyntax) throws IOException {
+		if (theValue instanceof IRI) {
+			theAppendable.append(render((IRI) theValue));
+		}
+		else if (theValue instanceof BNode) {
+			if (theSyntax == Syntax.ARQ) {
+				theAppendable.append("<_:").append(((BNode) theValue).getID()).append('>');
+			}
+			else {
+				theAppendable.append("_:").append(((BNode) theValue).getID());
+			}
+		}
+		else if (theValue instanceof Literal) {
+			final Literal aLit = (Literal) theValue;
+			final String aQuote = theSyntax == Syntax.SERQL ? "\"" : "\"\"\"";
+
+			theAppendable.append(aQuote);
+			appendEscaped(theAppendable, aLit.getLabel());
+			theAppendable.append(aQuote);
+
+			if (aLit.getLanguage().isPresent()) {
+				theAppendable.append('@').append(aLit.getLanguage().get());
+			}
+			else if (aLit.getDatatype() != null) {
+				theAppendable.append("^^").append(render(aLit.getDatatype()));
+			}
 		}
-		aMatcher.appendTail(aBuffer);
+	}
+
+	private static boolean needsEscape(final String theString) {
+		for (int i = 0; i < theString.length(); i++) {
+			final char aChar = theString.charAt(i);
 
-		return aBuffer.toString();
+			if (aChar == '"' || aChar == '\\') {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Append the {@link #escape escaped} form of the string in a single pass.  A backslash followed by a character which
+	 * does not form a valid escape sequence is doubled; double quotes are always escaped, so a backslash followed by a
+	 * quote is left alone and the quote escaped after it.
+	 */
+	private static void appendEscaped(final Appendable theAppendable, final String theString) throws IOException {
+		final int aLength = theString.length();
+
+		int aStart = 0;
+
+		for (int i = 0; i < aLength; i++) {
+			final char aChar = theString.charAt(i);
+
+			if (aChar == '"') {
+				theAppendable.append(theString, aStart, i).append("\\\"");
+				aStart = i + 1;
+			}
+			else if (aChar == '\\' && i + 1 < aLength && !isEscapable(theString.charAt(i + 1))) {
+				// double the backslash and keep the character it precedes as-is
+				theAppendable.append(theString, aStart, i).append("\\\\").append(theString.charAt(i + 1));
+				aStart = i + 2;
+				i++;
+			}
+		}
+
+		theAppendable.append(theString, aStart, aLength);
+	}
+
+	/**
+	 * Whether or not the character, following a backslash, is left as an escape sequence
+	 */
+	private static boolean isEscapable(final char theChar) {
+		switch (theChar) {
+			case 't':
+			case 'n':
+			case 'r':
+			case 'b':
+			case 'f':
+			case '"':
+			case '\'':
+			case '\\':
+				return true;
+			default:
+				return false;
+		}
 	}
 
     /**
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+
+/**
+ * <p>{@link StreamingTupleResultWriter} for the <a href="http://www.w3.org/TR/sparql11-results-csv-tsv/">SPARQL CSV</a>
+ * format.  As the format specifies, only the lexical form of literals is written; datatypes and language tags are lost.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class StreamingCSVWriter extends StreamingTupleResultWriter {
+	private static final byte[][] ESCAPES = OutputBuffer.escapes("\"", "\"\"");
+
+	public StreamingCSVWriter(final OutputStream theStream) {
+		this(new OutputBuffer(theStream));
+	}
+
+	public StreamingCSVWriter(final WritableByteChannel theChannel) {
+		this(new OutputBuffer(theChannel));
+	}
+
+	public StreamingCSVWriter(final OutputBuffer theOut) {
+		super(TupleQueryResultFormat.CSV, theOut);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeHeader(final List<String> theBindingNames) throws IOException {
+		final OutputBuffer aOut = getOutput();
+
+		for (int i = 0; i < theBindingNames.size(); i++) {
+			if (i > 0) {
+				aOut.write(',');
+			}
+
+			writeField(theBindingNames.get(i), aOut);
+		}
+
+		aOut.write('\r');
+		aOut.write('\n');
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeSolution(final BindingSet theBindings) throws IOException {
+		final OutputBuffer aOut = getOutput();
+		final List<String> aNames = getBindingNames();
+
+		for (int i = 0; i < aNames.size(); i++) {
+			if (i > 0) {
+				aOut.write(',');
+			}
+
+			final Value aValue = theBindings.getValue(aNames.get(i));
+
+			if (aValue != null) {
+				writeValue(aValue);
+			}
+		}
+
+		aOut.write('\r');
+		aOut.write('\n');
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeFooter() throws IOException {
+		// nothing to write
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void encode(final Value theValue, final OutputBuffer theOut) throws IOException {
+		if (theValue instanceof IRI) {
+			writeField(theValue.stringValue(), theOut);
+		}
+		else if (theValue instanceof BNode) {
+			theOut.write('_');
+			theOut.write(':');
+			writeField(((BNode) theValue).getID(), theOut);
+		}
+		else {
+			writeField(((Literal) theValue).getLabel(), theOut);
+		}
+	}
+
+	/**
+	 * Write the field, quoting it if it contains a character which is special in CSV
+	 */
+	private static void writeField(final String theField, final OutputBuffer theOut) throws IOException {
+		if (needsQuotes(theField)) {
+			theOut.write('"');
+			theOut.writeUtf8(theField, ESCAPES);
+			theOut.write('"');
+		}
+		else {
+			theOut.writeUtf8(theField);
+		}
+	}
+
+	private static boolean needsQuotes(final String theField) {
+		for (int i = 0; i < theField.length(); i++) {
+			switch (theField.charAt(i)) {
+				case '"':
+				case ',':
+				case '\r':
+				case '\n':
+					return true;
+				default:
+					break;
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+
+/**
+ * <p>{@link StreamingTupleResultWriter} for the <a href="http://www.w3.org/TR/sparql11-results-json/">SPARQL JSON</a>
+ * format.  The output is written without any whitespace; the {@code "name":} prefix of each binding is encoded once, when
+ * the header is written, and reused for every solution.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class StreamingJSONWriter extends StreamingTupleResultWriter {
+	private static final byte[][] ESCAPES = OutputBuffer.escapes("\"", "\\\"",
+	                                                             "\\", "\\\\",
+	                                                             "\n", "\\n",
+	                                                             "\r", "\\r",
+	                                                             "\t", "\\t");
+
+	static {
+		// the remaining control characters have no short form
+		for (char aChar = 0; aChar < 0x20; aChar++) {
+			if (ESCAPES[aChar] == null) {
+				ESCAPES[aChar] = bytes(String.format("\\u%04x", (int) aChar));
+			}
+		}
+	}
+
+	private static final byte[] HEAD = bytes("{\"head\":{\"vars\":[");
+	private static final byte[] RESULTS = bytes("]},\"results\":{\"bindings\":[");
+	private static final byte[] END = bytes("]}}\n");
+
+	private static final byte[] URI = bytes("{\"type\":\"uri\",\"value\":\"");
+	private static final byte[] BNODE = bytes("{\"type\":\"bnode\",\"value\":\"");
+	private static final byte[] LITERAL = bytes("{\"type\":\"literal\",\"value\":\"");
+	private static final byte[] LANG = bytes("\",\"xml:lang\":\"");
+	private static final byte[] DATATYPE = bytes("\",\"datatype\":\"");
+	private static final byte[] CLOSE = bytes("\"}");
+
+	/**
+	 * The encoded {@code "name":} prefix of each binding name, in order
+	 */
+	private byte[][] mNames;
+
+	private boolean mFirst;
+
+	public StreamingJSONWriter(final OutputStream theStream) {
+		this(new OutputBuffer(theStream));
+	}
+
+	public StreamingJSONWriter(final WritableByteChannel theChannel) {
+		this(new OutputBuffer(theChannel));
+	}
+
+	public StreamingJSONWriter(final OutputBuffer theOut) {
+		super(TupleQueryResultFormat.JSON, theOut);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeHeader(final List<String> theBindingNames) throws IOException {
+		final OutputBuffer aOut = getOutput();
+		final OutputBuffer aName = new OutputBuffer(64);
+
+		mNames = new byte[theBindingNames.size()][];
+		mFirst = true;
+
+		aOut.write(HEAD);
+
+		for (int i = 0; i < theBindingNames.size(); i++) {
+			aName.reset();
+			aName.write('"');
+			aName.writeUtf8(theBindingNames.get(i), ESCAPES);
+			aName.write('"');
+
+			if (i > 0) {
+				aOut.write(',');
+			}
+
+			aOut.write(aName.toByteArray());
+
+			aName.write(':');
+			mNames[i] = aName.toByteArray();
+		}
+
+		aOut.write(RESULTS);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeSolution(final BindingSet theBindings) throws IOException {
+		final OutputBuffer aOut = getOutput();
+		final List<String> aNames = getBindingNames();
+
+		if (!mFirst) {
+			aOut.write(',');
+		}
+
+		mFirst = false;
+
+		aOut.write('{');
+
+		boolean aFirstBinding = true;
+
+		for (int i = 0; i < aNames.size(); i++) {
+			final Value aValue = theBindings.getValue(aNames.get(i));
+
+			if (aValue == null) {
+				continue;
+			}
+
+			if (!aFirstBinding) {
+				aOut.write(',');
+			}
+
+			aFirstBinding = false;
+
+			aOut.write(mNames[i]);
+			writeValue(aValue);
+		}
+
+		aOut.write('}');
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeFooter() throws IOException {
+		getOutput().write(END);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void encode(final Value theValue, final OutputBuffer theOut) throws IOException {
+		if (theValue instanceof IRI) {
+			theOut.write(URI);
+			theOut.writeUtf8(theValue.stringValue(), ESCAPES);
+		}
+		else if (theValue instanceof BNode) {
+			theOut.write(BNODE);
+			theOut.writeUtf8(((BNode) theValue).getID(), ESCAPES);
+		}
+		else {
+			final Literal aLiteral = (Literal) theValue;
+
+			theOut.write(LITERAL);
+			theOut.writeUtf8(aLiteral.getLabel(), ESCAPES);
+
+			if (aLiteral.getLanguage().isPresent()) {
+				theOut.write(LANG);
+				theOut.writeUtf8(aLiteral.getLanguage().get(), ESCAPES);
+			}
+			else if (!XMLSchema.STRING.equals(aLiteral.getDatatype())) {
+				theOut.write(DATATYPE);
+				theOut.writeUtf8(aLiteral.getDatatype().stringValue(), ESCAPES);
+			}
+		}
+
+		theOut.write(CLOSE);
+	}
+
+	private static byte[] bytes(final String theString) {
+		return theString.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+
+/**
+ * <p>{@link StreamingTupleResultWriter} for the <a href="http://www.w3.org/TR/sparql11-results-csv-tsv/">SPARQL TSV</a>
+ * format.  Values are written in their N-Triples form; literals are never abbreviated.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class StreamingTSVWriter extends StreamingTupleResultWriter {
+	private static final byte[][] ESCAPES = OutputBuffer.escapes("\t", "\\t",
+	                                                             "\n", "\\n",
+	                                                             "\r", "\\r",
+	                                                             "\"", "\\\"",
+	                                                             "\\", "\\\\");
+
+	public StreamingTSVWriter(final OutputStream theStream) {
+		this(new OutputBuffer(theStream));
+	}
+
+	public StreamingTSVWriter(final WritableByteChannel theChannel) {
+		this(new OutputBuffer(theChannel));
+	}
+
+	public StreamingTSVWriter(final OutputBuffer theOut) {
+		super(TupleQueryResultFormat.TSV, theOut);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeHeader(final List<String> theBindingNames) throws IOException {
+		final OutputBuffer aOut = getOutput();
+
+		for (int i = 0; i < theBindingNames.size(); i++) {
+			if (i > 0) {
+				aOut.write('\t');
+			}
+
+			aOut.write('?');
+			aOut.writeUtf8(theBindingNames.get(i));
+		}
+
+		aOut.write('\n');
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeSolution(final BindingSet theBindings) throws IOException {
+		final OutputBuffer aOut = getOutput();
+		final List<String> aNames = getBindingNames();
+
+		for (int i = 0; i < aNames.size(); i++) {
+			if (i > 0) {
+				aOut.write('\t');
+			}
+
+			final Value aValue = theBindings.getValue(aNames.get(i));
+
+			if (aValue != null) {
+				writeValue(aValue);
+			}
+		}
+
+		aOut.write('\n');
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeFooter() throws IOException {
+		// nothing to write
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void encode(final Value theValue, final OutputBuffer theOut) throws IOException {
+		if (theValue instanceof IRI) {
+			theOut.write('<');
+			theOut.writeUtf8(theValue.stringValue());
+			theOut.write('>');
+		}
+		else if (theValue instanceof BNode) {
+			theOut.write('_');
+			theOut.write(':');
+			theOut.writeUtf8(((BNode) theValue).getID());
+		}
+		else {
+			final Literal aLiteral = (Literal) theValue;
+
+			theOut.write('"');
+			theOut.writeUtf8(aLiteral.getLabel(), ESCAPES);
+			theOut.write('"');
+
+			if (aLiteral.getLanguage().isPresent()) {
+				theOut.write('@');
+				theOut.writeUtf8(aLiteral.getLanguage().get());
+			}
+			else if (!XMLSchema.STRING.equals(aLiteral.getDatatype())) {
+				theOut.write('^');
+				theOut.write('^');
+				writeValue(aLiteral.getDatatype(), theOut);
+			}
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.query;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.TupleQueryResultHandlerException;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+import org.openrdf.query.resultio.TupleQueryResultWriter;
+
+/**
+ * <p>Base for high-throughput {@link TupleQueryResultWriter writers} which encode results directly into a reusable
+ * {@link OutputBuffer} rather than building a {@link String} for each binding.  The buffer is written to the underlying
+ * stream or channel in large blocks, and is flushed by {@link #endQueryResult()}; the stream is never closed.</p>
+ *
+ * <p>IRIs usually repeat many times in a result, so the encoded bytes of each IRI are cached and copied into the buffer
+ * on subsequent occurrences.  The cache is bounded and is simply cleared when it fills up.</p>
+ *
+ * <p>Writers are not thread-safe.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public abstract class StreamingTupleResultWriter extends AbstractQueryResultWriter implements TupleQueryResultWriter {
+
+	/**
+	 * The default maximum number of encoded IRIs cached by a writer
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+
+	private final OutputBuffer mOut;
+
+	private final OutputBuffer mScratch = new OutputBuffer(256);
+
+	private final Map<IRI, byte[]> mCache = new HashMap<>();
+
+	private final int mCacheSize;
+
+	private List<String> mBindingNames = ImmutableList.of();
+
+	protected StreamingTupleResultWriter(final TupleQueryResultFormat theFormat, final OutputBuffer theOut) {
+		this(theFormat, theOut, DEFAULT_CACHE_SIZE);
+	}
+
+	protected StreamingTupleResultWriter(final TupleQueryResultFormat theFormat, final OutputBuffer theOut, final int theCacheSize) {
+		super(theFormat);
+
+		mOut = theOut;
+		mCacheSize = theCacheSize;
+	}
+
+	/**
+	 * Write the start of the result
+	 *
+	 * @param theBindingNames	the binding names of the result
+	 *
+	 * @throws IOException	if there is an error writing
+	 */
+	protected abstract void writeHeader(final List<String> theBindingNames) throws IOException;
+
+	/**
+	 * Write a single solution of the result
+	 *
+	 * @param theBindings	the solution
+	 *
+	 * @throws IOException	if there is an error writing
+	 */
+	protected abstract void writeSolution(final BindingSet theBindings) throws IOException;
+
+	/**
+	 * Write the end of the result
+	 *
+	 * @throws IOException	if there is an error writing
+	 */
+	protected abstract void writeFooter() throws IOException;
+
+	/**
+	 * Encode the value in this writer's format.  For {@link IRI IRIs}, this is only called when the IRI is not in the
+	 * cache.
+	 *
+	 * @param theValue	the value
+	 * @param theOut	the buffer to write to
+	 *
+	 * @throws IOException	if there is an error writing
+	 */
+	protected abstract void encode(final Value theValue, final OutputBuffer theOut) throws IOException;
+
+	/**
+	 * Write the value to the buffer, using the cached encoding of an IRI when there is one
+	 *
+	 * @param theValue	the value
+	 * @param theOut	the buffer to write to
+	 *
+	 * @throws IOException	if there is an error writing
+	 */
+	protected void writeValue(final Value theValue, final OutputBuffer theOut) throws IOException {
+		if (!(theValue instanceof IRI)) {
+			encode(theValue, theOut);
+			return;
+		}
+
+		byte[] aBytes = mCache.get(theValue);
+
+		if (aBytes == null) {
+			mScratch.reset();
+			encode(theValue, mScratch);
+			aBytes = mScratch.toByteArray();
+
+			if (mCache.size() == mCacheSize) {
+				mCache.clear();
+			}
+
+			mCache.put((IRI) theValue, aBytes);
+		}
+
+		theOut.write(aBytes);
+	}
+
+	/**
+	 * Write the value to the {@link #getOutput() output}
+	 *
+	 * @param theValue	the value
+	 *
+	 * @throws IOException	if there is an error writing
+	 */
+	protected final void writeValue(final Value theValue) throws IOException {
+		writeValue(theValue, mOut);
+	}
+
+	/**
+	 * Return the buffer results are written to
+	 *
+	 * @return	the buffer
+	 */
+	protected final OutputBuffer getOutput() {
+		return mOut;
+	}
+
+	/**
+	 * Return the binding names of the result currently being written
+	 *
+	 * @return	the binding names
+	 */
+	protected final List<String> getBindingNames() {
+		return mBindingNames;
+	}
+
+	/**
+	 * Return the maximum number of IRIs cached by this writer
+	 *
+	 * @return	the cache size
+	 */
+	protected final int getCacheSize() {
+		return mCacheSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public final TupleQueryResultFormat getTupleQueryResultFormat() {
+		return (TupleQueryResultFormat) getQueryResultFormat();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startQueryResult(final List<String> theBindingNames) throws TupleQueryResultHandlerException {
+		mBindingNames = ImmutableList.copyOf(theBindingNames);
+		mCache.clear();
+
+		try {
+			writeHeader(mBindingNames);
+		}
+		catch (IOException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void handleSolution(final BindingSet theBindings) throws TupleQueryResultHandlerException {
+		try {
+			writeSolution(theBindings);
+		}
+		catch (IOException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endQueryResult() throws TupleQueryResultHandlerException {
+		try {
+			writeFooter();
+			mOut.flush();
+		}
+		catch (IOException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+		finally {
+			mCache.clear();
+		}
+	}
+}
@@ -0,0 +1,552 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.repository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.complexible.common.openrdf.query.SesameQueryUtils;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.Slice;
+import org.openrdf.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.query.parser.ParsedTupleQuery;
+import org.openrdf.query.parser.QueryParserUtil;
+import org.openrdf.repository.Repository;
+
+/**
+ * <p>Batches many small SPARQL lookups which differ only in the value of one variable into a single query.  Lookups for
+ * the same query and variable that arrive within the {@link BatchingQueryExecutorBuilder#window batching window} are
+ * collected, the distinct values are inlined into the query as a {@code VALUES} block at the start of its {@code WHERE}
+ * clause, the query is run once, and the results are handed back to each lookup by the value of its variable.</p>
+ *
+ * <p>For example, concurrent lookups of {@code select ?s ?name where { ?s foaf:name ?name }} with {@code ?s} bound to
+ * three different people are answered by one query:</p>
+ *
+ * <pre>
+ * select ?s ?name where { VALUES ?s { &lt;urn:a&gt; &lt;urn:b&gt; &lt;urn:c&gt; } ?s foaf:name ?name }
+ * </pre>
+ *
+ * <p>The variable must be projected by the query, so that results can be matched to lookups, and should be bound by the
+ * required part of the {@code WHERE} clause.  Queries using {@code LIMIT} or {@code OFFSET} are rejected since they
+ * would apply to the whole batch rather than to each lookup.  Blank nodes cannot be looked up.</p>
+ *
+ * <p>Batched queries run on the {@link BatchingQueryExecutorBuilder#executor query executor}, the
+ * {@link BatchingQueryExecutorBuilder#scheduler scheduler} only times the batching windows, so a slow query does not
+ * hold up the batches waiting behind it.  A batch is run early once it holds the
+ * {@link BatchingQueryExecutorBuilder#maxBatchSize maximum number} of distinct values.  Closing the executor runs any
+ * pending batches.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ *
+ * @see Repositories#selectQuery(Repository, QueryLanguage, String)
+ */
+public final class BatchingQueryExecutor implements AutoCloseable {
+
+	/**
+	 * The maximum number of rewritten query shapes which are kept
+	 */
+	private static final int MAX_SHAPES = 1024;
+
+	private final Function<String, TupleQueryResult> mQuery;
+
+	private final long mWindowNanos;
+
+	private final int mMaxBatchSize;
+
+	private final ScheduledExecutorService mScheduler;
+
+	private final boolean mOwnsScheduler;
+
+	private final Executor mExecutor;
+
+	/**
+	 * The executor's own query threads, or null if the queries are run on an executor provided by the caller
+	 */
+	private final ExecutorService mOwnedExecutor;
+
+	private final Cache<List<String>, Shape> mShapes = CacheBuilder.newBuilder()
+	                                                               .maximumSize(MAX_SHAPES)
+	                                                               .build();
+
+	private final ConcurrentMap<Shape, Batch> mPending = new ConcurrentHashMap<>();
+
+	private final AtomicLong mLookupCount = new AtomicLong();
+
+	private final AtomicLong mQueryCount = new AtomicLong();
+
+	private volatile boolean mClosed = false;
+
+	private BatchingQueryExecutor(final Function<String, TupleQueryResult> theQuery, final long theWindowNanos,
+	                              final int theMaxBatchSize, final ScheduledExecutorService theScheduler,
+	                              final Executor theExecutor) {
+		mQuery = theQuery;
+		mWindowNanos = theWindowNanos;
+		mMaxBatchSize = theMaxBatchSize;
+		mOwnsScheduler = theScheduler == null;
+		mScheduler = theScheduler != null
+		             ? theScheduler
+		             : Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+		                                                                                    .setNameFormat("BatchingQueryExecutor-%d")
+		                                                                                    .build());
+		mOwnedExecutor = theExecutor != null
+		                 ? null
+		                 : Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+		                                                                           .setNameFormat("BatchingQueryExecutor-query-%d")
+		                                                                           .build());
+		mExecutor = theExecutor != null ? theExecutor : mOwnedExecutor;
+	}
+
+	public static BatchingQueryExecutorBuilder builder(final Repository theRepository) {
+		Preconditions.checkNotNull(theRepository);
+
+		return new BatchingQueryExecutorBuilder(theQuery -> Repositories.selectQuery(theRepository, QueryLanguage.SPARQL, theQuery));
+	}
+
+	public static BatchingQueryExecutorBuilder builder(final ConnectionPool thePool) {
+		Preconditions.checkNotNull(thePool);
+
+		return new BatchingQueryExecutorBuilder(theQuery -> Repositories.selectQuery(thePool, QueryLanguage.SPARQL, theQuery));
+	}
+
+	/**
+	 * Look up the results of the SPARQL select query with the variable bound to the value.  The lookup is batched with
+	 * other lookups of the same query and variable.
+	 *
+	 * @param theQuery	the select query
+	 * @param theVar	the name of the variable, without the leading {@code ?}
+	 * @param theValue	the value of the variable
+	 * @return			the results of the query for the value; the future fails if the batched query fails
+	 *
+	 * @throws MalformedQueryException	if the query cannot be parsed, is not a select query, does not project the
+	 * 									variable, or uses {@code LIMIT} or {@code OFFSET}
+	 * @throws IllegalArgumentException	if the value is a blank node
+	 * @throws IllegalStateException	if the executor is closed
+	 */
+	public CompletableFuture<List<BindingSet>> select(final String theQuery, final String theVar, final Value theValue) {
+		Preconditions.checkNotNull(theValue);
+		Preconditions.checkArgument(!(theValue instanceof BNode), "Blank nodes cannot be used in a batched lookup");
+		Preconditions.checkState(!mClosed, "Executor is closed");
+
+		final Shape aShape = shape(theQuery, theVar);
+		final CompletableFuture<List<BindingSet>> aFuture = new CompletableFuture<>();
+
+		mLookupCount.incrementAndGet();
+
+		// the batch is only modified while the map holds the lock for its key, so a batch which has been removed to run
+		// is never added to
+		final Batch[] aCreated = new Batch[1];
+		final Batch[] aFull = new Batch[1];
+
+		mPending.compute(aShape, (theKey, theBatch) -> {
+			Batch aBatch = theBatch;
+
+			if (aBatch == null) {
+				aBatch = new Batch(theKey);
+				aCreated[0] = aBatch;
+			}
+
+			aBatch.mLookups.computeIfAbsent(theValue, theVal -> new ImmutableList.Builder<>()).add(aFuture);
+
+			if (aBatch.mLookups.size() >= mMaxBatchSize) {
+				aFull[0] = aBatch;
+				return null;
+			}
+
+			return aBatch;
+		});
+
+		if (aFull[0] != null) {
+			submit(aFull[0]);
+		}
+		else if (aCreated[0] != null) {
+			final Batch aBatch = aCreated[0];
+
+			try {
+				mScheduler.schedule(() -> {
+					if (mPending.remove(aShape, aBatch)) {
+						submit(aBatch);
+					}
+				}, mWindowNanos, TimeUnit.NANOSECONDS);
+			}
+			catch (RejectedExecutionException e) {
+				// the scheduler was shut down underneath us, run the batch now instead of dropping it
+				if (mPending.remove(aShape, aBatch)) {
+					submit(aBatch);
+				}
+			}
+		}
+
+		return aFuture;
+	}
+
+	/**
+	 * Run the batch on the query executor, or on the calling thread if the executor will not take it
+	 */
+	private void submit(final Batch theBatch) {
+		try {
+			mExecutor.execute(theBatch::run);
+		}
+		catch (RejectedExecutionException e) {
+			theBatch.run();
+		}
+	}
+
+	/**
+	 * Run all the pending batches now, on the calling thread
+	 */
+	public void flush() {
+		for (Shape aShape : mPending.keySet()) {
+			final Batch aBatch = mPending.remove(aShape);
+
+			if (aBatch != null) {
+				aBatch.run();
+			}
+		}
+	}
+
+	/**
+	 * Return the number of lookups made with this executor
+	 *
+	 * @return	the number of lookups
+	 */
+	public long getLookupCount() {
+		return mLookupCount.get();
+	}
+
+	/**
+	 * Return the number of batched queries run by this executor
+	 *
+	 * @return	the number of queries
+	 */
+	public long getQueryCount() {
+		return mQueryCount.get();
+	}
+
+	/**
+	 * Run the pending batches and stop accepting lookups.  The scheduler and the query executor are shut down if they
+	 * were created by this executor; batches already running on them are allowed to finish.
+	 */
+	@Override
+	public void close() {
+		mClosed = true;
+
+		flush();
+
+		if (mOwnsScheduler) {
+			mScheduler.shutdown();
+		}
+
+		if (mOwnedExecutor != null) {
+			mOwnedExecutor.shutdown();
+		}
+	}
+
+	private Shape shape(final String theQuery, final String theVar) {
+		final List<String> aKey = ImmutableList.of(theQuery, theVar);
+
+		Shape aShape = mShapes.getIfPresent(aKey);
+
+		if (aShape == null) {
+			// two threads may both create the shape of a new query, their lookups are then batched separately
+			aShape = new Shape(theQuery, theVar);
+			mShapes.put(aKey, aShape);
+		}
+
+		return aShape;
+	}
+
+	/**
+	 * Return the position of the brace which opens the {@code WHERE} clause of the select query, skipping comments,
+	 * string literals and IRIs in the prologue and projection
+	 *
+	 * @param theQuery	the query
+	 * @return			the position of the brace, or -1 if there is none
+	 */
+	static int whereClause(final String theQuery) {
+		final int aLength = theQuery.length();
+
+		for (int i = 0; i < aLength; i++) {
+			final char aChar = theQuery.charAt(i);
+
+			switch (aChar) {
+				case '{':
+					return i;
+				case '#': {
+					final int aEnd = theQuery.indexOf('\n', i);
+
+					if (aEnd == -1) {
+						return -1;
+					}
+
+					i = aEnd;
+					break;
+				}
+				case '"':
+				case '\'': {
+					final boolean aLong = theQuery.startsWith(aChar == '"' ? "\"\"\"" : "'''", i);
+
+					i += aLong ? 3 : 1;
+
+					while (i < aLength && !(aLong ? theQuery.startsWith(aChar == '"' ? "\"\"\"" : "'''", i)
+					                              : theQuery.charAt(i) == aChar)) {
+						if (theQuery.charAt(i) == '\\') {
+							i++;
+						}
+
+						i++;
+					}
+
+					if (aLong) {
+						i += 2;
+					}
+
+					break;
+				}
+				case '<': {
+					// an IRI, unless this is the less than operator in a projection expression
+					int j = i + 1;
+
+					while (j < aLength && theQuery.charAt(j) > ' ' && "<>\"{}|^`\\".indexOf(theQuery.charAt(j)) == -1) {
+						j++;
+					}
+
+					if (j < aLength && theQuery.charAt(j) == '>') {
+						i = j;
+					}
+
+					break;
+				}
+				default:
+					break;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * A query and the variable bound by its lookups, split around the point the {@code VALUES} block is inserted
+	 */
+	private static final class Shape {
+		private final String mHead;
+
+		private final String mTail;
+
+		private final String mVar;
+
+		private Shape(final String theQuery, final String theVar) {
+			Preconditions.checkNotNull(theVar);
+
+			final int aBrace = whereClause(theQuery);
+
+			if (aBrace == -1) {
+				throw new MalformedQueryException("Query has no WHERE clause: " + theQuery);
+			}
+
+			mHead = theQuery.substring(0, aBrace + 1);
+			mTail = theQuery.substring(aBrace + 1);
+			mVar = theVar;
+
+			// parse the query as it will be run, which also checks the VALUES block went where we expected
+			final ParsedQuery aQuery = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, rewrite(Collections.emptySet()), null);
+
+			if (!(aQuery instanceof ParsedTupleQuery)) {
+				throw new MalformedQueryException("Only select queries can be batched: " + theQuery);
+			}
+
+			if (!aQuery.getTupleExpr().getBindingNames().contains(theVar)) {
+				throw new MalformedQueryException("Query does not project ?" + theVar + ": " + theQuery);
+			}
+
+			final boolean[] aSliced = new boolean[1];
+
+			aQuery.getTupleExpr().visit(new AbstractQueryModelVisitor<RuntimeException>() {
+				@Override
+				public void meet(final Slice theSlice) {
+					aSliced[0] = true;
+				}
+			});
+
+			if (aSliced[0]) {
+				throw new MalformedQueryException("Queries using LIMIT or OFFSET cannot be batched: " + theQuery);
+			}
+		}
+
+		private String rewrite(final Iterable<Value> theValues) {
+			final StringBuilder aQuery = new StringBuilder(mHead.length() + mTail.length() + 64);
+
+			aQuery.append(mHead).append(" VALUES ?").append(mVar).append(" {");
+
+			for (Value aValue : theValues) {
+				SesameQueryUtils.appendTo(aQuery.append(' '), aValue);
+			}
+
+			return aQuery.append(" } ").append(mTail).toString();
+		}
+	}
+
+	/**
+	 * The lookups of one shape waiting to run, keyed by the value of the variable
+	 */
+	private final class Batch {
+		private final Shape mShape;
+
+		private final Map<Value, ImmutableList.Builder<CompletableFuture<List<BindingSet>>>> mLookups = Maps.newLinkedHashMap();
+
+		private Batch(final Shape theShape) {
+			mShape = theShape;
+		}
+
+		private void run() {
+			final Map<Value, ImmutableList.Builder<BindingSet>> aResults = Maps.newHashMapWithExpectedSize(mLookups.size());
+
+			try {
+				mQueryCount.incrementAndGet();
+
+				final TupleQueryResult aResult = mQuery.apply(mShape.rewrite(mLookups.keySet()));
+
+				try {
+					while (aResult.hasNext()) {
+						final BindingSet aBindings = aResult.next();
+						final Value aValue = aBindings.getValue(mShape.mVar);
+
+						if (aValue != null) {
+							aResults.computeIfAbsent(aValue, theVal -> ImmutableList.builder()).add(aBindings);
+						}
+					}
+				}
+				finally {
+					aResult.close();
+				}
+			}
+			catch (Throwable e) {
+				// every lookup has to hear about the failure, even an Error, or its caller waits forever
+				mLookups.values().forEach(theFutures -> theFutures.build().forEach(theFuture -> theFuture.completeExceptionally(e)));
+
+				Throwables.propagateIfInstanceOf(e, Error.class);
+				return;
+			}
+
+			for (Map.Entry<Value, ImmutableList.Builder<CompletableFuture<List<BindingSet>>>> aEntry : mLookups.entrySet()) {
+				final ImmutableList.Builder<BindingSet> aRows = aResults.get(aEntry.getKey());
+				final List<BindingSet> aList = aRows == null ? ImmutableList.of() : aRows.build();
+
+				aEntry.getValue().build().forEach(theFuture -> theFuture.complete(aList));
+			}
+		}
+	}
+
+	public static final class BatchingQueryExecutorBuilder {
+		private final Function<String, TupleQueryResult> mQuery;
+
+		private long mWindowNanos = TimeUnit.MILLISECONDS.toNanos(2);
+
+		private int mMaxBatchSize = 100;
+
+		private ScheduledExecutorService mScheduler;
+
+		private Executor mExecutor;
+
+		private BatchingQueryExecutorBuilder(final Function<String, TupleQueryResult> theQuery) {
+			mQuery = theQuery;
+		}
+
+		public BatchingQueryExecutor build() {
+			return new BatchingQueryExecutor(mQuery, mWindowNanos, mMaxBatchSize, mScheduler, mExecutor);
+		}
+
+		/**
+		 * Set how long lookups are collected for before their batch is run.  Defaults to two milliseconds.
+		 *
+		 * @param theTime	the batching window
+		 * @param theUnit	the unit of the window
+		 * @return			this builder
+		 */
+		public BatchingQueryExecutorBuilder window(final long theTime, final TimeUnit theUnit) {
+			Preconditions.checkArgument(theTime >= 0, "Window cannot be negative");
+
+			mWindowNanos = theUnit.toNanos(theTime);
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of distinct values in a batch; a full batch is run without waiting for the rest of its
+		 * window.  Defaults to 100.
+		 *
+		 * @param theMax	the maximum batch size
+		 * @return			this builder
+		 */
+		public BatchingQueryExecutorBuilder maxBatchSize(final int theMax) {
+			Preconditions.checkArgument(theMax > 0, "Max batch size must be positive");
+
+			mMaxBatchSize = theMax;
+			return this;
+		}
+
+		/**
+		 * Set the scheduler which times the batching windows; it only hands batches to the
+		 * {@link #executor query executor} and never runs a query itself.  It is not shut down when the executor is
+		 * closed.  By default the executor uses its own single daemon thread.
+		 *
+		 * @param theScheduler	the scheduler
+		 * @return				this builder
+		 */
+		public BatchingQueryExecutorBuilder scheduler(final ScheduledExecutorService theScheduler) {
+			mScheduler = Preconditions.checkNotNull(theScheduler);
+			return this;
+		}
+
+		/**
+		 * Set the executor which runs the batched queries.  A batch the executor rejects is run on the thread which
+		 * completed or timed it.  It is not shut down when the executor is closed.  By default the executor uses its own
+		 * cached pool of daemon threads.
+		 *
+		 * @param theExecutor	the executor for the queries
+		 * @return				this builder
+		 */
+		public BatchingQueryExecutorBuilder executor(final Executor theExecutor) {
+			mExecutor = Preconditions.checkNotNull(theExecutor);
+			return this;
+		}
+	}
+}
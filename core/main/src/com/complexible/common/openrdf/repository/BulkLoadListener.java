@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.repository;
+
+/**
+ * <p>Callback for the progress of a {@link BulkLoader bulk load}.  Callbacks are made from the thread performing the
+ * load after each batch is committed.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public interface BulkLoadListener {
+
+	/**
+	 * A listener which ignores all events
+	 */
+	BulkLoadListener NONE = (theStatements, theBytes, theElapsedMillis) -> { };
+
+	/**
+	 * Called after each batch has been committed
+	 *
+	 * @param theStatements		the total number of statements committed so far
+	 * @param theBytes			the approximate total size, in bytes, of the statements committed so far
+	 * @param theElapsedMillis	the time, in milliseconds, since the load started
+	 */
+	void batchCommitted(final long theStatements, final long theBytes, final long theElapsedMillis);
+
+	/**
+	 * Called once all the data has been loaded and committed.  By default, this does nothing.
+	 *
+	 * @param theStatements		the total number of statements loaded
+	 * @param theBytes			the approximate total size, in bytes, of the statements loaded
+	 * @param theElapsedMillis	the duration of the load in milliseconds
+	 */
+	default void loadComplete(final long theStatements, final long theBytes, final long theElapsedMillis) {
+	}
+}
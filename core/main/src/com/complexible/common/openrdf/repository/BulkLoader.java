@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.repository;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.helpers.AbstractRDFHandler;
+
+/**
+ * <p>Loads large amounts of RDF into a repository.  Unlike {@link RepositoryConnections#add(RepositoryConnection, Reader, RDFFormat, Resource, String)},
+ * which adds the entire input in a single transaction, the bulk loader commits the data in batches, every
+ * {@link BulkLoaderBuilder#batchSize N statements} or {@link BulkLoaderBuilder#batchBytes M bytes}, whichever comes
+ * first.  The data is parsed on a background thread while the calling thread adds the previous batches; a bounded queue
+ * between them keeps the parser from running too far ahead of the repository.</p>
+ *
+ * <p>Since each batch is its own transaction, a load which fails part way through leaves the batches committed before the
+ * failure in the repository.</p>
+ *
+ * <p>As with {@link org.openrdf.repository.util.RDFInserter}, blank nodes in the input are replaced by new blank nodes
+ * created by the connection, consistently across batches, and namespaces are only added if the prefix is not already
+ * defined.  Instances are immutable and can be used for any number of loads.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class BulkLoader {
+	private static final String DEFAULT_BASE = "http://openrdf.clarkparsia.com";
+
+	private final int mBatchSize;
+
+	private final long mBatchBytes;
+
+	private final int mQueueSize;
+
+	private final BulkLoadListener mListener;
+
+	private BulkLoader(final int theBatchSize, final long theBatchBytes, final int theQueueSize,
+	                   final BulkLoadListener theListener) {
+		mBatchSize = theBatchSize;
+		mBatchBytes = theBatchBytes;
+		mQueueSize = theQueueSize;
+		mListener = theListener;
+	}
+
+	public static BulkLoaderBuilder builder() {
+		return new BulkLoaderBuilder();
+	}
+
+	/**
+	 * Load the data into the repository.  The reader is closed when the load completes.
+	 *
+	 * @param theConn	the connection to the repository; this must not have an active transaction
+	 * @param theReader	the data to load
+	 * @param theFormat	the format of the data
+	 * @return			the number of statements loaded
+	 *
+	 * @throws IOException			if there was an error reading the data, or adding it to the repository
+	 * @throws RDFParseException	if the data could not be parsed
+	 */
+	public long load(final RepositoryConnection theConn, final Reader theReader, final RDFFormat theFormat) throws IOException, RDFParseException {
+		return load(theConn, theReader, theFormat, null, null);
+	}
+
+	/**
+	 * Load the data into the repository.  The reader is closed when the load completes.
+	 *
+	 * @param theConn		the connection to the repository; this must not have an active transaction
+	 * @param theReader		the data to load
+	 * @param theFormat		the format of the data
+	 * @param theContext	the context to add the data to, or null to use the contexts in the data
+	 * @param theBase		the base uri of the data, or null to use the context, or a default
+	 * @return				the number of statements loaded
+	 *
+	 * @throws IOException			if there was an error reading the data, or adding it to the repository
+	 * @throws RDFParseException	if the data could not be parsed
+	 */
+	public long load(final RepositoryConnection theConn, final Reader theReader, final RDFFormat theFormat,
+	                 final Resource theContext, final String theBase) throws IOException, RDFParseException {
+		final RDFParser aParser = RepositoryConnections.createParser(theFormat);
+
+		final BlockingQueue<Batch> aQueue = new ArrayBlockingQueue<>(mQueueSize);
+
+		aParser.setRDFHandler(new BatchingRDFHandler(aQueue));
+
+		final ExecutorService aExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+		                                                                                             .setNameFormat("BulkLoader-parser-%d")
+		                                                                                             .build());
+
+		final long aStart = System.currentTimeMillis();
+
+		long aStatements = 0;
+		long aBytes = 0;
+
+		try {
+			final Future<?> aParse = aExecutor.submit(() -> {
+				aParser.parse(theReader, theBase != null
+				                         ? theBase
+				                         : (theContext != null ? theContext.stringValue() : DEFAULT_BASE));
+				return null;
+			});
+
+			final Map<String, BNode> aBNodes = new HashMap<>();
+
+			while (true) {
+				final Batch aBatch = aQueue.poll(100, TimeUnit.MILLISECONDS);
+
+				if (aBatch == null) {
+					if (aParse.isDone()) {
+						// the parse ended without signalling the end of the data, so it failed
+						aParse.get();
+					}
+
+					continue;
+				}
+				else if (aBatch == Batch.END) {
+					break;
+				}
+
+				commit(theConn, aBatch, theContext, aBNodes);
+
+				aStatements += aBatch.mStatements.size();
+				aBytes += aBatch.mBytes;
+
+				mListener.batchCommitted(aStatements, aBytes, System.currentTimeMillis() - aStart);
+			}
+
+			mListener.loadComplete(aStatements, aBytes, System.currentTimeMillis() - aStart);
+
+			return aStatements;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		catch (ExecutionException e) {
+			Throwables.propagateIfInstanceOf(e.getCause(), RDFParseException.class);
+			Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+			throw new IOException(e.getCause());
+		}
+		catch (RepositoryException e) {
+			throw new IOException(e);
+		}
+		finally {
+			aExecutor.shutdownNow();
+			Closeables.close(theReader, true);
+		}
+	}
+
+	private static void commit(final RepositoryConnection theConn, final Batch theBatch, final Resource theContext,
+	                           final Map<String, BNode> theBNodes) throws RepositoryException {
+		final ValueFactory aFactory = theConn.getValueFactory();
+
+		theConn.begin();
+
+		try {
+			for (Map.Entry<String, String> aNamespace : theBatch.mNamespaces.entrySet()) {
+				if (theConn.getNamespace(aNamespace.getKey()) == null) {
+					theConn.setNamespace(aNamespace.getKey(), aNamespace.getValue());
+				}
+			}
+
+			for (Statement aStmt : theBatch.mStatements) {
+				final Resource aSubj = (Resource) bnode(aStmt.getSubject(), aFactory, theBNodes);
+				final Value aObj = bnode(aStmt.getObject(), aFactory, theBNodes);
+
+				if (theContext != null) {
+					theConn.add(aSubj, aStmt.getPredicate(), aObj, theContext);
+				}
+				else if (aStmt.getContext() != null) {
+					theConn.add(aSubj, aStmt.getPredicate(), aObj, (Resource) bnode(aStmt.getContext(), aFactory, theBNodes));
+				}
+				else {
+					theConn.add(aSubj, aStmt.getPredicate(), aObj);
+				}
+			}
+
+			theConn.commit();
+		}
+		catch (RuntimeException e) {
+			theConn.rollback();
+			throw e;
+		}
+		finally {
+			QueryResultCache.invalidateAll(theConn.getRepository());
+		}
+	}
+
+	private static Value bnode(final Value theValue, final ValueFactory theFactory, final Map<String, BNode> theBNodes) {
+		return theValue instanceof BNode
+		       ? theBNodes.computeIfAbsent(((BNode) theValue).getID(), theId -> theFactory.createBNode())
+		       : theValue;
+	}
+
+	/**
+	 * Return the approximate size of the statement, used to limit the size of the batches
+	 */
+	private static long size(final Statement theStatement) {
+		long aSize = theStatement.getSubject().stringValue().length()
+		             + theStatement.getPredicate().stringValue().length()
+		             + theStatement.getObject().stringValue().length();
+
+		if (theStatement.getObject() instanceof Literal) {
+			aSize += ((Literal) theStatement.getObject()).getDatatype().stringValue().length();
+		}
+
+		if (theStatement.getContext() != null) {
+			aSize += theStatement.getContext().stringValue().length();
+		}
+
+		return aSize;
+	}
+
+	private static final class Batch {
+		private static final Batch END = new Batch();
+
+		private final List<Statement> mStatements = new ArrayList<>();
+
+		private final Map<String, String> mNamespaces = new HashMap<>();
+
+		private long mBytes = 0;
+	}
+
+	/**
+	 * Collects parsed statements into batches and hands them off to the loading thread
+	 */
+	private final class BatchingRDFHandler extends AbstractRDFHandler {
+		private final BlockingQueue<Batch> mQueue;
+
+		private Batch mBatch = new Batch();
+
+		private BatchingRDFHandler(final BlockingQueue<Batch> theQueue) {
+			mQueue = theQueue;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void handleNamespace(final String thePrefix, final String theName) throws RDFHandlerException {
+			mBatch.mNamespaces.putIfAbsent(thePrefix, theName);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void handleStatement(final Statement theStatement) throws RDFHandlerException {
+			mBatch.mStatements.add(theStatement);
+			mBatch.mBytes += size(theStatement);
+
+			if (mBatch.mStatements.size() >= mBatchSize || mBatch.mBytes >= mBatchBytes) {
+				put(mBatch);
+				mBatch = new Batch();
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void endRDF() throws RDFHandlerException {
+			if (!mBatch.mStatements.isEmpty() || !mBatch.mNamespaces.isEmpty()) {
+				put(mBatch);
+			}
+
+			put(Batch.END);
+		}
+
+		private void put(final Batch theBatch) throws RDFHandlerException {
+			try {
+				mQueue.put(theBatch);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RDFHandlerException("Interrupted while waiting to hand off a batch", e);
+			}
+		}
+	}
+
+	public static final class BulkLoaderBuilder {
+		private int mBatchSize = 50000;
+
+		private long mBatchBytes = 64L << 20;
+
+		private int mQueueSize = 4;
+
+		private BulkLoadListener mListener = BulkLoadListener.NONE;
+
+		private BulkLoaderBuilder() {
+		}
+
+		public BulkLoader build() {
+			return new BulkLoader(mBatchSize, mBatchBytes, mQueueSize, mListener);
+		}
+
+		/**
+		 * Set the maximum number of statements committed in a single transaction.  Defaults to 50,000.
+		 *
+		 * @param theSize	the batch size
+		 * @return			this builder
+		 */
+		public BulkLoaderBuilder batchSize(final int theSize) {
+			Preconditions.checkArgument(theSize > 0, "Batch size must be positive");
+
+			mBatchSize = theSize;
+			return this;
+		}
+
+		/**
+		 * Set the approximate maximum number of bytes of data committed in a single transaction.  Defaults to 64MB.
+		 *
+		 * @param theBytes	the batch size in bytes
+		 * @return			this builder
+		 */
+		public BulkLoaderBuilder batchBytes(final long theBytes) {
+			Preconditions.checkArgument(theBytes > 0, "Batch bytes must be positive");
+
+			mBatchBytes = theBytes;
+			return this;
+		}
+
+		/**
+		 * Set the number of parsed batches which can wait to be added before the parser blocks.  Defaults to 4.
+		 *
+		 * @param theSize	the queue size
+		 * @return			this builder
+		 */
+		public BulkLoaderBuilder queueSize(final int theSize) {
+			Preconditions.checkArgument(theSize > 0, "Queue size must be positive");
+
+			mQueueSize = theSize;
+			return this;
+		}
+
+		public BulkLoaderBuilder listener(final BulkLoadListener theListener) {
+			mListener = Preconditions.checkNotNull(theListener);
+			return this;
+		}
+	}
+}
@@ -20,18 +20,23 @@ import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.RepositoryResult;
 
 /**
- * <p>A {}@link RepositoryResult} which will close the {@link RepositoryConnection} which created it when it's closed.</p>
+ * <p>A {@link RepositoryResult} which will close the {@link RepositoryConnection} which created it when it's closed.
+ * If the result is never closed, the {@link ResultLeakDetector} closes it and the connection once the result is
+ * unreachable.</p>
  *
  * @author  Michael Grove
  * @since   2.0
- * @version 2.0
+ * @version 4.1
  */
 public final class ConnectionClosingRepositoryResult<T> extends RepositoryResult<T> {
 	private final RepositoryConnection mConn;
 
+	private final ResultLeakDetector.Handle mHandle;
+
 	private ConnectionClosingRepositoryResult(final RepositoryConnection theConn, final RepositoryResult<T> theResult) {
 		super(theResult);
 		mConn = theConn;
+		mHandle = ResultLeakDetector.track(this, theResult, theConn);
 	}
 
 	public static <T> RepositoryResult<T> newResult(final RepositoryConnection theConn, final RepositoryResult<T> theResult) {
@@ -43,6 +48,8 @@ public final class ConnectionClosingRepositoryResult<T> extends RepositoryResult
 	 */
 	@Override
 	protected void handleClose() throws RepositoryException {
+		mHandle.closed();
+
 		super.handleClose();
 		mConn.close();
 	}
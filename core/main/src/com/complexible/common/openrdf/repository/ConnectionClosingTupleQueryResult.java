@@ -23,18 +23,23 @@ import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 
 /**
- * <p></p>
+ * <p>A {@link TupleQueryResult} which will close the {@link RepositoryConnection} which created it when it's closed.
+ * If the result is never closed, the {@link ResultLeakDetector} closes it and the connection once the result is
+ * unreachable.</p>
  *
  * @author  Michael Grove
  * @since   2.0
- * @version 3.0
+ * @version 4.1
  */
 public final class ConnectionClosingTupleQueryResult extends DelegatingTupleQueryResult {
 	private final RepositoryConnection mConn;
 
+	private final ResultLeakDetector.Handle mHandle;
+
 	public ConnectionClosingTupleQueryResult(final RepositoryConnection theConn, final TupleQueryResult theResult) {
 		super(theResult);
 		mConn = theConn;
+		mHandle = ResultLeakDetector.track(this, theResult, theConn);
 	}
 
 	/**
@@ -42,14 +47,19 @@ public final class ConnectionClosingTupleQueryResult extends DelegatingTupleQuer
 	 */
 	@Override
 	public void close() throws QueryEvaluationException {
+		mHandle.closed();
+
+		// close the result before the connection that produced it
 		try {
-			mConn.close();
-		}
-		catch (RepositoryException e) {
-			throw new QueryEvaluationException(e);
+			super.close();
 		}
 		finally {
-			super.close();
+			try {
+				mConn.close();
+			}
+			catch (RepositoryException e) {
+				throw new QueryEvaluationException(e);
+			}
 		}
 	}
 }
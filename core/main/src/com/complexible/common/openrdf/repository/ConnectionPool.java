@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.repository;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.base.RepositoryConnectionWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A bounded pool of {@link RepositoryConnection connections} to a {@link Repository}.  Useful when creating a
+ * connection is expensive, such as with a remote repository, and connections are used for many short operations.</p>
+ *
+ * <p>Connections are obtained with {@link #borrow()} and returned to the pool by {@link RepositoryConnection#close()
+ * closing} them.  When all connections are in use, borrowing blocks for up to the {@link ConnectionPoolBuilder#maxWait
+ * maximum wait time}.  Idle connections are reused most recently used first, and are closed once they have been idle for
+ * longer than the {@link ConnectionPoolBuilder#maxIdle maximum idle time}.  Connections can optionally be
+ * {@link ConnectionPoolBuilder#validator validated} before they are handed out; invalid connections are discarded.</p>
+ *
+ * <p>A connection returned with an active transaction has the transaction rolled back.  Closing the pool closes all the
+ * idle connections; connections in use are closed when they are returned.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ *
+ * @see Repositories
+ */
+public final class ConnectionPool implements AutoCloseable {
+	/**
+	 * the logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+	private final Repository mRepository;
+
+	private final int mMaxSize;
+
+	private final Semaphore mPermits;
+
+	private final BlockingDeque<IdleConnection> mIdle = new LinkedBlockingDeque<>();
+
+	private final long mMaxIdleNanos;
+
+	private final long mMaxWaitNanos;
+
+	private final Predicate<RepositoryConnection> mValidator;
+
+	private final ScheduledExecutorService mEvictor;
+
+	private volatile boolean mClosed = false;
+
+	private ConnectionPool(final Repository theRepository, final int theMaxSize, final long theMaxIdleNanos,
+	                       final long theMaxWaitNanos, final Predicate<RepositoryConnection> theValidator) {
+		mRepository = theRepository;
+		mMaxSize = theMaxSize;
+		mPermits = new Semaphore(theMaxSize, true);
+		mMaxIdleNanos = theMaxIdleNanos;
+		mMaxWaitNanos = theMaxWaitNanos;
+		mValidator = theValidator;
+
+		mEvictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+		                                                                               .setNameFormat("ConnectionPool-evictor-%d")
+		                                                                               .build());
+
+		final long aPeriod = Math.max(TimeUnit.MILLISECONDS.toNanos(100), theMaxIdleNanos / 2);
+
+		mEvictor.scheduleWithFixedDelay(this::evict, aPeriod, aPeriod, TimeUnit.NANOSECONDS);
+	}
+
+	public static ConnectionPoolBuilder builder(final Repository theRepository) {
+		return new ConnectionPoolBuilder(theRepository);
+	}
+
+	/**
+	 * Return the repository the connections in this pool are for
+	 *
+	 * @return	the repository
+	 */
+	public Repository getRepository() {
+		return mRepository;
+	}
+
+	/**
+	 * Borrow a connection from the pool.  The connection must be {@link RepositoryConnection#close() closed} to return
+	 * it to the pool.
+	 *
+	 * @return	a connection
+	 *
+	 * @throws RepositoryException	if the pool is closed, no connection became available within the maximum wait time,
+	 * 								or a new connection could not be created
+	 */
+	public RepositoryConnection borrow() throws RepositoryException {
+		if (mClosed) {
+			throw new RepositoryException("Connection pool is closed");
+		}
+
+		try {
+			if (!mPermits.tryAcquire(mMaxWaitNanos, TimeUnit.NANOSECONDS)) {
+				throw new RepositoryException("Timed out waiting for a connection");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RepositoryException("Interrupted while waiting for a connection", e);
+		}
+
+		try {
+			IdleConnection aIdle;
+			while ((aIdle = mIdle.pollFirst()) != null) {
+				if (isExpired(aIdle, System.nanoTime()) || !isValid(aIdle.mConnection)) {
+					closeQuietly(aIdle.mConnection);
+				}
+				else {
+					return new PooledConnection(aIdle.mConnection);
+				}
+			}
+
+			return new PooledConnection(mRepository.getConnection());
+		}
+		catch (RuntimeException e) {
+			mPermits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the number of connections currently borrowed from the pool
+	 *
+	 * @return	the number of active connections
+	 */
+	public int getActiveCount() {
+		return mMaxSize - mPermits.availablePermits();
+	}
+
+	/**
+	 * Return the number of open connections waiting in the pool
+	 *
+	 * @return	the number of idle connections
+	 */
+	public int getIdleCount() {
+		return mIdle.size();
+	}
+
+	/**
+	 * Close the pool and all of its idle connections
+	 */
+	@Override
+	public void close() {
+		mClosed = true;
+		mEvictor.shutdownNow();
+
+		IdleConnection aIdle;
+		while ((aIdle = mIdle.pollFirst()) != null) {
+			closeQuietly(aIdle.mConnection);
+		}
+	}
+
+	private void release(final RepositoryConnection theConnection) {
+		try {
+			boolean aReuse = !mClosed && theConnection.isOpen();
+
+			if (aReuse && theConnection.isActive()) {
+				LOGGER.warn("Connection returned to the pool with an active transaction, rolling back");
+				theConnection.rollback();
+			}
+
+			if (aReuse) {
+				final IdleConnection aIdle = new IdleConnection(theConnection, System.nanoTime());
+
+				mIdle.offerFirst(aIdle);
+
+				// the pool could have been closed while the connection was being returned
+				if (mClosed && mIdle.remove(aIdle)) {
+					closeQuietly(theConnection);
+				}
+			}
+			else {
+				closeQuietly(theConnection);
+			}
+		}
+		catch (RuntimeException e) {
+			LOGGER.warn("Discarding connection which could not be returned to the pool", e);
+			closeQuietly(theConnection);
+		}
+		finally {
+			mPermits.release();
+		}
+	}
+
+	/**
+	 * Close connections which have been idle for too long.  The least recently used connections are at the end of the
+	 * idle queue.
+	 */
+	private void evict() {
+		final long aNow = System.nanoTime();
+
+		IdleConnection aIdle;
+		while ((aIdle = mIdle.peekLast()) != null && isExpired(aIdle, aNow)) {
+			if (mIdle.removeLastOccurrence(aIdle)) {
+				closeQuietly(aIdle.mConnection);
+			}
+		}
+	}
+
+	private boolean isExpired(final IdleConnection theIdle, final long theNow) {
+		return theNow - theIdle.mIdleSince > mMaxIdleNanos;
+	}
+
+	private boolean isValid(final RepositoryConnection theConnection) {
+		try {
+			return theConnection.isOpen() && mValidator.test(theConnection);
+		}
+		catch (RuntimeException e) {
+			LOGGER.debug("Pooled connection failed validation", e);
+			return false;
+		}
+	}
+
+	private static void closeQuietly(final RepositoryConnection theConnection) {
+		RepositoryConnections.closeQuietly(theConnection);
+	}
+
+	private static final class IdleConnection {
+		private final RepositoryConnection mConnection;
+
+		private final long mIdleSince;
+
+		private IdleConnection(final RepositoryConnection theConnection, final long theIdleSince) {
+			mConnection = theConnection;
+			mIdleSince = theIdleSince;
+		}
+	}
+
+	/**
+	 * A borrowed connection which returns the underlying connection to the pool when it is closed
+	 */
+	private final class PooledConnection extends RepositoryConnectionWrapper {
+		/**
+		 * Not initialized in a field initializer, the wrapper's constructor already calls {@link #getDelegate()}
+		 */
+		private volatile boolean mReleased;
+
+		private PooledConnection(final RepositoryConnection theConnection) {
+			super(mRepository, theConnection);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 *
+		 * @throws IllegalStateException	if this connection has been returned to the pool, the underlying connection may
+		 * 									already be lent to another borrower
+		 */
+		@Override
+		public RepositoryConnection getDelegate() {
+			if (mReleased) {
+				throw new IllegalStateException("Connection has been returned to the pool");
+			}
+
+			return super.getDelegate();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isOpen() throws RepositoryException {
+			return !mReleased && super.getDelegate().isOpen();
+		}
+
+		/**
+		 * Return the connection to the pool
+		 */
+		@Override
+		public void close() throws RepositoryException {
+			synchronized (this) {
+				if (mReleased) {
+					return;
+				}
+
+				mReleased = true;
+			}
+
+			release(super.getDelegate());
+		}
+	}
+
+	public static final class ConnectionPoolBuilder {
+		private final Repository mRepository;
+
+		private int mMaxSize = 8;
+
+		private long mMaxIdleNanos = TimeUnit.MINUTES.toNanos(5);
+
+		private long mMaxWaitNanos = TimeUnit.SECONDS.toNanos(30);
+
+		private Predicate<RepositoryConnection> mValidator = theConn -> true;
+
+		private ConnectionPoolBuilder(final Repository theRepository) {
+			mRepository = Preconditions.checkNotNull(theRepository);
+		}
+
+		public ConnectionPool build() {
+			return new ConnectionPool(mRepository, mMaxSize, mMaxIdleNanos, mMaxWaitNanos, mValidator);
+		}
+
+		/**
+		 * Set the maximum number of connections, in use or idle, in the pool.  Defaults to 8.
+		 *
+		 * @param theSize	the maximum size
+		 * @return			this builder
+		 */
+		public ConnectionPoolBuilder maxSize(final int theSize) {
+			Preconditions.checkArgument(theSize > 0, "Pool size must be positive");
+
+			mMaxSize = theSize;
+			return this;
+		}
+
+		/**
+		 * Set how long a connection can sit idle in the pool before it is closed.  Defaults to five minutes.
+		 *
+		 * @param theTime	the idle time
+		 * @param theUnit	the unit of the idle time
+		 * @return			this builder
+		 */
+		public ConnectionPoolBuilder maxIdle(final long theTime, final TimeUnit theUnit) {
+			Preconditions.checkArgument(theTime > 0, "Idle time must be positive");
+
+			mMaxIdleNanos = theUnit.toNanos(theTime);
+			return this;
+		}
+
+		/**
+		 * Set how long {@link ConnectionPool#borrow()} will wait for a connection when all are in use.  Defaults to
+		 * thirty seconds.
+		 *
+		 * @param theTime	the wait time
+		 * @param theUnit	the unit of the wait time
+		 * @return			this builder
+		 */
+		public ConnectionPoolBuilder maxWait(final long theTime, final TimeUnit theUnit) {
+			Preconditions.checkArgument(theTime >= 0, "Wait time cannot be negative");
+
+			mMaxWaitNanos = theUnit.toNanos(theTime);
+			return this;
+		}
+
+		/**
+		 * Set the check applied to an idle connection before it is borrowed; connections which fail the check are
+		 * closed and discarded.  By default connections are only checked to be {@link RepositoryConnection#isOpen open}.
+		 *
+		 * @param theValidator	the validation check
+		 * @return				this builder
+		 */
+		public ConnectionPoolBuilder validator(final Predicate<RepositoryConnection> theValidator) {
+			mValidator = Preconditions.checkNotNull(theValidator);
+			return this;
+		}
+	}
+}
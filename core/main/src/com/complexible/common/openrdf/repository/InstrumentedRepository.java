@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.complexible.common.openrdf.util.Metrics;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.base.RepositoryWrapper;
+
+/**
+ * <p>A {@link Repository} whose connections record the count and latency of their calls in a {@link Metrics}.</p>
+ *
+ * <p>Reads and writes through a connection are recorded under the name of the call, e.g. {@link #GET_STATEMENTS},
+ * {@link #HAS_STATEMENT}, {@link #ADD} or {@link #COMMIT}, and preparing a query of any kind as {@link #PREPARE}.
+ * Evaluating a query is recorded as {@code <kind>.evaluate}, where the kind is {@link #TUPLE}, {@link #GRAPH} or
+ * {@link #BOOLEAN}, and executing an update as {@link #UPDATE}.</p>
+ *
+ * <p>Results are timed as well.  For a tuple or graph query, or the result of {@code getStatements}, the time from the
+ * start of the evaluation to the first result is recorded as {@code <kind>.firstResult}, the time to the end of the
+ * result, whether it is exhausted or closed, as {@code <kind>.iterate}, and the number of results read as a
+ * {@link Metrics#sample sample} named {@code <kind>.results}.  When the result is wrapped in a
+ * {@link ConnectionClosingTupleQueryResult} or one of its siblings, as {@link Repositories#selectQuery} does, the
+ * iteration time covers the whole life of the borrowed connection.  Queries evaluated with a result handler record
+ * only {@code <kind>.iterate}.</p>
+ *
+ * <p>The number of {@link #OPEN_CONNECTIONS open connections} and {@link #OPEN_RESULTS open results}, and the number
+ * of {@link #LEAKED_RESULTS leaked results}, results which were neither exhausted nor closed when their connection was
+ * closed, are registered as gauges.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class InstrumentedRepository extends RepositoryWrapper {
+
+	public static final String GET_CONNECTION = "getConnection";
+
+	public static final String GET_STATEMENTS = "getStatements";
+
+	public static final String HAS_STATEMENT = "hasStatement";
+
+	public static final String SIZE = "size";
+
+	public static final String EXPORT = "export";
+
+	public static final String ADD = "add";
+
+	public static final String REMOVE = "remove";
+
+	public static final String CLEAR = "clear";
+
+	public static final String BEGIN = "begin";
+
+	public static final String COMMIT = "commit";
+
+	public static final String ROLLBACK = "rollback";
+
+	public static final String PREPARE = "prepare";
+
+	public static final String TUPLE = "tuple";
+
+	public static final String GRAPH = "graph";
+
+	public static final String BOOLEAN = "boolean";
+
+	public static final String UPDATE = "update";
+
+	public static final String EVALUATE = ".evaluate";
+
+	public static final String FIRST_RESULT = ".firstResult";
+
+	public static final String ITERATE = ".iterate";
+
+	public static final String RESULTS = ".results";
+
+	/**
+	 * Gauge of the number of connections which have been opened and not yet closed
+	 */
+	public static final String OPEN_CONNECTIONS = "connections.open";
+
+	/**
+	 * Gauge of the number of results which have been neither exhausted nor closed
+	 */
+	public static final String OPEN_RESULTS = "results.open";
+
+	/**
+	 * Gauge of the total number of results which were still open when their connection was closed
+	 */
+	public static final String LEAKED_RESULTS = "results.leaked";
+
+	private final Metrics mMetrics;
+
+	private final AtomicInteger mOpenConnections = new AtomicInteger();
+
+	private final AtomicInteger mOpenResults = new AtomicInteger();
+
+	private final AtomicLong mLeakedResults = new AtomicLong();
+
+	/**
+	 * Create a new InstrumentedRepository
+	 *
+	 * @param theRepository	the repository to instrument
+	 * @param theMetrics	the metrics the calls are recorded in
+	 */
+	public InstrumentedRepository(final Repository theRepository, final Metrics theMetrics) {
+		super(theRepository);
+
+		mMetrics = theMetrics;
+
+		theMetrics.gauge(OPEN_CONNECTIONS, mOpenConnections::get);
+		theMetrics.gauge(OPEN_RESULTS, mOpenResults::get);
+		theMetrics.gauge(LEAKED_RESULTS, mLeakedResults::get);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RepositoryConnection getConnection() throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			final RepositoryConnection aConn = new InstrumentedRepositoryConnection(this, super.getConnection());
+
+			mOpenConnections.incrementAndGet();
+
+			return aConn;
+		}
+		finally {
+			mMetrics.record(GET_CONNECTION, System.nanoTime() - aStart);
+		}
+	}
+
+	/**
+	 * Return the number of connections which have been opened and not yet closed
+	 *
+	 * @return	the number of open connections
+	 */
+	public int getOpenConnections() {
+		return mOpenConnections.get();
+	}
+
+	/**
+	 * Return the number of results which have been neither exhausted nor closed, not counting leaked results
+	 *
+	 * @return	the number of open results
+	 */
+	public int getOpenResults() {
+		return mOpenResults.get();
+	}
+
+	/**
+	 * Return the number of results which were still open when their connection was closed
+	 *
+	 * @return	the number of leaked results
+	 */
+	public long getLeakedResults() {
+		return mLeakedResults.get();
+	}
+
+	Metrics getMetrics() {
+		return mMetrics;
+	}
+
+	void connectionClosed() {
+		mOpenConnections.decrementAndGet();
+	}
+
+	void resultOpened() {
+		mOpenResults.incrementAndGet();
+	}
+
+	void resultClosed() {
+		mOpenResults.decrementAndGet();
+	}
+
+	void resultLeaked() {
+		mOpenResults.decrementAndGet();
+		mLeakedResults.incrementAndGet();
+	}
+}
@@ -0,0 +1,888 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.complexible.common.openrdf.query.DelegatingGraphQueryResult;
+import com.complexible.common.openrdf.query.DelegatingTupleQueryResult;
+import com.complexible.common.openrdf.util.Metrics;
+import com.google.common.collect.Sets;
+import info.aduna.iteration.Iteration;
+import org.openrdf.IsolationLevel;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.BooleanQuery;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.GraphQuery;
+import org.openrdf.query.GraphQueryResult;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.Operation;
+import org.openrdf.query.Query;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.TupleQueryResultHandler;
+import org.openrdf.query.TupleQueryResultHandlerException;
+import org.openrdf.query.Update;
+import org.openrdf.query.UpdateExecutionException;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.repository.base.RepositoryConnectionWrapper;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+
+/**
+ * <p>The connection handed out by an {@link InstrumentedRepository}.  Every call is timed, and the queries and
+ * results it creates are wrapped so their evaluation and iteration are timed too.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+final class InstrumentedRepositoryConnection extends RepositoryConnectionWrapper {
+
+	private final InstrumentedRepository mRepository;
+
+	private final Metrics mMetrics;
+
+	/**
+	 * The results created by this connection which are still open
+	 */
+	private final Set<ResultTimer> mResults = Sets.newConcurrentHashSet();
+
+	private final AtomicBoolean mClosed = new AtomicBoolean(false);
+
+	InstrumentedRepositoryConnection(final InstrumentedRepository theRepository, final RepositoryConnection theConnection) {
+		super(theRepository, theConnection);
+
+		mRepository = theRepository;
+		mMetrics = theRepository.getMetrics();
+	}
+
+	private void record(final String theName, final long theStart) {
+		mMetrics.record(theName, System.nanoTime() - theStart);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws RepositoryException {
+		if (mClosed.compareAndSet(false, true)) {
+			for (ResultTimer aTimer : mResults) {
+				aTimer.leaked();
+			}
+
+			mRepository.connectionClosed();
+		}
+
+		super.close();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RepositoryResult<Statement> getStatements(final Resource subj, final IRI pred, final Value obj,
+	                                                 final boolean includeInferred, final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+
+		final RepositoryResult<Statement> aResult;
+		try {
+			aResult = super.getStatements(subj, pred, obj, includeInferred, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.GET_STATEMENTS, aStart);
+		}
+
+		final ResultTimer aTimer = new ResultTimer(InstrumentedRepository.GET_STATEMENTS, aStart);
+
+		return new RepositoryResult<Statement>(aResult) {
+			@Override
+			public boolean hasNext() throws RepositoryException {
+				final boolean aHasNext = super.hasNext();
+
+				if (!aHasNext) {
+					aTimer.end();
+				}
+
+				return aHasNext;
+			}
+
+			@Override
+			public Statement next() throws RepositoryException {
+				final Statement aStmt = super.next();
+
+				aTimer.next();
+
+				return aStmt;
+			}
+
+			@Override
+			protected void handleClose() throws RepositoryException {
+				try {
+					super.handleClose();
+				}
+				finally {
+					aTimer.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasStatement(final Resource subj, final IRI pred, final Value obj, final boolean includeInferred,
+	                            final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			return super.hasStatement(subj, pred, obj, includeInferred, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.HAS_STATEMENT, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasStatement(final Statement st, final boolean includeInferred, final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			return super.hasStatement(st, includeInferred, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.HAS_STATEMENT, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long size(final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			return super.size(contexts);
+		}
+		finally {
+			record(InstrumentedRepository.SIZE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void exportStatements(final Resource subj, final IRI pred, final Value obj, final boolean includeInferred,
+	                             final RDFHandler handler, final Resource... contexts) throws RepositoryException, RDFHandlerException {
+		final long aStart = System.nanoTime();
+		try {
+			super.exportStatements(subj, pred, obj, includeInferred, handler, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.EXPORT, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(final File file, final String baseURI, final RDFFormat dataFormat, final Resource... contexts) throws IOException, RDFParseException, RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.add(file, baseURI, dataFormat, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(final URL url, final String baseURI, final RDFFormat dataFormat, final Resource... contexts) throws IOException, RDFParseException, RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.add(url, baseURI, dataFormat, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(final InputStream in, final String baseURI, final RDFFormat dataFormat, final Resource... contexts) throws IOException, RDFParseException, RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.add(in, baseURI, dataFormat, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(final Reader reader, final String baseURI, final RDFFormat dataFormat, final Resource... contexts) throws IOException, RDFParseException, RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.add(reader, baseURI, dataFormat, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(final Iterable<? extends Statement> statements, final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.add(statements, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <E extends Exception> void add(final Iteration<? extends Statement, E> statements, final Resource... contexts) throws RepositoryException, E {
+		final long aStart = System.nanoTime();
+		try {
+			super.add(statements, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(final Resource subject, final IRI predicate, final Value object, final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.add(subject, predicate, object, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(final Statement st, final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.add(st, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.ADD, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove(final Iterable<? extends Statement> statements, final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.remove(statements, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.REMOVE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <E extends Exception> void remove(final Iteration<? extends Statement, E> statements, final Resource... contexts) throws RepositoryException, E {
+		final long aStart = System.nanoTime();
+		try {
+			super.remove(statements, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.REMOVE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove(final Resource subject, final IRI predicate, final Value object, final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.remove(subject, predicate, object, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.REMOVE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove(final Statement st, final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.remove(st, contexts);
+		}
+		finally {
+			record(InstrumentedRepository.REMOVE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear(final Resource... contexts) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.clear(contexts);
+		}
+		finally {
+			record(InstrumentedRepository.CLEAR, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void begin() throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.begin();
+		}
+		finally {
+			record(InstrumentedRepository.BEGIN, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void begin(final IsolationLevel level) throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.begin(level);
+		}
+		finally {
+			record(InstrumentedRepository.BEGIN, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void commit() throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.commit();
+		}
+		finally {
+			record(InstrumentedRepository.COMMIT, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void rollback() throws RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			super.rollback();
+		}
+		finally {
+			record(InstrumentedRepository.ROLLBACK, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Query prepareQuery(final QueryLanguage ql, final String query, final String baseURI) throws MalformedQueryException, RepositoryException {
+		final long aStart = System.nanoTime();
+
+		final Query aQuery;
+		try {
+			aQuery = super.prepareQuery(ql, query, baseURI);
+		}
+		finally {
+			record(InstrumentedRepository.PREPARE, aStart);
+		}
+
+		if (aQuery instanceof TupleQuery) {
+			return new TimedTupleQuery((TupleQuery) aQuery);
+		}
+		else if (aQuery instanceof GraphQuery) {
+			return new TimedGraphQuery((GraphQuery) aQuery);
+		}
+		else if (aQuery instanceof BooleanQuery) {
+			return new TimedBooleanQuery((BooleanQuery) aQuery);
+		}
+		else {
+			return aQuery;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public TupleQuery prepareTupleQuery(final QueryLanguage ql, final String query, final String baseURI) throws MalformedQueryException, RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			return new TimedTupleQuery(super.prepareTupleQuery(ql, query, baseURI));
+		}
+		finally {
+			record(InstrumentedRepository.PREPARE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public GraphQuery prepareGraphQuery(final QueryLanguage ql, final String query, final String baseURI) throws MalformedQueryException, RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			return new TimedGraphQuery(super.prepareGraphQuery(ql, query, baseURI));
+		}
+		finally {
+			record(InstrumentedRepository.PREPARE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BooleanQuery prepareBooleanQuery(final QueryLanguage ql, final String query, final String baseURI) throws MalformedQueryException, RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			return new TimedBooleanQuery(super.prepareBooleanQuery(ql, query, baseURI));
+		}
+		finally {
+			record(InstrumentedRepository.PREPARE, aStart);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Update prepareUpdate(final QueryLanguage ql, final String update, final String baseURI) throws MalformedQueryException, RepositoryException {
+		final long aStart = System.nanoTime();
+		try {
+			return new TimedUpdate(super.prepareUpdate(ql, update, baseURI));
+		}
+		finally {
+			record(InstrumentedRepository.PREPARE, aStart);
+		}
+	}
+
+	/**
+	 * Times one result of this connection from the start of its evaluation.  The first result and the end of the
+	 * result are recorded at most once; a result which is still open when the connection is closed is counted as
+	 * leaked instead.
+	 */
+	private final class ResultTimer {
+		private final String mKind;
+
+		private final long mStart;
+
+		private final AtomicBoolean mDone = new AtomicBoolean(false);
+
+		private long mCount = 0;
+
+		private ResultTimer(final String theKind, final long theStart) {
+			mKind = theKind;
+			mStart = theStart;
+
+			mResults.add(this);
+			mRepository.resultOpened();
+		}
+
+		private void next() {
+			if (mCount++ == 0) {
+				record(mKind + InstrumentedRepository.FIRST_RESULT, mStart);
+			}
+		}
+
+		private void end() {
+			if (mDone.compareAndSet(false, true)) {
+				record(mKind + InstrumentedRepository.ITERATE, mStart);
+				mMetrics.sample(mKind + InstrumentedRepository.RESULTS, mCount);
+
+				mResults.remove(this);
+				mRepository.resultClosed();
+			}
+		}
+
+		private void leaked() {
+			if (mDone.compareAndSet(false, true)) {
+				mResults.remove(this);
+				mRepository.resultLeaked();
+			}
+		}
+	}
+
+	private final class TimedTupleQueryResult extends DelegatingTupleQueryResult {
+		private final ResultTimer mTimer;
+
+		private TimedTupleQueryResult(final TupleQueryResult theResult, final ResultTimer theTimer) {
+			super(theResult);
+
+			mTimer = theTimer;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() throws QueryEvaluationException {
+			final boolean aHasNext = super.hasNext();
+
+			if (!aHasNext) {
+				mTimer.end();
+			}
+
+			return aHasNext;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public BindingSet next() throws QueryEvaluationException {
+			final BindingSet aBindings = super.next();
+
+			mTimer.next();
+
+			return aBindings;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws QueryEvaluationException {
+			try {
+				super.close();
+			}
+			finally {
+				mTimer.end();
+			}
+		}
+	}
+
+	private final class TimedGraphQueryResult extends DelegatingGraphQueryResult {
+		private final ResultTimer mTimer;
+
+		private TimedGraphQueryResult(final GraphQueryResult theResult, final ResultTimer theTimer) {
+			super(theResult);
+
+			mTimer = theTimer;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() throws QueryEvaluationException {
+			final boolean aHasNext = super.hasNext();
+
+			if (!aHasNext) {
+				mTimer.end();
+			}
+
+			return aHasNext;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Statement next() throws QueryEvaluationException {
+			final Statement aStmt = super.next();
+
+			mTimer.next();
+
+			return aStmt;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws QueryEvaluationException {
+			try {
+				super.close();
+			}
+			finally {
+				mTimer.end();
+			}
+		}
+	}
+
+	/**
+	 * Base class for the timed queries, which delegates the configuration of the operation
+	 */
+	private static abstract class DelegatingOperation<T extends Operation> implements Operation {
+		protected final T mOperation;
+
+		private DelegatingOperation(final T theOperation) {
+			mOperation = theOperation;
+		}
+
+		@Override
+		public void setBinding(final String theName, final Value theValue) {
+			mOperation.setBinding(theName, theValue);
+		}
+
+		@Override
+		public void removeBinding(final String theName) {
+			mOperation.removeBinding(theName);
+		}
+
+		@Override
+		public void clearBindings() {
+			mOperation.clearBindings();
+		}
+
+		@Override
+		public BindingSet getBindings() {
+			return mOperation.getBindings();
+		}
+
+		@Override
+		public void setDataset(final Dataset theDataset) {
+			mOperation.setDataset(theDataset);
+		}
+
+		@Override
+		public Dataset getDataset() {
+			return mOperation.getDataset();
+		}
+
+		@Override
+		public void setIncludeInferred(final boolean theIncludeInferred) {
+			mOperation.setIncludeInferred(theIncludeInferred);
+		}
+
+		@Override
+		public boolean getIncludeInferred() {
+			return mOperation.getIncludeInferred();
+		}
+
+		@Override
+		public void setMaxExecutionTime(final int theMaxTime) {
+			mOperation.setMaxExecutionTime(theMaxTime);
+		}
+
+		@Override
+		public int getMaxExecutionTime() {
+			return mOperation.getMaxExecutionTime();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return mOperation.toString();
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private static abstract class DelegatingQuery<T extends Query> extends DelegatingOperation<T> implements Query {
+		private DelegatingQuery(final T theQuery) {
+			super(theQuery);
+		}
+
+		@Override
+		@Deprecated
+		public void setMaxQueryTime(final int theMaxTime) {
+			mOperation.setMaxQueryTime(theMaxTime);
+		}
+
+		@Override
+		@Deprecated
+		public int getMaxQueryTime() {
+			return mOperation.getMaxQueryTime();
+		}
+	}
+
+	private final class TimedTupleQuery extends DelegatingQuery<TupleQuery> implements TupleQuery {
+		private TimedTupleQuery(final TupleQuery theQuery) {
+			super(theQuery);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public TupleQueryResult evaluate() throws QueryEvaluationException {
+			final long aStart = System.nanoTime();
+
+			final TupleQueryResult aResult;
+			try {
+				aResult = mOperation.evaluate();
+			}
+			finally {
+				record(InstrumentedRepository.TUPLE + InstrumentedRepository.EVALUATE, aStart);
+			}
+
+			return new TimedTupleQueryResult(aResult, new ResultTimer(InstrumentedRepository.TUPLE, aStart));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void evaluate(final TupleQueryResultHandler theHandler) throws QueryEvaluationException, TupleQueryResultHandlerException {
+			final long aStart = System.nanoTime();
+			try {
+				mOperation.evaluate(theHandler);
+			}
+			finally {
+				record(InstrumentedRepository.TUPLE + InstrumentedRepository.ITERATE, aStart);
+			}
+		}
+	}
+
+	private final class TimedGraphQuery extends DelegatingQuery<GraphQuery> implements GraphQuery {
+		private TimedGraphQuery(final GraphQuery theQuery) {
+			super(theQuery);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public GraphQueryResult evaluate() throws QueryEvaluationException {
+			final long aStart = System.nanoTime();
+
+			final GraphQueryResult aResult;
+			try {
+				aResult = mOperation.evaluate();
+			}
+			finally {
+				record(InstrumentedRepository.GRAPH + InstrumentedRepository.EVALUATE, aStart);
+			}
+
+			return new TimedGraphQueryResult(aResult, new ResultTimer(InstrumentedRepository.GRAPH, aStart));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void evaluate(final RDFHandler theHandler) throws QueryEvaluationException, RDFHandlerException {
+			final long aStart = System.nanoTime();
+			try {
+				mOperation.evaluate(theHandler);
+			}
+			finally {
+				record(InstrumentedRepository.GRAPH + InstrumentedRepository.ITERATE, aStart);
+			}
+		}
+	}
+
+	private final class TimedBooleanQuery extends DelegatingQuery<BooleanQuery> implements BooleanQuery {
+		private TimedBooleanQuery(final BooleanQuery theQuery) {
+			super(theQuery);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean evaluate() throws QueryEvaluationException {
+			final long aStart = System.nanoTime();
+			try {
+				return mOperation.evaluate();
+			}
+			finally {
+				record(InstrumentedRepository.BOOLEAN + InstrumentedRepository.EVALUATE, aStart);
+			}
+		}
+	}
+
+	private final class TimedUpdate extends DelegatingOperation<Update> implements Update {
+		private TimedUpdate(final Update theUpdate) {
+			super(theUpdate);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void execute() throws UpdateExecutionException {
+			final long aStart = System.nanoTime();
+			try {
+				mOperation.execute();
+			}
+			finally {
+				record(InstrumentedRepository.UPDATE, aStart);
+			}
+		}
+	}
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.repository;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.complexible.common.openrdf.query.ImmutableBindingSet;
+import com.complexible.common.openrdf.query.ImmutableDataset;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.MapMaker;
+import org.openrdf.model.IRI;
+import org.openrdf.query.Binding;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.openrdf.query.impl.IteratingTupleQueryResult;
+import org.openrdf.query.impl.MapBindingSet;
+import org.openrdf.query.parser.ParsedTupleQuery;
+import org.openrdf.query.parser.QueryParserUtil;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+
+/**
+ * <p>A cache of the results of select queries against a {@link Repository}.  Queries are keyed on their parsed, normalized
+ * algebra and their {@link Dataset}, so queries which differ only in whitespace, prefixes, or the names the parser gives to
+ * anonymous variables share an entry.  Results are fully materialized and immutable; each lookup returns a new
+ * {@link TupleQueryResult} over the cached results.</p>
+ *
+ * <p>The size of the cache is bounded by the total number of rows in the cached results rather than the number of
+ * queries, so that a few very large results cannot exhaust the heap.  Entries are evicted, least recently used first,
+ * when the cache holds more than its {@link QueryResultCacheBuilder#maxRows maximum number of rows}; a single result
+ * larger than the maximum is returned to the caller but not retained.  Entries expire after the
+ * {@link QueryResultCacheBuilder#ttl time to live}.  Every cache for a
+ * repository is invalidated when the repository is modified through {@link RepositoryConnections} or
+ * {@link Repositories}; changes made directly through a {@link RepositoryConnection} are not seen by the cache, use
+ * {@link #invalidate()} in that case.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class QueryResultCache {
+
+	/**
+	 * The live caches for each repository, used to invalidate them when the repository is changed.  Neither the
+	 * repositories nor the caches are kept from being garbage collected.
+	 */
+	private static final ConcurrentMap<Repository, Set<QueryResultCache>> CACHES = new MapMaker().weakKeys().makeMap();
+
+	private final Repository mRepository;
+
+	private final Cache<Key, Result> mCache;
+
+	/**
+	 * Incremented on each invalidation so that results computed concurrently with a change to the repository are not
+	 * cached
+	 */
+	private final AtomicLong mGeneration = new AtomicLong();
+
+	private QueryResultCache(final Repository theRepository, final long theMaxRows, final long theTTLNanos) {
+		mRepository = theRepository;
+		mCache = CacheBuilder.newBuilder()
+		                     .maximumWeight(theMaxRows)
+		                     // empty results still take an entry, count them as a row so they are not exempt from eviction
+		                     .weigher((Key theKey, Result theResult) -> Math.max(1, theResult.mBindings.size()))
+		                     .expireAfterWrite(theTTLNanos, TimeUnit.NANOSECONDS)
+		                     .recordStats()
+		                     .build();
+	}
+
+	public static QueryResultCacheBuilder builder(final Repository theRepository) {
+		return new QueryResultCacheBuilder(theRepository);
+	}
+
+	/**
+	 * Invalidate every cache for the repository
+	 *
+	 * @param theRepository	the repository which was changed
+	 */
+	static void invalidateAll(final Repository theRepository) {
+		if (theRepository == null) {
+			return;
+		}
+
+		final Set<QueryResultCache> aCaches = CACHES.get(theRepository);
+
+		if (aCaches != null) {
+			for (QueryResultCache aCache : aCaches) {
+				aCache.invalidate();
+			}
+		}
+	}
+
+	/**
+	 * Execute a select query, returning the cached results if present
+	 *
+	 * @param theLang	the query language
+	 * @param theQuery	the query
+	 * @return			the results of the query
+	 *
+	 * @throws MalformedQueryException	if the query cannot be parsed
+	 * @throws QueryEvaluationException	if there is an error evaluating the query
+	 * @throws RepositoryException		if there is an error connecting to the repository
+	 */
+	public TupleQueryResult selectQuery(final QueryLanguage theLang, final String theQuery) throws MalformedQueryException,
+	                                                                                               QueryEvaluationException,
+	                                                                                               RepositoryException {
+		return selectQuery(theLang, theQuery, null);
+	}
+
+	/**
+	 * Execute a select query against the given dataset, returning the cached results if present
+	 *
+	 * @param theLang		the query language
+	 * @param theQuery		the query
+	 * @param theDataset	the dataset of the query, or null to use the dataset specified in the query, if any
+	 * @return				the results of the query
+	 *
+	 * @throws MalformedQueryException	if the query cannot be parsed
+	 * @throws QueryEvaluationException	if there is an error evaluating the query
+	 * @throws RepositoryException		if there is an error connecting to the repository
+	 */
+	public TupleQueryResult selectQuery(final QueryLanguage theLang, final String theQuery, final Dataset theDataset) throws MalformedQueryException,
+	                                                                                                                         QueryEvaluationException,
+	                                                                                                                         RepositoryException {
+		final ParsedTupleQuery aQuery = QueryParserUtil.parseTupleQuery(theLang, theQuery, null);
+
+		final Key aKey = new Key(normalize(aQuery.getTupleExpr()), dataset(theDataset != null ? theDataset : aQuery.getDataset()));
+
+		Result aResult = mCache.getIfPresent(aKey);
+
+		if (aResult == null) {
+			final long aGeneration = mGeneration.get();
+
+			aResult = evaluate(theLang, theQuery, theDataset);
+
+			if (aGeneration == mGeneration.get()) {
+				mCache.put(aKey, aResult);
+
+				// an invalidation between the check and the put may have cleared the cache before the put landed.
+				// invalidate() moves the generation before it clears, so if the generation is still the same here,
+				// any invalidation in progress has yet to clear and will remove this entry itself
+				if (aGeneration != mGeneration.get()) {
+					mCache.invalidate(aKey);
+				}
+			}
+		}
+
+		return new IteratingTupleQueryResult(aResult.mBindingNames, aResult.mBindings);
+	}
+
+	/**
+	 * Remove all entries from the cache
+	 */
+	public void invalidate() {
+		mGeneration.incrementAndGet();
+		mCache.invalidateAll();
+	}
+
+	/**
+	 * Stop the cache from receiving invalidations from the library helpers and discard its entries
+	 */
+	public void close() {
+		final Set<QueryResultCache> aCaches = CACHES.get(mRepository);
+
+		if (aCaches != null) {
+			aCaches.remove(this);
+		}
+
+		invalidate();
+	}
+
+	public long size() {
+		return mCache.size();
+	}
+
+	/**
+	 * Return the total number of rows in the cached results
+	 *
+	 * @return	the number of rows
+	 */
+	public long getRowCount() {
+		long aCount = 0;
+
+		for (Result aResult : mCache.asMap().values()) {
+			aCount += aResult.mBindings.size();
+		}
+
+		return aCount;
+	}
+
+	public long getHitCount() {
+		return mCache.stats().hitCount();
+	}
+
+	public long getMissCount() {
+		return mCache.stats().missCount();
+	}
+
+	/**
+	 * Return the number of entries removed because the cache was full or they had expired.  Entries removed by
+	 * {@link #invalidate invalidation} are not counted.
+	 *
+	 * @return	the number of evictions
+	 */
+	public long getEvictionCount() {
+		return mCache.stats().evictionCount();
+	}
+
+	private Result evaluate(final QueryLanguage theLang, final String theQuery, final Dataset theDataset) {
+		try (RepositoryConnection aConn = mRepository.getConnection()) {
+			final TupleQuery aQuery = aConn.prepareTupleQuery(theLang, theQuery);
+
+			if (theDataset != null) {
+				aQuery.setDataset(theDataset);
+			}
+
+			try (TupleQueryResult aResult = aQuery.evaluate()) {
+				final ImmutableList<String> aNames = ImmutableList.copyOf(aResult.getBindingNames());
+				final ImmutableList.Builder<BindingSet> aBindings = ImmutableList.builder();
+
+				while (aResult.hasNext()) {
+					aBindings.add(copy(aResult.next()));
+				}
+
+				return new Result(aNames, aBindings.build());
+			}
+		}
+	}
+
+	private static BindingSet copy(final BindingSet theBindings) {
+		final MapBindingSet aCopy = new MapBindingSet(theBindings.size());
+
+		for (Binding aBinding : theBindings) {
+			aCopy.addBinding(aBinding);
+		}
+
+		return new ImmutableBindingSet(aCopy);
+	}
+
+	/**
+	 * Return a copy of the query algebra with the anonymous variables, whose names are generated by the parser and
+	 * differ each time the query is parsed, renamed in the order they appear
+	 */
+	private static TupleExpr normalize(final TupleExpr theExpr) {
+		final TupleExpr aExpr = theExpr.clone();
+
+		final Map<String, String> aNames = Maps.newHashMap();
+
+		aExpr.visit(new AbstractQueryModelVisitor<RuntimeException>() {
+			@Override
+			public void meet(final Var theVar) {
+				if (theVar.isAnonymous() && !theVar.hasValue()) {
+					theVar.setName(aNames.computeIfAbsent(theVar.getName(), theName -> "_anon_" + aNames.size()));
+				}
+			}
+		});
+
+		return aExpr;
+	}
+
+	private static ImmutableDataset dataset(final Dataset theDataset) {
+		if (theDataset == null) {
+			return null;
+		}
+		else if (theDataset instanceof ImmutableDataset) {
+			return (ImmutableDataset) theDataset;
+		}
+
+		final ImmutableDataset.ImmutableDatasetBuilder aBuilder = ImmutableDataset.builder()
+		                                                                          .defaultGraphs(theDataset.getDefaultGraphs())
+		                                                                          .namedGraphs(theDataset.getNamedGraphs())
+		                                                                          .removeGraphs(theDataset.getDefaultRemoveGraphs());
+
+		final IRI aInsertGraph = theDataset.getDefaultInsertGraph();
+
+		if (aInsertGraph != null) {
+			aBuilder.insertGraph(aInsertGraph);
+		}
+
+		return aBuilder.build();
+	}
+
+	private static final class Key {
+		private final TupleExpr mExpr;
+
+		private final ImmutableDataset mDataset;
+
+		private final int mHashCode;
+
+		private Key(final TupleExpr theExpr, final ImmutableDataset theDataset) {
+			mExpr = theExpr;
+			mDataset = theDataset;
+			mHashCode = Objects.hashCode(theExpr, theDataset);
+		}
+
+		@Override
+		public int hashCode() {
+			return mHashCode;
+		}
+
+		@Override
+		public boolean equals(final Object theObj) {
+			if (theObj == this) {
+				return true;
+			}
+			else if (theObj instanceof Key) {
+				final Key aKey = (Key) theObj;
+
+				return mHashCode == aKey.mHashCode
+				       && mExpr.equals(aKey.mExpr)
+				       && Objects.equal(mDataset, aKey.mDataset);
+			}
+			else {
+				return false;
+			}
+		}
+	}
+
+	private static final class Result {
+		private final ImmutableList<String> mBindingNames;
+
+		private final ImmutableList<BindingSet> mBindings;
+
+		private Result(final ImmutableList<String> theBindingNames, final ImmutableList<BindingSet> theBindings) {
+			mBindingNames = theBindingNames;
+			mBindings = theBindings;
+		}
+	}
+
+	public static final class QueryResultCacheBuilder {
+		private final Repository mRepository;
+
+		private long mMaxRows = 100000;
+
+		private long mTTLNanos = TimeUnit.MINUTES.toNanos(10);
+
+		private QueryResultCacheBuilder(final Repository theRepository) {
+			mRepository = Preconditions.checkNotNull(theRepository);
+		}
+
+		/**
+		 * Create the cache.  The cache is registered to be invalidated when its repository is changed through the library
+		 * helpers until it is {@link QueryResultCache#close closed}.
+		 *
+		 * @return	the new cache
+		 */
+		public QueryResultCache build() {
+			final QueryResultCache aCache = new QueryResultCache(mRepository, mMaxRows, mTTLNanos);
+
+			CACHES.computeIfAbsent(mRepository, theRepo -> Collections.newSetFromMap(new MapMaker().weakKeys().<QueryResultCache, Boolean>makeMap()))
+			      .add(aCache);
+
+			return aCache;
+		}
+
+		/**
+		 * Set the maximum number of rows, summed over all cached results, held by the cache.  A result with more rows
+		 * than this is never cached.  Defaults to 100,000.
+		 *
+		 * @param theMax	the maximum number of rows
+		 * @return			this builder
+		 */
+		public QueryResultCacheBuilder maxRows(final long theMax) {
+			Preconditions.checkArgument(theMax > 0, "Max rows must be positive");
+
+			mMaxRows = theMax;
+			return this;
+		}
+
+		/**
+		 * Set how long results are cached for.  Defaults to ten minutes.
+		 *
+		 * @param theTime	the time to live
+		 * @param theUnit	the unit of the time to live
+		 * @return			this builder
+		 */
+		public QueryResultCacheBuilder ttl(final long theTime, final TimeUnit theUnit) {
+			Preconditions.checkArgument(theTime > 0, "Time to live must be positive");
+
+			mTTLNanos = theUnit.toNanos(theTime);
+			return this;
+		}
+	}
+}
@@ -25,7 +25,13 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
+import com.complexible.common.openrdf.query.IterationPublisher;
+import com.complexible.common.openrdf.query.PagedTupleQueryResult;
+import com.complexible.common.openrdf.query.ResultFlow;
 import com.google.common.base.Charsets;
 import com.google.common.io.Closeables;
 import info.aduna.iteration.CloseableIteration;
@@ -35,6 +41,7 @@ import org.openrdf.model.IRI;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
 import org.openrdf.query.GraphQueryResult;
 import org.openrdf.query.MalformedQueryException;
 import org.openrdf.query.QueryEvaluationException;
@@ -57,7 +64,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author  Michael Grove
  * @since   2.0
- * @version 4.0
+ * @version 4.1
  */
 public final class Repositories {
 	/**
@@ -223,12 +230,31 @@ public final class Repositories {
 
 			return new ConnectionClosingTupleQueryResult(aConn, aConn.prepareTupleQuery(theLang, theQuery).evaluate());
 		}
-		catch (RepositoryException e) {
+		catch (RuntimeException e) {
 			RepositoryConnections.closeQuietly(aConn);
 			throw e;
 		}
 	}
 
+	/**
+	 * Execute a SPARQL select query a page at a time.  Each page is a separate query over its own connection, so no
+	 * connection or query is held open while a large result is read.
+	 *
+	 * @param theRepo		the repository to query
+	 * @param theQuery		the SPARQL select query
+	 * @param thePageSize	the number of results in each page
+	 * @return				the results of the query
+	 *
+	 * @throws MalformedQueryException	if the query is not a select query or cannot be paged
+	 * @throws QueryEvaluationException	if there is an error evaluating the first page
+	 *
+	 * @see PagedTupleQueryResult
+	 */
+	public static TupleQueryResult selectQueryPaged(final Repository theRepo, final String theQuery,
+	                                                final int thePageSize) throws MalformedQueryException, QueryEvaluationException {
+		return new PagedTupleQueryResult(theRepo::getConnection, theQuery, thePageSize);
+	}
+
 	/**
 	 * Execute a construct query.
 	 *
@@ -249,7 +275,7 @@ public final class Repositories {
 
 			return new ConnectionClosingGraphQueryResult(aConn, aConn.prepareGraphQuery(theLang, theQuery).evaluate());
 		}
-		catch (RepositoryException e) {
+		catch (RuntimeException e) {
 			RepositoryConnections.closeQuietly(aConn);
 			throw e;
 		}
@@ -290,6 +316,234 @@ public final class Repositories {
 		}
 	}
 
+	/**
+	 * Return the number of statements in the repository, using a connection from the pool
+	 *
+	 * @param thePool	the pool of connections to the repository
+	 * @return			the size of the repository
+	 *
+	 * @throws RepositoryException if there is an error while retrieving the size.
+	 */
+	public static long size(final ConnectionPool thePool) throws RepositoryException {
+		try (RepositoryConnection aConn = thePool.borrow()) {
+			return aConn.size();
+		}
+	}
+
+	public static void clear(final ConnectionPool thePool) throws RepositoryException {
+		try (RepositoryConnection aConn = thePool.borrow()) {
+			RepositoryConnections.clear(aConn);
+		}
+	}
+
+	public static void add(final ConnectionPool thePool, final Graph theGraph) throws RepositoryException {
+		try (RepositoryConnection aConn = thePool.borrow()) {
+			RepositoryConnections.add(aConn, theGraph);
+		}
+	}
+
+	public static void remove(final ConnectionPool thePool, final Graph theGraph) throws RepositoryException {
+		try (RepositoryConnection aConn = thePool.borrow()) {
+			RepositoryConnections.remove(aConn, theGraph);
+		}
+	}
+
+	public static boolean contains(final ConnectionPool thePool, final Statement theStmt) throws RepositoryException {
+		try (RepositoryConnection aConn = thePool.borrow()) {
+			return RepositoryConnections.contains(aConn, theStmt);
+		}
+	}
+
+	/**
+	 * Execute a select query using a connection from the pool.  The connection is returned to the pool when the result
+	 * is closed.
+	 *
+	 * @param thePool	the pool of connections to the repository
+	 * @param theLang	the query language
+	 * @param theQuery	the query to execute
+	 * @return			the result set
+	 *
+	 * @throws RepositoryException      if there is an error while querying
+	 * @throws MalformedQueryException  if the query cannot be parsed
+	 * @throws QueryEvaluationException if there is an error while querying
+	 */
+	public static TupleQueryResult selectQuery(final ConnectionPool thePool, final QueryLanguage theLang, final String theQuery) throws RepositoryException, MalformedQueryException,
+	                                                                                                                        QueryEvaluationException {
+		RepositoryConnection aConn = thePool.borrow();
+
+		try {
+			return new ConnectionClosingTupleQueryResult(aConn, aConn.prepareTupleQuery(theLang, theQuery).evaluate());
+		}
+		catch (RuntimeException e) {
+			RepositoryConnections.closeQuietly(aConn);
+			throw e;
+		}
+	}
+
+	/**
+	 * Execute a SPARQL select query a page at a time, using a connection from the pool for each page.
+	 *
+	 * @see #selectQueryPaged(Repository, String, int)
+	 */
+	public static TupleQueryResult selectQueryPaged(final ConnectionPool thePool, final String theQuery,
+	                                                final int thePageSize) throws MalformedQueryException, QueryEvaluationException {
+		return new PagedTupleQueryResult(thePool::borrow, theQuery, thePageSize);
+	}
+
+	/**
+	 * Execute a construct query using a connection from the pool.  The connection is returned to the pool when the
+	 * result is closed.
+	 *
+	 * @param thePool	the pool of connections to the repository
+	 * @param theLang	the query language
+	 * @param theQuery	the query string
+	 * @return			the results of the construct query
+	 *
+	 * @throws RepositoryException      if there is an error while querying
+	 * @throws MalformedQueryException  if the query cannot be parsed
+	 * @throws QueryEvaluationException if there is an error while querying
+	 */
+	public static GraphQueryResult constructQuery(final ConnectionPool thePool, final QueryLanguage theLang, final String theQuery) throws RepositoryException,
+	                                                                                                                           MalformedQueryException, QueryEvaluationException {
+		RepositoryConnection aConn = thePool.borrow();
+
+		try {
+			return new ConnectionClosingGraphQueryResult(aConn, aConn.prepareGraphQuery(theLang, theQuery).evaluate());
+		}
+		catch (RuntimeException e) {
+			RepositoryConnections.closeQuietly(aConn);
+			throw e;
+		}
+	}
+
+	/**
+	 * Return a RepositoryResult over the statements which match the given spo pattern, using a connection from the pool.
+	 * The connection is returned to the pool when the result is closed.
+	 *
+	 * @param thePool       the pool of connections to the repository
+	 * @param theSubj       the subject to search for, or null for any
+	 * @param thePred       the predicate to search for, or null for any
+	 * @param theObj        the object to search for, or null for any
+	 * @param theContext    the contexts for the statement(s)
+	 *
+	 * @return the matching statements
+	 *
+	 * @throws RepositoryException if there is an error getting the statements
+	 */
+	public static RepositoryResult<Statement> getStatements(final ConnectionPool thePool, final Resource theSubj,
+	                                                        final IRI thePred, final Value theObj, final Resource... theContext) throws RepositoryException {
+		RepositoryConnection aConn = thePool.borrow();
+
+		try {
+			return ConnectionClosingRepositoryResult.newResult(aConn, aConn.getStatements(theSubj, thePred, theObj, true, theContext));
+		}
+		catch (RuntimeException e) {
+			RepositoryConnections.closeQuietly(aConn);
+			throw e;
+		}
+	}
+
+	/**
+	 * Asynchronously execute a select query.  The query is not evaluated until results are requested from the publisher;
+	 * the connection is held only until the results are exhausted or the subscription is cancelled.
+	 *
+	 * @param theRepo		the repository to query
+	 * @param theLang		the query language
+	 * @param theQuery		the query to execute
+	 * @param theExecutor	the executor used to evaluate the query and read its results
+	 * @return				a publisher of the query results
+	 */
+	public static ResultFlow.Publisher<BindingSet> selectQueryAsync(final Repository theRepo, final QueryLanguage theLang,
+	                                                                final String theQuery, final Executor theExecutor) {
+		return new IterationPublisher<>(theExecutor, () -> selectQuery(theRepo, theLang, theQuery));
+	}
+
+	/**
+	 * Asynchronously execute a select query using a connection from the pool.
+	 *
+	 * @see #selectQueryAsync(Repository, QueryLanguage, String, Executor)
+	 */
+	public static ResultFlow.Publisher<BindingSet> selectQueryAsync(final ConnectionPool thePool, final QueryLanguage theLang,
+	                                                                final String theQuery, final Executor theExecutor) {
+		return new IterationPublisher<>(theExecutor, () -> selectQuery(thePool, theLang, theQuery));
+	}
+
+	/**
+	 * Asynchronously execute a construct query.  The query is not evaluated until results are requested from the
+	 * publisher; the connection is held only until the results are exhausted or the subscription is cancelled.
+	 *
+	 * @param theRepo		the repository to query
+	 * @param theLang		the query language
+	 * @param theQuery		the query to execute
+	 * @param theExecutor	the executor used to evaluate the query and read its results
+	 * @return				a publisher of the query results
+	 */
+	public static ResultFlow.Publisher<Statement> constructQueryAsync(final Repository theRepo, final QueryLanguage theLang,
+	                                                                  final String theQuery, final Executor theExecutor) {
+		return new IterationPublisher<>(theExecutor, () -> constructQuery(theRepo, theLang, theQuery));
+	}
+
+	/**
+	 * Asynchronously execute a construct query using a connection from the pool.
+	 *
+	 * @see #constructQueryAsync(Repository, QueryLanguage, String, Executor)
+	 */
+	public static ResultFlow.Publisher<Statement> constructQueryAsync(final ConnectionPool thePool, final QueryLanguage theLang,
+	                                                                  final String theQuery, final Executor theExecutor) {
+		return new IterationPublisher<>(theExecutor, () -> constructQuery(thePool, theLang, theQuery));
+	}
+
+	/**
+	 * Asynchronously execute an ask query
+	 *
+	 * @param theRepo		the repository to query
+	 * @param theLang		the query language
+	 * @param theQuery		the query to execute
+	 * @param theExecutor	the executor to evaluate the query on
+	 * @return				the eventual result of the query
+	 */
+	public static CompletableFuture<Boolean> askQueryAsync(final Repository theRepo, final QueryLanguage theLang,
+	                                                       final String theQuery, final Executor theExecutor) {
+		return CompletableFuture.supplyAsync(() -> askQuery(theRepo::getConnection, theLang, theQuery), theExecutor);
+	}
+
+	/**
+	 * Asynchronously execute an ask query using a connection from the pool.
+	 *
+	 * @see #askQueryAsync(Repository, QueryLanguage, String, Executor)
+	 */
+	public static CompletableFuture<Boolean> askQueryAsync(final ConnectionPool thePool, final QueryLanguage theLang,
+	                                                       final String theQuery, final Executor theExecutor) {
+		return CompletableFuture.supplyAsync(() -> askQuery(thePool::borrow, theLang, theQuery), theExecutor);
+	}
+
+	/**
+	 * Asynchronously compute the number of statements in the repository
+	 *
+	 * @param theRepo		the repository
+	 * @param theExecutor	the executor to compute the size on
+	 * @return				the eventual size of the repository
+	 */
+	public static CompletableFuture<Long> sizeAsync(final Repository theRepo, final Executor theExecutor) {
+		return CompletableFuture.supplyAsync(() -> size(theRepo), theExecutor);
+	}
+
+	/**
+	 * Asynchronously compute the number of statements in the repository using a connection from the pool.
+	 *
+	 * @see #sizeAsync(Repository, Executor)
+	 */
+	public static CompletableFuture<Long> sizeAsync(final ConnectionPool thePool, final Executor theExecutor) {
+		return CompletableFuture.supplyAsync(() -> size(thePool), theExecutor);
+	}
+
+	private static boolean askQuery(final Supplier<RepositoryConnection> theConnections, final QueryLanguage theLang,
+	                                final String theQuery) {
+		try (RepositoryConnection aConn = theConnections.get()) {
+			return aConn.prepareBooleanQuery(theLang, theQuery).evaluate();
+		}
+	}
+
 	/**
 	 * Return an empty Iteration over Statements
 	 * @return an empty iteration
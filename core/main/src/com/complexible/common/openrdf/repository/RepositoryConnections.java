@@ -44,7 +44,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author  Michael Grove
  * @since   2.0
- * @version 4.0
+ * @version 4.1
  */
 public final class RepositoryConnections {
 	/**
@@ -66,6 +66,9 @@ public final class RepositoryConnections {
 			theConnection.rollback();
 			throw e;
 		}
+		finally {
+			QueryResultCache.invalidateAll(theConnection.getRepository());
+		}
 	}
 
 	public static void add(final RepositoryConnection theConnection, final Graph theGraph) throws RepositoryException {
@@ -78,6 +81,9 @@ public final class RepositoryConnections {
 			theConnection.rollback();
 			throw e;
 		}
+		finally {
+			QueryResultCache.invalidateAll(theConnection.getRepository());
+		}
 	}
 
 	public static void remove(final RepositoryConnection theConnection, final Graph theGraph) throws RepositoryException {
@@ -90,6 +96,9 @@ public final class RepositoryConnections {
 			theConnection.rollback();
 			throw e;
 		}
+		finally {
+			QueryResultCache.invalidateAll(theConnection.getRepository());
+		}
 	}
 
 	/**
@@ -130,14 +139,7 @@ public final class RepositoryConnections {
 	}
 
 	public static void add(final RepositoryConnection theConn, Reader theStream, final RDFFormat theFormat, final Resource theContext, final String theBase) throws RDFParseException, IOException {
-		RDFParser aParser = Rio.createParser(theFormat);
-
-		aParser.getParserConfig().set(BasicParserSettings.VERIFY_DATATYPE_VALUES, false);
-		aParser.getParserConfig().set(BasicParserSettings.FAIL_ON_UNKNOWN_DATATYPES, false);
-		aParser.getParserConfig().set(BasicParserSettings.NORMALIZE_DATATYPE_VALUES, false);
-		aParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
-
-		aParser.getParserConfig().set(BasicParserSettings.VERIFY_RELATIVE_URIS, false);
+		RDFParser aParser = createParser(theFormat);
 
 		try {
 			theConn.begin();
@@ -158,7 +160,42 @@ public final class RepositoryConnections {
 			throw new IOException(e);
 		}
 		finally {
+			QueryResultCache.invalidateAll(theConn.getRepository());
 			Closeables.close(theStream, false);
 		}
 	}
+
+	/**
+	 * Add the data to the repository using a {@link BulkLoader} with the default settings, committing the data in
+	 * batches rather than a single transaction.  The reader is closed when the load completes.
+	 *
+	 * @param theConn		the connection to the repository
+	 * @param theStream		the data to add
+	 * @param theFormat		the format of the data
+	 * @param theContext	the context to add the data to, or null to use the contexts in the data
+	 * @param theBase		the base uri of the data, or null
+	 * @return				the number of statements added
+	 *
+	 * @throws IOException			if there was an error reading the data or adding it to the repository
+	 * @throws RDFParseException	if the data could not be parsed
+	 *
+	 * @see BulkLoader
+	 */
+	public static long bulkAdd(final RepositoryConnection theConn, final Reader theStream, final RDFFormat theFormat,
+	                           final Resource theContext, final String theBase) throws RDFParseException, IOException {
+		return BulkLoader.builder().build().load(theConn, theStream, theFormat, theContext, theBase);
+	}
+
+	static RDFParser createParser(final RDFFormat theFormat) {
+		RDFParser aParser = Rio.createParser(theFormat);
+
+		aParser.getParserConfig().set(BasicParserSettings.VERIFY_DATATYPE_VALUES, false);
+		aParser.getParserConfig().set(BasicParserSettings.FAIL_ON_UNKNOWN_DATATYPES, false);
+		aParser.getParserConfig().set(BasicParserSettings.NORMALIZE_DATATYPE_VALUES, false);
+		aParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+
+		aParser.getParserConfig().set(BasicParserSettings.VERIFY_RELATIVE_URIS, false);
+
+		return aParser;
+	}
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.repository;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+import info.aduna.iteration.CloseableIteration;
+import org.openrdf.repository.RepositoryConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Tracks the results which close the connection that created them, {@link ConnectionClosingTupleQueryResult},
+ * {@link ConnectionClosingGraphQueryResult} and {@link ConnectionClosingRepositoryResult}, so that a result which is
+ * never closed does not hold on to its connection forever.</p>
+ *
+ * <p>Each result is registered with a phantom reference when it is created.  When a result becomes unreachable
+ * without having been closed, a daemon thread closes it and its connection, counts it as
+ * {@link #getLeakedResults leaked} and logs a warning.  To keep the overhead low the stack where the result was
+ * created is captured only for one in every {@link #setSamplingInterval sampling interval} results; the warning for a
+ * sampled result includes that stack so the caller which forgot to close it can be found.</p>
+ *
+ * <p>This is a safety net, not a substitute for closing results: a leaked connection is only released once the
+ * garbage collector notices the result, which under load may be too late.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class ResultLeakDetector {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResultLeakDetector.class);
+
+	private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+	/**
+	 * The references of the results which are still open; the references have to be reachable to be enqueued
+	 */
+	private static final Set<LeakReference> LIVE = Sets.newConcurrentHashSet();
+
+	private static final AtomicLong LEAKED = new AtomicLong();
+
+	private static final AtomicLong CREATED = new AtomicLong();
+
+	private static final AtomicInteger SAMPLING_INTERVAL = new AtomicInteger(64);
+
+	static {
+		final Thread aThread = new Thread(ResultLeakDetector::cleanAbandoned, "ConnectionClosing-cleaner");
+
+		aThread.setDaemon(true);
+		aThread.start();
+	}
+
+	private ResultLeakDetector() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Return the number of tracked results which have not been closed and have not yet been found to be leaked
+	 *
+	 * @return	the number of live results
+	 */
+	public static int getLiveResults() {
+		return LIVE.size();
+	}
+
+	/**
+	 * Return the number of results which were reclaimed without having been closed
+	 *
+	 * @return	the number of leaked results
+	 */
+	public static long getLeakedResults() {
+		return LEAKED.get();
+	}
+
+	/**
+	 * Return how often the creation site of a result is captured
+	 *
+	 * @return	the sampling interval
+	 */
+	public static int getSamplingInterval() {
+		return SAMPLING_INTERVAL.get();
+	}
+
+	/**
+	 * Set how often the creation site of a result is captured: 1 captures the site of every result, which is
+	 * useful while hunting a leak, and 0 never captures it.  The default is 64.
+	 *
+	 * @param theInterval	the sampling interval
+	 */
+	public static void setSamplingInterval(final int theInterval) {
+		Preconditions.checkArgument(theInterval >= 0, "The sampling interval cannot be negative");
+
+		SAMPLING_INTERVAL.set(theInterval);
+	}
+
+	/**
+	 * Start tracking a result
+	 *
+	 * @param theWrapper	the result given to the caller, which is what the caller has to close
+	 * @param theResult		the result it wraps, closed if the wrapper is abandoned; must not refer to the wrapper
+	 * @param theConn		the connection, closed if the wrapper is abandoned
+	 * @return				the handle to {@link Handle#closed mark} the result closed with
+	 */
+	static Handle track(final Object theWrapper, final CloseableIteration<?, ?> theResult, final RepositoryConnection theConn) {
+		final int aInterval = SAMPLING_INTERVAL.get();
+
+		final Throwable aSite = aInterval > 0 && CREATED.getAndIncrement() % aInterval == 0
+		                        ? new Throwable("Result created here")
+		                        : null;
+
+		final LeakReference aRef = new LeakReference(theWrapper, theResult, theConn, aSite);
+
+		LIVE.add(aRef);
+
+		return aRef;
+	}
+
+	private static void cleanAbandoned() {
+		while (true) {
+			try {
+				((LeakReference) QUEUE.remove()).abandoned();
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+			catch (Throwable e) {
+				LOGGER.error("There was an error closing an abandoned result", e);
+			}
+		}
+	}
+
+	/**
+	 * The handle a tracked result uses to report that it was closed
+	 */
+	interface Handle {
+		void closed();
+	}
+
+	private static final class LeakReference extends PhantomReference<Object> implements Handle {
+		private final CloseableIteration<?, ?> mResult;
+
+		private final RepositoryConnection mConn;
+
+		private final Throwable mSite;
+
+		private final AtomicBoolean mDone = new AtomicBoolean(false);
+
+		private LeakReference(final Object theWrapper, final CloseableIteration<?, ?> theResult,
+		                      final RepositoryConnection theConn, final Throwable theSite) {
+			super(theWrapper, QUEUE);
+
+			mResult = theResult;
+			mConn = theConn;
+			mSite = theSite;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void closed() {
+			if (mDone.compareAndSet(false, true)) {
+				LIVE.remove(this);
+				clear();
+			}
+		}
+
+		private void abandoned() {
+			if (!mDone.compareAndSet(false, true)) {
+				return;
+			}
+
+			LIVE.remove(this);
+			LEAKED.incrementAndGet();
+
+			if (mSite != null) {
+				LOGGER.warn("A result was not closed, closing it and its connection", mSite);
+			}
+			else {
+				LOGGER.warn("A result was not closed, closing it and its connection.  Set the sampling interval of the "
+				            + "ResultLeakDetector to 1 to log where it was created.");
+			}
+
+			try {
+				mResult.close();
+			}
+			catch (Exception e) {
+				LOGGER.warn("There was an error closing an abandoned result", e);
+			}
+			finally {
+				RepositoryConnections.closeQuietly(mConn);
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.util;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A lock-free histogram of durations in nanoseconds.  Durations are counted in buckets of powers of two, so a
+ * {@link #getPercentile percentile} is accurate to within a factor of two, which is enough to tell a hash lookup from a
+ * full scan while costing a couple of atomic adds per sample.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * Bucket {@code i} counts durations in {@code [2^(i-1), 2^i)}; bucket 0 counts durations of zero
+	 */
+	private final LongAdder[] mBuckets = new LongAdder[Long.SIZE];
+
+	private final LongAdder mCount = new LongAdder();
+
+	private final LongAdder mTotal = new LongAdder();
+
+	private final LongAccumulator mMax = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < mBuckets.length; i++) {
+			mBuckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Add a sample to the histogram
+	 *
+	 * @param theNanos	the duration, negative durations are counted as zero
+	 */
+	public void record(final long theNanos) {
+		final long aNanos = Math.max(0, theNanos);
+
+		mBuckets[Long.SIZE - Long.numberOfLeadingZeros(aNanos)].increment();
+		mCount.increment();
+		mTotal.add(aNanos);
+		mMax.accumulate(aNanos);
+	}
+
+	public long getCount() {
+		return mCount.sum();
+	}
+
+	public long getTotalNanos() {
+		return mTotal.sum();
+	}
+
+	public long getMaxNanos() {
+		return mMax.get();
+	}
+
+	public long getMeanNanos() {
+		final long aCount = getCount();
+
+		return aCount == 0 ? 0 : getTotalNanos() / aCount;
+	}
+
+	/**
+	 * Return an upper bound of the given percentile of the durations
+	 *
+	 * @param thePercentile	the percentile, between 0 and 100
+	 * @return				the upper bound of the bucket containing the percentile, no larger than the
+	 * 						{@link #getMaxNanos maximum}, or 0 if there are no samples
+	 */
+	public long getPercentile(final double thePercentile) {
+		final long aCount = getCount();
+
+		if (aCount == 0) {
+			return 0;
+		}
+
+		final long aRank = (long) Math.ceil(aCount * Math.min(100, Math.max(0, thePercentile)) / 100d);
+
+		long aSeen = 0;
+
+		for (int i = 0; i < mBuckets.length; i++) {
+			aSeen += mBuckets[i].sum();
+
+			if (aSeen >= aRank) {
+				return i == 0 ? 0 : Math.min(getMaxNanos(), (1L << i) - 1);
+			}
+		}
+
+		return getMaxNanos();
+	}
+
+	/**
+	 * Remove all the samples
+	 */
+	public void reset() {
+		for (LongAdder aBucket : mBuckets) {
+			aBucket.reset();
+		}
+
+		mCount.reset();
+		mTotal.reset();
+		mMax.reset();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("count=%d, mean=%dns, p50=%dns, p99=%dns, max=%dns",
+		                     getCount(), getMeanNanos(), getPercentile(50), getPercentile(99), getMaxNanos());
+	}
+}
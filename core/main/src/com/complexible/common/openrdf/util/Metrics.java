@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * <p>A minimal metrics SPI used by the instrumented wrappers in this library, such as
+ * {@link com.complexible.common.openrdf.model.InstrumentedModel}, so that they do not depend on any particular metrics
+ * library.  {@link #NONE} discards everything and is the default; {@link SimpleMetrics} keeps a
+ * {@link LatencyHistogram} per operation and can be published over JMX.  Adapters to other metrics libraries implement
+ * this interface.</p>
+ *
+ * <p>Implementations must be thread-safe and cheap to call, as they are called on every instrumented operation.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public interface Metrics {
+
+	/**
+	 * Metrics which are discarded
+	 */
+	Metrics NONE = new Metrics() {
+		@Override
+		public void record(final String theName, final long theNanos) {
+		}
+
+		@Override
+		public void gauge(final String theName, final LongSupplier theValue) {
+		}
+	};
+
+	/**
+	 * Record that the operation happened and how long it took
+	 *
+	 * @param theName	the name of the operation
+	 * @param theNanos	the duration of the operation in nanoseconds
+	 */
+	void record(final String theName, final long theNanos);
+
+	/**
+	 * Record a value of a distribution which is not a duration, such as the number of results of a query.  By
+	 * default the value is recorded as though it were a duration, which suits histogram based implementations.
+	 *
+	 * @param theName	the name of the distribution
+	 * @param theValue	the value
+	 */
+	default void sample(final String theName, final long theValue) {
+		record(theName, theValue);
+	}
+
+	/**
+	 * Register a value which is read when the metrics are reported, such as the size of a collection.  Registering
+	 * a gauge with the name of an existing gauge replaces it.
+	 *
+	 * @param theName	the name of the gauge
+	 * @param theValue	supplies the current value of the gauge
+	 */
+	void gauge(final String theName, final LongSupplier theValue);
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * <p>Read-only {@link DynamicMBean} over {@link SimpleMetrics}.  The attributes are computed on each call, so
+ * operations and gauges added after registration show up.  Durations are in nanoseconds.  The single operation,
+ * {@code reset}, clears the histograms.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+final class MetricsMBean implements DynamicMBean {
+
+	private static final Map<String, ToLongFunction<LatencyHistogram>> STATISTICS =
+		ImmutableMap.<String, ToLongFunction<LatencyHistogram>>builder()
+		            .put("count", LatencyHistogram::getCount)
+		            .put("mean", LatencyHistogram::getMeanNanos)
+		            .put("p50", theHistogram -> theHistogram.getPercentile(50))
+		            .put("p99", theHistogram -> theHistogram.getPercentile(99))
+		            .put("max", LatencyHistogram::getMaxNanos)
+		            .build();
+
+	private final SimpleMetrics mMetrics;
+
+	MetricsMBean(final SimpleMetrics theMetrics) {
+		mMetrics = theMetrics;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object getAttribute(final String theAttribute) throws AttributeNotFoundException {
+		final LongSupplier aGauge = mMetrics.getGauges().get(theAttribute);
+
+		if (aGauge != null) {
+			return aGauge.getAsLong();
+		}
+
+		final int aDot = theAttribute.lastIndexOf('.');
+
+		if (aDot != -1) {
+			final LatencyHistogram aHistogram = mMetrics.getHistograms().get(theAttribute.substring(0, aDot));
+			final ToLongFunction<LatencyHistogram> aStatistic = STATISTICS.get(theAttribute.substring(aDot + 1));
+
+			if (aHistogram != null && aStatistic != null) {
+				return aStatistic.applyAsLong(aHistogram);
+			}
+		}
+
+		throw new AttributeNotFoundException(theAttribute);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setAttribute(final Attribute theAttribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read-only: " + theAttribute.getName());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public AttributeList getAttributes(final String[] theAttributes) {
+		final AttributeList aList = new AttributeList();
+
+		for (String aName : theAttributes) {
+			try {
+				aList.add(new Attribute(aName, getAttribute(aName)));
+			}
+			catch (AttributeNotFoundException e) {
+				// per the DynamicMBean contract, attributes which cannot be read are left out
+			}
+		}
+
+		return aList;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public AttributeList setAttributes(final AttributeList theAttributes) {
+		return new AttributeList();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object invoke(final String theAction, final Object[] theParams, final String[] theSignature) throws ReflectionException {
+		if ("reset".equals(theAction)) {
+			mMetrics.reset();
+			return null;
+		}
+
+		throw new ReflectionException(new NoSuchMethodException(theAction));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		final List<MBeanAttributeInfo> aAttributes = new ArrayList<>();
+
+		for (String aGauge : mMetrics.getGauges().keySet()) {
+			aAttributes.add(new MBeanAttributeInfo(aGauge, "long", aGauge, true, false, false));
+		}
+
+		for (String aOperation : mMetrics.getHistograms().keySet()) {
+			for (String aStatistic : STATISTICS.keySet()) {
+				final String aName = aOperation + '.' + aStatistic;
+				aAttributes.add(new MBeanAttributeInfo(aName, "long", aName, true, false, false));
+			}
+		}
+
+		return new MBeanInfo(SimpleMetrics.class.getName(),
+		                     "Operation counts, latencies and gauges",
+		                     aAttributes.toArray(new MBeanAttributeInfo[aAttributes.size()]),
+		                     null,
+		                     new MBeanOperationInfo[] {
+			                     new MBeanOperationInfo("reset", "Clear the latency histograms", null, "void", MBeanOperationInfo.ACTION)
+		                     },
+		                     null);
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <p>{@link Metrics} kept in memory: a {@link LatencyHistogram} for each operation and the registered gauges.  The
+ * metrics can be read directly, or {@link #register published} as an MBean whose attributes are the count, mean, 50th
+ * and 99th percentile and maximum of each histogram, named {@code <operation>.count}, {@code <operation>.mean},
+ * {@code <operation>.p50}, {@code <operation>.p99} and {@code <operation>.max}, and the current value of each gauge.
+ * Durations are in nanoseconds; {@link #sample samples} are kept in histograms alongside them.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public final class SimpleMetrics implements Metrics {
+
+	private final ConcurrentMap<String, LatencyHistogram> mHistograms = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, LongSupplier> mGauges = new ConcurrentHashMap<>();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void record(final String theName, final long theNanos) {
+		LatencyHistogram aHistogram = mHistograms.get(theName);
+
+		if (aHistogram == null) {
+			aHistogram = mHistograms.computeIfAbsent(theName, theKey -> new LatencyHistogram());
+		}
+
+		aHistogram.record(theNanos);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void gauge(final String theName, final LongSupplier theValue) {
+		mGauges.put(theName, theValue);
+	}
+
+	/**
+	 * Return the histogram of the operation
+	 *
+	 * @param theName	the name of the operation
+	 * @return			the histogram, empty if the operation has not been recorded
+	 */
+	public LatencyHistogram getHistogram(final String theName) {
+		final LatencyHistogram aHistogram = mHistograms.get(theName);
+
+		return aHistogram == null ? new LatencyHistogram() : aHistogram;
+	}
+
+	/**
+	 * Return the number of times the operation was recorded
+	 *
+	 * @param theName	the name of the operation
+	 * @return			the count
+	 */
+	public long getCount(final String theName) {
+		final LatencyHistogram aHistogram = mHistograms.get(theName);
+
+		return aHistogram == null ? 0 : aHistogram.getCount();
+	}
+
+	/**
+	 * Return an unmodifiable, live view of the histograms of the operations which have been recorded
+	 *
+	 * @return	the histograms keyed by operation name
+	 */
+	public Map<String, LatencyHistogram> getHistograms() {
+		return Collections.unmodifiableMap(mHistograms);
+	}
+
+	/**
+	 * Return the current value of the gauge
+	 *
+	 * @param theName	the name of the gauge
+	 * @return			the value, or -1 if there is no such gauge
+	 */
+	public long getGauge(final String theName) {
+		final LongSupplier aGauge = mGauges.get(theName);
+
+		return aGauge == null ? -1 : aGauge.getAsLong();
+	}
+
+	/**
+	 * Return an unmodifiable, live view of the registered gauges
+	 *
+	 * @return	the gauges keyed by name
+	 */
+	public Map<String, LongSupplier> getGauges() {
+		return Collections.unmodifiableMap(mGauges);
+	}
+
+	/**
+	 * Clear all the histograms.  Gauges stay registered.
+	 */
+	public void reset() {
+		mHistograms.values().forEach(LatencyHistogram::reset);
+	}
+
+	/**
+	 * Publish these metrics to the platform MBean server.  Histograms and gauges added after registration are
+	 * published as well.
+	 *
+	 * @param theName	the name of the MBean, such as {@code com.complexible.common.openrdf:type=Model,name=cache}
+	 * @return			the object name under which the MBean was registered
+	 *
+	 * @throws JMException	if the name is invalid or already registered
+	 */
+	public ObjectName register(final String theName) throws JMException {
+		final ObjectName aName = new ObjectName(theName);
+
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), aName);
+
+		return aName;
+	}
+
+	/**
+	 * Remove an MBean created by {@link #register} from the platform MBean server, if it is registered.
+	 *
+	 * @param theName	the name of the MBean
+	 *
+	 * @throws JMException	if the MBean could not be unregistered
+	 */
+	public static void unregister(final ObjectName theName) throws JMException {
+		final MBeanServer aServer = ManagementFactory.getPlatformMBeanServer();
+
+		if (aServer.isRegistered(theName)) {
+			aServer.unregisterMBean(theName);
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.complexible.common.openrdf.query.ResultFlow;
+import com.complexible.common.openrdf.repository.ConnectionPool;
+import com.complexible.common.openrdf.repository.Repositories;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.repository.Repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Tests for the asynchronous query methods of {@link Repositories}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class AsyncQueryTests {
+	private Repository mRepository;
+
+	private ExecutorService mExecutor;
+
+	@Before
+	public void before() throws Exception {
+		mRepository = TestRepositories.createInMemoryRepo();
+		mExecutor = Executors.newFixedThreadPool(4);
+
+		Repositories.add(mRepository, TestUtils.createRandomModel(100));
+	}
+
+	@After
+	public void after() throws Exception {
+		mExecutor.shutdownNow();
+		mRepository.shutDown();
+	}
+
+	@Test
+	public void testAskAndSize() throws Exception {
+		assertTrue(Repositories.askQueryAsync(mRepository, QueryLanguage.SPARQL, "ask { ?s ?p ?o }", mExecutor).get());
+		assertEquals(100L, (long) Repositories.sizeAsync(mRepository, mExecutor).get());
+
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).build()) {
+			assertFalse(Repositories.askQueryAsync(aPool, QueryLanguage.SPARQL, "ask { ?s <urn:missing> ?o }", mExecutor).get());
+			assertEquals(100L, (long) Repositories.sizeAsync(aPool, mExecutor).get());
+			assertEquals(0, aPool.getActiveCount());
+		}
+	}
+
+	@Test
+	public void testSelect() throws Exception {
+		CollectingSubscriber<BindingSet> aSubscriber = new CollectingSubscriber<>(Long.MAX_VALUE);
+
+		Repositories.selectQueryAsync(mRepository, QueryLanguage.SPARQL, "select * where { ?s ?p ?o }", mExecutor)
+		            .subscribe(aSubscriber);
+
+		assertTrue(aSubscriber.await());
+		assertNull(aSubscriber.mError.get());
+		assertEquals(100, aSubscriber.mResults.size());
+	}
+
+	@Test
+	public void testConstructWithDemand() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).build()) {
+			// requests one result at a time
+			CollectingSubscriber<Statement> aSubscriber = new CollectingSubscriber<>(1);
+
+			Repositories.constructQueryAsync(aPool, QueryLanguage.SPARQL, "construct { ?s ?p ?o } where { ?s ?p ?o }", mExecutor)
+			            .subscribe(aSubscriber);
+
+			assertTrue(aSubscriber.await());
+			assertNull(aSubscriber.mError.get());
+			assertEquals(100, aSubscriber.mResults.size());
+			assertEquals(0, aPool.getActiveCount());
+		}
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).build()) {
+			final CountDownLatch aLatch = new CountDownLatch(10);
+			final AtomicBoolean aTerminated = new AtomicBoolean(false);
+
+			Repositories.selectQueryAsync(aPool, QueryLanguage.SPARQL, "select * where { ?s ?p ?o }", mExecutor)
+			            .subscribe(new ResultFlow.Subscriber<BindingSet>() {
+				            private ResultFlow.Subscription mSubscription;
+
+				            @Override
+				            public void onSubscribe(final ResultFlow.Subscription theSubscription) {
+					            mSubscription = theSubscription;
+					            mSubscription.request(10);
+				            }
+
+				            @Override
+				            public void onNext(final BindingSet theItem) {
+					            aLatch.countDown();
+
+					            if (aLatch.getCount() == 0) {
+						            mSubscription.cancel();
+					            }
+				            }
+
+				            @Override
+				            public void onError(final Throwable theError) {
+					            aTerminated.set(true);
+				            }
+
+				            @Override
+				            public void onComplete() {
+					            aTerminated.set(true);
+				            }
+			            });
+
+			assertTrue(aLatch.await(5, TimeUnit.SECONDS));
+
+			// the connection is returned once the cancellation is processed
+			for (int i = 0; i < 50 && aPool.getActiveCount() > 0; i++) {
+				Thread.sleep(20);
+			}
+
+			assertEquals(0, aPool.getActiveCount());
+			assertFalse(aTerminated.get());
+		}
+	}
+
+	@Test
+	public void testError() throws Exception {
+		CollectingSubscriber<BindingSet> aSubscriber = new CollectingSubscriber<>(Long.MAX_VALUE);
+
+		Repositories.selectQueryAsync(mRepository, QueryLanguage.SPARQL, "not a query", mExecutor)
+		            .subscribe(aSubscriber);
+
+		assertFalse(aSubscriber.await());
+		assertTrue(aSubscriber.mError.get() != null);
+	}
+
+	@Test
+	public void testRejectedAfterFirstRequest() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).build()) {
+			final CountDownLatch aFirst = new CountDownLatch(1);
+			final AtomicReference<ResultFlow.Subscription> aSubscription = new AtomicReference<>();
+			final AtomicReference<Throwable> aError = new AtomicReference<>();
+
+			Repositories.selectQueryAsync(aPool, QueryLanguage.SPARQL, "select * where { ?s ?p ?o }", mExecutor)
+			            .subscribe(new ResultFlow.Subscriber<BindingSet>() {
+				            @Override
+				            public void onSubscribe(final ResultFlow.Subscription theSubscription) {
+					            aSubscription.set(theSubscription);
+					            theSubscription.request(1);
+				            }
+
+				            @Override
+				            public void onNext(final BindingSet theItem) {
+					            aFirst.countDown();
+				            }
+
+				            @Override
+				            public void onError(final Throwable theError) {
+					            aError.set(theError);
+				            }
+
+				            @Override
+				            public void onComplete() {
+				            }
+			            });
+
+			assertTrue(aFirst.await(5, TimeUnit.SECONDS));
+
+			mExecutor.shutdown();
+			assertTrue(mExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+			// the first drain left the query open, it must be closed when the next drain cannot be scheduled
+			assertEquals(1, aPool.getActiveCount());
+
+			aSubscription.get().request(1);
+
+			assertTrue(aError.get() instanceof RejectedExecutionException);
+			assertEquals(0, aPool.getActiveCount());
+		}
+	}
+
+	/**
+	 * Subscriber which requests results in batches of a fixed size and collects them
+	 */
+	private static final class CollectingSubscriber<T> implements ResultFlow.Subscriber<T> {
+		private final long mBatch;
+
+		private final List<T> mResults = Lists.newArrayList();
+
+		private final AtomicReference<Throwable> mError = new AtomicReference<>();
+
+		private final CountDownLatch mDone = new CountDownLatch(1);
+
+		private ResultFlow.Subscription mSubscription;
+
+		private long mOutstanding;
+
+		private CollectingSubscriber(final long theBatch) {
+			mBatch = theBatch;
+		}
+
+		/**
+		 * Wait for the results, returning whether or not they completed without error
+		 */
+		private boolean await() throws InterruptedException {
+			assertTrue(mDone.await(5, TimeUnit.SECONDS));
+
+			return mError.get() == null;
+		}
+
+		@Override
+		public void onSubscribe(final ResultFlow.Subscription theSubscription) {
+			mSubscription = theSubscription;
+			mOutstanding = mBatch;
+			mSubscription.request(mBatch);
+		}
+
+		@Override
+		public void onNext(final T theItem) {
+			mResults.add(theItem);
+
+			if (--mOutstanding == 0) {
+				mOutstanding = mBatch;
+				mSubscription.request(mBatch);
+			}
+		}
+
+		@Override
+		public void onError(final Throwable theError) {
+			mError.set(theError);
+			mDone.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			mDone.countDown();
+		}
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.complexible.common.openrdf.repository.BatchingQueryExecutor;
+import com.complexible.common.openrdf.repository.Repositories;
+import com.google.common.collect.ImmutableSet;
+import info.aduna.iteration.Iterations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Model;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.base.RepositoryWrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Tests for {@link BatchingQueryExecutor}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class BatchingQueryExecutorTests {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	// the comment and the string in the projection must not be mistaken for the start of the where clause
+	private static final String QUERY = "prefix ex: <urn:ex:> # select { }\n" +
+	                                    "select ?s ?name (concat(\"{\", ?name) as ?braced) where { ?s ex:name ?name }";
+
+	private final IRI a = FACTORY.createIRI("urn:ex:a");
+	private final IRI b = FACTORY.createIRI("urn:ex:b");
+	private final IRI c = FACTORY.createIRI("urn:ex:c");
+
+	private Repository mRepository;
+
+	@Before
+	public void before() throws Exception {
+		mRepository = TestRepositories.createInMemoryRepo();
+
+		final IRI aName = FACTORY.createIRI("urn:ex:name");
+		final Model aModel = new LinkedHashModel();
+
+		aModel.add(a, aName, FACTORY.createLiteral("A"));
+		aModel.add(b, aName, FACTORY.createLiteral("B"));
+		aModel.add(b, aName, FACTORY.createLiteral("B2"));
+		aModel.add(c, FACTORY.createIRI("urn:ex:other"), FACTORY.createLiteral("C"));
+
+		Repositories.add(mRepository, aModel);
+	}
+
+	@After
+	public void after() throws Exception {
+		mRepository.shutDown();
+	}
+
+	@Test
+	public void testLookupsAreBatched() throws Exception {
+		try (BatchingQueryExecutor aExecutor = BatchingQueryExecutor.builder(mRepository)
+		                                                            .window(1, TimeUnit.HOURS)
+		                                                            .build()) {
+			final CompletableFuture<List<BindingSet>> aA = aExecutor.select(QUERY, "s", a);
+			final CompletableFuture<List<BindingSet>> aB = aExecutor.select(QUERY, "s", b);
+			final CompletableFuture<List<BindingSet>> aC = aExecutor.select(QUERY, "s", c);
+			final CompletableFuture<List<BindingSet>> aAgain = aExecutor.select(QUERY, "s", a);
+
+			aExecutor.flush();
+
+			assertEquals(expected(a), ImmutableSet.copyOf(aA.get()));
+			assertEquals(expected(b), ImmutableSet.copyOf(aB.get()));
+			assertEquals(Collections.emptyList(), aC.get());
+			assertEquals(aA.get(), aAgain.get());
+
+			assertEquals(2, aB.get().size());
+			assertEquals(4, aExecutor.getLookupCount());
+			assertEquals(1, aExecutor.getQueryCount());
+		}
+	}
+
+	@Test
+	public void testFullBatchRunsEarly() throws Exception {
+		try (BatchingQueryExecutor aExecutor = BatchingQueryExecutor.builder(mRepository)
+		                                                            .window(1, TimeUnit.HOURS)
+		                                                            .maxBatchSize(2)
+		                                                            .build()) {
+			final CompletableFuture<List<BindingSet>> aA = aExecutor.select(QUERY, "s", a);
+			final CompletableFuture<List<BindingSet>> aB = aExecutor.select(QUERY, "s", b);
+
+			assertEquals(expected(a), ImmutableSet.copyOf(aA.get(10, TimeUnit.SECONDS)));
+			assertEquals(expected(b), ImmutableSet.copyOf(aB.get(10, TimeUnit.SECONDS)));
+			assertEquals(1, aExecutor.getQueryCount());
+		}
+	}
+
+	@Test
+	public void testBatchRunsAfterWindow() throws Exception {
+		try (BatchingQueryExecutor aExecutor = BatchingQueryExecutor.builder(mRepository)
+		                                                            .window(10, TimeUnit.MILLISECONDS)
+		                                                            .build()) {
+			assertEquals(expected(a), ImmutableSet.copyOf(aExecutor.select(QUERY, "s", a).get(10, TimeUnit.SECONDS)));
+		}
+	}
+
+	@Test
+	public void testCloseRunsPendingBatches() throws Exception {
+		final BatchingQueryExecutor aExecutor = BatchingQueryExecutor.builder(mRepository)
+		                                                             .window(1, TimeUnit.HOURS)
+		                                                             .build();
+
+		final CompletableFuture<List<BindingSet>> aA = aExecutor.select(QUERY, "s", a);
+
+		aExecutor.close();
+
+		assertTrue(aA.isDone());
+		assertEquals(expected(a), ImmutableSet.copyOf(aA.get()));
+
+		try {
+			aExecutor.select(QUERY, "s", a);
+			fail("Should not accept lookups once closed");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFailureIsPropagated() throws Exception {
+		try (BatchingQueryExecutor aExecutor = BatchingQueryExecutor.builder(mRepository)
+		                                                            .window(1, TimeUnit.HOURS)
+		                                                            .build()) {
+			final CompletableFuture<List<BindingSet>> aA = aExecutor.select(QUERY, "s", a);
+			final CompletableFuture<List<BindingSet>> aB = aExecutor.select(QUERY, "s", b);
+
+			mRepository.shutDown();
+
+			aExecutor.flush();
+
+			for (CompletableFuture<List<BindingSet>> aFuture : Arrays.asList(aA, aB)) {
+				try {
+					aFuture.get();
+					fail("Lookup should have failed");
+				}
+				catch (ExecutionException e) {
+					// expected
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testErrorIsPropagated() throws Exception {
+		final Repository aBroken = new RepositoryWrapper(mRepository) {
+			@Override
+			public RepositoryConnection getConnection() {
+				throw new AssertionError("broken");
+			}
+		};
+
+		final AtomicInteger aRuns = new AtomicInteger();
+
+		// the error is rethrown on the query thread once the lookups hear about it, keep it out of the test output
+		final Executor aExecutor = theTask -> {
+			aRuns.incrementAndGet();
+
+			final Thread aThread = new Thread(theTask);
+
+			aThread.setUncaughtExceptionHandler((theThread, theError) -> { });
+			aThread.start();
+		};
+
+		try (BatchingQueryExecutor aBatching = BatchingQueryExecutor.builder(aBroken)
+		                                                            .window(1, TimeUnit.MILLISECONDS)
+		                                                            .executor(aExecutor)
+		                                                            .build()) {
+			try {
+				aBatching.select(QUERY, "s", a).get(10, TimeUnit.SECONDS);
+				fail("Lookup should have failed");
+			}
+			catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof AssertionError);
+			}
+
+			assertEquals(1, aRuns.get());
+		}
+	}
+
+	@Test
+	public void testUnbatchableQueries() throws Exception {
+		try (BatchingQueryExecutor aExecutor = BatchingQueryExecutor.builder(mRepository).build()) {
+			assertRejected(aExecutor, "select ?s ?name where { ?s <urn:ex:name> ?name } limit 1", "s");
+			assertRejected(aExecutor, "select ?name where { ?s <urn:ex:name> ?name }", "s");
+			assertRejected(aExecutor, "ask { ?s <urn:ex:name> ?name }", "s");
+			assertRejected(aExecutor, "select ?s where ?s", "s");
+
+			try {
+				aExecutor.select(QUERY, "s", FACTORY.createBNode());
+				fail("Should not accept a blank node");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	private static void assertRejected(final BatchingQueryExecutor theExecutor, final String theQuery, final String theVar) {
+		try {
+			theExecutor.select(theQuery, theVar, FACTORY.createIRI("urn:ex:a"));
+			fail("Should not batch " + theQuery);
+		}
+		catch (MalformedQueryException e) {
+			// expected
+		}
+	}
+
+	private Set<BindingSet> expected(final IRI theSubject) throws Exception {
+		try (RepositoryConnection aConn = mRepository.getConnection()) {
+			final TupleQuery aQuery = aConn.prepareTupleQuery(QueryLanguage.SPARQL, QUERY);
+			aQuery.setBinding("s", theSubject);
+
+			return ImmutableSet.copyOf(Iterations.asList(aQuery.evaluate()));
+		}
+	}
+}
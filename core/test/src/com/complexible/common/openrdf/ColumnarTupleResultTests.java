@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.complexible.common.openrdf.query.ColumnarTupleResult;
+import com.complexible.common.openrdf.repository.Repositories;
+import com.google.common.collect.Lists;
+import info.aduna.iteration.Iterations;
+import org.junit.Test;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.impl.ListBindingSet;
+import org.openrdf.repository.Repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Tests for {@link ColumnarTupleResult}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class ColumnarTupleResultTests {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	private static final List<String> NAMES = Arrays.asList("a", "b");
+
+	private final Literal one = FACTORY.createLiteral("1");
+	private final Literal two = FACTORY.createLiteral("2");
+	private final Literal three = FACTORY.createLiteral("3");
+
+	private List<BindingSet> rows() {
+		return Arrays.<BindingSet>asList(new ListBindingSet(NAMES, three, one),
+		                                 new ListBindingSet(NAMES, one, null),
+		                                 new ListBindingSet(NAMES, two, one),
+		                                 new ListBindingSet(NAMES, null, two));
+	}
+
+	@Test
+	public void testRowsEqualTheirSource() throws Exception {
+		final List<BindingSet> aRows = rows();
+
+		final ColumnarTupleResult aResult = aRows.stream().collect(ColumnarTupleResult.collector(NAMES));
+
+		assertEquals(4, aResult.size());
+		assertEquals(NAMES, aResult.getBindingNames());
+		assertEquals(aRows, Lists.newArrayList(aResult));
+
+		for (int i = 0; i < aRows.size(); i++) {
+			assertEquals(aRows.get(i), aResult.get(i));
+			assertEquals(aRows.get(i).hashCode(), aResult.get(i).hashCode());
+			assertEquals(aRows.get(i).getBindingNames(), aResult.get(i).getBindingNames());
+			assertEquals(aRows.get(i).size(), aResult.get(i).size());
+		}
+
+		assertNull(aResult.getValue(1, "b"));
+		assertNull(aResult.getValue(1, "missing"));
+		assertFalse(aResult.get(1).hasBinding("b"));
+		assertEquals(one, aResult.getValue(0, 1));
+		assertEquals(1, Lists.newArrayList(aResult.get(1)).size());
+	}
+
+	@Test
+	public void testParallelCollector() {
+		final List<BindingSet> aRows = Lists.newArrayList();
+		for (int i = 0; i < 10000; i++) {
+			aRows.add(new ListBindingSet(NAMES, FACTORY.createLiteral(i % 100), i % 3 == 0 ? null : FACTORY.createLiteral(i)));
+		}
+
+		assertEquals(aRows, Lists.newArrayList(aRows.parallelStream().collect(ColumnarTupleResult.collector(NAMES))));
+	}
+
+	@Test
+	public void testFromQuery() throws Exception {
+		final Repository aRepo = TestRepositories.createInMemoryRepo();
+		try {
+			Repositories.add(aRepo, TestUtils.createRandomModel(200));
+
+			final String aQuery = "select ?s ?p ?o where { ?s ?p ?o }";
+
+			final List<BindingSet> aExpected = Iterations.asList(Repositories.selectQuery(aRepo, QueryLanguage.SPARQL, aQuery));
+			final ColumnarTupleResult aResult = ColumnarTupleResult.of(Repositories.selectQuery(aRepo, QueryLanguage.SPARQL, aQuery));
+
+			assertEquals(Arrays.asList("s", "p", "o"), aResult.getBindingNames());
+			assertEquals(aExpected, Lists.newArrayList(aResult));
+
+			// the result can be replayed as a query result
+			assertEquals(aExpected, Iterations.asList(aResult.asTupleQueryResult()));
+			assertEquals(aExpected, Iterations.asList(aResult.asTupleQueryResult()));
+		}
+		finally {
+			aRepo.shutDown();
+		}
+	}
+
+	@Test
+	public void testSort() {
+		final ColumnarTupleResult aResult = rows().stream().collect(ColumnarTupleResult.collector(NAMES));
+
+		final ColumnarTupleResult aSorted = aResult.sort("a");
+
+		// unbound first, then in order
+		assertEquals(Arrays.asList(null, one, two, three), column(aSorted, "a"));
+
+		// stable: rows with the same value keep their order
+		final ColumnarTupleResult aByB = aResult.sort("b");
+		assertEquals(Arrays.asList(null, one, one, two), column(aByB, "b"));
+		assertEquals(Arrays.asList(one, three, two, null), column(aByB, "a"));
+
+		final ColumnarTupleResult aDescending = aResult.sort("a", Comparator.comparing(Value::stringValue).reversed());
+		assertEquals(Arrays.asList(null, three, two, one), column(aDescending, "a"));
+
+		// the original is unchanged
+		assertEquals(rows(), Lists.newArrayList(aResult));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSortByUnknownName() {
+		rows().stream().collect(ColumnarTupleResult.collector(NAMES)).sort("c");
+	}
+
+	@Test
+	public void testScanReusesTheRow() {
+		final ColumnarTupleResult aResult = rows().stream().collect(ColumnarTupleResult.collector(NAMES));
+
+		final AtomicInteger aCount = new AtomicInteger();
+		final BindingSet[] aFirst = new BindingSet[1];
+		final List<BindingSet> aExpected = rows();
+
+		aResult.scan(theRow -> {
+			assertEquals(aExpected.get(aCount.getAndIncrement()), theRow);
+
+			if (aFirst[0] == null) {
+				aFirst[0] = theRow;
+			}
+			else {
+				assertTrue(aFirst[0] == theRow);
+			}
+		});
+
+		assertEquals(4, aCount.get());
+	}
+
+	private static List<Value> column(final ColumnarTupleResult theResult, final String theName) {
+		return Lists.newArrayList(theResult).stream()
+		            .map(theRow -> theRow.getValue(theName))
+		            .collect(Collectors.toList());
+	}
+}
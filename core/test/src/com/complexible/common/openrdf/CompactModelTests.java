@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.Iterator;
+
+import com.complexible.common.openrdf.model.CompactModel;
+import com.complexible.common.openrdf.model.Models2;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.util.Models;
+import org.openrdf.model.vocabulary.RDF;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Tests for {@link CompactModel}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class CompactModelTests {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	private final IRI s = FACTORY.createIRI("urn:s");
+	private final IRI s2 = FACTORY.createIRI("urn:s2");
+	private final IRI p = FACTORY.createIRI("urn:p");
+	private final IRI o = FACTORY.createIRI("urn:o");
+	private final Literal l = FACTORY.createLiteral("literal");
+	private final IRI c = FACTORY.createIRI("urn:c");
+
+	@Test
+	public void testCopy() {
+		Model aInput = TestUtils.createRandomModel(200);
+
+		Model aModel = new CompactModel(aInput);
+
+		assertEquals(aInput.size(), aModel.size());
+		assertTrue(Models.isomorphic(aInput, aModel));
+		assertTrue(aModel.containsAll(aInput));
+
+		assertTrue(Models.isomorphic(aInput, Models2.newCompactModel(aInput)));
+	}
+
+	@Test
+	public void testSetSemantics() {
+		Model aModel = Models2.newCompactModel();
+
+		assertTrue(aModel.add(s, p, o));
+		assertFalse(aModel.add(s, p, o));
+		assertTrue(aModel.add(s, p, o, c));
+		assertFalse(aModel.add(FACTORY.createStatement(s, p, o, c)));
+
+		assertEquals(2, aModel.size());
+	}
+
+	@Test
+	public void testFilter() {
+		Model aModel = Models2.newCompactModel();
+
+		aModel.add(s, p, o);
+		aModel.add(s, p, l, c);
+		aModel.add(s2, p, o);
+		aModel.add(s2, RDF.TYPE, o, c);
+
+		assertEquals(2, aModel.filter(s, null, null).size());
+		assertEquals(3, aModel.filter(null, p, null).size());
+		assertEquals(Sets.newHashSet(o, l), aModel.filter(s, p, null).objects());
+		assertEquals(Sets.newHashSet(s, s2), aModel.filter(null, null, o).subjects());
+		assertEquals(2, aModel.filter(null, null, null, c).size());
+		assertEquals(2, aModel.filter(null, null, null, (IRI) null).size());
+		assertEquals(1, aModel.filter(null, p, null, c).size());
+		assertEquals(Sets.newHashSet(c, null), aModel.contexts());
+
+		assertTrue(aModel.filter(FACTORY.createIRI("urn:missing"), null, null).isEmpty());
+		assertTrue(aModel.filter(null, null, null, FACTORY.createIRI("urn:missing")).isEmpty());
+
+		assertTrue(aModel.contains(s, p, l));
+		assertTrue(aModel.contains(s, p, l, c));
+		assertFalse(aModel.contains(s, p, l, (IRI) null));
+		assertTrue(aModel.contains(FACTORY.createStatement(s2, p, o)));
+		assertFalse(aModel.contains(FACTORY.createStatement(s2, p, o, c)));
+	}
+
+	@Test
+	public void testRemove() {
+		Model aModel = Models2.newCompactModel();
+
+		aModel.add(s, p, o);
+		aModel.add(s, p, l, c);
+		aModel.add(s2, p, o);
+
+		assertTrue(aModel.remove(s, null, null));
+		assertFalse(aModel.remove(s, null, null));
+		assertEquals(1, aModel.size());
+		assertFalse(aModel.contains(s, p, o));
+
+		// re-adding a removed statement should work
+		assertTrue(aModel.add(s, p, o));
+		assertTrue(aModel.contains(s, p, o));
+		assertEquals(2, aModel.size());
+
+		aModel.filter(null, p, null).subjects().remove(s2);
+
+		assertEquals(1, aModel.size());
+		assertFalse(aModel.contains(s2, null, null));
+
+		Iterator<Statement> aIter = aModel.iterator();
+		aIter.next();
+		aIter.remove();
+
+		assertTrue(aModel.isEmpty());
+
+		aModel.add(s, p, o);
+		aModel.clear();
+
+		assertTrue(aModel.isEmpty());
+		assertFalse(aModel.contains(s, p, o));
+	}
+
+	@Test
+	public void testRemoveAndAddMany() {
+		Model aInput = TestUtils.createRandomModel(500);
+		Model aModel = Models2.newCompactModel(aInput);
+
+		// remove most of the data, and then add enough to force the removed rows to be reclaimed
+		Model aRemoved = Models2.newModel();
+		Iterator<Statement> aIter = aModel.iterator();
+		while (aRemoved.size() < 400) {
+			aRemoved.add(aIter.next());
+			aIter.remove();
+		}
+
+		aInput.removeAll(aRemoved);
+
+		Model aMore = TestUtils.createRandomModel(500);
+
+		aModel.addAll(aMore);
+		aInput.addAll(aMore);
+
+		assertEquals(aInput.size(), aModel.size());
+		assertTrue(Models.isomorphic(aInput, aModel));
+
+		for (Statement aStmt : aInput) {
+			assertEquals(1, aModel.filter(aStmt.getSubject(), aStmt.getPredicate(), aStmt.getObject()).size());
+		}
+	}
+
+	@Test
+	public void testNamespaces() {
+		Model aModel = Models2.newCompactModel();
+
+		aModel.setNamespace("ex", "urn:ex:");
+		aModel.setNamespace("ex", "urn:other:");
+
+		assertEquals(1, aModel.getNamespaces().size());
+		assertEquals("urn:other:", aModel.getNamespace("ex").get().getName());
+		assertTrue(aModel.removeNamespace("ex").isPresent());
+		assertTrue(aModel.getNamespaces().isEmpty());
+	}
+}
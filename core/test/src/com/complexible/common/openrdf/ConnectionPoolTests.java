@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.complexible.common.openrdf.repository.ConnectionPool;
+import com.complexible.common.openrdf.repository.Repositories;
+import info.aduna.iteration.Iterations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Tests for {@link ConnectionPool}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class ConnectionPoolTests {
+	private Repository mRepository;
+
+	@Before
+	public void before() {
+		mRepository = TestRepositories.createInMemoryRepo();
+	}
+
+	@After
+	public void after() throws Exception {
+		mRepository.shutDown();
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).maxSize(2).build()) {
+			RepositoryConnection aConn = aPool.borrow();
+
+			assertEquals(1, aPool.getActiveCount());
+			assertEquals(0, aPool.getIdleCount());
+
+			aConn.close();
+
+			assertFalse(aConn.isOpen());
+			assertEquals(0, aPool.getActiveCount());
+			assertEquals(1, aPool.getIdleCount());
+
+			// closing twice must not return the connection twice
+			aConn.close();
+
+			assertEquals(1, aPool.getIdleCount());
+
+			try (RepositoryConnection aOther = aPool.borrow()) {
+				assertTrue(aOther.isOpen());
+				assertEquals(0, aPool.getIdleCount());
+			}
+		}
+	}
+
+	@Test
+	public void testUseAfterRelease() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).maxSize(1).build()) {
+			RepositoryConnection aConn = aPool.borrow();
+			aConn.close();
+
+			try (RepositoryConnection aOther = aPool.borrow()) {
+				aOther.begin();
+
+				try {
+					aConn.add(TestUtils.createRandomStatement());
+					fail("Should not be able to use a connection returned to the pool");
+				}
+				catch (IllegalStateException e) {
+					// expected
+				}
+
+				try {
+					aConn.commit();
+					fail("Should not be able to use a connection returned to the pool");
+				}
+				catch (IllegalStateException e) {
+					// expected
+				}
+
+				aOther.rollback();
+
+				assertEquals(0, aOther.size());
+			}
+		}
+	}
+
+	@Test
+	public void testMaxWait() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).maxSize(1).maxWait(50, TimeUnit.MILLISECONDS).build()) {
+			RepositoryConnection aConn = aPool.borrow();
+
+			try {
+				aPool.borrow();
+				fail("Should have timed out waiting for a connection");
+			}
+			catch (RepositoryException e) {
+				// expected
+			}
+			finally {
+				aConn.close();
+			}
+
+			assertEquals(0, aPool.getActiveCount());
+
+			aPool.borrow().close();
+		}
+	}
+
+	@Test
+	public void testIdleEviction() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).maxIdle(50, TimeUnit.MILLISECONDS).build()) {
+			RepositoryConnection aConn = aPool.borrow();
+			aConn.close();
+
+			assertEquals(1, aPool.getIdleCount());
+
+			Thread.sleep(500);
+
+			assertEquals(0, aPool.getIdleCount());
+		}
+	}
+
+	@Test
+	public void testValidation() throws Exception {
+		final AtomicInteger aChecks = new AtomicInteger();
+
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository)
+		                                          .validator(theConn -> aChecks.incrementAndGet() > 1)
+		                                          .build()) {
+			aPool.borrow().close();
+
+			// the first check fails, so a new connection is created and the idle one discarded
+			aPool.borrow().close();
+
+			assertEquals(1, aChecks.get());
+			assertEquals(1, aPool.getIdleCount());
+
+			aPool.borrow().close();
+
+			assertEquals(2, aChecks.get());
+		}
+	}
+
+	@Test
+	public void testActiveTransactionRolledBack() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).maxSize(1).build()) {
+			RepositoryConnection aConn = aPool.borrow();
+
+			aConn.begin();
+			aConn.add(TestUtils.createRandomStatement());
+			aConn.close();
+
+			try (RepositoryConnection aOther = aPool.borrow()) {
+				assertFalse(aOther.isActive());
+				assertEquals(0, aOther.size());
+			}
+		}
+	}
+
+	@Test
+	public void testRepositories() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).maxSize(1).maxWait(1, TimeUnit.SECONDS).build()) {
+			Model aGraph = TestUtils.createRandomModel(25);
+
+			Repositories.add(aPool, aGraph);
+
+			assertEquals(25, Repositories.size(aPool));
+
+			for (Statement aStmt : aGraph) {
+				assertTrue(Repositories.contains(aPool, aStmt));
+			}
+
+			try (TupleQueryResult aResult = Repositories.selectQuery(aPool, QueryLanguage.SPARQL, "select * where { ?s ?p ?o }")) {
+				assertEquals(1, aPool.getActiveCount());
+				assertEquals(25, Iterations.asList(aResult).size());
+			}
+
+			assertEquals(25, Iterations.asList(Repositories.getStatements(aPool, null, null, null)).size());
+
+			Repositories.remove(aPool, aGraph);
+
+			assertEquals(0, Repositories.size(aPool));
+			assertEquals(0, aPool.getActiveCount());
+			assertEquals(1, aPool.getIdleCount());
+		}
+	}
+}
@@ -15,16 +15,25 @@
 
 package com.complexible.common.openrdf;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 
 import com.complexible.common.openrdf.model.ConstrainedModel;
+import com.complexible.common.openrdf.model.Models2;
+import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
 import org.openrdf.model.Model;
 import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.SimpleValueFactory;
 import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -68,4 +77,64 @@ public class ConstrainedModelTests {
 		}
 
 	}
+
+	@Test
+	public void testOnlyValidLiterals() {
+		final ValueFactory aFactory = SimpleValueFactory.getInstance();
+		final IRI s = aFactory.createIRI("urn:s");
+		final IRI p = aFactory.createIRI("urn:p");
+
+		Model aGraph = ConstrainedModel.of(ConstrainedModel.onlyValidLiterals());
+
+		aGraph.add(s, p, aFactory.createLiteral("12", XMLSchema.INT));
+		aGraph.add(s, p, aFactory.createLiteral("2016-01-01T00:00:00Z", XMLSchema.DATETIME));
+		aGraph.add(s, p, aFactory.createLiteral("not a number", XMLSchema.STRING));
+
+		for (int i = 0; i < 2; i++) {
+			// the second time through, the validity comes from the cache
+			try {
+				aGraph.add(s, p, aFactory.createLiteral("not a number", XMLSchema.INT));
+				fail("should not allow an invalid literal");
+			}
+			catch (ConstrainedModel.StatementViolatedConstraintException e) {
+				// expected
+			}
+		}
+
+		assertEquals(3, aGraph.size());
+	}
+
+	@Test
+	public void testBatchReportsAllViolations() {
+		final ValueFactory aFactory = SimpleValueFactory.getInstance();
+		final IRI s = aFactory.createIRI("urn:s");
+		final IRI p = aFactory.createIRI("urn:p");
+
+		// enough statements to be validated in parallel
+		List<Statement> aStatements = Lists.newArrayList(TestUtils.createRandomModel(20000));
+
+		aStatements.add(aFactory.createStatement(s, p, aFactory.createLiteral("one", XMLSchema.INT)));
+		aStatements.add(aFactory.createStatement(s, p, aFactory.createLiteral("two", XMLSchema.DOUBLE)));
+		aStatements.add(aFactory.createStatement(s, p, aFactory.createLiteral("three", XMLSchema.DATETIME)));
+
+		for (List<Statement> aInput : Lists.newArrayList(aStatements, aStatements.subList(aStatements.size() - 5, aStatements.size()))) {
+			Model aGraph = ConstrainedModel.batch(Models2.newModel(), ConstrainedModel.onlyValidLiterals());
+
+			try {
+				aGraph.addAll(aInput);
+				fail("should not allow invalid literals");
+			}
+			catch (ConstrainedModel.ConstraintViolationsException e) {
+				assertEquals(3, e.getViolations().size());
+			}
+
+			assertTrue(aGraph.isEmpty());
+		}
+
+		Model aGraph = ConstrainedModel.batch(Models2.newModel(), ConstrainedModel.onlyValidLiterals(), new ForkJoinPool(2));
+
+		aGraph.addAll(aStatements.subList(0, 20000));
+
+		assertEquals(20000, aGraph.size());
+	}
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.stream.Collectors;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.complexible.common.openrdf.model.InstrumentedModel;
+import com.complexible.common.openrdf.model.Models2;
+import com.complexible.common.openrdf.util.LatencyHistogram;
+import com.complexible.common.openrdf.util.Metrics;
+import com.complexible.common.openrdf.util.SimpleMetrics;
+import org.junit.Test;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Tests for {@link InstrumentedModel} and the metrics it is recorded in</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class InstrumentedModelTests {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	private final IRI s = FACTORY.createIRI("urn:s");
+	private final IRI p = FACTORY.createIRI("urn:p");
+	private final IRI o = FACTORY.createIRI("urn:o");
+
+	@Test
+	public void testOperationsAreRecorded() {
+		final SimpleMetrics aMetrics = new SimpleMetrics();
+		final Model aModel = Models2.instrumented(Models2.newModel(), aMetrics);
+
+		aModel.add(s, p, o);
+		aModel.add(FACTORY.createStatement(o, p, s));
+		aModel.addAll(Models2.newModel(FACTORY.createStatement(s, p, s)));
+
+		assertTrue(aModel.contains(s, p, o));
+		assertTrue(aModel.contains(FACTORY.createStatement(o, p, s)));
+
+		aModel.remove(s, p, s);
+
+		assertEquals(2, aMetrics.getCount(InstrumentedModel.ADD));
+		assertEquals(1, aMetrics.getCount(InstrumentedModel.ADD_ALL));
+		assertEquals(2, aMetrics.getCount(InstrumentedModel.CONTAINS));
+		assertEquals(1, aMetrics.getCount(InstrumentedModel.REMOVE));
+		assertEquals(0, aMetrics.getCount(InstrumentedModel.ITERATE));
+
+		assertEquals(2, aMetrics.getGauge(InstrumentedModel.SIZE));
+		assertTrue(aMetrics.getGauge(InstrumentedModel.HEAP_ESTIMATE) > 0);
+	}
+
+	@Test
+	public void testScansAreRecordedOnExhaustion() {
+		final SimpleMetrics aMetrics = new SimpleMetrics();
+		final Model aModel = new InstrumentedModel(Models2.newModel(FACTORY.createStatement(s, p, o),
+		                                                            FACTORY.createStatement(o, p, s)),
+		                                           aMetrics);
+
+		final Iterator<Statement> aIter = aModel.iterator();
+		aIter.next();
+
+		assertEquals(0, aMetrics.getCount(InstrumentedModel.ITERATE));
+
+		aIter.next();
+		assertFalse(aIter.hasNext());
+		assertFalse(aIter.hasNext());
+
+		assertEquals(1, aMetrics.getCount(InstrumentedModel.ITERATE));
+
+		aModel.forEach(theStmt -> { });
+		assertEquals(2, aModel.stream().collect(Collectors.toList()).size());
+		assertEquals(2, aModel.parallelStream().collect(Collectors.toSet()).size());
+
+		assertEquals(4, aMetrics.getCount(InstrumentedModel.ITERATE));
+	}
+
+	@Test
+	public void testFilteredViewsAreRecordedSeparately() {
+		final SimpleMetrics aMetrics = new SimpleMetrics();
+		final Model aModel = new InstrumentedModel(Models2.newModel(FACTORY.createStatement(s, p, o),
+		                                                            FACTORY.createStatement(o, p, s)),
+		                                           aMetrics);
+
+		final Model aFiltered = aModel.filter(s, null, null);
+
+		assertEquals(1, aFiltered.stream().collect(Collectors.toList()).size());
+
+		assertEquals(1, aMetrics.getCount(InstrumentedModel.FILTER));
+		assertEquals(1, aMetrics.getCount(InstrumentedModel.FILTER + '.' + InstrumentedModel.ITERATE));
+		assertEquals(0, aMetrics.getCount(InstrumentedModel.ITERATE));
+
+		// the gauges describe the whole model, not the view
+		assertEquals(2, aMetrics.getGauge(InstrumentedModel.SIZE));
+	}
+
+	@Test
+	public void testNoOpMetrics() {
+		final Model aModel = new InstrumentedModel(Models2.newModel(), Metrics.NONE);
+
+		aModel.add(s, p, o);
+
+		assertEquals(1, aModel.size());
+		assertEquals(1, aModel.filter(s, null, null).size());
+	}
+
+	@Test
+	public void testHistogram() {
+		final LatencyHistogram aHistogram = new LatencyHistogram();
+
+		assertEquals(0, aHistogram.getPercentile(99));
+
+		for (int i = 1; i <= 100; i++) {
+			aHistogram.record(i * 1000);
+		}
+
+		assertEquals(100, aHistogram.getCount());
+		assertEquals(50500, aHistogram.getMeanNanos());
+		assertEquals(100000, aHistogram.getMaxNanos());
+
+		// buckets are powers of two, so percentiles are upper bounds within a factor of two
+		final long aMedian = aHistogram.getPercentile(50);
+		assertTrue(aMedian >= 50000 && aMedian < 100000);
+		assertEquals(100000, aHistogram.getPercentile(100));
+
+		aHistogram.reset();
+		assertEquals(0, aHistogram.getCount());
+		assertEquals(0, aHistogram.getMaxNanos());
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		final SimpleMetrics aMetrics = new SimpleMetrics();
+		final Model aModel = new InstrumentedModel(Models2.newModel(), aMetrics);
+
+		aModel.add(s, p, o);
+
+		final ObjectName aName = aMetrics.register("com.complexible.common.openrdf:type=Model,name=InstrumentedModelTests");
+		try {
+			final MBeanServer aServer = ManagementFactory.getPlatformMBeanServer();
+
+			assertEquals(1L, aServer.getAttribute(aName, InstrumentedModel.SIZE));
+			assertEquals(1L, aServer.getAttribute(aName, InstrumentedModel.ADD + ".count"));
+
+			aModel.add(o, p, s);
+			assertEquals(2L, aServer.getAttribute(aName, InstrumentedModel.ADD + ".count"));
+
+			aServer.invoke(aName, "reset", null, null);
+			assertEquals(0L, aServer.getAttribute(aName, InstrumentedModel.ADD + ".count"));
+		}
+		finally {
+			SimpleMetrics.unregister(aName);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import com.complexible.common.openrdf.repository.InstrumentedRepository;
+import com.complexible.common.openrdf.repository.Repositories;
+import com.complexible.common.openrdf.util.SimpleMetrics;
+import info.aduna.iteration.Iterations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.GraphQueryResult;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Tests for {@link InstrumentedRepository}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class InstrumentedRepositoryTests {
+	private static final String SELECT = "select ?s ?p ?o where { ?s ?p ?o }";
+
+	private SimpleMetrics mMetrics;
+
+	private InstrumentedRepository mRepository;
+
+	@Before
+	public void before() throws Exception {
+		mMetrics = new SimpleMetrics();
+		mRepository = new InstrumentedRepository(TestRepositories.createInMemoryRepo(), mMetrics);
+
+		Repositories.add(mRepository, TestUtils.createRandomModel(100));
+
+		mMetrics.reset();
+	}
+
+	@After
+	public void after() throws Exception {
+		mRepository.shutDown();
+	}
+
+	@Test
+	public void testCallsAreRecorded() throws Exception {
+		try (RepositoryConnection aConn = mRepository.getConnection()) {
+			assertEquals(1, mRepository.getOpenConnections());
+			assertEquals(1L, mMetrics.getGauge(InstrumentedRepository.OPEN_CONNECTIONS));
+
+			aConn.begin();
+			aConn.add(SimpleValueFactory.getInstance().createIRI("urn:s"), RDF.TYPE, RDF.PROPERTY);
+			aConn.commit();
+
+			assertTrue(aConn.hasStatement(null, RDF.TYPE, RDF.PROPERTY, false));
+			assertEquals(101, aConn.size());
+			assertTrue(aConn.prepareBooleanQuery(QueryLanguage.SPARQL, "ask { ?s a ?o }").evaluate());
+		}
+
+		assertEquals(0, mRepository.getOpenConnections());
+
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.GET_CONNECTION));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.BEGIN));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.ADD));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.COMMIT));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.HAS_STATEMENT));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.SIZE));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.PREPARE));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.BOOLEAN + InstrumentedRepository.EVALUATE));
+	}
+
+	@Test
+	public void testTupleResultsAreTimed() throws Exception {
+		try (RepositoryConnection aConn = mRepository.getConnection()) {
+			final TupleQueryResult aResult = aConn.prepareTupleQuery(QueryLanguage.SPARQL, SELECT).evaluate();
+
+			assertEquals(1, mRepository.getOpenResults());
+			assertEquals(0, mMetrics.getCount(InstrumentedRepository.TUPLE + InstrumentedRepository.FIRST_RESULT));
+
+			assertEquals(100, Iterations.asList(aResult).size());
+			aResult.close();
+		}
+
+		assertEquals(0, mRepository.getOpenResults());
+		assertEquals(0, mRepository.getLeakedResults());
+
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.TUPLE + InstrumentedRepository.EVALUATE));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.TUPLE + InstrumentedRepository.FIRST_RESULT));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.TUPLE + InstrumentedRepository.ITERATE));
+		assertEquals(100, mMetrics.getHistogram(InstrumentedRepository.TUPLE + InstrumentedRepository.RESULTS).getMaxNanos());
+
+		// time to first result can never exceed the time to the end of the result
+		assertTrue(mMetrics.getHistogram(InstrumentedRepository.TUPLE + InstrumentedRepository.FIRST_RESULT).getMaxNanos()
+		           <= mMetrics.getHistogram(InstrumentedRepository.TUPLE + InstrumentedRepository.ITERATE).getMaxNanos());
+	}
+
+	@Test
+	public void testStatementsAndGraphResultsAreTimed() throws Exception {
+		try (RepositoryConnection aConn = mRepository.getConnection()) {
+			final RepositoryResult<?> aStatements = aConn.getStatements(null, null, null, false);
+			assertEquals(100, Iterations.asList(aStatements).size());
+			aStatements.close();
+
+			final GraphQueryResult aGraph = aConn.prepareGraphQuery(QueryLanguage.SPARQL, "construct { ?s ?p ?o } where { ?s ?p ?o } limit 10")
+			                                     .evaluate();
+			assertEquals(10, Iterations.asList(aGraph).size());
+			aGraph.close();
+		}
+
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.GET_STATEMENTS));
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.GET_STATEMENTS + InstrumentedRepository.ITERATE));
+		assertEquals(100, mMetrics.getHistogram(InstrumentedRepository.GET_STATEMENTS + InstrumentedRepository.RESULTS).getMaxNanos());
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.GRAPH + InstrumentedRepository.ITERATE));
+		assertEquals(10, mMetrics.getHistogram(InstrumentedRepository.GRAPH + InstrumentedRepository.RESULTS).getMaxNanos());
+		assertEquals(0, mRepository.getOpenResults());
+	}
+
+	@Test
+	public void testLeakedResults() throws Exception {
+		final RepositoryConnection aConn = mRepository.getConnection();
+
+		final TupleQueryResult aResult = aConn.prepareTupleQuery(QueryLanguage.SPARQL, SELECT).evaluate();
+		aResult.next();
+
+		aConn.close();
+
+		assertEquals(1, mRepository.getLeakedResults());
+		assertEquals(1L, mMetrics.getGauge(InstrumentedRepository.LEAKED_RESULTS));
+		assertEquals(0, mRepository.getOpenResults());
+		assertEquals(0, mRepository.getOpenConnections());
+		assertEquals(0, mMetrics.getCount(InstrumentedRepository.TUPLE + InstrumentedRepository.ITERATE));
+	}
+
+	@Test
+	public void testConnectionClosingResults() throws Exception {
+		// the result is closed before its connection, so it is not counted as leaked
+		final TupleQueryResult aResult = Repositories.selectQuery(mRepository, QueryLanguage.SPARQL, SELECT);
+
+		assertTrue(aResult.hasNext());
+		aResult.next();
+		aResult.close();
+
+		assertEquals(0, mRepository.getLeakedResults());
+		assertEquals(0, mRepository.getOpenConnections());
+		assertEquals(1, mMetrics.getCount(InstrumentedRepository.TUPLE + InstrumentedRepository.ITERATE));
+		assertEquals(1, mMetrics.getHistogram(InstrumentedRepository.TUPLE + InstrumentedRepository.RESULTS).getMaxNanos());
+		assertFalse(mMetrics.getHistograms().containsKey(InstrumentedRepository.GRAPH + InstrumentedRepository.ITERATE));
+	}
+}
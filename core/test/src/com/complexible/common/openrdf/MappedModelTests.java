@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.complexible.common.openrdf.model.MappedModel;
+import com.complexible.common.openrdf.model.ModelIO;
+import com.complexible.common.openrdf.model.Models2;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.util.Models;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFFormat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Tests for {@link MappedModel}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class MappedModelTests {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	private Path mFile;
+
+	@Before
+	public void before() throws Exception {
+		mFile = Files.createTempFile("mapped", ".model");
+	}
+
+	@After
+	public void after() throws Exception {
+		Files.deleteIfExists(mFile);
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Model aInput = createModel();
+
+		MappedModel.write(aInput, mFile);
+
+		Model aModel = Models2.mapped(mFile);
+
+		assertEquals(aInput.size(), aModel.size());
+		assertTrue(Models.isomorphic(aInput, aModel));
+		assertEquals(aInput.getNamespaces(), aModel.getNamespaces());
+	}
+
+	@Test
+	public void testFilter() throws Exception {
+		Model aInput = createModel();
+
+		MappedModel.write(aInput, mFile);
+
+		Model aModel = MappedModel.open(mFile);
+
+		final IRI aContext = FACTORY.createIRI("urn:c");
+
+		for (Statement aStmt : aInput) {
+			final Resource s = aStmt.getSubject();
+			final IRI p = aStmt.getPredicate();
+
+			assertTrue(aModel.contains(aStmt));
+			assertEquals(aInput.filter(s, null, null), aModel.filter(s, null, null));
+			assertEquals(aInput.filter(s, p, null), aModel.filter(s, p, null));
+			assertEquals(aInput.filter(null, p, aStmt.getObject()), aModel.filter(null, p, aStmt.getObject()));
+			assertEquals(aInput.filter(s, null, aStmt.getObject()), aModel.filter(s, null, aStmt.getObject()));
+			assertEquals(aInput.filter(null, null, aStmt.getObject()), aModel.filter(null, null, aStmt.getObject()));
+			assertEquals(aInput.filter(null, p, null, aContext), aModel.filter(null, p, null, aContext));
+		}
+
+		assertEquals(aInput.filter(null, null, null, aContext), aModel.filter(null, null, null, aContext));
+		assertEquals(aInput.filter(null, null, null, (Resource) null), aModel.filter(null, null, null, (Resource) null));
+		assertEquals(aInput.contexts(), aModel.contexts());
+
+		assertTrue(aModel.filter(FACTORY.createIRI("urn:missing"), null, null).isEmpty());
+		assertFalse(aModel.contains(null, null, FACTORY.createLiteral("missing")));
+	}
+
+	@Test
+	public void testWriter() throws Exception {
+		final String aData = "<urn:s> <urn:p> <urn:o> .\n" +
+		                     "<urn:s> <urn:p> <urn:o> .\n" +
+		                     "<urn:s> <urn:p> \"lit\"@en .\n" +
+		                     "_:b <urn:p> \"1\"^^<http://www.w3.org/2001/XMLSchema#int> .";
+
+		ModelIO.read(MappedModel.writer(mFile), new StringReader(aData), RDFFormat.TURTLE, ModelIO.DEFAULT_BASE_URI);
+
+		Model aModel = MappedModel.open(mFile);
+
+		assertTrue(Models.isomorphic(ModelIO.read(new StringReader(aData), RDFFormat.TURTLE, ModelIO.DEFAULT_BASE_URI), aModel));
+		assertEquals(3, aModel.size());
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		MappedModel.write(Models2.newModel(), mFile);
+
+		Model aModel = MappedModel.open(mFile);
+
+		assertTrue(aModel.isEmpty());
+		assertFalse(aModel.iterator().hasNext());
+		assertFalse(aModel.contains(FACTORY.createIRI("urn:s"), null, null));
+	}
+
+	@Test
+	public void testReadOnly() throws Exception {
+		MappedModel.write(createModel(), mFile);
+
+		Model aModel = MappedModel.open(mFile);
+
+		try {
+			aModel.add(FACTORY.createIRI("urn:s"), RDF.TYPE, FACTORY.createIRI("urn:o"));
+			fail("Should not be able to modify a mapped model");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		try {
+			aModel.iterator().remove();
+			fail("Should not be able to modify a mapped model");
+		}
+		catch (UnsupportedOperationException | IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testManyValues() throws Exception {
+		// more distinct values than the writer caches, so ids are found in its on-disk table
+		final Model aInput = Models2.newModel();
+		final int aCount = 20000;
+
+		for (int i = 0; i < aCount; i++) {
+			aInput.add(FACTORY.createIRI("urn:s" + i), RDF.VALUE, FACTORY.createLiteral(i));
+			aInput.add(FACTORY.createIRI("urn:s" + i), RDF.TYPE, FACTORY.createIRI("urn:type" + (i % 10)));
+		}
+
+		for (int i = 0; i < aCount; i++) {
+			aInput.add(FACTORY.createIRI("urn:s" + i), RDFS.LABEL, FACTORY.createLiteral(i));
+		}
+
+		MappedModel.write(aInput, mFile);
+
+		try (MappedModel aModel = MappedModel.open(mFile)) {
+			assertEquals(aInput.size(), aModel.size());
+			assertEquals(aInput, aModel);
+
+			for (int i = 0; i < aCount; i += 997) {
+				assertEquals(3, aModel.filter(FACTORY.createIRI("urn:s" + i), null, null).size());
+				assertEquals(2, aModel.filter(null, null, FACTORY.createLiteral(i)).size());
+			}
+
+			assertEquals(aCount / 10, aModel.filter(null, RDF.TYPE, FACTORY.createIRI("urn:type3")).size());
+		}
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		MappedModel.write(createModel(), mFile);
+
+		final MappedModel aModel = MappedModel.open(mFile);
+		final Model aFiltered = aModel.filter(null, RDF.VALUE, null);
+
+		assertFalse(aFiltered.isEmpty());
+
+		aModel.close();
+		aModel.close();
+
+		try {
+			aModel.iterator().hasNext();
+			fail("Should not be able to read a closed model");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+
+		try {
+			aFiltered.contains(null, null, null);
+			fail("Should not be able to read a closed model");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		final Model aInput = createModel();
+
+		MappedModel.write(aInput, mFile);
+
+		try (MappedModel aModel = MappedModel.open(mFile)) {
+			final ByteArrayOutputStream aBytes = new ByteArrayOutputStream();
+
+			try (ObjectOutputStream aOut = new ObjectOutputStream(aBytes)) {
+				aOut.writeObject(aModel);
+			}
+
+			try (ObjectInputStream aIn = new ObjectInputStream(new ByteArrayInputStream(aBytes.toByteArray()));
+			     MappedModel aCopy = (MappedModel) aIn.readObject()) {
+				assertTrue(Models.isomorphic(aInput, aCopy));
+				assertEquals(aInput.getNamespaces(), aCopy.getNamespaces());
+			}
+		}
+	}
+
+	private static Model createModel() {
+		Model aModel = TestUtils.createRandomModel(300);
+
+		final BNode aBNode = FACTORY.createBNode();
+		final IRI aContext = FACTORY.createIRI("urn:c");
+
+		aModel.add(aBNode, RDF.TYPE, FACTORY.createIRI("urn:type"));
+		aModel.add(aBNode, RDF.VALUE, FACTORY.createLiteral("label", "en"), aContext);
+		aModel.add(aBNode, RDF.VALUE, FACTORY.createLiteral(42), aContext);
+		aModel.add(FACTORY.createIRI("urn:s"), RDF.VALUE, aBNode, aContext);
+		aModel.add(FACTORY.createIRI("urn:s"), RDF.VALUE, aBNode);
+
+		aModel.setNamespace("rdf", RDF.NAMESPACE);
+		aModel.setNamespace("ex", "urn:ex:");
+
+		return aModel;
+	}
+}
@@ -15,21 +15,44 @@
 
 package com.complexible.common.openrdf;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.complexible.common.openrdf.model.BinaryRDFSnapshot;
 import com.complexible.common.openrdf.model.ModelIO;
 import com.complexible.common.openrdf.model.Models2;
+import com.complexible.common.openrdf.model.Statements;
+import com.google.common.collect.Sets;
 import org.junit.Test;
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
 import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.Rio;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * <p></p>
  *
  * @author  Michael Grove
  * @since   0.9
- * @version 0.9
+ * @version 4.1
  */
 public class ModelIOTests {
     @Test
@@ -46,4 +69,244 @@ public class ModelIOTests {
 
         assertEquals("<urn:s> <urn:p> <urn:o> .", aStr.trim());
     }
+
+	@Test
+	public void testReadParallelNTriples() throws Exception {
+		testReadParallel(RDFFormat.NTRIPLES);
+	}
+
+	@Test
+	public void testReadParallelNQuads() throws Exception {
+		testReadParallel(RDFFormat.NQUADS);
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		final ValueFactory aFactory = SimpleValueFactory.getInstance();
+
+		Model aInput = TestUtils.createRandomModel(10000);
+
+		final IRI aPred = aFactory.createIRI("urn:pred");
+
+		for (int i = 0; i < 100; i++) {
+			aInput.add(aFactory.createIRI("urn:s" + i), aPred, aFactory.createLiteral(i));
+		}
+
+		Path aFile = Files.createTempFile("stream", ".nt");
+
+		try {
+			try (OutputStream aOut = Files.newOutputStream(aFile)) {
+				ModelIO.write(aInput, aOut, RDFFormat.NTRIPLES);
+			}
+
+			try (Stream<Statement> aStream = ModelIO.stream(aFile)) {
+				Model aModel = aStream.collect(Models2.toModel());
+
+				assertEquals(aInput.size(), aModel.size());
+				assertContainsAll(aInput, aModel);
+			}
+
+			try (Stream<Statement> aStream = ModelIO.stream(aFile)) {
+				assertEquals(100, aStream.filter(Statements.predicateIs(aPred)).count());
+			}
+
+			// closing the stream before it is consumed stops the parse
+			try (Stream<Statement> aStream = ModelIO.stream(aFile)) {
+				assertEquals(10, aStream.limit(10).count());
+			}
+		}
+		finally {
+			Files.deleteIfExists(aFile);
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testStreamParseError() throws Exception {
+		try (Stream<Statement> aStream = ModelIO.stream(new StringReader("<urn:s> <urn:p> <urn:o> .\n<urn:s> <urn:p> "),
+		                                                RDFFormat.NTRIPLES, ModelIO.DEFAULT_BASE_URI)) {
+			aStream.count();
+		}
+	}
+
+	@Test
+	public void testBinarySnapshot() throws Exception {
+		testBinarySnapshot(false);
+	}
+
+	@Test
+	public void testCompressedBinarySnapshot() throws Exception {
+		testBinarySnapshot(true);
+	}
+
+	@Test
+	public void testBinarySnapshotFormat() throws Exception {
+		assertEquals(BinaryRDFSnapshot.FORMAT, Rio.getParserFormatForFileName("model.rdfsnap").get());
+		assertEquals(BinaryRDFSnapshot.FORMAT, Rio.getWriterFormatForFileName("model.rdfsnap").get());
+
+		// rdf schema files are still rdf/xml
+		assertEquals(RDFFormat.RDFXML, Rio.getParserFormatForFileName("schema.rdfs").get());
+
+		Model aInput = createSnapshotModel();
+
+		ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		Rio.write(aInput, aOut, BinaryRDFSnapshot.FORMAT);
+
+		Model aModel = Rio.parse(new ByteArrayInputStream(aOut.toByteArray()), ModelIO.DEFAULT_BASE_URI, BinaryRDFSnapshot.FORMAT);
+
+		assertEquals(aInput.size(), aModel.size());
+		assertContainsAll(aInput, aModel);
+	}
+
+	@Test(expected = RDFParseException.class)
+	public void testInvalidBinarySnapshot() throws Exception {
+		ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		ModelIO.writeBinary(createSnapshotModel(), aOut, false);
+
+		// truncated
+		ModelIO.readBinary(new ByteArrayInputStream(aOut.toByteArray(), 0, aOut.size() / 2));
+	}
+
+	@Test
+	public void testBinarySnapshotStreamRoundTrip() throws Exception {
+		Model aInput = createSnapshotModel();
+
+		ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		ModelIO.write(aInput, aOut, BinaryRDFSnapshot.FORMAT);
+
+		Model aModel = ModelIO.read(new ByteArrayInputStream(aOut.toByteArray()), BinaryRDFSnapshot.FORMAT);
+
+		assertEquals(aInput.size(), aModel.size());
+		assertContainsAll(aInput, aModel);
+	}
+
+	@Test(expected = RDFParseException.class)
+	public void testEmptyBinarySnapshot() throws Exception {
+		ModelIO.readBinary(new ByteArrayInputStream(new byte[0]));
+	}
+
+	@Test(expected = RDFParseException.class)
+	public void testInvalidBinarySnapshotStringLength() throws Exception {
+		ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		ModelIO.writeBinary(createSnapshotModel(), aOut, false);
+
+		// the header, then an iri record whose length varint decodes as negative
+		ByteArrayOutputStream aCorrupt = new ByteArrayOutputStream();
+		aCorrupt.write(aOut.toByteArray(), 0, 6);
+		aCorrupt.write(new byte[] { 2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F });
+
+		ModelIO.readBinary(new ByteArrayInputStream(aCorrupt.toByteArray()));
+	}
+
+	private static void testBinarySnapshot(final boolean theCompress) throws Exception {
+		Model aInput = createSnapshotModel();
+
+		Path aFile = Files.createTempFile("snapshot", ".rdfsnap");
+
+		try {
+			ModelIO.writeBinary(aInput, aFile, theCompress);
+
+			// mapped
+			Model aModel = ModelIO.readBinary(aFile);
+
+			assertEquals(aInput.size(), aModel.size());
+			assertContainsAll(aInput, aModel);
+			assertEquals(aInput.getNamespaces(), aModel.getNamespaces());
+
+			// streamed
+			aModel = ModelIO.readBinary(Files.newInputStream(aFile));
+
+			assertEquals(aInput.size(), aModel.size());
+			assertContainsAll(aInput, aModel);
+
+			// from the file extension
+			assertEquals(aInput.size(), ModelIO.read(aFile).size());
+
+			// through the generic stream entry points
+			aModel = ModelIO.read(Files.newInputStream(aFile), BinaryRDFSnapshot.FORMAT);
+
+			assertEquals(aInput.size(), aModel.size());
+			assertContainsAll(aInput, aModel);
+
+			try (Stream<Statement> aStatements = ModelIO.stream(aFile)) {
+				aModel = aStatements.collect(Models2.toModel());
+			}
+
+			assertEquals(aInput.size(), aModel.size());
+			assertContainsAll(aInput, aModel);
+		}
+		finally {
+			Files.deleteIfExists(aFile);
+		}
+	}
+
+	private static Model createSnapshotModel() {
+		final ValueFactory aFactory = SimpleValueFactory.getInstance();
+
+		Model aModel = TestUtils.createRandomModel(1000);
+
+		BNode aBNode = aFactory.createBNode();
+		IRI aContext = aFactory.createIRI("urn:c");
+
+		aModel.add(aBNode, RDF.TYPE, aFactory.createIRI("urn:type"), aContext);
+		aModel.add(aBNode, RDF.VALUE, aFactory.createLiteral("label", "en"), aContext);
+		aModel.add(aBNode, RDF.VALUE, aFactory.createLiteral(42));
+		aModel.add(aBNode, RDF.VALUE, aFactory.createLiteral("\u00e9t\u00e9 \uD83D\uDE00"));
+		aModel.add(aFactory.createIRI("urn:s"), RDF.VALUE, aBNode, aContext);
+
+		aModel.setNamespace("rdf", RDF.NAMESPACE);
+		aModel.setNamespace("ex", "urn:ex:");
+
+		return aModel;
+	}
+
+	private static void testReadParallel(final RDFFormat theFormat) throws Exception {
+		final ValueFactory aFactory = SimpleValueFactory.getInstance();
+
+		// large enough to be split into several chunks
+		Model aInput = TestUtils.createRandomModel(30000);
+
+		for (int i = 0; i < 1000; i++) {
+			BNode aBNode = aFactory.createBNode();
+			IRI aContext = aFactory.createIRI("urn:c" + (i % 10));
+
+			aInput.add(aBNode, RDF.TYPE, aFactory.createIRI("urn:type"), aContext);
+			aInput.add(aFactory.createIRI("urn:s" + i), RDF.VALUE, aBNode);
+		}
+
+		Path aFile = Files.createTempFile("parallel", "." + theFormat.getDefaultFileExtension());
+
+		try {
+			try (OutputStream aOut = Files.newOutputStream(aFile)) {
+				ModelIO.write(aInput, aOut, theFormat);
+			}
+
+			Model aSequential = ModelIO.read(aFile, theFormat);
+			Model aParallel = ModelIO.readParallel(aFile, theFormat, 4);
+
+			// blank node ids are preserved, so the results should be identical, not just isomorphic
+			assertEquals(aSequential.size(), aParallel.size());
+			assertContainsAll(aSequential, aParallel);
+			assertContainsAll(aSequential, ModelIO.readParallel(aFile, theFormat, 1));
+		}
+		finally {
+			Files.deleteIfExists(aFile);
+		}
+	}
+
+	private static void assertContainsAll(final Model theModel, final Model theOther) {
+		// compare complete quads; statement equality does not consider the context
+		final Set<List<Value>> aQuads = Sets.newHashSet();
+
+		for (Statement aStmt : theModel) {
+			aQuads.add(Arrays.asList(aStmt.getSubject(), aStmt.getPredicate(), aStmt.getObject(), aStmt.getContext()));
+		}
+
+		for (Statement aStmt : theOther) {
+			assertTrue(aQuads.contains(Arrays.asList(aStmt.getSubject(), aStmt.getPredicate(), aStmt.getObject(), aStmt.getContext())));
+		}
+	}
 }
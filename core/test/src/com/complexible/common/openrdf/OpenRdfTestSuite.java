@@ -28,7 +28,17 @@ import org.junit.runner.RunWith;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ TestModels2.class, TestRepositories.class, TestQueryUtils.class,
-					  ConstrainedModelTests.class, ModelIOTests.class })
+					  ConstrainedModelTests.class, ModelIOTests.class, CompactModelTests.class,
+					  MappedModelTests.class, ConnectionPoolTests.class, AsyncQueryTests.class,
+					  QueryResultCacheTests.class, ConcurrentModelTests.class,
+					  StatementMatcherTests.class,
+					  InstrumentedModelTests.class, InstrumentedRepositoryTests.class,
+					  ResultLeakDetectorTests.class, PrefetchingResultTests.class,
+					  ColumnarTupleResultTests.class,
+					  StreamingResultWriterTests.class,
+					  QueryTemplateTests.class,
+					  BatchingQueryExecutorTests.class,
+					  PagedTupleQueryResultTests.class })
 public class OpenRdfTestSuite {
 
 }
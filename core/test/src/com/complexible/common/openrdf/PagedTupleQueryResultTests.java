@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.complexible.common.openrdf.query.PagedTupleQueryResult;
+import com.complexible.common.openrdf.repository.ConnectionPool;
+import com.complexible.common.openrdf.repository.Repositories;
+import info.aduna.iteration.Iterations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.base.RepositoryConnectionWrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Tests for {@link PagedTupleQueryResult}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class PagedTupleQueryResultTests {
+	private static final int SIZE = 200;
+
+	private Repository mRepository;
+
+	@Before
+	public void before() throws Exception {
+		mRepository = TestRepositories.createInMemoryRepo();
+
+		Repositories.add(mRepository, TestUtils.createRandomModel(SIZE));
+	}
+
+	@After
+	public void after() throws Exception {
+		mRepository.shutDown();
+	}
+
+	@Test
+	public void testPagesMatchTheQuery() throws Exception {
+		final AtomicInteger aConnections = new AtomicInteger();
+
+		final TupleQueryResult aResult = new PagedTupleQueryResult(() -> {
+			aConnections.incrementAndGet();
+			return mRepository.getConnection();
+		}, "select ?s ?p ?o where { ?s ?p ?o }", 7);
+
+		assertEquals(Arrays.asList("s", "p", "o"), aResult.getBindingNames());
+		assertEquals(select("select ?s ?p ?o where { ?s ?p ?o } order by ?s ?p ?o"), Iterations.asList(aResult));
+
+		// one connection per page, the last of which is short
+		assertEquals(SIZE / 7 + 1, aConnections.get());
+	}
+
+	@Test
+	public void testOrderIsMadeStable() throws Exception {
+		// ties in the order are broken by the projected variables
+		assertEquals(select("select ?s ?p ?o where { ?s ?p ?o } order by desc(?p) ?o ?s"),
+		             Iterations.asList(Repositories.selectQueryPaged(mRepository,
+		                                                             "# ordered\nselect ?s ?p ?o where { ?s ?p ?o } order by desc(?p) ?o", 10)));
+	}
+
+	@Test
+	public void testLimitAndOffsetAreHonored() throws Exception {
+		assertEquals(select("select ?s ?o where { ?s ?p ?o } order by ?s ?o limit 23 offset 5"),
+		             Iterations.asList(Repositories.selectQueryPaged(mRepository,
+		                                                             "select ?s ?o where { ?s ?p ?o } LIMIT 23 OFFSET 5", 7)));
+
+		assertEquals(select("select ?s where { ?s ?p ?o } order by ?s offset 190"),
+		             Iterations.asList(Repositories.selectQueryPaged(mRepository, "select ?s where { ?s ?p ?o } offset 190", 7)));
+
+		assertEquals(0, Iterations.asList(Repositories.selectQueryPaged(mRepository, "select ?s where { ?s ?p ?o } limit 0", 7)).size());
+	}
+
+	@Test
+	public void testQueryText() throws Exception {
+		// the order is not swallowed by a trailing comment, and the limit need not follow whitespace
+		assertEquals(select("select ?s ?o where { ?s ?p ?o } order by ?s ?o limit 12"),
+		             Iterations.asList(Repositories.selectQueryPaged(mRepository,
+		                                                             "select ?s ?o where { ?s ?p ?o }LIMIT 12", 5)));
+
+		assertEquals(select("select ?s ?o where { ?s ?p ?o } order by desc(?o) ?s"),
+		             Iterations.asList(Repositories.selectQueryPaged(mRepository,
+		                                                             "select ?s ?o where { ?s ?p ?o } order by desc(?o) # the order", 9)));
+
+		assertEquals(select("select ?s ?o where { ?s ?p ?o } order by ?s ?o"),
+		             Iterations.asList(Repositories.selectQueryPaged(mRepository,
+		                                                             "select ?s ?o where { ?s ?p ?o } # no order", 9)));
+	}
+
+	@Test
+	public void testUnordered() throws Exception {
+		final String aQuery = "select ?s ?p ?o where { ?s ?p ?o }";
+
+		// the memory store returns the same query in the same order each time
+		assertEquals(select(aQuery),
+		             Iterations.asList(new PagedTupleQueryResult(mRepository::getConnection, aQuery, 7, false, theTask -> new Thread(theTask).start())));
+	}
+
+	@Test
+	public void testSubSelect() throws Exception {
+		// the limit and order of the sub-select are its own
+		final String aQuery = "select ?s ?c where { { select ?s (count(?o) as ?c) where { ?s ?p ?o } group by ?s order by ?s limit 3 } }";
+
+		assertEquals(select(aQuery + " order by ?s ?c"), Iterations.asList(Repositories.selectQueryPaged(mRepository, aQuery, 2)));
+	}
+
+	@Test
+	public void testClosingReleasesConnections() throws Exception {
+		try (ConnectionPool aPool = ConnectionPool.builder(mRepository).maxSize(2).build()) {
+			final TupleQueryResult aResult = Repositories.selectQueryPaged(aPool, "select ?s ?p ?o where { ?s ?p ?o }", 10);
+
+			for (int i = 0; i < 15; i++) {
+				aResult.next();
+			}
+
+			aResult.close();
+
+			assertEquals(0, aPool.getActiveCount());
+		}
+	}
+
+	@Test
+	public void testCloseDoesNotWaitForAPage() throws Exception {
+		final CountDownLatch aEvaluating = new CountDownLatch(1);
+		final CountDownLatch aRelease = new CountDownLatch(1);
+		final CountDownLatch aClosed = new CountDownLatch(1);
+		final AtomicInteger aConnections = new AtomicInteger();
+
+		// the second page blocks in evaluation until released
+		final TupleQueryResult aResult = new PagedTupleQueryResult(() -> {
+			if (aConnections.incrementAndGet() == 1) {
+				return mRepository.getConnection();
+			}
+
+			return new RepositoryConnectionWrapper(mRepository, mRepository.getConnection()) {
+				@Override
+				public TupleQuery prepareTupleQuery(final QueryLanguage theLang, final String theQuery, final String theBase) {
+					aEvaluating.countDown();
+
+					try {
+						aRelease.await();
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+
+					return super.prepareTupleQuery(theLang, theQuery, theBase);
+				}
+
+				@Override
+				public void close() {
+					super.close();
+					aClosed.countDown();
+				}
+			};
+		}, "select ?s ?p ?o where { ?s ?p ?o }", 10);
+
+		assertTrue(aEvaluating.await(10, TimeUnit.SECONDS));
+
+		final long aStart = System.nanoTime();
+
+		aResult.close();
+
+		assertTrue(System.nanoTime() - aStart < TimeUnit.SECONDS.toNanos(5));
+
+		// the page which was being evaluated is closed once it returns
+		aRelease.countDown();
+
+		assertTrue(aClosed.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testUnpageableQueries() throws Exception {
+		assertRejected("ask { ?s ?p ?o }");
+		assertRejected("construct { ?s ?p ?o } where { ?s ?p ?o }");
+		assertRejected("select ?s where { ?s ?p ?o } limit 5 values ?s { <urn:a> }");
+	}
+
+	private void assertRejected(final String theQuery) {
+		try {
+			Repositories.selectQueryPaged(mRepository, theQuery, 10).close();
+			fail("Should not page " + theQuery);
+		}
+		catch (MalformedQueryException e) {
+			// expected
+		}
+	}
+
+	private List<BindingSet> select(final String theQuery) throws Exception {
+		return Iterations.asList(Repositories.selectQuery(mRepository, QueryLanguage.SPARQL, theQuery));
+	}
+}
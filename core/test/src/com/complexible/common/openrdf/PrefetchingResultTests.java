@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.complexible.common.openrdf.query.PrefetchingGraphQueryResult;
+import com.complexible.common.openrdf.query.PrefetchingTupleQueryResult;
+import com.complexible.common.openrdf.repository.Repositories;
+import com.google.common.util.concurrent.MoreExecutors;
+import info.aduna.iteration.Iterations;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.IteratingGraphQueryResult;
+import org.openrdf.query.impl.IteratingTupleQueryResult;
+import org.openrdf.query.impl.ListBindingSet;
+import org.openrdf.repository.Repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Tests for {@link PrefetchingTupleQueryResult} and {@link PrefetchingGraphQueryResult}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class PrefetchingResultTests {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	private static final List<String> NAMES = Collections.singletonList("i");
+
+	@Test
+	public void testResultsAreInOrder() throws Exception {
+		final List<BindingSet> aExpected = bindings(10000);
+
+		// batches and buffer much smaller than the result so the producer blocks and resumes many times
+		final TupleQueryResult aResult = new PrefetchingTupleQueryResult(new IteratingTupleQueryResult(NAMES, aExpected),
+		                                                                 newThreadExecutor(), 2, 7);
+
+		assertEquals(NAMES, aResult.getBindingNames());
+		assertEquals(aExpected, Iterations.asList(aResult));
+		assertFalse(aResult.hasNext());
+	}
+
+	@Test
+	public void testQueryResult() throws Exception {
+		final Repository aRepo = TestRepositories.createInMemoryRepo();
+		try {
+			final Model aModel = TestUtils.createRandomModel(500);
+			Repositories.add(aRepo, aModel);
+
+			final String aQuery = "select ?s ?p ?o where { ?s ?p ?o }";
+			final List<BindingSet> aExpected = Iterations.asList(Repositories.selectQuery(aRepo, QueryLanguage.SPARQL, aQuery));
+
+			final TupleQueryResult aResult = new PrefetchingTupleQueryResult(Repositories.selectQuery(aRepo, QueryLanguage.SPARQL, aQuery));
+			try {
+				assertEquals(aExpected, Iterations.asList(aResult));
+			}
+			finally {
+				aResult.close();
+			}
+
+			final List<Statement> aGraph = Iterations.asList(new PrefetchingGraphQueryResult(
+				Repositories.constructQuery(aRepo, QueryLanguage.SPARQL, "construct { ?s ?p ?o } where { ?s ?p ?o }")));
+
+			assertEquals(aModel.size(), aGraph.size());
+			assertTrue(aModel.containsAll(aGraph));
+		}
+		finally {
+			aRepo.shutDown();
+		}
+	}
+
+	@Test
+	public void testErrorsFollowTheResultsBeforeThem() throws Exception {
+		final Iterator<BindingSet> aFailing = new Iterator<BindingSet>() {
+			int mCount = 0;
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public BindingSet next() {
+				if (mCount == 5) {
+					throw new QueryEvaluationException("boom");
+				}
+
+				return new ListBindingSet(NAMES, FACTORY.createLiteral(mCount++));
+			}
+		};
+
+		final TupleQueryResult aResult = new PrefetchingTupleQueryResult(new IteratingTupleQueryResult(NAMES, aFailing),
+		                                                                 newThreadExecutor(), 4, 2);
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals(FACTORY.createLiteral(i), aResult.next().getValue("i"));
+		}
+
+		try {
+			aResult.hasNext();
+			fail("The error should have been rethrown");
+		}
+		catch (QueryEvaluationException e) {
+			assertEquals("boom", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCloseStopsTheProducer() throws Exception {
+		final CountDownLatch aClosed = new CountDownLatch(1);
+
+		final Iterator<Statement> aEndless = new Iterator<Statement>() {
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Statement next() {
+				return FACTORY.createStatement(FACTORY.createBNode(), FACTORY.createIRI("urn:p"), FACTORY.createBNode());
+			}
+		};
+
+		final PrefetchingGraphQueryResult aResult = new PrefetchingGraphQueryResult(
+			new IteratingGraphQueryResult(Collections.emptyMap(), aEndless) {
+				@Override
+				protected void handleClose() throws QueryEvaluationException {
+					super.handleClose();
+					aClosed.countDown();
+				}
+			}, newThreadExecutor(), 2, 16);
+
+		assertTrue(aResult.hasNext());
+		aResult.next();
+		aResult.close();
+
+		assertFalse(aResult.hasNext());
+
+		// the producer closes the iteration once it sees the result was closed
+		assertTrue(aClosed.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testCloseDoesNotInterruptARead() throws Exception {
+		final CountDownLatch aReading = new CountDownLatch(1);
+		final CountDownLatch aClosed = new CountDownLatch(1);
+		final AtomicBoolean aInRead = new AtomicBoolean(false);
+		final AtomicBoolean aClosedDuringRead = new AtomicBoolean(false);
+
+		// the first read blocks until the producer is interrupted
+		final Iterator<BindingSet> aBlocking = new Iterator<BindingSet>() {
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public BindingSet next() {
+				aInRead.set(true);
+				aReading.countDown();
+
+				try {
+					new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				finally {
+					aInRead.set(false);
+				}
+
+				return new ListBindingSet(NAMES, FACTORY.createLiteral(0));
+			}
+		};
+
+		final TupleQueryResult aResult = new PrefetchingTupleQueryResult(
+			new IteratingTupleQueryResult(NAMES, aBlocking) {
+				@Override
+				protected void handleClose() throws QueryEvaluationException {
+					aClosedDuringRead.set(aInRead.get());
+					super.handleClose();
+					aClosed.countDown();
+				}
+			}, newThreadExecutor(), 2, 16);
+
+		assertTrue(aReading.await(10, TimeUnit.SECONDS));
+
+		aResult.close();
+
+		assertTrue(aClosed.await(5, TimeUnit.SECONDS));
+		assertFalse(aClosedDuringRead.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidDepth() throws Exception {
+		new PrefetchingTupleQueryResult(new IteratingTupleQueryResult(NAMES, bindings(1)), MoreExecutors.directExecutor(), 0, 1);
+	}
+
+	private static Executor newThreadExecutor() {
+		return theTask -> new Thread(theTask).start();
+	}
+
+	private static List<BindingSet> bindings(final int theCount) {
+		return IntStream.range(0, theCount)
+		                .mapToObj(i -> new ListBindingSet(NAMES, FACTORY.createLiteral(i)))
+		                .collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.query.ImmutableDataset;
+import com.complexible.common.openrdf.repository.QueryResultCache;
+import com.complexible.common.openrdf.repository.Repositories;
+import info.aduna.iteration.Iterations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Tests for {@link QueryResultCache}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class QueryResultCacheTests {
+	private static final String QUERY = "select ?s where { ?s ?p [ ?q ?o ] }";
+
+	private Repository mRepository;
+
+	@Before
+	public void before() throws Exception {
+		mRepository = TestRepositories.createInMemoryRepo();
+
+		Repositories.add(mRepository, TestUtils.createRandomModel(100));
+	}
+
+	@After
+	public void after() throws Exception {
+		mRepository.shutDown();
+	}
+
+	@Test
+	public void testHit() throws Exception {
+		QueryResultCache aCache = QueryResultCache.builder(mRepository).build();
+
+		final long aCount = count(aCache.selectQuery(QueryLanguage.SPARQL, QUERY));
+
+		assertEquals(0, aCache.getHitCount());
+		assertEquals(1, aCache.getMissCount());
+
+		// the blank node gets a new anonymous variable each time the query is parsed, and the whitespace differs, but
+		// it's the same query
+		assertEquals(aCount, count(aCache.selectQuery(QueryLanguage.SPARQL, "select ?s\nwhere {\n\t?s ?p [ ?q ?o ] .\n}")));
+
+		assertEquals(1, aCache.getHitCount());
+		assertEquals(1, aCache.getMissCount());
+		assertEquals(1, aCache.size());
+
+		// a different dataset is a different entry
+		aCache.selectQuery(QueryLanguage.SPARQL, QUERY, ImmutableDataset.builder()
+		                                                                .defaultGraphs(SimpleValueFactory.getInstance().createIRI("urn:g"))
+		                                                                .build());
+
+		assertEquals(2, aCache.getMissCount());
+		assertEquals(2, aCache.size());
+	}
+
+	@Test
+	public void testInvalidateOnChange() throws Exception {
+		QueryResultCache aCache = QueryResultCache.builder(mRepository).build();
+
+		final String aQuery = "select ?s where { ?s a ?type }";
+
+		final long aCount = count(aCache.selectQuery(QueryLanguage.SPARQL, aQuery));
+
+		final Model aModel = new LinkedHashModel();
+		aModel.add(SimpleValueFactory.getInstance().createIRI("urn:new"), RDF.TYPE, SimpleValueFactory.getInstance().createIRI("urn:Type"));
+
+		Repositories.add(mRepository, aModel);
+
+		assertEquals(0, aCache.size());
+		assertEquals(aCount + 1, count(aCache.selectQuery(QueryLanguage.SPARQL, aQuery)));
+
+		// changes made directly to a connection require an explicit invalidation
+		try (RepositoryConnection aConn = mRepository.getConnection()) {
+			aConn.remove(aModel);
+		}
+
+		assertEquals(aCount + 1, count(aCache.selectQuery(QueryLanguage.SPARQL, aQuery)));
+
+		aCache.invalidate();
+
+		assertEquals(aCount, count(aCache.selectQuery(QueryLanguage.SPARQL, aQuery)));
+
+		aCache.close();
+
+		count(aCache.selectQuery(QueryLanguage.SPARQL, aQuery));
+
+		// closed caches are no longer invalidated
+		Repositories.add(mRepository, aModel);
+
+		assertEquals(1, aCache.size());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		QueryResultCache aCache = QueryResultCache.builder(mRepository)
+		                                          .maxRows(10)
+		                                          .build();
+
+		// larger than the whole cache, returned but not kept
+		assertEquals(100, count(aCache.selectQuery(QueryLanguage.SPARQL, "select * where { ?s ?p ?o }")));
+
+		assertEquals(0, aCache.size());
+		assertEquals(1, aCache.getEvictionCount());
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals(3, count(aCache.selectQuery(QueryLanguage.SPARQL, "select * where { ?s ?p ?o } limit 3 offset " + i)));
+		}
+
+		// the bound is on rows, not queries
+		assertTrue(aCache.getRowCount() <= 10);
+		assertTrue(aCache.getEvictionCount() > 1);
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		QueryResultCache aCache = QueryResultCache.builder(mRepository)
+		                                          .ttl(50, TimeUnit.MILLISECONDS)
+		                                          .build();
+
+		count(aCache.selectQuery(QueryLanguage.SPARQL, QUERY));
+
+		Thread.sleep(100);
+
+		count(aCache.selectQuery(QueryLanguage.SPARQL, QUERY));
+
+		assertEquals(0, aCache.getHitCount());
+		assertEquals(2, aCache.getMissCount());
+	}
+
+	private static long count(final TupleQueryResult theResult) throws Exception {
+		return Iterations.asList(theResult).size();
+	}
+}
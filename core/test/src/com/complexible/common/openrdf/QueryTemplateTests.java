@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import com.complexible.common.openrdf.model.Models2;
+import com.complexible.common.openrdf.query.PreparedQueries;
+import com.complexible.common.openrdf.query.QueryTemplate;
+import com.complexible.common.openrdf.repository.Repositories;
+import com.complexible.common.openrdf.sail.SailConnections;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import info.aduna.iteration.Iterations;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Model;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.helpers.StatementPatternCollector;
+import org.openrdf.query.impl.EmptyBindingSet;
+import org.openrdf.query.impl.ListBindingSet;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.sail.Sail;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.memory.MemoryStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Tests for {@link QueryTemplate}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class QueryTemplateTests {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	private static final String QUERY = "select ?s ?o where { ?s ?p ?o }";
+
+	private static final IRI A = FACTORY.createIRI("urn:a");
+	private static final IRI B = FACTORY.createIRI("urn:b");
+	private static final IRI P = FACTORY.createIRI("urn:p");
+	private static final IRI Q = FACTORY.createIRI("urn:q");
+
+	private static Model mData;
+
+	private static Repository mRepo;
+
+	@BeforeClass
+	public static void beforeClass() {
+		mData = Models2.newModel(FACTORY.createStatement(A, P, FACTORY.createLiteral("a1")),
+		                         FACTORY.createStatement(A, P, FACTORY.createLiteral("a2")),
+		                         FACTORY.createStatement(A, Q, B),
+		                         FACTORY.createStatement(B, P, FACTORY.createLiteral("b1")));
+
+		mRepo = TestRepositories.createInMemoryRepo();
+		Repositories.add(mRepo, mData);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		mRepo.shutDown();
+	}
+
+	private static BindingSet bindings(final String theName, final IRI theValue) {
+		return new ListBindingSet(Arrays.asList(theName), theValue);
+	}
+
+	@Test
+	public void testTemplatesAreCached() {
+		final QueryTemplate aTemplate = QueryTemplate.sparql(QUERY);
+
+		assertSame(aTemplate, QueryTemplate.sparql(QUERY));
+		assertEquals(ImmutableSet.of("s", "p", "o"), aTemplate.getPlaceholders());
+	}
+
+	@Test(expected = MalformedQueryException.class)
+	public void testMalformed() {
+		QueryTemplate.sparql("select where {");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownPlaceholder() {
+		QueryTemplate.sparql(QUERY).bind(bindings("x", A));
+	}
+
+	@Test
+	public void testBindLeavesTheTemplateUnchanged() {
+		final QueryTemplate aTemplate = QueryTemplate.sparql(QUERY);
+
+		final ParsedQuery aBoundA = aTemplate.bind(bindings("s", A));
+		final ParsedQuery aBoundB = aTemplate.bind(bindings("s", B));
+
+		assertEquals(A, subject(aBoundA));
+		assertEquals(B, subject(aBoundB));
+		assertNull(subject(aTemplate.bind(EmptyBindingSet.getInstance())));
+	}
+
+	@Test
+	public void testPrepare() throws Exception {
+		final QueryTemplate aTemplate = QueryTemplate.sparql(QUERY);
+
+		try (RepositoryConnection aConn = mRepo.getConnection()) {
+			assertEquals(expected(A), Sets.newHashSet(Iterations.asList(aTemplate.prepareTupleQuery(aConn, bindings("s", A)).evaluate())));
+			assertEquals(3, Iterations.asList(aTemplate.prepareTupleQuery(aConn, bindings("p", P)).evaluate()).size());
+
+			assertTrue(QueryTemplate.sparql("ask { ?s ?p ?o }").prepareBooleanQuery(aConn, bindings("s", B)).evaluate());
+			assertFalse(QueryTemplate.sparql("ask { ?s ?p ?o }").prepareBooleanQuery(aConn, bindings("s", P)).evaluate());
+
+			assertEquals(3, Iterations.asList(QueryTemplate.sparql("construct where { ?s ?p ?o }")
+			                                               .prepareGraphQuery(aConn, bindings("s", A))
+			                                               .evaluate()).size());
+		}
+	}
+
+	@Test
+	public void testPreparedQueriesReuseTheQuery() throws Exception {
+		final QueryTemplate aTemplate = QueryTemplate.sparql(QUERY);
+
+		try (RepositoryConnection aConn = mRepo.getConnection()) {
+			final PreparedQueries aPrepared = new PreparedQueries(aConn);
+
+			final TupleQuery aQueryA = aPrepared.prepareTupleQuery(aTemplate, bindings("s", A));
+
+			assertEquals(expected(A), Sets.newHashSet(Iterations.asList(aQueryA.evaluate())));
+
+			final TupleQuery aQueryB = aPrepared.prepareTupleQuery(aTemplate, bindings("p", P));
+
+			assertSame(aQueryA, aQueryB);
+
+			// the binding of s from the previous call is gone
+			assertEquals(3, Iterations.asList(aQueryB.evaluate()).size());
+
+			assertTrue(aPrepared.prepareBooleanQuery(QueryTemplate.sparql("ask { ?s ?p ?o }"), bindings("s", B)).evaluate());
+			assertFalse(aPrepared.prepareBooleanQuery(QueryTemplate.sparql("ask { ?s ?p ?o }"), bindings("s", P)).evaluate());
+
+			assertEquals(3, Iterations.asList(aPrepared.prepareGraphQuery(QueryTemplate.sparql("construct where { ?s ?p ?o }"), bindings("s", A))
+			                                           .evaluate()).size());
+
+			assertEquals(3, aPrepared.size());
+
+			try {
+				aPrepared.prepareTupleQuery(QueryTemplate.sparql("ask { ?s ?p ?o }"), EmptyBindingSet.getInstance());
+				fail("Should not return an ask query as a select query");
+			}
+			catch (MalformedQueryException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test(expected = MalformedQueryException.class)
+	public void testPrepareWrongType() throws Exception {
+		try (RepositoryConnection aConn = mRepo.getConnection()) {
+			QueryTemplate.sparql("ask { ?s ?p ?o }").prepareTupleQuery(aConn, EmptyBindingSet.getInstance());
+		}
+	}
+
+	@Test
+	public void testEvaluateAgainstSail() throws Exception {
+		final Sail aSail = new MemoryStore();
+		aSail.initialize();
+
+		try {
+			final SailConnection aConn = aSail.getConnection();
+
+			try {
+				SailConnections.add(aConn, mData);
+
+				final QueryTemplate aTemplate = QueryTemplate.sparql(QUERY);
+
+				assertEquals(expected(A), Sets.newHashSet(Iterations.asList(aTemplate.evaluate(aConn, bindings("s", A), true))));
+				assertEquals(expected(B), Sets.newHashSet(Iterations.asList(aTemplate.evaluate(aConn, bindings("s", B), true))));
+				assertEquals(4, Iterations.asList(aTemplate.evaluate(aConn, EmptyBindingSet.getInstance(), true)).size());
+			}
+			finally {
+				aConn.close();
+			}
+		}
+		finally {
+			aSail.shutDown();
+		}
+	}
+
+	/**
+	 * The results of the query for the subject, computed by substituting the subject into the query string
+	 */
+	private static Set<BindingSet> expected(final IRI theSubject) {
+		return Sets.newHashSet(Iterations.asList(Repositories.selectQuery(mRepo, QueryLanguage.SPARQL,
+		                                                                  "select ?s ?o where { bind(<" + theSubject + "> as ?s) ?s ?p ?o }")));
+	}
+
+	private static IRI subject(final ParsedQuery theQuery) {
+		final StatementPattern aPattern = StatementPatternCollector.process(theQuery.getTupleExpr()).get(0);
+
+		return (IRI) aPattern.getSubjectVar().getValue();
+	}
+}
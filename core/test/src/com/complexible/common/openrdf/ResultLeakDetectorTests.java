@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.repository.InstrumentedRepository;
+import com.complexible.common.openrdf.repository.Repositories;
+import com.complexible.common.openrdf.repository.ResultLeakDetector;
+import com.complexible.common.openrdf.util.Metrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.RepositoryResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Tests for {@link ResultLeakDetector}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class ResultLeakDetectorTests {
+
+	private InstrumentedRepository mRepository;
+
+	private int mSamplingInterval;
+
+	@Before
+	public void before() throws Exception {
+		mRepository = new InstrumentedRepository(TestRepositories.createInMemoryRepo(), Metrics.NONE);
+
+		Repositories.add(mRepository, TestUtils.createRandomModel(10));
+
+		mSamplingInterval = ResultLeakDetector.getSamplingInterval();
+		ResultLeakDetector.setSamplingInterval(1);
+	}
+
+	@After
+	public void after() throws Exception {
+		ResultLeakDetector.setSamplingInterval(mSamplingInterval);
+
+		mRepository.shutDown();
+	}
+
+	@Test
+	public void testClosedResultsAreNotTracked() throws Exception {
+		final int aLive = ResultLeakDetector.getLiveResults();
+
+		final TupleQueryResult aResult = Repositories.selectQuery(mRepository, QueryLanguage.SPARQL, "select * where { ?s ?p ?o }");
+		final RepositoryResult<?> aStatements = Repositories.getStatements(mRepository);
+
+		assertEquals(aLive + 2, ResultLeakDetector.getLiveResults());
+		assertEquals(2, mRepository.getOpenConnections());
+
+		aResult.close();
+		aStatements.close();
+
+		assertEquals(aLive, ResultLeakDetector.getLiveResults());
+		assertEquals(0, mRepository.getOpenConnections());
+	}
+
+	@Test
+	public void testAbandonedResultsCloseTheirConnection() throws Exception {
+		final long aLeaked = ResultLeakDetector.getLeakedResults();
+
+		abandon();
+
+		assertEquals(1, mRepository.getOpenConnections());
+
+		final long aDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while ((mRepository.getOpenConnections() > 0 || ResultLeakDetector.getLeakedResults() == aLeaked)
+		       && System.nanoTime() < aDeadline) {
+			System.gc();
+			Thread.sleep(50);
+		}
+
+		assertEquals(0, mRepository.getOpenConnections());
+		assertTrue(ResultLeakDetector.getLeakedResults() > aLeaked);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeSamplingInterval() {
+		ResultLeakDetector.setSamplingInterval(-1);
+	}
+
+	private void abandon() {
+		// read from the result but never close it
+		Repositories.getStatements(mRepository).hasNext();
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.complexible.common.openrdf.model.Models2;
+import com.complexible.common.openrdf.model.StatementMatcher;
+import com.complexible.common.openrdf.model.Statements;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.helpers.StatementCollector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Tests for {@link StatementMatcher}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class StatementMatcherTests {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	private final IRI s = FACTORY.createIRI("urn:s");
+	private final IRI s2 = FACTORY.createIRI("urn:s2");
+	private final IRI p = FACTORY.createIRI("urn:p");
+	private final IRI o = FACTORY.createIRI("urn:o");
+	private final IRI c = FACTORY.createIRI("urn:c");
+
+	@Test
+	public void testMatches() {
+		StatementMatcher<String> aMatcher = StatementMatcher.<String>builder()
+		                                                    .pattern("any", null, null, null)
+		                                                    .pattern("subject", s, null, null)
+		                                                    .pattern("predicate", null, p, null)
+		                                                    .pattern("object", null, p, o)
+		                                                    .pattern("type", null, RDF.TYPE, o)
+		                                                    .pattern("context", null, null, null, c)
+		                                                    .pattern("default", s, p, null, (Resource) null)
+		                                                    .build();
+
+		assertEquals(Lists.newArrayList("any", "subject", "predicate", "object", "default"),
+		             aMatcher.matches(FACTORY.createStatement(s, p, o)));
+
+		assertEquals(Lists.newArrayList("any", "subject", "predicate", "object", "context"),
+		             aMatcher.matches(FACTORY.createStatement(s, p, o, c)));
+
+		assertEquals(Lists.newArrayList("any", "type"),
+		             aMatcher.matches(FACTORY.createStatement(s2, RDF.TYPE, o)));
+
+		assertEquals(Lists.newArrayList("any"),
+		             aMatcher.matches(FACTORY.createStatement(s2, RDF.TYPE, s)));
+
+		List<String> aTargets = Lists.newArrayList();
+		aMatcher.match(FACTORY.createStatement(s2, p, s), aTargets::add);
+
+		// the consumer gets the targets in no particular order
+		assertEquals(Sets.newHashSet("any", "predicate"), Sets.newHashSet(aTargets));
+	}
+
+	@Test
+	public void testEmpty() {
+		StatementMatcher<String> aMatcher = StatementMatcher.<String>builder().build();
+
+		assertFalse(aMatcher.test(FACTORY.createStatement(s, p, o)));
+		assertTrue(aMatcher.matches(FACTORY.createStatement(s, p, o)).isEmpty());
+	}
+
+	@Test
+	public void testSameAsLinearMatching() {
+		final Model aModel = TestUtils.createRandomModel(500);
+		final List<Statement> aStatements = Lists.newArrayList(aModel);
+
+		// patterns drawn from the data, with some positions left as wildcards
+		StatementMatcher.StatementMatcherBuilder<Integer> aBuilder = StatementMatcher.builder();
+		List<Predicate<Statement>> aPredicates = Lists.newArrayList();
+
+		for (int i = 0; i < 200; i++) {
+			Statement aStmt = aStatements.get((i * 7) % aStatements.size());
+
+			Resource aSubj = i % 3 == 0 ? aStmt.getSubject() : null;
+			IRI aPred = i % 5 == 0 ? null : aStmt.getPredicate();
+			Value aObj = i % 2 == 0 ? aStmt.getObject() : null;
+
+			aBuilder.pattern(i, aSubj, aPred, aObj);
+			aPredicates.add(Statements.matches(aSubj, aPred, aObj));
+		}
+
+		StatementMatcher<Integer> aMatcher = aBuilder.build();
+
+		for (Statement aStmt : aStatements) {
+			List<Integer> aExpected = Lists.newArrayList();
+
+			for (int i = 0; i < aPredicates.size(); i++) {
+				if (aPredicates.get(i).test(aStmt)) {
+					aExpected.add(i);
+				}
+			}
+
+			assertEquals(aExpected, aMatcher.matches(aStmt));
+			assertEquals(!aExpected.isEmpty(), aMatcher.test(aStmt));
+		}
+	}
+
+	@Test
+	public void testFilter() throws Exception {
+		StatementMatcher<String> aMatcher = StatementMatcher.<String>builder()
+		                                                    .pattern("subject", s, null, null)
+		                                                    .build();
+
+		Model aModel = Models2.newModel(FACTORY.createStatement(s, p, o),
+		                                FACTORY.createStatement(s2, p, o),
+		                                FACTORY.createStatement(s, RDF.TYPE, o));
+
+		assertEquals(2, aModel.stream().filter(aMatcher).count());
+
+		StatementCollector aCollector = new StatementCollector();
+
+		RDFHandler aHandler = aMatcher.filter(aCollector);
+
+		aHandler.startRDF();
+		aModel.forEach(aHandler::handleStatement);
+		aHandler.endRDF();
+
+		assertEquals(2, aCollector.getStatements().size());
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.complexible.common.openrdf.query.BinaryRowResult;
+import com.complexible.common.openrdf.query.BinaryRowResultWriter;
+import com.complexible.common.openrdf.query.OutputBuffer;
+import com.complexible.common.openrdf.query.StreamingCSVWriter;
+import com.complexible.common.openrdf.query.StreamingJSONWriter;
+import com.complexible.common.openrdf.query.StreamingTSVWriter;
+import com.complexible.common.openrdf.query.StreamingTupleResultWriter;
+import com.complexible.common.openrdf.repository.Repositories;
+import com.google.common.collect.Lists;
+import info.aduna.iteration.Iterations;
+import org.junit.Test;
+import org.openrdf.model.IRI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.QueryResults;
+import org.openrdf.query.TupleQueryResultHandlerException;
+import org.openrdf.query.impl.IteratingTupleQueryResult;
+import org.openrdf.query.impl.ListBindingSet;
+import org.openrdf.query.resultio.QueryResultIO;
+import org.openrdf.query.resultio.QueryResultParseException;
+import org.openrdf.repository.Repository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Tests for the {@link StreamingTupleResultWriter streaming result writers}</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+public class StreamingResultWriterTests {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	private static final List<String> NAMES = Arrays.asList("a", "b");
+
+	private final IRI mIRI = FACTORY.createIRI("urn:a,b");
+
+	private List<BindingSet> rows() {
+		return Arrays.<BindingSet>asList(new ListBindingSet(NAMES, mIRI, FACTORY.createLiteral("x\t\"y\"\n")),
+		                                 new ListBindingSet(NAMES, mIRI, FACTORY.createLiteral("chat", "fr")),
+		                                 new ListBindingSet(NAMES, FACTORY.createBNode("b1"), null),
+		                                 new ListBindingSet(NAMES, null, FACTORY.createLiteral("1", XMLSchema.INT)));
+	}
+
+	private static String write(final StreamingTupleResultWriter theWriter, final ByteArrayOutputStream theOut,
+	                            final List<BindingSet> theRows) throws Exception {
+		QueryResults.report(new IteratingTupleQueryResult(NAMES, theRows), theWriter);
+
+		return new String(theOut.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testTSV() throws Exception {
+		final ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		assertEquals("?a\t?b\n" +
+		             "<urn:a,b>\t\"x\\t\\\"y\\\"\\n\"\n" +
+		             "<urn:a,b>\t\"chat\"@fr\n" +
+		             "_:b1\t\n" +
+		             "\t\"1\"^^<http://www.w3.org/2001/XMLSchema#int>\n",
+		             write(new StreamingTSVWriter(aOut), aOut, rows()));
+	}
+
+	@Test
+	public void testCSV() throws Exception {
+		final ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		assertEquals("a,b\r\n" +
+		             "\"urn:a,b\",\"x\t\"\"y\"\"\n\"\r\n" +
+		             "\"urn:a,b\",chat\r\n" +
+		             "_:b1,\r\n" +
+		             ",1\r\n",
+		             write(new StreamingCSVWriter(aOut), aOut, rows()));
+	}
+
+	@Test
+	public void testJSON() throws Exception {
+		final ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		assertEquals("{\"head\":{\"vars\":[\"a\",\"b\"]},\"results\":{\"bindings\":[" +
+		             "{\"a\":{\"type\":\"uri\",\"value\":\"urn:a,b\"},\"b\":{\"type\":\"literal\",\"value\":\"x\\t\\\"y\\\"\\n\"}}," +
+		             "{\"a\":{\"type\":\"uri\",\"value\":\"urn:a,b\"},\"b\":{\"type\":\"literal\",\"value\":\"chat\",\"xml:lang\":\"fr\"}}," +
+		             "{\"a\":{\"type\":\"bnode\",\"value\":\"b1\"}}," +
+		             "{\"b\":{\"type\":\"literal\",\"value\":\"1\",\"datatype\":\"http://www.w3.org/2001/XMLSchema#int\"}}" +
+		             "]}}\n",
+		             write(new StreamingJSONWriter(aOut), aOut, rows()));
+	}
+
+	@Test
+	public void testBinaryRoundTrip() throws Exception {
+		final ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		write(new BinaryRowResultWriter(aOut), aOut, rows());
+
+		assertEquals(rows(), Iterations.asList(QueryResultIO.parseTuple(new ByteArrayInputStream(aOut.toByteArray()),
+		                                                                BinaryRowResult.FORMAT)));
+	}
+
+	@Test
+	public void testBinaryTruncated() throws Exception {
+		final ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		write(new BinaryRowResultWriter(aOut), aOut, rows());
+
+		final byte[] aBytes = aOut.toByteArray();
+
+		// empty, part of the header, and part of the rows
+		for (int aLength : new int[] { 0, 3, aBytes.length / 2 }) {
+			try {
+				QueryResultIO.parseTuple(new ByteArrayInputStream(aBytes, 0, aLength), BinaryRowResult.FORMAT);
+				fail("Should not have parsed a truncated result of " + aLength + " bytes");
+			}
+			catch (QueryResultParseException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test(expected = QueryResultParseException.class)
+	public void testBinaryInvalidStringLength() throws Exception {
+		final ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		write(new BinaryRowResultWriter(aOut), aOut, rows());
+
+		// the header, then one binding name whose length varint decodes as negative
+		final ByteArrayOutputStream aCorrupt = new ByteArrayOutputStream();
+		aCorrupt.write(aOut.toByteArray(), 0, 5);
+		aCorrupt.write(new byte[] { 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F });
+
+		QueryResultIO.parseTuple(new ByteArrayInputStream(aCorrupt.toByteArray()), BinaryRowResult.FORMAT);
+	}
+
+	@Test
+	public void testBinaryResetsIds() throws Exception {
+		// more distinct IRIs than the writer keeps ids for, interleaved with repeats
+		final List<BindingSet> aRows = Lists.newArrayList();
+		for (int i = 0; i < 3 * StreamingTupleResultWriter.DEFAULT_CACHE_SIZE; i++) {
+			aRows.add(new ListBindingSet(NAMES, FACTORY.createIRI("urn:" + i), FACTORY.createLiteral(i)));
+			aRows.add(new ListBindingSet(NAMES, FACTORY.createIRI("urn:" + (i / 2)), null));
+		}
+
+		final ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		write(new BinaryRowResultWriter(aOut), aOut, aRows);
+
+		assertEquals(aRows, Iterations.asList(QueryResultIO.parseTuple(new ByteArrayInputStream(aOut.toByteArray()),
+		                                                               BinaryRowResult.FORMAT)));
+	}
+
+	@Test
+	public void testBinaryFromQuery() throws Exception {
+		final Repository aRepo = TestRepositories.createInMemoryRepo();
+		try {
+			Repositories.add(aRepo, TestUtils.createRandomModel(500));
+
+			final String aQuery = "select ?s ?p ?o where { ?s ?p ?o }";
+
+			final ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+			QueryResultIO.writeTuple(Repositories.selectQuery(aRepo, QueryLanguage.SPARQL, aQuery), BinaryRowResult.FORMAT, aOut);
+
+			assertEquals(Iterations.asList(Repositories.selectQuery(aRepo, QueryLanguage.SPARQL, aQuery)),
+			             Iterations.asList(QueryResultIO.parseTuple(new ByteArrayInputStream(aOut.toByteArray()),
+			                                                        BinaryRowResult.FORMAT)));
+		}
+		finally {
+			aRepo.shutDown();
+		}
+	}
+
+	@Test
+	public void testChannelAndSmallBuffer() throws Exception {
+		final ByteArrayOutputStream aStream = new ByteArrayOutputStream();
+		final ByteArrayOutputStream aChannel = new ByteArrayOutputStream();
+
+		final List<BindingSet> aRows = Lists.newArrayList(rows());
+		aRows.add(new ListBindingSet(NAMES, FACTORY.createIRI("urn:\u00e9\u4e2d"), FACTORY.createLiteral("\ud83d\ude00 " + new String(new char[100]).replace('\0', 'z'))));
+
+		final String aExpected = write(new StreamingTSVWriter(aStream), aStream, aRows);
+
+		assertEquals(aExpected, write(new StreamingTSVWriter(new OutputBuffer(Channels.newChannel(aChannel), 16)), aChannel, aRows));
+		assertArrayEquals(aExpected.getBytes(StandardCharsets.UTF_8), aChannel.toByteArray());
+	}
+
+	@Test(expected = TupleQueryResultHandlerException.class)
+	public void testWriteErrors() throws Exception {
+		final StreamingTupleResultWriter aWriter = new StreamingTSVWriter(new OutputStream() {
+			@Override
+			public void write(final int theByte) throws IOException {
+				throw new IOException("closed");
+			}
+		});
+
+		QueryResults.report(new IteratingTupleQueryResult(NAMES, rows()), aWriter);
+	}
+}
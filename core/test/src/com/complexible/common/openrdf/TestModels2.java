@@ -16,6 +16,7 @@
 package com.complexible.common.openrdf;
 
 import com.complexible.common.openrdf.model.ModelIO;
+import com.complexible.common.openrdf.model.ModelIndex;
 import com.complexible.common.openrdf.model.Models2;
 import com.complexible.common.openrdf.model.Statements;
 import com.google.common.base.Charsets;
@@ -36,12 +37,14 @@ import org.openrdf.model.util.Models;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.model.Statement;
 import org.openrdf.model.Resource;
+import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.SimpleValueFactory;
 import org.openrdf.query.impl.IteratingGraphQueryResult;
 import org.openrdf.rio.RDFFormat;
 
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -250,6 +253,150 @@ public class TestModels2 {
 		assertTrue(Models2.getBooleanValue(aGraph, s, p4).orElse(false));
 	}
 
+	@Test
+	public void testModelIndex() {
+		final IRI s = SimpleValueFactory.getInstance().createIRI("urn:s");
+		final IRI s2 = SimpleValueFactory.getInstance().createIRI("urn:s2");
+		final IRI p = SimpleValueFactory.getInstance().createIRI("urn:p");
+		final IRI p2 = SimpleValueFactory.getInstance().createIRI("urn:p2");
+		final IRI p3 = SimpleValueFactory.getInstance().createIRI("urn:p3");
+		final IRI c = SimpleValueFactory.getInstance().createIRI("urn:c");
+
+		final IRI o = SimpleValueFactory.getInstance().createIRI("urn:o");
+		final IRI o2 = SimpleValueFactory.getInstance().createIRI("urn:o2");
+		final Literal l = SimpleValueFactory.getInstance().createLiteral("literal");
+		final Literal b = SimpleValueFactory.getInstance().createLiteral(true);
+
+		Model aGraph = Models2.newModel();
+
+		aGraph.add(s, p, o);
+		aGraph.add(s, p, o2);
+		aGraph.add(s, p, o, c);
+		aGraph.add(s, p2, l);
+		aGraph.add(s, p3, b);
+		aGraph.add(s, RDF.TYPE, o2);
+		aGraph.add(s, RDF.TYPE, l);
+
+		ModelIndex aIndex = ModelIndex.of(aGraph);
+
+		assertEquals(Lists.newArrayList(o, o2), aIndex.getObjects(s, p));
+		assertEquals(Models2.getObject(aGraph, s, p), aIndex.getObject(s, p));
+		assertEquals(Optional.of(o), aIndex.getResource(s, p));
+		assertFalse(aIndex.getLiteral(s, p).isPresent());
+		assertEquals(Optional.of(l), aIndex.getLiteral(s, p2));
+		assertFalse(aIndex.getResource(s, p2).isPresent());
+		assertFalse(aIndex.getBooleanValue(s, p2).isPresent());
+		assertEquals(Optional.of(true), aIndex.getBooleanValue(s, p3));
+
+		assertEquals(Sets.newHashSet(p, p2, p3, RDF.TYPE), aIndex.getProperties(s).keySet());
+		assertTrue(aIndex.getProperties(s2).isEmpty());
+		assertTrue(aIndex.getObjects(s2, p).isEmpty());
+		assertFalse(aIndex.getObject(s, RDF.VALUE).isPresent());
+
+		assertTrue(aIndex.isSubject(s));
+		assertFalse(aIndex.isSubject(o));
+		assertTrue(aIndex.isInstanceOf(s, o2));
+		assertFalse(aIndex.isInstanceOf(s, o));
+		assertEquals(Lists.newArrayList(o2), aIndex.getTypes(s));
+		assertEquals(Lists.newArrayList(o2), Lists.newArrayList(Models2.getTypes(aGraph, s)));
+	}
+
+	@Test
+	public void testLists() {
+		List<Resource> aElements = Lists.newArrayList();
+
+		for (int i = 0; i < 10000; i++) {
+			aElements.add(SimpleValueFactory.getInstance().createIRI("urn:element" + i));
+		}
+
+		Model aGraph = Models2.toList(aElements);
+
+		// toList creates the statements of the head first
+		Resource aHead = aGraph.iterator().next().getSubject();
+
+		assertTrue(Models2.isList(aGraph, aHead));
+		assertTrue(Models2.isList(aGraph, RDF.NIL));
+		assertFalse(Models2.isList(aGraph, aElements.get(0)));
+
+		assertEquals(aElements, Models2.asList(aGraph, aHead));
+		assertEquals(aElements, Lists.newArrayList(Models2.listIterator(aGraph, aHead)));
+
+		// the index of the graph must notice the list has changed
+		Resource aSecond = Models2.getResource(aGraph, aHead, RDF.REST).get();
+		aGraph.remove(aHead, RDF.REST, null);
+		aGraph.add(aHead, RDF.REST, RDF.NIL);
+
+		assertEquals(aElements.subList(0, 1), Models2.asList(aGraph, aHead));
+		assertEquals(aElements.subList(1, aElements.size()), Models2.asList(aGraph, aSecond));
+	}
+
+	@Test
+	public void testListOfLiterals() {
+		final Resource aHead = SimpleValueFactory.getInstance().createBNode();
+		final Resource aRest = SimpleValueFactory.getInstance().createBNode();
+
+		final Literal a = SimpleValueFactory.getInstance().createLiteral("a");
+		final Literal b = SimpleValueFactory.getInstance().createLiteral(2);
+
+		Model aGraph = Models2.newModel();
+
+		aGraph.add(aHead, RDF.FIRST, a);
+		aGraph.add(aHead, RDF.REST, aRest);
+		aGraph.add(aRest, RDF.FIRST, b);
+		aGraph.add(aRest, RDF.REST, RDF.NIL);
+
+		assertEquals(Lists.newArrayList(a, b), Models2.asList(aGraph, aHead));
+	}
+
+	@Test
+	public void testListExtendedWithoutChangingSize() {
+		final ValueFactory aFactory = SimpleValueFactory.getInstance();
+
+		final Resource a = aFactory.createBNode();
+		final Resource b = aFactory.createBNode();
+		final Resource c = aFactory.createBNode();
+
+		final Literal one = aFactory.createLiteral(1);
+		final Literal two = aFactory.createLiteral(2);
+		final Literal three = aFactory.createLiteral(3);
+
+		Model aGraph = Models2.newModel();
+
+		aGraph.add(a, RDF.FIRST, one);
+		aGraph.add(a, RDF.REST, b);
+		aGraph.add(b, RDF.FIRST, two);
+		aGraph.add(RDF.TYPE, RDF.TYPE, RDF.PROPERTY);
+		aGraph.add(RDF.FIRST, RDF.TYPE, RDF.PROPERTY);
+
+		assertEquals(Lists.newArrayList(one, two), Models2.asList(aGraph, a));
+
+		// the same size, but the last cell now has a rest
+		aGraph.remove(RDF.TYPE, RDF.TYPE, RDF.PROPERTY);
+		aGraph.remove(RDF.FIRST, RDF.TYPE, RDF.PROPERTY);
+		aGraph.add(b, RDF.REST, c);
+		aGraph.add(c, RDF.FIRST, three);
+
+		assertEquals(Lists.newArrayList(one, two, three), Models2.asList(aGraph, a));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testListCycle() {
+		final Resource a = SimpleValueFactory.getInstance().createBNode();
+		final Resource b = SimpleValueFactory.getInstance().createBNode();
+		final Resource c = SimpleValueFactory.getInstance().createBNode();
+
+		Model aGraph = Models2.newModel();
+
+		aGraph.add(a, RDF.FIRST, RDF.TYPE);
+		aGraph.add(a, RDF.REST, b);
+		aGraph.add(b, RDF.FIRST, RDF.TYPE);
+		aGraph.add(b, RDF.REST, c);
+		aGraph.add(c, RDF.FIRST, RDF.TYPE);
+		aGraph.add(c, RDF.REST, b);
+
+		Models2.asList(aGraph, a);
+	}
+
 //	/**
 //	 * Test methods dealing with getting individuals from the graph
 //	 */
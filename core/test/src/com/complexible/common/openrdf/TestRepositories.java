@@ -16,28 +16,42 @@
 package com.complexible.common.openrdf;
 
 import com.complexible.common.openrdf.model.ModelIO;
+import com.complexible.common.openrdf.model.Models2;
+import com.complexible.common.openrdf.repository.BulkLoader;
 import com.complexible.common.openrdf.repository.Repositories;
+import com.complexible.common.openrdf.repository.RepositoryConnections;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import info.aduna.iteration.Iterations;
 import org.junit.Test;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
+import org.openrdf.model.IRI;
 import org.openrdf.model.Model;
+import org.openrdf.model.impl.SimpleValueFactory;
 import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.model.Statement;
 import org.openrdf.repository.sail.SailRepository;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
 import org.openrdf.sail.memory.MemoryStore;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * <p>Tests for ExtRepository</p>
  *
  * @author Michael Grove
- * @version 0.4
+ * @version 4.1
  * @since 0.4
  */
 public class TestRepositories {
@@ -160,4 +174,75 @@ public class TestRepositories {
 			assertTrue(Repositories.contains(aRepo, aStmt));
 		}
 	}
+
+	@Test
+	public void testBulkLoad() throws Exception {
+		Repository aRepo = createInMemoryRepo();
+
+		Model aGraph = TestUtils.createRandomModel(1000);
+
+		ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+
+		ModelIO.write(aGraph, aOut, RDFFormat.NTRIPLES);
+
+		final List<Long> aProgress = Lists.newArrayList();
+
+		BulkLoader aLoader = BulkLoader.builder()
+		                               .batchSize(100)
+		                               .queueSize(2)
+		                               .listener((theStatements, theBytes, theElapsed) -> aProgress.add(theStatements))
+		                               .build();
+
+		try (RepositoryConnection aConn = aRepo.getConnection()) {
+			assertEquals(1000, aLoader.load(aConn, new StringReader(aOut.toString("UTF-8")), RDFFormat.NTRIPLES));
+		}
+
+		assertEquals(10, aProgress.size());
+		assertEquals(1000L, (long) aProgress.get(aProgress.size() - 1));
+		assertEquals(1000, Repositories.size(aRepo));
+
+		for (Statement aStmt : aGraph) {
+			assertTrue(Repositories.contains(aRepo, aStmt));
+		}
+	}
+
+	@Test
+	public void testBulkLoadContextAndBNodes() throws Exception {
+		Repository aRepo = createInMemoryRepo();
+
+		final IRI aContext = SimpleValueFactory.getInstance().createIRI("urn:context");
+
+		final String aData = "_:a <urn:p> _:b .\n" +
+		                     "_:b <urn:p> _:a .\n" +
+		                     "<urn:s> <urn:p> _:a .";
+
+		try (RepositoryConnection aConn = aRepo.getConnection()) {
+			assertEquals(3, BulkLoader.builder().batchSize(1).build()
+			                          .load(aConn, new StringReader(aData), RDFFormat.NTRIPLES, aContext, null));
+
+			Model aModel = Iterations.addAll(aConn.getStatements(null, null, null, false, aContext), Models2.newModel());
+
+			assertEquals(3, aModel.size());
+			// the same blank nodes are used across batches
+			assertEquals(2, aModel.objects().size());
+			assertEquals(aModel.subjects(), Sets.union(aModel.objects(), Collections.singleton(SimpleValueFactory.getInstance().createIRI("urn:s"))));
+		}
+	}
+
+	@Test
+	public void testBulkLoadParseError() throws Exception {
+		Repository aRepo = createInMemoryRepo();
+
+		final String aData = "<urn:s> <urn:p> <urn:o> .\n" +
+		                     "<urn:s> <urn:p> <urn:o2> .\n" +
+		                     "<urn:s> <urn:p> ";
+
+		try (RepositoryConnection aConn = aRepo.getConnection()) {
+			RepositoryConnections.bulkAdd(aConn, new StringReader(aData), RDFFormat.NTRIPLES, null, null);
+			fail("Should not have been able to parse the data");
+		}
+		catch (RDFParseException e) {
+			// expected
+		}
+	}
 }
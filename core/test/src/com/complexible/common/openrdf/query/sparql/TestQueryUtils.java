@@ -15,7 +15,10 @@
 
 package com.complexible.common.openrdf.query.sparql;
 
+import java.io.StringWriter;
 import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import com.complexible.common.openrdf.TestUtils;
 import com.complexible.common.openrdf.query.BooleanQueryResult;
@@ -32,7 +35,9 @@ import static org.junit.Assert.fail;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
 import org.openrdf.model.IRI;
+import org.openrdf.model.Value;
 import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.vocabulary.XMLSchema;
 import org.openrdf.query.QueryEvaluationException;
 
 import org.openrdf.query.algebra.QueryModelNode;
@@ -46,7 +51,7 @@ import org.openrdf.query.parser.ParsedQuery;
  *
  * @author	Michael Grove
  * @since	0.7
- * @version	0.8
+ * @version	4.1
  */
 public class TestQueryUtils {
 	@Test
@@ -130,6 +135,80 @@ public class TestQueryUtils {
 		assertEquals("Offset should be 10", 10L, getOffset(aParsedQuery));
 	}
 
+	@Test
+	public void testEscape() {
+		final String[] aStrings = { "plain", "\"quoted\"", "a \\q b", "\\t\\n\\r\\b\\f\\'\\\\", "\\\"", "\\\\x",
+		                            "trailing \\", "\\\u00e9\\\ud83d\ude00", "" };
+
+		for (String aString : aStrings) {
+			assertEquals(aString, regexEscape(aString), SesameQueryUtils.escape(aString));
+		}
+
+		assertEquals("a \\\\q \\\"b\\\"", SesameQueryUtils.escape("a \\q \"b\""));
+	}
+
+	@Test
+	public void testQueryStrings() {
+		final SimpleValueFactory aFactory = SimpleValueFactory.getInstance();
+
+		final IRI aIRI = aFactory.createIRI("urn:s");
+		final BNode aBNode = aFactory.createBNode("b1");
+		final Literal aPlain = aFactory.createLiteral("a \"b\"");
+		final Literal aLang = aFactory.createLiteral("chat", "fr");
+		final Literal aTyped = aFactory.createLiteral("1", XMLSchema.INT);
+
+		assertEquals("<urn:s>", SesameQueryUtils.getSPARQLQueryString(aIRI));
+		assertEquals("_:b1", SesameQueryUtils.getSPARQLQueryString(aBNode));
+		assertEquals("\"\"\"a \\\"b\\\"\"\"\"^^<http://www.w3.org/2001/XMLSchema#string>", SesameQueryUtils.getSPARQLQueryString(aPlain));
+		assertEquals("\"\"\"chat\"\"\"@fr", SesameQueryUtils.getSPARQLQueryString(aLang));
+		assertEquals("\"\"\"1\"\"\"^^<http://www.w3.org/2001/XMLSchema#int>", SesameQueryUtils.getSPARQLQueryString(aTyped));
+
+		assertEquals("<urn:s>", SesameQueryUtils.getARQSPARQLQueryString(aIRI));
+		assertEquals("<_:b1>", SesameQueryUtils.getARQSPARQLQueryString(aBNode));
+		assertEquals("\"\"\"chat\"\"\"@fr", SesameQueryUtils.getARQSPARQLQueryString(aLang));
+
+		assertEquals("<urn:s>", SesameQueryUtils.getSerqlQueryString(aIRI));
+		assertEquals("_:b1", SesameQueryUtils.getSerqlQueryString(aBNode));
+		assertEquals("\"chat\"@fr", SesameQueryUtils.getSerqlQueryString(aLang));
+		assertEquals("\"1\"^^<http://www.w3.org/2001/XMLSchema#int>", SesameQueryUtils.getSerqlQueryString(aTyped));
+	}
+
+	@Test
+	public void testAppendTo() throws Exception {
+		final SimpleValueFactory aFactory = SimpleValueFactory.getInstance();
+
+		final StringBuilder aBuilder = new StringBuilder("VALUES ?x { ");
+		final StringWriter aWriter = new StringWriter();
+
+		for (Value aValue : new Value[] { aFactory.createIRI("urn:s"),
+		                                  aFactory.createLiteral("a \\q", "en"),
+		                                  aFactory.createBNode("b1") }) {
+			SesameQueryUtils.appendTo(aBuilder, aValue).append(' ');
+			SesameQueryUtils.appendTo(aWriter, aValue).append(' ');
+		}
+
+		aBuilder.append('}');
+
+		assertEquals("VALUES ?x { <urn:s> \"\"\"a \\\\q\"\"\"@en _:b1 }", aBuilder.toString());
+		assertEquals("<urn:s> \"\"\"a \\\\q\"\"\"@en _:b1 ", aWriter.toString());
+	}
+
+	/**
+	 * The original, regex based, implementation of {@link SesameQueryUtils#escape}
+	 */
+	private static String regexEscape(String theString) {
+		theString = theString.replaceAll("\"", "\\\\\"");
+
+		StringBuffer aBuffer = new StringBuffer();
+		Matcher aMatcher = Pattern.compile("\\\\([^tnrbf\"'\\\\])").matcher(theString);
+		while (aMatcher.find()) {
+			aMatcher.appendReplacement(aBuffer, String.format("\\\\\\\\%s", aMatcher.group(1)));
+		}
+		aMatcher.appendTail(aBuffer);
+
+		return aBuffer.toString();
+	}
+
 	private long getOffset(final ParsedQuery theQuery) {
 		GetSlice aGetLimit = new GetSlice();
 
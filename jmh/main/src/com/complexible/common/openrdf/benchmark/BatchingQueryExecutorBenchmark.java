@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.query.SesameQueryUtils;
+import com.complexible.common.openrdf.repository.BatchingQueryExecutor;
+import com.complexible.common.openrdf.repository.Repositories;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+/**
+ * <p>Benchmarks for a burst of single subject lookups run one query at a time against the same lookups batched by a
+ * {@link BatchingQueryExecutor}.  The repository is in memory, so this measures the saving in parsing and evaluating the
+ * queries and not the round trips saved with a remote repository.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchingQueryExecutorBenchmark {
+
+	private static final String PREFIX = "prefix ex: <http://example.org/bench/>\n";
+
+	private static final String WHERE = " ex:predicate1 ?o . optional { ?s ex:predicate2 ?o2 } }";
+
+	private static final String QUERY = PREFIX + "select ?s ?o ?o2 where { ?s" + WHERE;
+
+	/**
+	 * The number of lookups in each burst
+	 */
+	private static final int LOOKUPS = 100;
+
+	@Param({ "10000" })
+	public int size;
+
+	private SailRepository mRepository;
+
+	private BatchingQueryExecutor mExecutor;
+
+	private List<Resource> mSubjects;
+
+	private int mNext;
+
+	@Setup
+	public void setup() {
+		final Model aModel = BenchmarkData.model(size);
+
+		mRepository = new SailRepository(new MemoryStore());
+		mRepository.initialize();
+
+		Repositories.add(mRepository, aModel);
+
+		mExecutor = BatchingQueryExecutor.builder(mRepository)
+		                                 .window(1, TimeUnit.HOURS)
+		                                 .maxBatchSize(LOOKUPS)
+		                                 .build();
+
+		mSubjects = Lists.newArrayList(aModel.subjects());
+	}
+
+	@TearDown
+	public void tearDown() {
+		mExecutor.close();
+		mRepository.shutDown();
+	}
+
+	@Benchmark
+	public void individual(final Blackhole theBlackhole) {
+		for (int i = 0; i < LOOKUPS; i++) {
+			final String aQuery = PREFIX + "select ?s ?o ?o2 where { " + SesameQueryUtils.getSPARQLQueryString(next()) + WHERE;
+
+			final TupleQueryResult aResult = Repositories.selectQuery(mRepository, QueryLanguage.SPARQL, aQuery);
+
+			try {
+				while (aResult.hasNext()) {
+					theBlackhole.consume(aResult.next());
+				}
+			}
+			finally {
+				aResult.close();
+			}
+		}
+	}
+
+	@Benchmark
+	public void batched(final Blackhole theBlackhole) throws Exception {
+		final List<CompletableFuture<List<BindingSet>>> aFutures = Lists.newArrayListWithCapacity(LOOKUPS);
+
+		for (int i = 0; i < LOOKUPS; i++) {
+			aFutures.add(mExecutor.select(QUERY, "s", next()));
+		}
+
+		// the last lookup fills the batch, which then runs on the executor's thread
+		for (CompletableFuture<List<BindingSet>> aFuture : aFutures) {
+			theBlackhole.consume(aFuture.get());
+		}
+	}
+
+	private Resource next() {
+		mNext = (mNext + 1) % mSubjects.size();
+
+		return mSubjects.get(mNext);
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import com.complexible.common.openrdf.model.Models2;
+import com.google.common.collect.Lists;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.vocabulary.XMLSchema;
+
+/**
+ * <p>Generates the data used by the benchmarks.  The data is random, but seeded, so every run of a benchmark sees the
+ * same data.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+final class BenchmarkData {
+	private static final ValueFactory FACTORY = SimpleValueFactory.getInstance();
+
+	private static final String NS = "http://example.org/bench/";
+
+	private BenchmarkData() {
+		throw new AssertionError();
+	}
+
+	/**
+	 * Create a model of the given size.  Subjects and predicates are drawn from small pools so the data resembles
+	 * real data, with a mix of IRI, blank node, plain, language tagged and typed literal objects.
+	 *
+	 * @param theSize	the number of statements
+	 * @return			the model
+	 */
+	static Model model(final int theSize) {
+		final Model aModel = Models2.newModel();
+
+		aModel.setNamespace("ex", NS);
+
+		final Random aRandom = new Random(theSize);
+
+		final int aSubjects = Math.max(1, theSize / 10);
+
+		while (aModel.size() < theSize) {
+			aModel.add(statement(aRandom, aSubjects));
+		}
+
+		return aModel;
+	}
+
+	/**
+	 * Create the given number of statements, which may contain duplicates
+	 *
+	 * @param theSize	the number of statements
+	 * @return			the statements
+	 */
+	static List<Statement> statements(final int theSize) {
+		final List<Statement> aStatements = Lists.newArrayListWithCapacity(theSize);
+
+		final Random aRandom = new Random(theSize);
+
+		final int aSubjects = Math.max(1, theSize / 10);
+
+		for (int i = 0; i < theSize; i++) {
+			aStatements.add(statement(aRandom, aSubjects));
+		}
+
+		return aStatements;
+	}
+
+	/**
+	 * Create an rdf:List of the given length whose elements are IRIs
+	 *
+	 * @param theLength	the length of the list
+	 * @return			the model containing the list; the head of the list is the subject of the first statement
+	 */
+	static Model list(final int theLength) {
+		final List<Resource> aElements = Lists.newArrayListWithCapacity(theLength);
+
+		for (int i = 0; i < theLength; i++) {
+			aElements.add(FACTORY.createIRI(NS, "element" + i));
+		}
+
+		return Models2.toList(aElements);
+	}
+
+	private static Statement statement(final Random theRandom, final int theSubjects) {
+		final Resource aSubj = FACTORY.createIRI(NS, "subject" + theRandom.nextInt(theSubjects));
+		final IRI aPred = FACTORY.createIRI(NS, "predicate" + theRandom.nextInt(20));
+
+		final Value aObj;
+
+		switch (theRandom.nextInt(5)) {
+			case 0:
+				aObj = FACTORY.createIRI(NS, "object" + theRandom.nextInt(theSubjects));
+				break;
+			case 1:
+				aObj = FACTORY.createBNode("b" + theRandom.nextInt(theSubjects));
+				break;
+			case 2:
+				aObj = FACTORY.createLiteral("a \"plain\" literal\n" + theRandom.nextLong());
+				break;
+			case 3:
+				aObj = FACTORY.createLiteral("un libell\u00e9 " + theRandom.nextInt(), "fr");
+				break;
+			default:
+				aObj = FACTORY.createLiteral(String.valueOf(theRandom.nextInt()), XMLSchema.INT);
+				break;
+		}
+
+		return FACTORY.createStatement(aSubj, aPred, aObj);
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.query.ColumnarTupleResult;
+import com.complexible.common.openrdf.query.ImmutableBindingSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.model.Statement;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.impl.ListBindingSet;
+
+/**
+ * <p>Benchmarks for {@link ColumnarTupleResult}: materializing a result as a list of {@link ImmutableBindingSet} copies
+ * and as a columnar result, and scanning a variable of each.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColumnarTupleResultBenchmark {
+
+	private static final List<String> NAMES = Arrays.asList("s", "p", "o");
+
+	@Param({ "100000" })
+	public int size;
+
+	private List<BindingSet> mRows;
+
+	private List<BindingSet> mList;
+
+	private ColumnarTupleResult mColumnar;
+
+	@Setup
+	public void setup() {
+		mRows = new ArrayList<>(size);
+
+		for (Statement aStmt : BenchmarkData.statements(size)) {
+			mRows.add(new ListBindingSet(NAMES, aStmt.getSubject(), aStmt.getPredicate(), aStmt.getObject()));
+		}
+
+		mList = materializeList();
+		mColumnar = materializeColumnar();
+	}
+
+	@Benchmark
+	public List<BindingSet> materializeList() {
+		final List<BindingSet> aList = new ArrayList<>();
+
+		for (BindingSet aRow : mRows) {
+			aList.add(new ImmutableBindingSet(aRow));
+		}
+
+		return aList;
+	}
+
+	@Benchmark
+	public ColumnarTupleResult materializeColumnar() {
+		return mRows.stream().collect(ColumnarTupleResult.collector(NAMES));
+	}
+
+	@Benchmark
+	public void scanList(final Blackhole theBlackhole) {
+		for (BindingSet aRow : mList) {
+			theBlackhole.consume(aRow.getValue("o"));
+		}
+	}
+
+	@Benchmark
+	public void scanColumnar(final Blackhole theBlackhole) {
+		mColumnar.scan(theRow -> theBlackhole.consume(theRow.getValue("o")));
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.model.InstrumentedModel;
+import com.complexible.common.openrdf.util.Metrics;
+import com.complexible.common.openrdf.util.SimpleMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+
+/**
+ * <p>The overhead of {@link InstrumentedModel}: a {@code contains} for every statement of a model, on the model
+ * itself, instrumented with {@link Metrics#NONE} and instrumented with {@link SimpleMetrics}.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InstrumentedModelBenchmark {
+
+	@Param({ "10000" })
+	public int size;
+
+	private List<Statement> mStatements;
+
+	private Model mModel;
+
+	private Model mNoOp;
+
+	private Model mInstrumented;
+
+	@Setup
+	public void setup() {
+		mStatements = BenchmarkData.statements(size);
+		mModel = BenchmarkData.model(size);
+		mNoOp = new InstrumentedModel(mModel, Metrics.NONE);
+		mInstrumented = new InstrumentedModel(mModel, new SimpleMetrics());
+	}
+
+	@Benchmark
+	public int containsPlain() {
+		return contains(mModel);
+	}
+
+	@Benchmark
+	public int containsNoOp() {
+		return contains(mNoOp);
+	}
+
+	@Benchmark
+	public int containsInstrumented() {
+		return contains(mInstrumented);
+	}
+
+	private int contains(final Model theModel) {
+		int aCount = 0;
+
+		for (Statement aStmt : mStatements) {
+			if (theModel.contains(aStmt)) {
+				aCount++;
+			}
+		}
+
+		return aCount;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.model.BinaryRDFSnapshot;
+import com.complexible.common.openrdf.model.ModelIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Model;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+
+/**
+ * <p>Benchmarks for reading and writing a {@link Model} with {@link ModelIO} in each of the formats supported by the core
+ * module.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelIOBenchmark {
+
+	@Param({ "Turtle", "N-Triples", "N-Quads", "Binary" })
+	public String format;
+
+	@Param({ "10000" })
+	public int size;
+
+	private RDFFormat mFormat;
+
+	private Model mModel;
+
+	private byte[] mData;
+
+	@Setup
+	public void setup() throws IOException {
+		mFormat = format(format);
+		mModel = BenchmarkData.model(size);
+
+		final ByteArrayOutputStream aOut = new ByteArrayOutputStream();
+		ModelIO.write(mModel, aOut, mFormat);
+
+		mData = aOut.toByteArray();
+	}
+
+	@Benchmark
+	public Model read() throws IOException, RDFParseException {
+		final ByteArrayInputStream aIn = new ByteArrayInputStream(mData);
+
+		// the binary format is not character based, so it cannot go through the Reader based read
+		return BinaryRDFSnapshot.FORMAT.equals(mFormat)
+		       ? ModelIO.readBinary(aIn)
+		       : ModelIO.read(aIn, mFormat);
+	}
+
+	@Benchmark
+	public byte[] write() throws IOException {
+		final ByteArrayOutputStream aOut = new ByteArrayOutputStream(mData.length);
+
+		ModelIO.write(mModel, aOut, mFormat);
+
+		return aOut.toByteArray();
+	}
+
+	private static RDFFormat format(final String theName) {
+		switch (theName) {
+			case "Turtle":
+				return RDFFormat.TURTLE;
+			case "N-Triples":
+				return RDFFormat.NTRIPLES;
+			case "N-Quads":
+				return RDFFormat.NQUADS;
+			case "Binary":
+				return BinaryRDFSnapshot.FORMAT;
+			default:
+				throw new IllegalArgumentException("Unknown format: " + theName);
+		}
+	}
+}
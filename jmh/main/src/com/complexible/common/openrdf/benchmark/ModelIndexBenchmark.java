@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.model.ModelIndex;
+import com.complexible.common.openrdf.model.Models2;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+
+/**
+ * <p>Benchmarks for reading a property of every subject in a {@link Model} with the {@link Models2} accessors and with a
+ * {@link ModelIndex}, including the cost of building the index.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ModelIndexBenchmark {
+
+	@Param({ "100000" })
+	public int size;
+
+	private Model mModel;
+
+	private List<Statement> mLookups;
+
+	@Setup
+	public void setup() {
+		mModel = BenchmarkData.model(size);
+
+		// one lookup for each (subject, predicate) in the model
+		mLookups = Lists.newArrayList(mModel);
+	}
+
+	@Benchmark
+	public int models2GetObject() {
+		int aFound = 0;
+
+		for (Statement aStmt : mLookups) {
+			if (Models2.getObject(mModel, aStmt.getSubject(), aStmt.getPredicate()).isPresent()) {
+				aFound++;
+			}
+		}
+
+		return aFound;
+	}
+
+	@Benchmark
+	public int indexGetObject() {
+		final ModelIndex aIndex = ModelIndex.of(mModel);
+
+		int aFound = 0;
+
+		for (Statement aStmt : mLookups) {
+			if (aIndex.getObject(aStmt.getSubject(), aStmt.getPredicate()).isPresent()) {
+				aFound++;
+			}
+		}
+
+		return aFound;
+	}
+}
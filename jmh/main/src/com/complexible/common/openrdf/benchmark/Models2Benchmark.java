@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.model.Models2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+
+/**
+ * <p>Benchmarks for {@link Models2}: collecting a stream into a {@link Model} sequentially and in parallel, with and
+ * without the concurrent collectors, and reading
+ * rdf:Lists of increasing length.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Models2Benchmark {
+
+	@Param({ "100000" })
+	public int size;
+
+	private List<Statement> mStatements;
+
+	@Setup
+	public void setup() {
+		mStatements = BenchmarkData.statements(size);
+	}
+
+	@Benchmark
+	public Model toModel() {
+		return mStatements.stream().collect(Models2.toModel());
+	}
+
+	@Benchmark
+	public Model toModelParallel() {
+		return mStatements.parallelStream().collect(Models2.toModel());
+	}
+
+	@Benchmark
+	public Model toConcurrentModel() {
+		return mStatements.parallelStream().collect(Models2.toConcurrentModel());
+	}
+
+	@Benchmark
+	public Model toConcurrentModelSized() {
+		return mStatements.parallelStream().collect(Models2.toConcurrentModel(mStatements.size()));
+	}
+
+	@Benchmark
+	public List<Value> asList(final ListState theState) {
+		return Models2.asList(theState.mList, theState.mHead);
+	}
+
+	@State(Scope.Benchmark)
+	public static class ListState {
+
+		@Param({ "100", "1000", "100000" })
+		public int listLength;
+
+		private Model mList;
+
+		private Resource mHead;
+
+		@Setup
+		public void setup() {
+			mList = BenchmarkData.list(listLength);
+			mHead = mList.iterator().next().getSubject();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.query.PagedTupleQueryResult;
+import com.complexible.common.openrdf.repository.Repositories;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+/**
+ * <p>Benchmarks for reading a whole select query as one result, as one ordered result, and a page at a time with
+ * {@link PagedTupleQueryResult}, with and without the order that keeps the pages stable.  The ordered query is the fair
+ * comparison for ordered paging.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PagedTupleQueryResultBenchmark {
+
+	private static final String QUERY = "select ?s ?p ?o where { ?s ?p ?o }";
+
+	/**
+	 * The number of results in each page
+	 */
+	private static final int PAGE_SIZE = 10000;
+
+	@Param({ "100000" })
+	public int size;
+
+	private SailRepository mRepository;
+
+	private ExecutorService mExecutor;
+
+	@Setup
+	public void setup() {
+		mRepository = new SailRepository(new MemoryStore());
+		mRepository.initialize();
+
+		Repositories.add(mRepository, BenchmarkData.model(size));
+
+		mExecutor = Executors.newCachedThreadPool();
+	}
+
+	@TearDown
+	public void tearDown() {
+		mExecutor.shutdownNow();
+		mRepository.shutDown();
+	}
+
+	@Benchmark
+	public void single(final Blackhole theBlackhole) {
+		consume(Repositories.selectQuery(mRepository, QueryLanguage.SPARQL, QUERY), theBlackhole);
+	}
+
+	@Benchmark
+	public void singleOrdered(final Blackhole theBlackhole) {
+		consume(Repositories.selectQuery(mRepository, QueryLanguage.SPARQL, QUERY + " order by ?s ?p ?o"), theBlackhole);
+	}
+
+	@Benchmark
+	public void paged(final Blackhole theBlackhole) {
+		consume(Repositories.selectQueryPaged(mRepository, QUERY, PAGE_SIZE), theBlackhole);
+	}
+
+	@Benchmark
+	public void pagedUnordered(final Blackhole theBlackhole) {
+		consume(new PagedTupleQueryResult(mRepository::getConnection, QUERY, PAGE_SIZE, false, mExecutor), theBlackhole);
+	}
+
+	private static void consume(final TupleQueryResult theResult, final Blackhole theBlackhole) {
+		try {
+			while (theResult.hasNext()) {
+				theBlackhole.consume(theResult.next());
+			}
+		}
+		finally {
+			theResult.close();
+		}
+	}
+}
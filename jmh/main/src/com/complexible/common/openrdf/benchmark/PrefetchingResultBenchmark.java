@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.complexible.common.openrdf.query.PrefetchingTupleQueryResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.IteratingTupleQueryResult;
+import org.openrdf.query.impl.ListBindingSet;
+
+/**
+ * <p>Benchmarks for {@link PrefetchingTupleQueryResult}.  The result simulates a remote store, waiting 1ms for every
+ * 100 rows as though for the next chunk of the response, and the consumer does some work on every row; prefetching
+ * lets the two overlap.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PrefetchingResultBenchmark {
+
+	private static final List<String> NAMES = Collections.singletonList("i");
+
+	private static final BindingSet ROW = new ListBindingSet(NAMES, SimpleValueFactory.getInstance().createLiteral(1));
+
+	@Param({ "10000" })
+	public int size;
+
+	@Benchmark
+	public void direct(final Blackhole theBlackhole) {
+		consume(remoteResult(), theBlackhole);
+	}
+
+	@Benchmark
+	public void prefetched(final Blackhole theBlackhole) {
+		consume(new PrefetchingTupleQueryResult(remoteResult()), theBlackhole);
+	}
+
+	private void consume(final TupleQueryResult theResult, final Blackhole theBlackhole) {
+		try {
+			while (theResult.hasNext()) {
+				theBlackhole.consume(theResult.next());
+				Blackhole.consumeCPU(5000);
+			}
+		}
+		finally {
+			theResult.close();
+		}
+	}
+
+	private TupleQueryResult remoteResult() {
+		return new IteratingTupleQueryResult(NAMES, new Iterator<BindingSet>() {
+			private int mCount = 0;
+
+			@Override
+			public boolean hasNext() {
+				return mCount < size;
+			}
+
+			@Override
+			public BindingSet next() {
+				if (mCount++ % 100 == 0) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+				}
+
+				return ROW;
+			}
+		});
+	}
+}
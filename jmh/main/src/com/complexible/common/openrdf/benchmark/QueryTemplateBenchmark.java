@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.query.PreparedQueries;
+import com.complexible.common.openrdf.query.QueryTemplate;
+import com.complexible.common.openrdf.query.SesameQueryUtils;
+import com.complexible.common.openrdf.repository.RepositoryConnections;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.ListBindingSet;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.memory.MemoryStore;
+
+/**
+ * <p>Benchmarks for short lookup queries with a {@link QueryTemplate} against building the query string with the value
+ * of the subject and preparing it each time.  Each invocation looks up the next subject of the data.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryTemplateBenchmark {
+
+	private static final String PREFIX = "prefix ex: <http://example.org/bench/>\n";
+
+	private static final String WHERE = " ex:predicate1 ?o . optional { ?s ex:predicate2 ?o2 } }";
+
+	private static final String QUERY = PREFIX + "select ?o ?o2 where { ?s" + WHERE;
+
+	private static final List<String> SUBJECT = Collections.singletonList("s");
+
+	@Param({ "10000" })
+	public int size;
+
+	private SailRepository mRepository;
+
+	private RepositoryConnection mConnection;
+
+	private PreparedQueries mPrepared;
+
+	private SailConnection mSailConnection;
+
+	private List<Resource> mSubjects;
+
+	private int mNext;
+
+	@Setup
+	public void setup() {
+		final Model aModel = BenchmarkData.model(size);
+
+		mRepository = new SailRepository(new MemoryStore());
+		mRepository.initialize();
+
+		mConnection = mRepository.getConnection();
+		RepositoryConnections.add(mConnection, aModel);
+
+		mPrepared = new PreparedQueries(mConnection);
+
+		mSailConnection = mRepository.getSail().getConnection();
+
+		mSubjects = Lists.newArrayList(aModel.subjects());
+	}
+
+	@TearDown
+	public void tearDown() {
+		mSailConnection.close();
+		mConnection.close();
+		mRepository.shutDown();
+	}
+
+	@Benchmark
+	public void queryString(final Blackhole theBlackhole) {
+		final String aQuery = PREFIX + "select ?o ?o2 where { " + SesameQueryUtils.getSPARQLQueryString(next()) + WHERE;
+
+		consume(mConnection.prepareTupleQuery(QueryLanguage.SPARQL, aQuery).evaluate(), theBlackhole);
+	}
+
+	@Benchmark
+	public void template(final Blackhole theBlackhole) {
+		consume(mPrepared.prepareTupleQuery(QueryTemplate.sparql(QUERY), bindings()).evaluate(), theBlackhole);
+	}
+
+	@Benchmark
+	public void templateSail(final Blackhole theBlackhole) {
+		consume(QueryTemplate.sparql(QUERY).evaluate(mSailConnection, bindings(), true), theBlackhole);
+	}
+
+	private Resource next() {
+		mNext = (mNext + 1) % mSubjects.size();
+
+		return mSubjects.get(mNext);
+	}
+
+	private BindingSet bindings() {
+		return new ListBindingSet(SUBJECT, next());
+	}
+
+	private static void consume(final TupleQueryResult theResult, final Blackhole theBlackhole) {
+		try {
+			while (theResult.hasNext()) {
+				theBlackhole.consume(theResult.next());
+			}
+		}
+		finally {
+			theResult.close();
+		}
+	}
+}
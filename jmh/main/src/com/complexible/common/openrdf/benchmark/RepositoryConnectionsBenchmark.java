@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.model.ModelIO;
+import com.complexible.common.openrdf.repository.RepositoryConnections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Model;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.sail.memory.MemoryStore;
+
+/**
+ * <p>Benchmarks for adding data to an in-memory repository with {@link RepositoryConnections}.  Each invocation loads
+ * into a new, empty repository.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryConnectionsBenchmark {
+
+	@Param({ "10000" })
+	public int size;
+
+	private Model mModel;
+
+	private String mTurtle;
+
+	private Repository mRepository;
+
+	private RepositoryConnection mConnection;
+
+	@Setup(Level.Trial)
+	public void setupData() {
+		mModel = BenchmarkData.model(size);
+		mTurtle = ModelIO.toString(mModel, RDFFormat.TURTLE);
+	}
+
+	@Setup(Level.Invocation)
+	public void setupRepository() {
+		mRepository = new SailRepository(new MemoryStore());
+		mRepository.initialize();
+
+		mConnection = mRepository.getConnection();
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDownRepository() {
+		mConnection.close();
+		mRepository.shutDown();
+	}
+
+	@Benchmark
+	public void addModel() {
+		RepositoryConnections.add(mConnection, mModel);
+	}
+
+	@Benchmark
+	public void addTurtle() throws IOException, RDFParseException {
+		RepositoryConnections.add(mConnection, new StringReader(mTurtle), RDFFormat.TURTLE);
+	}
+}
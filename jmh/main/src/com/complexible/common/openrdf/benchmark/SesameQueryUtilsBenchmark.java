@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.query.SesameQueryUtils;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+
+/**
+ * <p>Benchmarks for escaping strings and serializing values into SPARQL queries with {@link SesameQueryUtils}.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SesameQueryUtilsBenchmark {
+
+	@Param({ "1000" })
+	public int size;
+
+	private List<Value> mValues;
+
+	private List<String> mStrings;
+
+	private final StringBuilder mBuilder = new StringBuilder();
+
+	@Setup
+	public void setup() {
+		mValues = Lists.newArrayListWithCapacity(size);
+		mStrings = Lists.newArrayListWithCapacity(size);
+
+		for (Statement aStmt : BenchmarkData.statements(size)) {
+			mValues.add(aStmt.getObject());
+			mStrings.add(aStmt.getObject().stringValue() + " with a \\q and \"quotes\"");
+		}
+	}
+
+	@Benchmark
+	public long escape() {
+		long aLength = 0;
+
+		for (String aString : mStrings) {
+			aLength += SesameQueryUtils.escape(aString).length();
+		}
+
+		return aLength;
+	}
+
+	@Benchmark
+	public long getSPARQLQueryString() {
+		long aLength = 0;
+
+		for (Value aValue : mValues) {
+			aLength += SesameQueryUtils.getSPARQLQueryString(aValue).length();
+		}
+
+		return aLength;
+	}
+
+	@Benchmark
+	public long appendTo() {
+		mBuilder.setLength(0);
+
+		for (Value aValue : mValues) {
+			SesameQueryUtils.appendTo(mBuilder, aValue).append(' ');
+		}
+
+		return mBuilder.length();
+	}
+}
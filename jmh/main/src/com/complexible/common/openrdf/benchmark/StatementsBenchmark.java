@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.complexible.common.openrdf.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import com.complexible.common.openrdf.model.StatementMatcher;
+import com.complexible.common.openrdf.model.Statements;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.SimpleValueFactory;
+
+/**
+ * <p>Benchmarks for filtering the statements of a {@link Model} with the predicates from {@link Statements}, and routing
+ * statements against many patterns one predicate at a time versus with a {@link StatementMatcher}.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatementsBenchmark {
+
+	private static final int PATTERNS = 2000;
+
+	@Param({ "100000" })
+	public int size;
+
+	private Model mModel;
+
+	private Statement mStatement;
+
+	private IRI mPredicate;
+
+	private List<Predicate<Statement>> mPatterns;
+
+	private StatementMatcher<Integer> mMatcher;
+
+	@Setup
+	public void setup() {
+		mModel = BenchmarkData.model(size);
+		mStatement = mModel.iterator().next();
+		mPredicate = SimpleValueFactory.getInstance().createIRI("http://example.org/bench/predicate7");
+
+		// routing patterns drawn from the data: mostly predicate and object, some subject and predicate
+		final List<Statement> aStatements = Lists.newArrayList(mModel);
+		final StatementMatcher.StatementMatcherBuilder<Integer> aBuilder = StatementMatcher.builder();
+
+		mPatterns = Lists.newArrayListWithCapacity(PATTERNS);
+
+		for (int i = 0; i < PATTERNS; i++) {
+			final Statement aStmt = aStatements.get((i * 31) % aStatements.size());
+
+			final Resource aSubj = i % 4 == 0 ? aStmt.getSubject() : null;
+			final Value aObj = i % 4 == 0 ? null : aStmt.getObject();
+
+			aBuilder.pattern(i, aSubj, aStmt.getPredicate(), aObj);
+			mPatterns.add(Statements.matches(aSubj, aStmt.getPredicate(), aObj));
+		}
+
+		mMatcher = aBuilder.build();
+	}
+
+	@Benchmark
+	public long predicateIs() {
+		return mModel.stream().filter(Statements.predicateIs(mPredicate)).count();
+	}
+
+	@Benchmark
+	public long objectIsLiteral() {
+		return mModel.stream().filter(Statements.objectIs(Literal.class)).count();
+	}
+
+	@Benchmark
+	public long matches() {
+		return mModel.stream().filter(Statements.matches(mStatement.getSubject(), mStatement.getPredicate(), null)).count();
+	}
+
+	@Benchmark
+	public long routeLinear() {
+		long aMatches = 0;
+
+		for (Statement aStmt : mModel) {
+			for (Predicate<Statement> aPattern : mPatterns) {
+				if (aPattern.test(aStmt)) {
+					aMatches++;
+				}
+			}
+		}
+
+		return aMatches;
+	}
+
+	@Benchmark
+	public long routeCompiled() {
+		long aMatches = 0;
+
+		for (Statement aStmt : mModel) {
+			aMatches += mMatcher.matches(aStmt).size();
+		}
+
+		return aMatches;
+	}
+
+	@Benchmark
+	public long literalsValid() {
+		return mModel.stream()
+		             .map(Statements.objectAsLiteral())
+		             .filter(theLiteral -> theLiteral.isPresent() && Statements.isLiteralValid(theLiteral.get()))
+		             .count();
+	}
+}
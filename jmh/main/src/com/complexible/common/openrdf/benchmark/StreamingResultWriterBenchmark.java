@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2009-2016 Clark & Parsia, LLC. <http://www.clarkparsia.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.complexible.common.openrdf.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.common.openrdf.query.BinaryRowResultWriter;
+import com.complexible.common.openrdf.query.StreamingCSVWriter;
+import com.complexible.common.openrdf.query.StreamingJSONWriter;
+import com.complexible.common.openrdf.query.StreamingTSVWriter;
+import com.complexible.common.openrdf.query.StreamingTupleResultWriter;
+import com.google.common.io.ByteStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.BNode;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.impl.ListBindingSet;
+
+/**
+ * <p>Benchmarks for the {@link StreamingTupleResultWriter streaming result writers} against a TSV writer, the
+ * {@code Concatenated} format, which builds a {@link String} for every binding and writes it through a {@link Writer}.
+ * Output is discarded.</p>
+ *
+ * @author  Michael Grove
+ * @since   4.1
+ * @version 4.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StreamingResultWriterBenchmark {
+
+	private static final List<String> NAMES = Arrays.asList("s", "p", "o");
+
+	@Param({ "100000" })
+	public int size;
+
+	@Param({ "Concatenated", "TSV", "CSV", "JSON", "Binary" })
+	public String format;
+
+	private List<BindingSet> mRows;
+
+	@Setup
+	public void setup() {
+		mRows = new ArrayList<>(size);
+
+		for (Statement aStmt : BenchmarkData.statements(size)) {
+			mRows.add(new ListBindingSet(NAMES, aStmt.getSubject(), aStmt.getPredicate(), aStmt.getObject()));
+		}
+	}
+
+	@Benchmark
+	public void write() throws Exception {
+		if (format.equals("Concatenated")) {
+			writeConcatenated();
+			return;
+		}
+
+		final StreamingTupleResultWriter aWriter = writer(ByteStreams.nullOutputStream());
+
+		aWriter.startQueryResult(NAMES);
+
+		for (BindingSet aRow : mRows) {
+			aWriter.handleSolution(aRow);
+		}
+
+		aWriter.endQueryResult();
+	}
+
+	private void writeConcatenated() throws Exception {
+		final Writer aWriter = new BufferedWriter(new OutputStreamWriter(ByteStreams.nullOutputStream(), StandardCharsets.UTF_8));
+
+		aWriter.write("?s\t?p\t?o\n");
+
+		for (BindingSet aRow : mRows) {
+			for (int i = 0; i < NAMES.size(); i++) {
+				if (i > 0) {
+					aWriter.write("\t");
+				}
+
+				final Value aValue = aRow.getValue(NAMES.get(i));
+
+				if (aValue != null) {
+					aWriter.write(toString(aValue));
+				}
+			}
+
+			aWriter.write("\n");
+		}
+
+		aWriter.flush();
+	}
+
+	private StreamingTupleResultWriter writer(final OutputStream theStream) {
+		switch (format) {
+			case "TSV":
+				return new StreamingTSVWriter(theStream);
+			case "CSV":
+				return new StreamingCSVWriter(theStream);
+			case "JSON":
+				return new StreamingJSONWriter(theStream);
+			default:
+				return new BinaryRowResultWriter(theStream);
+		}
+	}
+
+	private static String toString(final Value theValue) {
+		if (theValue instanceof IRI) {
+			return "<" + theValue.stringValue() + ">";
+		}
+		else if (theValue instanceof BNode) {
+			return "_:" + ((BNode) theValue).getID();
+		}
+		else {
+			final Literal aLiteral = (Literal) theValue;
+
+			final String aLabel = "\"" + aLiteral.getLabel().replace("\\", "\\\\")
+			                                              .replace("\t", "\\t")
+			                                              .replace("\n", "\\n")
+			                                              .replace("\r", "\\r")
+			                                              .replace("\"", "\\\"") + "\"";
+
+			if (aLiteral.getLanguage().isPresent()) {
+				return aLabel + "@" + aLiteral.getLanguage().get();
+			}
+			else if (!XMLSchema.STRING.equals(aLiteral.getDatatype())) {
+				return aLabel + "^^<" + aLiteral.getDatatype().stringValue() + ">";
+			}
+			else {
+				return aLabel;
+			}
+		}
+	}
+}